@@ -40,6 +40,13 @@ public interface LedgerOffloaderStats extends AutoCloseable {
 
     void recordWriteToStorageError(String topic);
 
+    void recordWriteToStorageLatency(String topic, long latency, TimeUnit unit);
+
+    /**
+     * Record how many entry bytes of the ledger being offloaded have been written to the storage.
+     */
+    void recordOffloadProgress(String topic, long offloadedBytes, long ledgerLength);
+
     void recordReadOffloadError(String topic);
 
     void recordReadOffloadBytes(String topic, long size);
@@ -48,6 +48,16 @@ public class LedgerOffloaderStatsDisable implements LedgerOffloaderStats {
 
     }
 
+    @Override
+    public void recordWriteToStorageLatency(String topic, long latency, TimeUnit unit) {
+
+    }
+
+    @Override
+    public void recordOffloadProgress(String topic, long offloadedBytes, long ledgerLength) {
+
+    }
+
     @Override
     public void recordReadOffloadError(String topic) {
 
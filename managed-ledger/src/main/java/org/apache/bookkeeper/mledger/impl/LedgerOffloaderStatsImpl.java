@@ -50,9 +50,11 @@ public final class LedgerOffloaderStatsImpl implements LedgerOffloaderStats, Run
 
     private final Counter offloadError;
     private final Gauge offloadRate;
+    private final Gauge offloadProgress;
     private final Counter deleteOffloadOps;
     private final Summary readLedgerLatency;
     private final Counter writeStorageError;
+    private final Summary writeStorageLatency;
     private final Counter readOffloadError;
     private final Counter readOffloadBytes;
     private final Gauge readOffloadRate;
@@ -82,6 +84,8 @@ public final class LedgerOffloaderStatsImpl implements LedgerOffloaderStats, Run
                 .labelNames(labels).create().register();
         this.offloadRate = Gauge.build("brk_ledgeroffloader_offload_rate", "-")
                 .labelNames(labels).create().register();
+        this.offloadProgress = Gauge.build("brk_ledgeroffloader_offload_progress", "-")
+                .labelNames(labels).create().register();
 
         this.readOffloadError = Counter.build("brk_ledgeroffloader_read_offload_error", "-")
                 .labelNames(labels).create().register();
@@ -92,6 +96,12 @@ public final class LedgerOffloaderStatsImpl implements LedgerOffloaderStats, Run
         this.writeStorageError = Counter.build("brk_ledgeroffloader_write_storage_error", "-")
                 .labelNames(labels).create().register();
 
+        this.writeStorageLatency = Summary.build("brk_ledgeroffloader_write_storage_latency", "-")
+                .labelNames(labels).quantile(0.50, 0.01)
+                .quantile(0.95, 0.01)
+                .quantile(0.99, 0.01)
+                .quantile(1, 0.01)
+                .create().register();
         this.readOffloadIndexLatency = Summary.build("brk_ledgeroffloader_read_offload_index_latency", "-")
                 .labelNames(labels).quantile(0.50, 0.01)
                 .quantile(0.95, 0.01)
@@ -159,6 +169,20 @@ public final class LedgerOffloaderStatsImpl implements LedgerOffloaderStats, Run
         this.addOrUpdateTopicAccess(topic);
     }
 
+    @Override
+    public void recordWriteToStorageLatency(String topic, long latency, TimeUnit unit) {
+        String[] labelValues = this.labelValues(topic);
+        this.writeStorageLatency.labels(labelValues).observe(unit.toMicros(latency));
+        this.addOrUpdateTopicAccess(topic);
+    }
+
+    @Override
+    public void recordOffloadProgress(String topic, long offloadedBytes, long ledgerLength) {
+        String[] labelValues = this.labelValues(topic);
+        this.offloadProgress.labels(labelValues).set(ledgerLength > 0 ? (double) offloadedBytes / ledgerLength : 1);
+        this.addOrUpdateTopicAccess(topic);
+    }
+
     @Override
     public void recordReadOffloadError(String topic) {
         String[] labelValues = this.labelValues(topic);
@@ -241,8 +265,10 @@ public final class LedgerOffloaderStatsImpl implements LedgerOffloaderStats, Run
                 String[] labelValues = this.labelValues(topic);
                 this.offloadError.remove(labelValues);
                 this.offloadRate.remove(labelValues);
+                this.offloadProgress.remove(labelValues);
                 this.readLedgerLatency.remove(labelValues);
                 this.writeStorageError.remove(labelValues);
+                this.writeStorageLatency.remove(labelValues);
                 this.readOffloadError.remove(labelValues);
                 this.readOffloadRate.remove(labelValues);
                 this.readOffloadIndexLatency.remove(labelValues);
@@ -280,8 +306,10 @@ public final class LedgerOffloaderStatsImpl implements LedgerOffloaderStats, Run
         if (instance == this && this.closed.compareAndSet(false, true)) {
             CollectorRegistry.defaultRegistry.unregister(this.offloadError);
             CollectorRegistry.defaultRegistry.unregister(this.offloadRate);
+            CollectorRegistry.defaultRegistry.unregister(this.offloadProgress);
             CollectorRegistry.defaultRegistry.unregister(this.readLedgerLatency);
             CollectorRegistry.defaultRegistry.unregister(this.writeStorageError);
+            CollectorRegistry.defaultRegistry.unregister(this.writeStorageLatency);
             CollectorRegistry.defaultRegistry.unregister(this.readOffloadError);
             CollectorRegistry.defaultRegistry.unregister(this.readOffloadBytes);
             CollectorRegistry.defaultRegistry.unregister(this.readOffloadRate);
@@ -322,6 +350,18 @@ public final class LedgerOffloaderStatsImpl implements LedgerOffloaderStats, Run
         return (long) this.writeStorageError.labels(labels).get();
     }
 
+    @VisibleForTesting
+    public double getOffloadProgress(String topic) {
+        String[] labels = this.labelValues(topic);
+        return this.offloadProgress.labels(labels).get();
+    }
+
+    @VisibleForTesting
+    public Summary.Child.Value getWriteStorageLatency(String topic) {
+        String[] labels = this.labelValues(topic);
+        return this.writeStorageLatency.labels(labels).get();
+    }
+
     @VisibleForTesting
     public long getReadOffloadError(String topic) {
         String[] labels = this.labelValues(topic);
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.ManagedCursor;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.pulsar.broker.ServiceConfiguration;
+import org.apache.pulsar.broker.loadbalance.extensions.data.BrokerLookupData;
+import org.apache.pulsar.broker.service.Consumer;
+import org.apache.pulsar.broker.service.RedeliveryTracker;
+import org.apache.pulsar.broker.service.Subscription;
+import org.apache.pulsar.broker.service.Topic;
+import org.apache.pulsar.broker.service.persistent.AbstractPersistentDispatcherMultipleConsumers;
+import org.apache.pulsar.common.policies.data.stats.TopicMetricBean;
+
+/**
+ * A dispatcher without subscription nor consumers, only providing the name and the cursor used by the delayed
+ * delivery trackers. The cursor only keeps its properties, where the bucket tracker stores its snapshots.
+ */
+class BenchmarkDispatcher extends AbstractPersistentDispatcherMultipleConsumers {
+    private final String name;
+    private final ManagedCursor cursor;
+
+    BenchmarkDispatcher(String name, String cursorName) {
+        super(null, new ServiceConfiguration());
+        this.name = name;
+        Map<String, String> cursorProperties = new ConcurrentHashMap<>();
+        this.cursor = (ManagedCursor) Proxy.newProxyInstance(ManagedCursor.class.getClassLoader(),
+                new Class<?>[]{ManagedCursor.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getName" -> cursorName;
+                    case "getCursorProperties" -> cursorProperties;
+                    case "putCursorProperty" -> {
+                        cursorProperties.put((String) args[0], (String) args[1]);
+                        yield CompletableFuture.completedFuture(null);
+                    }
+                    case "removeCursorProperty" -> {
+                        cursorProperties.remove((String) args[0]);
+                        yield CompletableFuture.completedFuture(null);
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public ManagedCursor getCursor() {
+        return cursor;
+    }
+
+    @Override
+    public void readMoreEntriesAsync() {
+    }
+
+    @Override
+    public void unBlockDispatcherOnUnackedMsgs() {
+    }
+
+    @Override
+    public boolean isBlockedDispatcherOnUnackedMsgs() {
+        return false;
+    }
+
+    @Override
+    public int getTotalUnackedMessages() {
+        return 0;
+    }
+
+    @Override
+    public void blockDispatcherOnUnackedMsgs() {
+    }
+
+    @Override
+    public long getNumberOfMessagesInReplay() {
+        return 0;
+    }
+
+    @Override
+    public boolean isHavePendingRead() {
+        return false;
+    }
+
+    @Override
+    public boolean isHavePendingReplayRead() {
+        return false;
+    }
+
+    @Override
+    public Topic getTopic() {
+        return null;
+    }
+
+    @Override
+    public Subscription getSubscription() {
+        return null;
+    }
+
+    @Override
+    public long getDelayedTrackerMemoryUsage() {
+        return 0;
+    }
+
+    @Override
+    public Map<String, TopicMetricBean> getBucketDelayedIndexStats() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public boolean isClassic() {
+        return false;
+    }
+
+    @Override
+    public boolean isConsumerAvailable(Consumer consumer) {
+        return false;
+    }
+
+    @Override
+    protected boolean isConsumersExceededOnSubscription() {
+        return false;
+    }
+
+    @Override
+    protected void reScheduleRead() {
+    }
+
+    @Override
+    public CompletableFuture<Void> addConsumer(Consumer consumer) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void removeConsumer(Consumer consumer) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void consumerFlow(Consumer consumer, int additionalNumberOfMessages) {
+    }
+
+    @Override
+    public CompletableFuture<Void> close(boolean disconnectClients,
+                                         Optional<BrokerLookupData> assignedBrokerLookupData) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> disconnectActiveConsumers(boolean isResetCursor) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> disconnectAllConsumers(boolean isResetCursor,
+                                                          Optional<BrokerLookupData> assignedBrokerLookupData) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void reset() {
+    }
+
+    @Override
+    public void redeliverUnacknowledgedMessages(Consumer consumer, long consumerEpoch) {
+    }
+
+    @Override
+    public void redeliverUnacknowledgedMessages(Consumer consumer, List<Position> positions) {
+    }
+
+    @Override
+    public void addUnAckedMessages(int unAckMessages) {
+    }
+
+    @Override
+    public RedeliveryTracker getRedeliveryTracker() {
+        return null;
+    }
+
+    @Override
+    public void readEntriesComplete(List<Entry> entries, Object ctx) {
+    }
+
+    @Override
+    public void readEntriesFailed(ManagedLedgerException exception, Object ctx) {
+    }
+}
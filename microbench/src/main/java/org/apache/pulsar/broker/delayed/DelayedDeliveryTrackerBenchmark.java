@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.pulsar.broker.delayed.bucket.BucketDelayedDeliveryTracker;
+import org.apache.pulsar.broker.delayed.bucket.BucketSnapshotStorage;
+import org.apache.pulsar.broker.delayed.proto.SnapshotMetadata;
+import org.apache.pulsar.broker.delayed.proto.SnapshotSegment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the cost of indexing and draining delayed messages with the in-memory, bucket and timing wheel trackers.
+ *
+ * <p>Each invocation starts with an empty tracker and adds messages whose positions grow monotonically, like the
+ * dispatcher does when reading a topic, with delivery times spread over the configured delay window and a 1 second
+ * tick. The timer never fires, the benchmark moves the clock itself.
+ */
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 3)
+@Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 2)
+public class DelayedDeliveryTrackerBenchmark {
+    private static final long TICK_TIME_MILLIS = 1000;
+    private static final long START_TIME_MILLIS = 1_700_000_000_000L;
+
+    @Param({"InMemory", "Bucket", "TimingWheel"})
+    private String trackerType;
+
+    @Param({"1000000"})
+    private int numMessages;
+
+    @Param({"3600"})
+    private int maxDelaySeconds;
+
+    private long[] deliverAts;
+    private final AtomicLong clockTime = new AtomicLong();
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(clockTime.get());
+        }
+
+        @Override
+        public long millis() {
+            return clockTime.get();
+        }
+    };
+    private final Timer timer = new Timer() {
+        @Override
+        public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+            return null;
+        }
+
+        @Override
+        public Set<Timeout> stop() {
+            return Collections.emptySet();
+        }
+    };
+    private final BenchmarkDispatcher dispatcher =
+            new BenchmarkDispatcher("persistent://public/default/delayed / sub", "sub");
+    private DelayedDeliveryTracker tracker;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(0);
+        deliverAts = new long[numMessages];
+        for (int i = 0; i < numMessages; i++) {
+            deliverAts[i] = START_TIME_MILLIS + TICK_TIME_MILLIS + random.nextInt(maxDelaySeconds * 1000);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createTracker() throws Exception {
+        clockTime.set(START_TIME_MILLIS);
+        tracker = switch (trackerType) {
+            case "InMemory" -> new InMemoryDelayedDeliveryTracker(dispatcher, timer, TICK_TIME_MILLIS, clock,
+                    false, 0);
+            case "Bucket" -> new BucketDelayedDeliveryTracker(dispatcher, timer, TICK_TIME_MILLIS, clock, false,
+                    new InMemoryBucketSnapshotStorage(), 50000, TimeUnit.SECONDS.toMillis(300), 5000, 50);
+            case "TimingWheel" -> new TimingWheelDelayedDeliveryTracker(dispatcher, timer, TICK_TIME_MILLIS, clock,
+                    false, 0);
+            default -> throw new IllegalArgumentException("Unknown tracker type " + trackerType);
+        };
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeTracker() {
+        tracker.close();
+    }
+
+    @Benchmark
+    public void addMessages(Blackhole blackhole) {
+        for (int i = 0; i < numMessages; i++) {
+            blackhole.consume(tracker.addMessage(1, i, deliverAts[i]));
+        }
+    }
+
+    @Benchmark
+    public void addAndDrainMessages(Blackhole blackhole) {
+        for (int i = 0; i < numMessages; i++) {
+            tracker.addMessage(1, i, deliverAts[i]);
+        }
+        // Dispatch the messages the way a consumer with 1000 permits would, one tick at a time
+        while (tracker.getNumberOfDelayedMessages() > 0) {
+            clockTime.addAndGet(TICK_TIME_MILLIS);
+            while (tracker.hasMessageAvailable()) {
+                blackhole.consume(tracker.getScheduledMessages(1000));
+            }
+        }
+    }
+
+    /**
+     * Keeps the bucket snapshots on heap, so that the bucket tracker is measured without any storage latency.
+     */
+    private static class InMemoryBucketSnapshotStorage implements BucketSnapshotStorage {
+        private final AtomicLong maxBucketId = new AtomicLong();
+        private final Map<Long, SnapshotMetadata> metadatas = new ConcurrentHashMap<>();
+        private final Map<Long, List<SnapshotSegment>> segments = new ConcurrentHashMap<>();
+
+        @Override
+        public CompletableFuture<Long> createBucketSnapshot(SnapshotMetadata snapshotMetadata,
+                                                            List<SnapshotSegment> bucketSnapshotSegments,
+                                                            String bucketKey, String topicName, String cursorName) {
+            long bucketId = maxBucketId.incrementAndGet();
+            metadatas.put(bucketId, snapshotMetadata);
+            segments.put(bucketId, bucketSnapshotSegments);
+            return CompletableFuture.completedFuture(bucketId);
+        }
+
+        @Override
+        public CompletableFuture<SnapshotMetadata> getBucketSnapshotMetadata(long bucketId) {
+            return CompletableFuture.completedFuture(metadatas.get(bucketId));
+        }
+
+        @Override
+        public CompletableFuture<List<SnapshotSegment>> getBucketSnapshotSegment(long bucketId,
+                                                                                 long firstSegmentEntryId,
+                                                                                 long lastSegmentEntryId) {
+            // Segment entry ids start from 1, entry 0 holds the metadata
+            List<SnapshotSegment> bucketSegments = segments.get(bucketId);
+            int toIndex = (int) Math.min(lastSegmentEntryId, bucketSegments.size());
+            return CompletableFuture.completedFuture(bucketSegments.subList((int) firstSegmentEntryId - 1, toIndex));
+        }
+
+        @Override
+        public CompletableFuture<Long> getBucketSnapshotLength(long bucketId) {
+            return CompletableFuture.completedFuture(0L);
+        }
+
+        @Override
+        public CompletableFuture<Void> deleteBucketSnapshot(long bucketId) {
+            metadatas.remove(bucketId);
+            segments.remove(bucketId);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
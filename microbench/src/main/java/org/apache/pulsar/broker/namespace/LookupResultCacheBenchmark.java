@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.namespace;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.broker.lookup.LookupResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Lookup throughput during a reconnect storm, where many clients look up the topics of the same bundles while the
+ * ownership of some bundles keeps changing.
+ *
+ * <p>The "cached" group answers the lookups from the {@link LookupResultCache} and falls back to the slow path on a
+ * miss, while the "uncached" group always pays the async hop that reading the owner from the metadata store costs.
+ */
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Group)
+@Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+@Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+public class LookupResultCacheBenchmark {
+    private static final int NUM_BUNDLES = 1024;
+
+    private final String[] bundles = new String[NUM_BUNDLES];
+    private final NamespaceEphemeralData owner = new NamespaceEphemeralData("pulsar://broker-1:6650",
+            "pulsar+ssl://broker-1:6651", "http://broker-1:8080", "https://broker-1:8443", false);
+    private LookupResultCache cache;
+    private ExecutorService metadataStoreExecutor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cache = new LookupResultCache(NUM_BUNDLES);
+        metadataStoreExecutor = Executors.newSingleThreadExecutor();
+        for (int i = 0; i < NUM_BUNDLES; i++) {
+            bundles[i] = String.format("tenant/ns/0x%08x_0x%08x", i, i + 1);
+            cache.putOwner(bundles[i], owner, cache.getGeneration());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        metadataStoreExecutor.shutdownNow();
+    }
+
+    private String randomBundle() {
+        return bundles[ThreadLocalRandom.current().nextInt(NUM_BUNDLES)];
+    }
+
+    private CompletableFuture<LookupResult> readOwnerFromStore(String bundle) {
+        long generation = cache.getGeneration();
+        return CompletableFuture.supplyAsync(() -> {
+            cache.putOwner(bundle, owner, generation);
+            return new LookupResult(owner);
+        }, metadataStoreExecutor);
+    }
+
+    @Benchmark
+    @Group("cached")
+    @GroupThreads(16)
+    public void cachedLookup(Blackhole blackhole) {
+        String bundle = randomBundle();
+        NamespaceEphemeralData cachedOwner = cache.getOwner(bundle);
+        if (cachedOwner != null) {
+            blackhole.consume(new LookupResult(cachedOwner));
+        } else {
+            blackhole.consume(readOwnerFromStore(bundle).join());
+        }
+    }
+
+    @Benchmark
+    @Group("cached")
+    @GroupThreads(1)
+    public void cachedOwnershipChange() {
+        cache.invalidate(randomBundle());
+    }
+
+    @Benchmark
+    @Group("uncached")
+    @GroupThreads(16)
+    public void uncachedLookup(Blackhole blackhole) {
+        blackhole.consume(readOwnerFromStore(randomBundle()).join());
+    }
+
+    @Benchmark
+    @Group("uncached")
+    @GroupThreads(1)
+    public void uncachedOwnershipChange() {
+        cache.invalidate(randomBundle());
+    }
+}
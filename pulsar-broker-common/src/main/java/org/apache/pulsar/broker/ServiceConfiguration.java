@@ -370,6 +370,8 @@ public class ServiceConfiguration implements PulsarConfiguration {
             Class name of the factory that implements the delayed deliver tracker.
             If value is "org.apache.pulsar.broker.delayed.BucketDelayedDeliveryTrackerFactory", \
             will create bucket based delayed message index tracker.
+            If value is "org.apache.pulsar.broker.delayed.TimingWheelDelayedDeliveryTrackerFactory", \
+            will create hierarchical timing wheel based delayed message index tracker.
             """)
     private String delayedDeliveryTrackerFactoryClassName = "org.apache.pulsar.broker.delayed"
             + ".InMemoryDelayedDeliveryTrackerFactory";
@@ -403,6 +405,13 @@ public class ServiceConfiguration implements PulsarConfiguration {
             after reaching the max number limitation, the snapshot segment will be cut off.""")
     private int delayedDeliveryMaxIndexesPerBucketSnapshotSegment = 5000;
 
+    @FieldContext(category = CATEGORY_SERVER, doc = """
+            Whether to write the delayed message index bucket snapshot segments with the columnar format, which \
+            packs the timestamps, ledger ids and entry ids of the indexes into separate compressed columns. \
+            The segments written with the columnar format can't be read by the brokers which don't support it, \
+            so this should only be enabled once all the brokers of the cluster are upgraded.""")
+    private boolean delayedDeliveryBucketSnapshotColumnarFormatEnabled = false;
+
     @FieldContext(category = CATEGORY_SERVER, doc = """
             The max number of delayed message index bucket, \
             after reaching the max buckets limitation, the adjacent buckets will be merged.\
@@ -563,6 +572,14 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private int metadataStoreBatchingMaxSizeKb = 128;
 
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Maximum number of values written by the broker to the metadata store that are read back locally"
+                    + " until the notification of the change is received. Only supported by the ZooKeeper metadata"
+                    + " store. Set it to 0 to disable it."
+    )
+    private int metadataStoreReadYourWritesCacheMaxEntries = 0;
+
     @FieldContext(
             category = CATEGORY_SERVER,
             doc = "Configuration file path for local metadata store."
@@ -1325,6 +1342,14 @@ public class ServiceConfiguration implements PulsarConfiguration {
         doc = "Max number of concurrent lookup request broker allows to throttle heavy incoming lookup traffic")
     private int maxConcurrentLookupRequest = 50000;
 
+    @FieldContext(
+        category = CATEGORY_SERVER,
+        doc = "Max number of namespace bundles whose owner is cached by the broker, so that the lookups of the"
+            + " topics in these bundles are answered without reading the ownership info from the metadata store."
+            + " The entries are invalidated when the ownership of the bundle changes. Setting it to 0 disables"
+            + " the cache. It isn't used by the ExtensibleLoadManagerImpl.")
+    private int lookupResultCacheMaxEntries = 10000;
+
     @FieldContext(
         dynamic = true,
         category = CATEGORY_SERVER,
@@ -1782,6 +1807,13 @@ public class ServiceConfiguration implements PulsarConfiguration {
         )
     private boolean httpRequestsFailOnUnknownPropertiesEnabled = false;
 
+    @FieldContext(
+            category =  CATEGORY_HTTP,
+            doc = "Max number of partitions whose stats are fetched concurrently when streaming the stats of a"
+                    + " partitioned topic."
+        )
+    private int partitionedTopicStatsMaxConcurrentRequests = 100;
+
     @FieldContext(
         category = CATEGORY_SASL_AUTH,
         doc = "This is a regexp, which limits the range of possible ids which can connect to the Broker using SASL.\n"
@@ -2914,6 +2946,35 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private long loadBalancerBrokerLoadDataTTLInSeconds = 1800;
 
+    @FieldContext(
+            category = CATEGORY_LOAD_BALANCER,
+            dynamic = true,
+            doc = "How far ahead (in seconds) the throughput of the bundles is forecast. "
+                    + "The shedder moves bundles away from the brokers predicted to be overloaded within this time. "
+                    + "The bigger value will incur earlier bundle unloading/transfers. "
+                    + "(only used in load balancer extension PredictiveShedder)"
+    )
+    private long loadBalancerPredictiveSheddingHorizonSeconds = 300;
+
+    @FieldContext(
+            category = CATEGORY_LOAD_BALANCER,
+            dynamic = true,
+            doc = "Number of the most recent load reports of each bundle used to fit its throughput trend. "
+                    + "The bigger value will smooth the forecast but react slower to the traffic changes. "
+                    + "(only used in load balancer extension PredictiveShedder)"
+    )
+    private int loadBalancerPredictiveSheddingHistorySize = 10;
+
+    @FieldContext(
+            category = CATEGORY_LOAD_BALANCER,
+            dynamic = true,
+            doc = "Maximum number of bundle transfers in flight, including the ones of the previous unloading "
+                    + "cycles within loadBalanceSheddingDelayInSeconds. "
+                    + "The logic tries to limit the number of clients reconnecting at the same time. "
+                    + "(only used in load balancer extension PredictiveShedder)"
+    )
+    private int loadBalancerPredictiveSheddingMaxConcurrentTransfers = 10;
+
     @FieldContext(
             dynamic = true,
             category = CATEGORY_LOAD_BALANCER,
@@ -3172,6 +3233,49 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private boolean topicCompactionRetainNullKey = false;
 
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Max memory, in bytes, used by the key index of the publishing order compaction. The index keeps"
+                    + " a digest of each key off-heap, instead of the keys themselves on-heap, and spills sorted runs"
+                    + " to the disk once it exceeds this budget. Using a value of 0 keeps all the keys on-heap."
+    )
+    private long brokerServiceCompactionKeyIndexMaxMemoryBytes = 0;
+
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Directory where the compaction key index spills its sorted runs. The default temporary directory"
+                    + " is used if not set."
+    )
+    private String brokerServiceCompactionKeyIndexSpillDirectory = null;
+
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Interval, in compacted entries, of the sparse seek index written with the compacted ledger."
+                    + " The readers use it to narrow the search of their start position in the compacted ledger to"
+                    + " this many entries. Using a value of 0 disables the index."
+    )
+    private int brokerServiceCompactionSeekIndexInterval = 0;
+
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Max number of delta layers stacked on top of the base compacted ledger of a topic. When it's"
+                    + " greater than 0, the publishing order compaction only compacts the messages published since"
+                    + " the last compaction into a new delta layer, until this number of layers or"
+                    + " brokerServiceCompactionDeltaMergeRatio is reached, and then compacts the whole topic again"
+                    + " into a new base. Using a value of 0 disables the delta layers. The layers are read in"
+                    + " order and not merged, so a compacted reader can receive several messages for a key, the"
+                    + " older values followed by the newer ones, and the tombstones of the keys deleted since the"
+                    + " base: only the last message of each key is its compacted value."
+    )
+    private int brokerServiceCompactionMaxDeltaLayers = 0;
+
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Max ratio between the size of the delta layers of a compacted topic and the size of its base"
+                    + " compacted ledger. Once it's exceeded, the next compaction compacts the whole topic again."
+    )
+    private double brokerServiceCompactionDeltaMergeRatio = 0.5;
+
     @FieldContext(
         category = CATEGORY_SERVER,
         doc = "Interval between checks to see if cluster is migrated and marks topic migrated "
@@ -3522,6 +3626,22 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private boolean transactionBufferSegmentedSnapshotEnabled = false;
 
+    @FieldContext(
+            category = CATEGORY_TRANSACTION,
+            doc = "Whether the transaction buffer checks a bloom filter of the aborted transactions before looking "
+                    + "them up, which speeds up the check of the messages of committed transactions on topics with "
+                    + "many aborted transactions, at the cost of some memory."
+    )
+    private boolean transactionBufferAbortedTxnBloomFilterEnabled = false;
+
+    @FieldContext(
+            category = CATEGORY_TRANSACTION,
+            doc = "Whether the transaction buffer snapshot writer of a namespace batches the snapshots of its topics. "
+                    + "While a batch is written, the next snapshots are queued, replacing the queued snapshot of the "
+                    + "same topic if any, and then written together as a single batched entry."
+    )
+    private boolean transactionBufferSnapshotBatchedWriteEnabled = false;
+
     @FieldContext(
             category = CATEGORY_TRANSACTION,
             doc = "The max concurrent requests for transaction buffer client."
@@ -3549,6 +3669,14 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private long transactionPendingAckLogIndexMinLag = 500L;
 
+    @FieldContext(
+            category = CATEGORY_TRANSACTION,
+            doc = "MLPendingAckStore writes a snapshot of the acks of the ongoing transactions after this many pending"
+                    + " ack log records, and deletes the log covered by the snapshot, so the subscription replays the"
+                    + " latest snapshot and the log after it instead of the whole log. 0 disables the snapshots."
+    )
+    private long transactionPendingAckSnapshotIntervalRecords = 0L;
+
     @FieldContext(
             category = CATEGORY_SERVER,
             dynamic = true,
@@ -3579,6 +3707,15 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private int transactionLogBatchedWriteMaxDelayInMillis = 1;
 
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "If enabled the feature that transaction log batch, and this attribute is greater than 0, a batch is"
+                    + " written as soon as fewer than this many batches of the same transaction coordinator are"
+                    + " waiting for the bookie response, so the batch size adapts to the load and"
+                    + " transactionLogBatchedWriteMaxDelayInMillis only bounds the delay. 0 disables adaptive flush."
+    )
+    private int transactionLogBatchedWriteMaxPendingFlushes = 0;
+
     @FieldContext(
             category = CATEGORY_SERVER,
             dynamic = true,
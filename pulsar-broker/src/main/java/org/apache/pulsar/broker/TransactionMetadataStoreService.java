@@ -225,6 +225,8 @@ public class TransactionMetadataStoreService {
         txnLogBufferedWriterConfig.setBatchedWriteMaxSize(serviceConfiguration.getTransactionLogBatchedWriteMaxSize());
         txnLogBufferedWriterConfig
                 .setBatchedWriteMaxDelayInMillis(serviceConfiguration.getTransactionLogBatchedWriteMaxDelayInMillis());
+        txnLogBufferedWriterConfig.setBatchedWriteMaxPendingFlushes(
+                serviceConfiguration.getTransactionLogBatchedWriteMaxPendingFlushes());
 
         return pulsarService.getBrokerService().getManagedLedgerConfig(getMLTransactionLogName(tcId)).thenCompose(
                 v -> transactionMetadataStoreProvider.openStore(tcId,
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.admin.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import javax.ws.rs.core.StreamingOutput;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.common.partition.PartitionedTopicMetadata;
+import org.apache.pulsar.common.policies.data.TopicStats;
+import org.apache.pulsar.common.policies.data.stats.PartitionedTopicStatsImpl;
+import org.apache.pulsar.common.util.ObjectMapperFactory;
+
+/**
+ * Fetches the stats of all the partitions of a topic and streams them out as a
+ * {@link org.apache.pulsar.common.policies.data.PartitionedTopicStats} JSON document.
+ *
+ * <p>At most {@code maxConcurrentRequests} partitions are fetched or waiting to be written at the same time. Each
+ * partition is written to the response as soon as its stats are received, keeping only the selected fields, so that
+ * the stats of all the partitions are never held in memory together. The aggregated stats are written after the
+ * partitions.
+ */
+@Slf4j
+class PartitionedTopicStatsStream {
+
+    private static final String PARTITIONS_FIELD = "partitions";
+    private static final String METADATA_FIELD = "metadata";
+
+    // The serialized stats of a partition, null if they couldn't be fetched
+    private record PartitionStats(int partition, String stats) {
+    }
+
+    private final ObjectMapper mapper = ObjectMapperFactory.getMapper().getObjectMapper();
+    private final TopicName topicName;
+    private final Set<String> fields;
+    private final int partitions;
+    private final Function<TopicName, CompletableFuture<? extends TopicStats>> statsProvider;
+
+    private final PartitionedTopicStatsImpl aggregatedStats;
+    private final BlockingQueue<PartitionStats> completedPartitions = new LinkedBlockingQueue<>();
+    private int nextPartition;
+    // The number of partitions which can be fetched, until the stats of the fetched ones are written
+    private int availablePermits;
+    // Trampoline of requestPartitions(), so that the synchronous completions don't recurse
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+    private final AtomicInteger fetchedPartitions = new AtomicInteger();
+    private final AtomicInteger failedPartitions = new AtomicInteger();
+    private final CompletableFuture<StreamingOutput> future = new CompletableFuture<>();
+
+    /**
+     * @param fields the stats fields to return, or empty to return all of them
+     */
+    PartitionedTopicStatsStream(TopicName topicName, PartitionedTopicMetadata metadata, Set<String> fields,
+                                int maxConcurrentRequests,
+                                Function<TopicName, CompletableFuture<? extends TopicStats>> statsProvider) {
+        this.topicName = topicName;
+        this.fields = fields;
+        this.partitions = metadata.partitions;
+        this.availablePermits = maxConcurrentRequests;
+        this.statsProvider = statsProvider;
+        this.aggregatedStats = new PartitionedTopicStatsImpl(metadata);
+    }
+
+    /**
+     * @return the output to resume the response with, once the stats of a partition have been fetched, or once all
+     *         the partitions have failed. It may be completed by the thread completing the stats of a partition, the
+     *         output must be written by another thread since it blocks until the stats of all the partitions are
+     *         received.
+     */
+    CompletableFuture<StreamingOutput> collect() {
+        if (partitions == 0) {
+            future.complete(this::write);
+        }
+        requestPartitions(0);
+        return future;
+    }
+
+    /**
+     * @return the number of partitions whose stats have been fetched so far
+     */
+    int getFetchedPartitions() {
+        return fetchedPartitions.get();
+    }
+
+    /**
+     * Fetches the next partitions while permits are available. It is only run by one thread at a time, the calls
+     * made meanwhile are run by that thread once it is done.
+     *
+     * @param releasedPermits the permits released by the caller
+     */
+    private void requestPartitions(int releasedPermits) {
+        synchronized (this) {
+            availablePermits += releasedPermits;
+        }
+        if (pendingRequests.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            while (true) {
+                int partition;
+                synchronized (this) {
+                    if (availablePermits == 0 || nextPartition >= partitions) {
+                        break;
+                    }
+                    availablePermits--;
+                    partition = nextPartition++;
+                }
+                fetchPartition(partition);
+            }
+        } while (pendingRequests.decrementAndGet() != 0);
+    }
+
+    private void fetchPartition(int partition) {
+        CompletableFuture<? extends TopicStats> statsFuture;
+        try {
+            statsFuture = statsProvider.apply(topicName.getPartition(partition));
+        } catch (Exception e) {
+            statsFuture = CompletableFuture.failedFuture(e);
+        }
+        statsFuture.whenComplete((stats, ex) -> {
+            String serializedStats = null;
+            if (ex != null) {
+                // Keep the same behavior as the regular partitioned stats, which skip the failed partitions
+                log.warn("Failed to get the stats of {}", topicName.getPartition(partition), ex);
+            } else {
+                try {
+                    serializedStats = mapper.writeValueAsString(selectFields(mapper.valueToTree(stats)));
+                    synchronized (aggregatedStats) {
+                        aggregatedStats.add(stats);
+                    }
+                } catch (Exception e) {
+                    log.warn("Failed to serialize the stats of {}", topicName.getPartition(partition), e);
+                }
+            }
+            completedPartitions.add(new PartitionStats(partition, serializedStats));
+            if (serializedStats != null) {
+                fetchedPartitions.incrementAndGet();
+                future.complete(this::write);
+            } else {
+                if (failedPartitions.incrementAndGet() == partitions) {
+                    future.complete(this::write);
+                }
+                // Nothing is waiting to be written for this partition
+                requestPartitions(1);
+            }
+        });
+    }
+
+    private ObjectNode selectFields(ObjectNode stats) {
+        if (!fields.isEmpty()) {
+            stats.retain(fields);
+        }
+        return stats;
+    }
+
+    private void write(OutputStream output) throws IOException {
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(output)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart(PARTITIONS_FIELD);
+            for (int i = 0; i < partitions; i++) {
+                PartitionStats partitionStats;
+                try {
+                    partitionStats = completedPartitions.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the stats of " + topicName, e);
+                }
+                if (partitionStats.stats() != null) {
+                    generator.writeFieldName(topicName.getPartition(partitionStats.partition()).toString());
+                    generator.writeRawValue(partitionStats.stats());
+                    // Send the stats of the partition before fetching the next one
+                    generator.flush();
+                    requestPartitions(1);
+                }
+            }
+            generator.writeEndObject();
+
+            ObjectNode aggregated;
+            synchronized (aggregatedStats) {
+                aggregated = mapper.valueToTree(aggregatedStats);
+            }
+            aggregated.remove(PARTITIONS_FIELD);
+            ObjectNode metadata = (ObjectNode) aggregated.remove(METADATA_FIELD);
+            selectFields(aggregated);
+            for (Iterator<Map.Entry<String, JsonNode>> it = aggregated.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = it.next();
+                generator.writeFieldName(field.getKey());
+                generator.writeTree(field.getValue());
+            }
+            generator.writeFieldName(METADATA_FIELD);
+            generator.writeTree(metadata);
+            generator.writeEndObject();
+        }
+    }
+}
@@ -1478,34 +1478,8 @@ public class PersistentTopicsBase extends AdminResource {
             }
             PartitionedTopicStatsImpl stats = new PartitionedTopicStatsImpl(partitionMetadata);
             List<CompletableFuture<TopicStats>> topicStatsFutureList = new ArrayList<>(partitionMetadata.partitions);
-            org.apache.pulsar.client.admin.GetStatsOptions statsOptions =
-                    new org.apache.pulsar.client.admin.GetStatsOptions(
-                            getStatsOptions.isGetPreciseBacklog(),
-                            getStatsOptions.isSubscriptionBacklogSize(),
-                            getStatsOptions.isGetEarliestTimeInBacklog(),
-                            getStatsOptions.isExcludePublishers(),
-                            getStatsOptions.isExcludeConsumers()
-                    );
             for (int i = 0; i < partitionMetadata.partitions; i++) {
-                TopicName partition = topicName.getPartition(i);
-                topicStatsFutureList.add(
-                    pulsar().getNamespaceService()
-                        .isServiceUnitOwnedAsync(partition)
-                        .thenCompose(owned -> {
-                            if (owned) {
-                                return getTopicReferenceAsync(partition)
-                                        .thenCompose(ref -> ref.asyncGetStats(getStatsOptions))
-                                        .thenApply(s -> (TopicStats) s);
-                            } else {
-                                try {
-                                    return pulsar().getAdminClient().topics().getStatsAsync(
-                                        partition.toString(), statsOptions);
-                                } catch (PulsarServerException e) {
-                                    return FutureUtil.failedFuture(e);
-                                }
-                            }
-                        })
-                );
+                topicStatsFutureList.add(getPartitionStatsAsync(topicName.getPartition(i), getStatsOptions));
             }
 
             FutureUtil.waitForAll(topicStatsFutureList).handle((result, exception) -> {
@@ -1552,6 +1526,78 @@ public class PersistentTopicsBase extends AdminResource {
         });
     }
 
+    protected void internalGetPartitionedStatsStream(AsyncResponse asyncResponse, boolean authoritative,
+                                                     GetStatsOptions getStatsOptions, Set<String> fields) {
+        validateTopicOperationAsync(topicName, TopicOperation.GET_STATS).thenCompose(__ -> {
+            if (topicName.isGlobal()) {
+                return validateGlobalNamespaceOwnershipAsync(namespaceName);
+            }
+            return CompletableFuture.completedFuture(null);
+        }).thenCompose(__ -> getPartitionedTopicMetadataAsync(topicName, authoritative, false))
+        .thenCompose(partitionMetadata -> {
+            if (partitionMetadata.partitions == 0) {
+                throw new RestException(Status.NOT_FOUND,
+                        getPartitionedTopicNotFoundErrorMessage(topicName.toString()));
+            }
+            PartitionedTopicStatsStream statsStream = new PartitionedTopicStatsStream(topicName, partitionMetadata,
+                    fields, pulsar().getConfig().getPartitionedTopicStatsMaxConcurrentRequests(),
+                    partition -> getPartitionStatsAsync(partition, getStatsOptions));
+            return statsStream.collect().thenCompose(output -> {
+                if (statsStream.getFetchedPartitions() > 0) {
+                    return CompletableFuture.completedFuture(output);
+                }
+                return namespaceResources().getPartitionedTopicResources()
+                        .partitionedTopicExistsAsync(topicName)
+                        .thenApply(exists -> {
+                            if (!exists) {
+                                throw new RestException(Status.NOT_FOUND,
+                                        "Internal topics have not been generated yet");
+                            }
+                            return output;
+                        });
+            });
+        })
+        // The output is written by the resuming thread, and blocks until all the partitions are fetched. It must not
+        // run on the threads completing the stats of the partitions.
+        .thenAcceptAsync(asyncResponse::resume, pulsar().getExecutor())
+        .exceptionally(ex -> {
+            // If the exception is not redirect exception we need to log it.
+            if (isNot307And404Exception(ex)) {
+                log.error("[{}] Failed to stream partitioned stats for {}", clientAppId(), topicName, ex);
+            }
+            resumeAsyncResponseExceptionally(asyncResponse, ex);
+            return null;
+        });
+    }
+
+    /**
+     * Get the stats of a partition, directly from the topic if it's owned by this broker or else from its owner.
+     */
+    private CompletableFuture<TopicStats> getPartitionStatsAsync(TopicName partition,
+                                                                 GetStatsOptions getStatsOptions) {
+        return pulsar().getNamespaceService()
+                .isServiceUnitOwnedAsync(partition)
+                .thenCompose(owned -> {
+                    if (owned) {
+                        return getTopicReferenceAsync(partition)
+                                .thenCompose(ref -> ref.asyncGetStats(getStatsOptions))
+                                .thenApply(s -> (TopicStats) s);
+                    } else {
+                        try {
+                            return pulsar().getAdminClient().topics().getStatsAsync(partition.toString(),
+                                    new org.apache.pulsar.client.admin.GetStatsOptions(
+                                            getStatsOptions.isGetPreciseBacklog(),
+                                            getStatsOptions.isSubscriptionBacklogSize(),
+                                            getStatsOptions.isGetEarliestTimeInBacklog(),
+                                            getStatsOptions.isExcludePublishers(),
+                                            getStatsOptions.isExcludeConsumers()));
+                        } catch (PulsarServerException e) {
+                            return FutureUtil.failedFuture(e);
+                        }
+                    }
+                });
+    }
+
     protected void internalGetPartitionedStatsInternal(AsyncResponse asyncResponse, boolean authoritative) {
         CompletableFuture<Void> future = validateTopicOperationAsync(topicName, TopicOperation.GET_STATS);
         future.thenCompose(__ -> {
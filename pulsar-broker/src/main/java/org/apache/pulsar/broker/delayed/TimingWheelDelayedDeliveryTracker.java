@@ -0,0 +1,407 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.util.Timer;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectSortedMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import java.time.Clock;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.mledger.PositionFactory;
+import org.apache.pulsar.broker.service.persistent.AbstractPersistentDispatcherMultipleConsumers;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+
+/**
+ * A delayed delivery tracker backed by a hierarchical timing wheel.
+ *
+ * <p>Delivery times are truncated to ticks of {@code tickTimeMillis}. The wheel has {@link #LEVELS} levels of
+ * {@link #SLOTS} slots each, where a slot on level {@code n} covers {@code SLOTS^n} ticks. A message is placed on
+ * the lowest level whose range still contains both the current tick and its own tick, so adding a message only
+ * needs a couple of bit operations and a hash lookup instead of the tree rebalancing done by
+ * {@link InMemoryDelayedDeliveryTracker}. When the wheel advances past the boundary of a higher level slot, the
+ * content of that slot is cascaded down to the lower levels; once a level 0 slot is reached, its messages are moved
+ * to the ready set.
+ *
+ * <p>Within a slot the messages are grouped by tick and then by ledger id into roaring bitmaps, so that messages
+ * sharing the same delivery tick are stored as compactly as in the in-memory tracker.
+ */
+@Slf4j
+public class TimingWheelDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker {
+
+    static final int SLOT_BITS = 6;
+    static final int SLOTS = 1 << SLOT_BITS;
+    private static final long SLOT_MASK = SLOTS - 1;
+    // 11 levels of 64 slots cover any non-negative tick
+    static final int LEVELS = (Long.SIZE + SLOT_BITS - 1) / SLOT_BITS;
+
+    // level -> slot -> tick -> ledgerId -> entryIds
+    private final Long2ObjectOpenHashMap<Long2ObjectSortedMap<Roaring64Bitmap>>[][] wheel;
+
+    // Bit n of occupiedSlots[level] is set when wheel[level][n] holds messages
+    private final long[] occupiedSlots = new long[LEVELS];
+
+    // Messages whose delivery tick has already been reached, ledgerId -> entryIds
+    private final Long2ObjectSortedMap<Roaring64Bitmap> readyMessages = new Long2ObjectRBTreeMap<>();
+
+    private final long wheelTickMillis;
+
+    // All the ticks before this one have been moved to readyMessages
+    private long currentTick;
+
+    @Getter
+    @VisibleForTesting
+    private final long fixedDelayDetectionLookahead;
+
+    // This is the timestamp of the message with the highest delivery time
+    // If new added messages are lower than this, it means the delivery is requested
+    // to be out-of-order. It gets reset to 0, once the tracker is emptied.
+    private long highestDeliveryTimeTracked = 0;
+
+    // Track whether we have seen all messages with fixed delay so far.
+    private boolean messagesHaveFixedDelay = true;
+
+    // Count of delayed messages in the tracker, including the ready ones.
+    private final AtomicLong delayedMessagesCount = new AtomicLong(0);
+
+    TimingWheelDelayedDeliveryTracker(AbstractPersistentDispatcherMultipleConsumers dispatcher, Timer timer,
+                                      long tickTimeMillis,
+                                      boolean isDelayedDeliveryDeliverAtTimeStrict,
+                                      long fixedDelayDetectionLookahead) {
+        this(dispatcher, timer, tickTimeMillis, Clock.systemUTC(), isDelayedDeliveryDeliverAtTimeStrict,
+                fixedDelayDetectionLookahead);
+    }
+
+    @SuppressWarnings("unchecked")
+    public TimingWheelDelayedDeliveryTracker(AbstractPersistentDispatcherMultipleConsumers dispatcher, Timer timer,
+                                             long tickTimeMillis, Clock clock,
+                                             boolean isDelayedDeliveryDeliverAtTimeStrict,
+                                             long fixedDelayDetectionLookahead) {
+        super(dispatcher, timer, tickTimeMillis, clock, isDelayedDeliveryDeliverAtTimeStrict);
+        this.fixedDelayDetectionLookahead = fixedDelayDetectionLookahead;
+        this.wheelTickMillis = Math.max(1, tickTimeMillis);
+        this.wheel = new Long2ObjectOpenHashMap[LEVELS][SLOTS];
+        this.currentTick = Math.max(0, clock.millis() / wheelTickMillis);
+    }
+
+    @Override
+    public boolean addMessage(long ledgerId, long entryId, long deliverAt) {
+        long cutoffTime = getCutoffTime();
+        if (deliverAt < 0 || deliverAt <= cutoffTime) {
+            messagesHaveFixedDelay = false;
+            return false;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Add message {}:{} -- Delivery in {} ms ", dispatcher.getName(), ledgerId, entryId,
+                    deliverAt - clock.millis());
+        }
+
+        // Move the wheel first, so that the new message lands on the lowest possible level
+        advance(cutoffTime);
+        long tick = deliverAt / wheelTickMillis;
+        Long2ObjectSortedMap<Roaring64Bitmap> ledgerMap;
+        if (tick < currentTick) {
+            ledgerMap = readyMessages;
+        } else {
+            ledgerMap = slotOf(tick).computeIfAbsent(tick, k -> new Long2ObjectRBTreeMap<>());
+        }
+        ledgerMap.computeIfAbsent(ledgerId, k -> new Roaring64Bitmap()).add(entryId);
+        delayedMessagesCount.incrementAndGet();
+
+        updateTimer();
+
+        checkAndUpdateHighest(deliverAt);
+
+        return true;
+    }
+
+    /**
+     * Check that new delivery time comes after the current highest, or at
+     * least within a single tick time interval of 1 second.
+     */
+    private void checkAndUpdateHighest(long deliverAt) {
+        if (deliverAt < (highestDeliveryTimeTracked - tickTimeMillis)) {
+            messagesHaveFixedDelay = false;
+        }
+
+        highestDeliveryTimeTracked = Math.max(highestDeliveryTimeTracked, deliverAt);
+    }
+
+    /**
+     * Return true if there's at least a message that is scheduled to be delivered already.
+     */
+    @Override
+    public boolean hasMessageAvailable() {
+        advance(getCutoffTime());
+        boolean hasMessageAvailable = !readyMessages.isEmpty();
+        if (!hasMessageAvailable) {
+            updateTimer();
+        }
+        return hasMessageAvailable;
+    }
+
+    /**
+     * Get a set of position of messages that have already reached.
+     */
+    @Override
+    public NavigableSet<Position> getScheduledMessages(int maxMessages) {
+        advance(getCutoffTime());
+
+        int n = maxMessages;
+        NavigableSet<Position> positions = new TreeSet<>();
+        ObjectIterator<Long2ObjectMap.Entry<Roaring64Bitmap>> iterator =
+                readyMessages.long2ObjectEntrySet().iterator();
+        while (n > 0 && iterator.hasNext()) {
+            Long2ObjectMap.Entry<Roaring64Bitmap> ledgerEntry = iterator.next();
+            long ledgerId = ledgerEntry.getLongKey();
+            Roaring64Bitmap entryIds = ledgerEntry.getValue();
+            int cardinality = (int) Math.min(entryIds.getLongCardinality(), Integer.MAX_VALUE);
+            if (cardinality <= n) {
+                entryIds.forEach(entryId -> positions.add(PositionFactory.create(ledgerId, entryId)));
+                n -= cardinality;
+                delayedMessagesCount.addAndGet(-cardinality);
+                iterator.remove();
+            } else {
+                long[] entryIdsArray = entryIds.toArray();
+                for (int i = 0; i < n; i++) {
+                    positions.add(PositionFactory.create(ledgerId, entryIdsArray[i]));
+                    entryIds.removeLong(entryIdsArray[i]);
+                }
+                delayedMessagesCount.addAndGet(-n);
+                n = 0;
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Get scheduled messages - found {}", dispatcher.getName(), positions.size());
+        }
+
+        if (readyMessages.isEmpty() && isWheelEmpty()) {
+            // Reset to initial state
+            highestDeliveryTimeTracked = 0;
+            messagesHaveFixedDelay = true;
+            if (delayedMessagesCount.get() != 0) {
+                log.warn("[{}] Delayed message tracker is empty, but delayedMessagesCount is {}",
+                        dispatcher.getName(), delayedMessagesCount.get());
+            }
+        }
+
+        updateTimer();
+        return positions;
+    }
+
+    @Override
+    public CompletableFuture<Void> clear() {
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                wheel[level][slot] = null;
+            }
+            occupiedSlots[level] = 0;
+        }
+        this.readyMessages.clear();
+        this.delayedMessagesCount.set(0);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public long getNumberOfDelayedMessages() {
+        return delayedMessagesCount.get();
+    }
+
+    /**
+     * Like {@link InMemoryDelayedDeliveryTracker#getBufferMemoryUsage()}, this relies on
+     * Roaring64Bitmap::getLongSizeInBytes and overestimates the memory usage of the buffer.
+     * @return the memory usage of the buffer
+     */
+    @Override
+    public long getBufferMemoryUsage() {
+        long size = sizeInBytes(readyMessages);
+        for (int level = 0; level < LEVELS; level++) {
+            long occupied = occupiedSlots[level];
+            while (occupied != 0) {
+                int slot = Long.numberOfTrailingZeros(occupied);
+                occupied &= occupied - 1;
+                for (Long2ObjectSortedMap<Roaring64Bitmap> ledgerMap : wheel[level][slot].values()) {
+                    size += sizeInBytes(ledgerMap);
+                }
+            }
+        }
+        return size;
+    }
+
+    private static long sizeInBytes(Long2ObjectSortedMap<Roaring64Bitmap> ledgerMap) {
+        return ledgerMap.values().stream().mapToLong(Roaring64Bitmap::getLongSizeInBytes).sum();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+    }
+
+    @Override
+    public boolean shouldPauseAllDeliveries() {
+        // Pause deliveries if we know all delays are fixed within the lookahead window
+        return fixedDelayDetectionLookahead > 0
+                && messagesHaveFixedDelay
+                && getNumberOfDelayedMessages() >= fixedDelayDetectionLookahead
+                && !hasMessageAvailable();
+    }
+
+    /**
+     * Returns the start of the earliest occupied slot. For slots above level 0 this is a lower bound of the
+     * delivery time of their messages, the timer then fires once more to cascade the slot down the wheel.
+     */
+    @Override
+    protected long nextDeliveryTime() {
+        if (!readyMessages.isEmpty()) {
+            return (currentTick - 1) * wheelTickMillis;
+        }
+        long earliestSlotStart = earliestSlotStart(0);
+        return (earliestSlotStart == Long.MAX_VALUE ? currentTick : earliestSlotStart) * wheelTickMillis;
+    }
+
+    /**
+     * Moves the wheel forward so that all the messages due at or before {@code cutoffTime} become ready.
+     */
+    private void advance(long cutoffTime) {
+        long targetTick = cutoffTime / wheelTickMillis;
+        while (currentTick <= targetTick) {
+            if (occupiedSlots[0] == 0) {
+                // Nothing to deliver on level 0, jump to the next slot that needs to be cascaded
+                long nextSlotStart = earliestSlotStart(1);
+                currentTick = Math.min(nextSlotStart, targetTick + 1);
+                if (currentTick == nextSlotStart) {
+                    cascade();
+                    continue;
+                }
+                return;
+            }
+            long windowEnd = currentTick | SLOT_MASK;
+            long lastTick = Math.min(targetTick, windowEnd);
+            long dueSlots = occupiedSlots[0]
+                    & (-1L << (currentTick & SLOT_MASK))
+                    & (-1L >>> (SLOT_MASK - (lastTick & SLOT_MASK)));
+            while (dueSlots != 0) {
+                int slot = Long.numberOfTrailingZeros(dueSlots);
+                dueSlots &= dueSlots - 1;
+                for (Long2ObjectSortedMap<Roaring64Bitmap> ledgerMap : takeSlot(0, slot).values()) {
+                    mergeInto(readyMessages, ledgerMap);
+                }
+            }
+            currentTick = lastTick + 1;
+            if (lastTick == windowEnd) {
+                cascade();
+            }
+        }
+    }
+
+    /**
+     * Redistributes the higher level slots that start at {@link #currentTick} to the lower levels.
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            int slot = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+            if ((occupiedSlots[level] & (1L << slot)) != 0) {
+                for (Long2ObjectMap.Entry<Long2ObjectSortedMap<Roaring64Bitmap>> entry
+                        : takeSlot(level, slot).long2ObjectEntrySet()) {
+                    long tick = entry.getLongKey();
+                    if (tick < currentTick) {
+                        mergeInto(readyMessages, entry.getValue());
+                    } else {
+                        Long2ObjectOpenHashMap<Long2ObjectSortedMap<Roaring64Bitmap>> target = slotOf(tick);
+                        Long2ObjectSortedMap<Roaring64Bitmap> existing = target.putIfAbsent(tick, entry.getValue());
+                        if (existing != null) {
+                            mergeInto(existing, entry.getValue());
+                        }
+                    }
+                }
+            }
+            if (slot != 0) {
+                // The higher levels only roll over when this level wraps around
+                break;
+            }
+        }
+    }
+
+    private Long2ObjectOpenHashMap<Long2ObjectSortedMap<Roaring64Bitmap>> slotOf(long tick) {
+        long diff = tick ^ currentTick;
+        int level = diff == 0 ? 0 : (Long.SIZE - 1 - Long.numberOfLeadingZeros(diff)) / SLOT_BITS;
+        int slot = (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        Long2ObjectOpenHashMap<Long2ObjectSortedMap<Roaring64Bitmap>> ticks = wheel[level][slot];
+        if (ticks == null) {
+            ticks = new Long2ObjectOpenHashMap<>();
+            wheel[level][slot] = ticks;
+            occupiedSlots[level] |= 1L << slot;
+        }
+        return ticks;
+    }
+
+    private Long2ObjectOpenHashMap<Long2ObjectSortedMap<Roaring64Bitmap>> takeSlot(int level, int slot) {
+        Long2ObjectOpenHashMap<Long2ObjectSortedMap<Roaring64Bitmap>> ticks = wheel[level][slot];
+        wheel[level][slot] = null;
+        occupiedSlots[level] &= ~(1L << slot);
+        return ticks;
+    }
+
+    private static void mergeInto(Long2ObjectSortedMap<Roaring64Bitmap> target,
+                                  Long2ObjectSortedMap<Roaring64Bitmap> source) {
+        for (Long2ObjectMap.Entry<Roaring64Bitmap> ledgerEntry : source.long2ObjectEntrySet()) {
+            Roaring64Bitmap existing = target.putIfAbsent(ledgerEntry.getLongKey(), ledgerEntry.getValue());
+            if (existing != null) {
+                existing.or(ledgerEntry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the first tick of the earliest occupied slot on {@code fromLevel} or above, or Long.MAX_VALUE if
+     * these levels are empty. Occupied slots always come after the current position of their level, so the
+     * lowest occupied slot of the lowest non-empty level is the earliest one.
+     */
+    private long earliestSlotStart(int fromLevel) {
+        for (int level = fromLevel; level < LEVELS; level++) {
+            if (occupiedSlots[level] != 0) {
+                int slot = Long.numberOfTrailingZeros(occupiedSlots[level]);
+                int shift = SLOT_BITS * (level + 1);
+                long levelBase = shift >= Long.SIZE ? 0 : (currentTick >>> shift) << shift;
+                return Math.max(currentTick, levelBase | ((long) slot << (SLOT_BITS * level)));
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private boolean isWheelEmpty() {
+        for (long occupied : occupiedSlots) {
+            if (occupied != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -121,7 +121,11 @@ public class BookkeeperBucketSnapshotStorage implements BucketSnapshotStorage {
                                                         List<SnapshotSegment> bucketSnapshotSegments) {
         List<CompletableFuture<Void>> addFutures = new ArrayList<>();
         ByteBuf byteBuf;
+        boolean columnarFormat = config.isDelayedDeliveryBucketSnapshotColumnarFormatEnabled();
         for (SnapshotSegment bucketSnapshotSegment : bucketSnapshotSegments) {
+            if (columnarFormat) {
+                bucketSnapshotSegment = SnapshotSegments.toColumnar(bucketSnapshotSegment);
+            }
             byteBuf = PulsarByteBufAllocator.DEFAULT.directBuffer(bucketSnapshotSegment.getSerializedSize());
             try {
                 bucketSnapshotSegment.writeTo(byteBuf);
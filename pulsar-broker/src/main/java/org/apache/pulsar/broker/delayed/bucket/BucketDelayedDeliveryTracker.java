@@ -31,8 +31,10 @@ import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import java.time.Clock;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -77,6 +79,8 @@ public class BucketDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker
 
     private static final int MAX_MERGE_NUM = 4;
 
+    private static final int BUCKET_NOT_EXIST = -1;
+
     private final long minIndexCountPerBucket;
 
     private final long timeStepPerBucketSnapshotSegmentInMillis;
@@ -105,6 +109,21 @@ public class BucketDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker
 
     private CompletableFuture<Void> pendingLoad = null;
 
+    // Buckets whose first snapshot segment to dispatch is loaded in the background after the recovery,
+    // keyed by identity since the bucket state is part of its hash code
+    private final Map<ImmutableBucket, RecoveringSegment> recoveringBuckets = new IdentityHashMap<>();
+
+    private static final class RecoveringSegment {
+        private final int segmentEntryId;
+        private final long minScheduleTimestamp;
+        private boolean loading;
+
+        private RecoveringSegment(int segmentEntryId, long minScheduleTimestamp) {
+            this.segmentEntryId = segmentEntryId;
+            this.minScheduleTimestamp = minScheduleTimestamp;
+        }
+    }
+
     public BucketDelayedDeliveryTracker(AbstractPersistentDispatcherMultipleConsumers dispatcher,
                                         Timer timer, long tickTimeMillis,
                                         boolean isDelayedDeliveryDeliverAtTimeStrict,
@@ -140,6 +159,7 @@ public class BucketDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker
         // Close the tracker if failed to recover.
         try {
             this.numberDelayedMessages = recoverBucketSnapshot();
+            loadRecoveringBuckets();
         } catch (RecoverDelayedDeliveryTrackerException e) {
             close();
             throw e;
@@ -176,22 +196,48 @@ public class BucketDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker
             return 0;
         }
 
-        Map<Range<Long>, CompletableFuture<List<DelayedIndex>>>
-                futures = new HashMap<>(immutableBucketMap.size());
+        // The snapshot metadata holds the index bitmaps and the number of messages of each bucket, load all of
+        // them before the tracker is used
+        Map<Range<Long>, CompletableFuture<Integer>> metadataFutures = new HashMap<>(immutableBucketMap.size());
         for (Map.Entry<Range<Long>, ImmutableBucket> entry : immutableBucketMap.entrySet()) {
-            Range<Long> key = entry.getKey();
-            futures.put(key, handleRecoverBucketSnapshotEntry(entry.getValue()));
+            metadataFutures.put(entry.getKey(), handleBucketNotExist(
+                    entry.getValue().asyncRecoverBucketSnapshotMetadata(this::getCutoffTime), BUCKET_NOT_EXIST));
         }
-
-        try {
-            FutureUtil.waitForAll(futures.values()).get(AsyncOperationTimeoutSeconds * 5, TimeUnit.SECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            log.error("[{}] Failed to recover delayed message index bucket snapshot.", dispatcher.getName(), e);
-            if (e instanceof InterruptedException) {
-                Thread.currentThread().interrupt();
+        waitForRecover(metadataFutures.values());
+
+        // Only the first snapshot segment of the buckets which are already due, or hold the earliest messages,
+        // has to be loaded before dispatching, the others are loaded in the background
+        Map<Range<Long>, Integer> segmentEntryIds = new HashMap<>(immutableBucketMap.size());
+        long syncRecoverTimestamp = getCutoffTime();
+        long earliestScheduleTimestamp = Long.MAX_VALUE;
+        for (Map.Entry<Range<Long>, CompletableFuture<Integer>> entry : metadataFutures.entrySet()) {
+            // the future will always be completed since it was waited for above
+            int segmentEntryId = entry.getValue().getNow(BUCKET_NOT_EXIST);
+            ImmutableBucket immutableBucket = immutableBucketMap.get(entry.getKey());
+            if (segmentEntryId == BUCKET_NOT_EXIST || segmentEntryId > immutableBucket.lastSegmentEntryId) {
+                // Delete bucket snapshot if it doesn't have any segment to load
+                toBeDeletedBucketMap.put(entry.getKey(), immutableBucket);
+            } else {
+                segmentEntryIds.put(entry.getKey(), segmentEntryId);
+                earliestScheduleTimestamp = Math.min(earliestScheduleTimestamp,
+                        immutableBucket.firstScheduleTimestamps.get(segmentEntryId - 1));
             }
-            throw new RecoverDelayedDeliveryTrackerException(e);
         }
+        syncRecoverTimestamp = Math.max(syncRecoverTimestamp, earliestScheduleTimestamp);
+
+        Map<Range<Long>, CompletableFuture<List<DelayedIndex>>> futures = new HashMap<>();
+        for (Map.Entry<Range<Long>, Integer> entry : segmentEntryIds.entrySet()) {
+            ImmutableBucket immutableBucket = immutableBucketMap.get(entry.getKey());
+            int segmentEntryId = entry.getValue();
+            long minScheduleTimestamp = immutableBucket.firstScheduleTimestamps.get(segmentEntryId - 1);
+            if (minScheduleTimestamp <= syncRecoverTimestamp) {
+                futures.put(entry.getKey(), handleBucketNotExist(
+                        immutableBucket.asyncRecoverBucketSnapshotEntry(segmentEntryId), Collections.emptyList()));
+            } else {
+                recoveringBuckets.put(immutableBucket, new RecoveringSegment(segmentEntryId, minScheduleTimestamp));
+            }
+        }
+        waitForRecover(futures.values());
 
         for (Map.Entry<Range<Long>, CompletableFuture<List<DelayedIndex>>> entry : futures.entrySet()) {
             Range<Long> key = entry.getKey();
@@ -202,13 +248,7 @@ public class BucketDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker
                 // Delete bucket snapshot if indexList is empty
                 toBeDeletedBucketMap.put(key, immutableBucket);
             } else {
-                DelayedIndex lastDelayedIndex = indexList.get(indexList.size() - 1);
-                this.snapshotSegmentLastIndexTable.put(lastDelayedIndex.getLedgerId(),
-                        lastDelayedIndex.getEntryId(), immutableBucket);
-                for (DelayedIndex index : indexList) {
-                    this.sharedBucketPriorityQueue.add(index.getTimestamp(), index.getLedgerId(),
-                            index.getEntryId());
-                }
+                addSnapshotSegmentIndexes(immutableBucket, indexList);
             }
         }
 
@@ -225,36 +265,121 @@ public class BucketDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker
             numberDelayedMessages.add(bucket.numberBucketDelayedMessages);
         });
 
-        log.info("[{}] Recover delayed message index bucket snapshot finish, buckets: {}, numberDelayedMessages: {}",
-                dispatcher.getName(), immutableBucketMap.size(), numberDelayedMessages.getValue());
+        log.info("[{}] Recover delayed message index bucket snapshot finish, buckets: {}, numberDelayedMessages: {},"
+                        + " bucketsRecoveringInBackground: {}", dispatcher.getName(), immutableBucketMap.size(),
+                numberDelayedMessages.getValue(), recoveringBuckets.size());
 
         return numberDelayedMessages.getValue();
     }
 
+    private void waitForRecover(Collection<? extends CompletableFuture<?>> futures)
+            throws RecoverDelayedDeliveryTrackerException {
+        try {
+            FutureUtil.waitForAll(futures).get(AsyncOperationTimeoutSeconds * 5, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            log.error("[{}] Failed to recover delayed message index bucket snapshot.", dispatcher.getName(), e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RecoverDelayedDeliveryTrackerException(e);
+        }
+    }
+
+    private void addSnapshotSegmentIndexes(ImmutableBucket immutableBucket, List<DelayedIndex> indexList) {
+        DelayedIndex lastDelayedIndex = indexList.get(indexList.size() - 1);
+        this.snapshotSegmentLastIndexTable.put(lastDelayedIndex.getLedgerId(),
+                lastDelayedIndex.getEntryId(), immutableBucket);
+        for (DelayedIndex index : indexList) {
+            this.sharedBucketPriorityQueue.add(index.getTimestamp(), index.getLedgerId(),
+                    index.getEntryId());
+        }
+    }
+
     /**
-     * Handle the BucketNotExistException when recover bucket snapshot entry.
-     * The non exist bucket will be added to `toBeDeletedBucketMap` and deleted from `immutableBuckets`
-     * in the next step.
-     *
-     * @param bucket
-     * @return
+     * Start loading the first snapshot segment of the buckets which were not loaded during the recovery, a failed
+     * load is retried on the next call.
      */
-    private CompletableFuture<List<DelayedIndex>> handleRecoverBucketSnapshotEntry(ImmutableBucket bucket) {
-        CompletableFuture<List<DelayedIndex>> f = new CompletableFuture<>();
-        bucket.asyncRecoverBucketSnapshotEntry(this::getCutoffTime)
-                .whenComplete((v, e) -> {
-                    if (e == null) {
-                        f.complete(v);
-                    } else {
-                        if (e instanceof BucketNotExistException) {
-                            // If the bucket does not exist, return an empty list,
-                            // the bucket will be deleted from `immutableBuckets` in the next step.
-                            f.complete(Collections.emptyList());
-                        } else {
-                            f.completeExceptionally(e);
+    private synchronized void loadRecoveringBuckets() {
+        // Copy the entries first, a load which is already done completes in place and updates the map
+        for (Map.Entry<ImmutableBucket, RecoveringSegment> entry : new ArrayList<>(recoveringBuckets.entrySet())) {
+            ImmutableBucket bucket = entry.getKey();
+            RecoveringSegment segment = entry.getValue();
+            if (segment.loading) {
+                continue;
+            }
+            segment.loading = true;
+            handleBucketNotExist(bucket.asyncRecoverBucketSnapshotEntry(segment.segmentEntryId),
+                    Collections.<DelayedIndex>emptyList()).whenComplete((indexList, ex) -> {
+                synchronized (BucketDelayedDeliveryTracker.this) {
+                    if (recoveringBuckets.get(bucket) != segment) {
+                        // The tracker was cleared or closed in the meantime
+                        return;
+                    }
+                    if (ex != null) {
+                        segment.loading = false;
+                        log.error("[{}] Failed to recover bucket snapshot segment, bucketKey: {}, segmentEntryId: {}",
+                                dispatcher.getName(), bucket.bucketKey(), segment.segmentEntryId, ex);
+                        // Trigger the dispatcher again, so that the load is retried
+                        if (timeout == null) {
+                            timeout = timer.newTimeout(this, tickTimeMillis, TimeUnit.MILLISECONDS);
                         }
+                        return;
                     }
-                });
+                    recoveringBuckets.remove(bucket);
+                    if (!immutableBuckets.asMapOfRanges().containsValue(bucket)) {
+                        return;
+                    }
+                    if (CollectionUtils.isEmpty(indexList)) {
+                        immutableBuckets.asMapOfRanges().remove(Range.closed(bucket.startLedgerId, bucket.endLedgerId));
+                        numberDelayedMessages -= bucket.getNumberBucketDelayedMessages();
+                        bucket.asyncDeleteBucketSnapshot(stats);
+                    } else {
+                        addSnapshotSegmentIndexes(bucket, indexList);
+                    }
+                    if (log.isDebugEnabled()) {
+                        log.debug("[{}] Recover bucket snapshot segment in background finish, bucketKey: {},"
+                                        + " remaining: {}", dispatcher.getName(), bucket.bucketKey(),
+                                recoveringBuckets.size());
+                    }
+                    if (timeout != null) {
+                        timeout.cancel();
+                    }
+                    timeout = timer.newTimeout(this, 0, TimeUnit.MILLISECONDS);
+                }
+            });
+        }
+    }
+
+    /**
+     * The messages scheduled after this timestamp can't be dispatched yet, because a snapshot segment with earlier
+     * messages is still being recovered.
+     */
+    private long recoveringScheduleTimestamp() {
+        long timestamp = Long.MAX_VALUE;
+        for (RecoveringSegment segment : recoveringBuckets.values()) {
+            timestamp = Math.min(timestamp, segment.minScheduleTimestamp);
+        }
+        return timestamp;
+    }
+
+    /**
+     * Handle the BucketNotExistException when recover bucket snapshot.
+     * The future completes with {@code notExistValue} instead, so that the non exist bucket can be deleted from
+     * `immutableBuckets` in the next step.
+     */
+    private static <T> CompletableFuture<T> handleBucketNotExist(CompletableFuture<T> future, T notExistValue) {
+        CompletableFuture<T> f = new CompletableFuture<>();
+        future.whenComplete((v, e) -> {
+            if (e == null) {
+                f.complete(v);
+            } else {
+                if (FutureUtil.unwrapCompletionException(e) instanceof BucketNotExistException) {
+                    f.complete(notExistValue);
+                } else {
+                    f.completeExceptionally(e);
+                }
+            }
+        });
         return f;
     }
 
@@ -330,9 +455,10 @@ public class BucketDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker
                     synchronized (BucketDelayedDeliveryTracker.this) {
                         immutableBucket.getSnapshotSegments().ifPresent(snapshotSegments -> {
                             for (SnapshotSegment snapshotSegment : snapshotSegments) {
-                                for (DelayedIndex delayedIndex : snapshotSegment.getIndexesList()) {
-                                    sharedBucketPriorityQueue.add(delayedIndex.getTimestamp(),
-                                            delayedIndex.getLedgerId(), delayedIndex.getEntryId());
+                                for (int i = 0; i < SnapshotSegments.size(snapshotSegment); i++) {
+                                    sharedBucketPriorityQueue.add(SnapshotSegments.getTimestamp(snapshotSegment, i),
+                                            SnapshotSegments.getLedgerId(snapshotSegment, i),
+                                            SnapshotSegments.getEntryId(snapshotSegment, i));
                                 }
                             }
                             immutableBucket.setSnapshotSegments(null);
@@ -414,7 +540,8 @@ public class BucketDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker
             if (immutableBuckets.stream().allMatch(bucket -> {
                 // We should skip the bucket which last segment already been load to memory,
                 // avoid record replicated index.
-                return bucket.lastSegmentEntryId > bucket.currentSegmentEntryId && !bucket.merging;
+                return bucket.lastSegmentEntryId > bucket.currentSegmentEntryId && !bucket.merging
+                        && !recoveringBuckets.containsKey(bucket);
             })) {
                 long numberMessages = immutableBuckets.stream()
                         .mapToLong(bucket -> bucket.numberBucketDelayedMessages)
@@ -556,7 +683,9 @@ public class BucketDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker
     public synchronized boolean hasMessageAvailable() {
         long cutoffTime = getCutoffTime();
 
-        boolean hasMessageAvailable = getNumberOfDelayedMessages() > 0 && nextDeliveryTime() <= cutoffTime;
+        loadRecoveringBuckets();
+        boolean hasMessageAvailable = getNumberOfDelayedMessages() > 0
+                && nextDeliveryTime() <= Math.min(cutoffTime, recoveringScheduleTimestamp());
         if (!hasMessageAvailable) {
             updateTimer();
         }
@@ -565,7 +694,10 @@ public class BucketDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker
 
     @Override
     protected long nextDeliveryTime() {
-        if (lastMutableBucket.isEmpty() && !sharedBucketPriorityQueue.isEmpty()) {
+        if (lastMutableBucket.isEmpty() && sharedBucketPriorityQueue.isEmpty()) {
+            // All the remaining messages are in the segments that are still being recovered
+            return recoveringScheduleTimestamp();
+        } else if (lastMutableBucket.isEmpty() && !sharedBucketPriorityQueue.isEmpty()) {
             return sharedBucketPriorityQueue.peekN1();
         } else if (sharedBucketPriorityQueue.isEmpty() && !lastMutableBucket.isEmpty()) {
             return lastMutableBucket.nextDeliveryTime();
@@ -599,12 +731,16 @@ public class BucketDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker
 
         lastMutableBucket.moveScheduledMessageToSharedQueue(cutoffTime, sharedBucketPriorityQueue);
 
+        // Retry the failed background recovery, and hold back the messages scheduled after it
+        loadRecoveringBuckets();
+        long maxScheduleTimestamp = Math.min(cutoffTime, recoveringScheduleTimestamp());
+
         NavigableSet<Position> positions = new TreeSet<>();
         int n = maxMessages;
 
         while (n > 0 && !sharedBucketPriorityQueue.isEmpty()) {
             long timestamp = sharedBucketPriorityQueue.peekN1();
-            if (timestamp > cutoffTime) {
+            if (timestamp > maxScheduleTimestamp) {
                 break;
             }
 
@@ -713,6 +849,7 @@ public class BucketDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker
     @Override
     public synchronized CompletableFuture<Void> clear() {
         CompletableFuture<Void> future = cleanImmutableBuckets();
+        recoveringBuckets.clear();
         sharedBucketPriorityQueue.clear();
         lastMutableBucket.clear();
         snapshotSegmentLastIndexTable.clear();
@@ -723,6 +860,7 @@ public class BucketDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker
     @Override
     public synchronized void close() {
         super.close();
+        recoveringBuckets.clear();
         lastMutableBucket.close();
         sharedBucketPriorityQueue.close();
         try {
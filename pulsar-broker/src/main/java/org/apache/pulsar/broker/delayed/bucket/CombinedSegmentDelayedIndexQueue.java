@@ -39,9 +39,23 @@ class CombinedSegmentDelayedIndexQueue implements DelayedIndexQueue {
         int segmentCursor;
     }
 
-    private static final Comparator<Node> COMPARATOR_NODE = (node1, node2) -> DelayedIndexQueue.COMPARATOR.compare(
-            node1.segmentList.get(node1.segmentListCursor).getIndexeAt(node1.segmentCursor),
-            node2.segmentList.get(node2.segmentListCursor).getIndexeAt(node2.segmentCursor));
+    // Compare the indexes in place, the segments may be columnar and don't hold any DelayedIndex object
+    private static final Comparator<Node> COMPARATOR_NODE = (node1, node2) -> {
+        SnapshotSegment segment1 = node1.segmentList.get(node1.segmentListCursor);
+        SnapshotSegment segment2 = node2.segmentList.get(node2.segmentListCursor);
+        int result = Long.compare(SnapshotSegments.getTimestamp(segment1, node1.segmentCursor),
+                SnapshotSegments.getTimestamp(segment2, node2.segmentCursor));
+        if (result != 0) {
+            return result;
+        }
+        result = Long.compare(SnapshotSegments.getLedgerId(segment1, node1.segmentCursor),
+                SnapshotSegments.getLedgerId(segment2, node2.segmentCursor));
+        if (result != 0) {
+            return result;
+        }
+        return Long.compare(SnapshotSegments.getEntryId(segment1, node1.segmentCursor),
+                SnapshotSegments.getEntryId(segment2, node2.segmentCursor));
+    };
 
     private final PriorityQueue<Node> kpq;
 
@@ -64,27 +78,31 @@ class CombinedSegmentDelayedIndexQueue implements DelayedIndexQueue {
 
     @Override
     public DelayedIndex peek() {
-        return getValue(false);
+        DelayedIndex delayedIndex = new DelayedIndex();
+        getValue(false, delayedIndex);
+        return delayedIndex;
     }
 
     @Override
     public DelayedIndex pop() {
-        return getValue(true);
+        DelayedIndex delayedIndex = new DelayedIndex();
+        getValue(true, delayedIndex);
+        return delayedIndex;
     }
 
-    private DelayedIndex getValue(boolean needAdvanceCursor) {
+    private void getValue(boolean needAdvanceCursor, DelayedIndex delayedIndex) {
         Node node = kpq.peek();
         Objects.requireNonNull(node);
 
         SnapshotSegment snapshotSegment = node.segmentList.get(node.segmentListCursor);
-        DelayedIndex delayedIndex = snapshotSegment.getIndexeAt(node.segmentCursor);
+        SnapshotSegments.copyIndex(snapshotSegment, node.segmentCursor, delayedIndex);
         if (!needAdvanceCursor) {
-            return delayedIndex;
+            return;
         }
 
         kpq.poll();
 
-        if (node.segmentCursor + 1 < snapshotSegment.getIndexesCount()) {
+        if (node.segmentCursor + 1 < SnapshotSegments.size(snapshotSegment)) {
             node.segmentCursor++;
             kpq.offer(node);
         } else  {
@@ -95,25 +113,23 @@ class CombinedSegmentDelayedIndexQueue implements DelayedIndexQueue {
                 node.segmentCursor = 0;
 
                 // skip empty segment
-                if (node.segmentList.get(node.segmentListCursor).getIndexesCount() > 0) {
+                if (SnapshotSegments.size(node.segmentList.get(node.segmentListCursor)) > 0) {
                     kpq.offer(node);
                     break;
                 }
             }
         }
-
-        return delayedIndex;
     }
 
     @Override
     public void popToObject(DelayedIndex delayedIndex) {
-        DelayedIndex value = getValue(true);
-        delayedIndex.copyFrom(value);
+        getValue(true, delayedIndex);
     }
 
     @Override
     public long peekTimestamp() {
-        DelayedIndex value = getValue(false);
-        return value.getTimestamp();
+        Node node = kpq.peek();
+        Objects.requireNonNull(node);
+        return SnapshotSegments.getTimestamp(node.segmentList.get(node.segmentListCursor), node.segmentCursor);
     }
 }
@@ -60,81 +60,83 @@ class ImmutableBucket extends Bucket {
     }
 
     CompletableFuture<List<DelayedIndex>> asyncLoadNextBucketSnapshotEntry() {
-        return asyncLoadNextBucketSnapshotEntry(false, null);
+        return asyncLoadBucketSnapshotEntry(currentSegmentEntryId + 1, false);
     }
 
-    CompletableFuture<List<DelayedIndex>> asyncRecoverBucketSnapshotEntry(Supplier<Long> cutoffTimeSupplier) {
-        return asyncLoadNextBucketSnapshotEntry(true, cutoffTimeSupplier);
+    CompletableFuture<List<DelayedIndex>> asyncRecoverBucketSnapshotEntry(int segmentEntryId) {
+        return asyncLoadBucketSnapshotEntry(segmentEntryId, true);
     }
 
-    private CompletableFuture<List<DelayedIndex>> asyncLoadNextBucketSnapshotEntry(boolean isRecover,
-                                                                                   Supplier<Long> cutoffTimeSupplier) {
+    /**
+     * Recover the snapshot metadata of the bucket, skipping the snapshot segments which already reached their
+     * schedule time.
+     *
+     * @return the entry id of the first snapshot segment to load
+     */
+    CompletableFuture<Integer> asyncRecoverBucketSnapshotMetadata(Supplier<Long> cutoffTimeSupplier) {
         final long bucketId = getAndUpdateBucketId();
-        final CompletableFuture<Integer> loadMetaDataFuture;
-        if (isRecover) {
-            final long cutoffTime = cutoffTimeSupplier.get();
-            // Load Metadata of bucket snapshot
-            final String bucketKey = bucketKey();
-            loadMetaDataFuture = executeWithRetry(() -> bucketSnapshotStorage.getBucketSnapshotMetadata(bucketId)
-                    .whenComplete((___, ex) -> {
-                        if (ex != null) {
-                            log.warn("[{}] Failed to get bucket snapshot metadata,"
-                                            + " bucketKey: {}, bucketId: {}",
-                                    dispatcherName, bucketKey, bucketId, ex);
-                        }
-                    }), BucketSnapshotPersistenceException.class, MaxRetryTimes)
-                    .thenApply(snapshotMetadata -> {
-                        List<SnapshotSegmentMetadata> metadataList =
-                                snapshotMetadata.getMetadataListList();
-
-                        // Skip all already reach schedule time snapshot segments
-                        int nextSnapshotEntryIndex = 0;
-                        while (nextSnapshotEntryIndex < metadataList.size()
-                                && metadataList.get(nextSnapshotEntryIndex).getMaxScheduleTimestamp() <= cutoffTime) {
-                            nextSnapshotEntryIndex++;
-                        }
-
-                        this.setLastSegmentEntryId(metadataList.size());
-                        this.recoverDelayedIndexBitMapAndNumber(nextSnapshotEntryIndex, metadataList);
-                        List<Long> firstScheduleTimestamps = metadataList.stream().map(
-                                SnapshotSegmentMetadata::getMinScheduleTimestamp).toList();
-                        this.setFirstScheduleTimestamps(firstScheduleTimestamps);
-
-                        return nextSnapshotEntryIndex + 1;
-                    });
-        } else {
-            loadMetaDataFuture = CompletableFuture.completedFuture(currentSegmentEntryId + 1);
+        final long cutoffTime = cutoffTimeSupplier.get();
+        // Load Metadata of bucket snapshot
+        final String bucketKey = bucketKey();
+        return executeWithRetry(() -> bucketSnapshotStorage.getBucketSnapshotMetadata(bucketId)
+                .whenComplete((___, ex) -> {
+                    if (ex != null) {
+                        log.warn("[{}] Failed to get bucket snapshot metadata,"
+                                        + " bucketKey: {}, bucketId: {}",
+                                dispatcherName, bucketKey, bucketId, ex);
+                    }
+                }), BucketSnapshotPersistenceException.class, MaxRetryTimes)
+                .thenApply(snapshotMetadata -> {
+                    List<SnapshotSegmentMetadata> metadataList =
+                            snapshotMetadata.getMetadataListList();
+
+                    // Skip all already reach schedule time snapshot segments
+                    int nextSnapshotEntryIndex = 0;
+                    while (nextSnapshotEntryIndex < metadataList.size()
+                            && metadataList.get(nextSnapshotEntryIndex).getMaxScheduleTimestamp() <= cutoffTime) {
+                        nextSnapshotEntryIndex++;
+                    }
+
+                    this.setLastSegmentEntryId(metadataList.size());
+                    this.recoverDelayedIndexBitMapAndNumber(nextSnapshotEntryIndex, metadataList);
+                    List<Long> firstScheduleTimestamps = metadataList.stream().map(
+                            SnapshotSegmentMetadata::getMinScheduleTimestamp).toList();
+                    this.setFirstScheduleTimestamps(firstScheduleTimestamps);
+
+                    return nextSnapshotEntryIndex + 1;
+                });
+    }
+
+    private CompletableFuture<List<DelayedIndex>> asyncLoadBucketSnapshotEntry(int nextSegmentEntryId,
+                                                                               boolean isRecover) {
+        if (nextSegmentEntryId > lastSegmentEntryId) {
+            return CompletableFuture.completedFuture(null);
         }
 
-        return loadMetaDataFuture.thenCompose(nextSegmentEntryId -> {
-            if (nextSegmentEntryId > lastSegmentEntryId) {
-                return CompletableFuture.completedFuture(null);
-            }
+        final long bucketId = getAndUpdateBucketId();
+        return executeWithRetry(
+                () -> bucketSnapshotStorage.getBucketSnapshotSegment(bucketId, nextSegmentEntryId,
+                        nextSegmentEntryId).whenComplete((___, ex) -> {
+                    if (ex != null) {
+                        log.warn("[{}] Failed to get bucket snapshot segment. bucketKey: {},"
+                                        + " bucketId: {}, segmentEntryId: {}", dispatcherName, bucketKey(),
+                                bucketId, nextSegmentEntryId, ex);
+                    }
+                }), BucketSnapshotPersistenceException.class, MaxRetryTimes)
+                .thenApply(bucketSnapshotSegments -> {
+                    if (CollectionUtils.isEmpty(bucketSnapshotSegments)) {
+                        return Collections.emptyList();
+                    }
 
-            return executeWithRetry(
-                    () -> bucketSnapshotStorage.getBucketSnapshotSegment(bucketId, nextSegmentEntryId,
-                            nextSegmentEntryId).whenComplete((___, ex) -> {
-                        if (ex != null) {
-                            log.warn("[{}] Failed to get bucket snapshot segment. bucketKey: {},"
-                                            + " bucketId: {}, segmentEntryId: {}", dispatcherName, bucketKey(),
-                                    bucketId, nextSegmentEntryId, ex);
-                        }
-                    }), BucketSnapshotPersistenceException.class, MaxRetryTimes)
-                    .thenApply(bucketSnapshotSegments -> {
-                        if (CollectionUtils.isEmpty(bucketSnapshotSegments)) {
-                            return Collections.emptyList();
-                        }
-
-                        SnapshotSegment snapshotSegment =
-                                bucketSnapshotSegments.get(0);
-                        List<DelayedIndex> indexList = snapshotSegment.getIndexesList();
-                        this.setCurrentSegmentEntryId(nextSegmentEntryId);
-                        if (isRecover) {
-                            this.asyncUpdateSnapshotLength();
-                        }
-                        return indexList;
-                    });
-        });
+                    SnapshotSegment snapshotSegment =
+                            bucketSnapshotSegments.get(0);
+                    List<DelayedIndex> indexList = SnapshotSegments.getIndexesList(snapshotSegment);
+                    this.setCurrentSegmentEntryId(nextSegmentEntryId);
+                    if (isRecover) {
+                        this.asyncUpdateSnapshotLength();
+                    }
+                    return indexList;
+                });
     }
 
     /**
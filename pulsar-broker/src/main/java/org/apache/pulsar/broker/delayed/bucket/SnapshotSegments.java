@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed.bucket;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.experimental.UtilityClass;
+import org.apache.pulsar.broker.delayed.proto.ColumnarIndexes;
+import org.apache.pulsar.broker.delayed.proto.DelayedIndex;
+import org.apache.pulsar.broker.delayed.proto.PackedColumn;
+import org.apache.pulsar.broker.delayed.proto.SnapshotSegment;
+
+/**
+ * Access the delayed indexes of a {@link SnapshotSegment}, whether it holds them as a list of {@link DelayedIndex} or
+ * with the columnar format.
+ *
+ * <p>The columnar format stores the timestamps, ledger ids and entry ids in separate columns with frame of reference
+ * encoding, each value takes only the bits needed for its distance to the minimum of the column. Since the values
+ * have a fixed width, the i-th index is read in constant time without creating any object, which lets
+ * {@link CombinedSegmentDelayedIndexQueue} merge the segments in place.
+ */
+@UtilityClass
+class SnapshotSegments {
+
+    /**
+     * Create a copy of the segment with the columnar format, the indexes are expected to be sorted.
+     */
+    SnapshotSegment toColumnar(SnapshotSegment snapshotSegment) {
+        if (snapshotSegment.hasColumnarIndexes()) {
+            return snapshotSegment;
+        }
+        int count = snapshotSegment.getIndexesCount();
+        long[] timestamps = new long[count];
+        long[] ledgerIds = new long[count];
+        long[] entryIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            DelayedIndex delayedIndex = snapshotSegment.getIndexeAt(i);
+            timestamps[i] = delayedIndex.getTimestamp();
+            ledgerIds[i] = delayedIndex.getLedgerId();
+            entryIds[i] = delayedIndex.getEntryId();
+        }
+
+        SnapshotSegment columnarSegment = new SnapshotSegment();
+        ColumnarIndexes columnarIndexes = columnarSegment.setColumnarIndexes().setCount(count);
+        pack(columnarIndexes.setTimestamps(), timestamps);
+        pack(columnarIndexes.setLedgerIds(), ledgerIds);
+        pack(columnarIndexes.setEntryIds(), entryIds);
+        return columnarSegment;
+    }
+
+    int size(SnapshotSegment snapshotSegment) {
+        return snapshotSegment.hasColumnarIndexes() ? snapshotSegment.getColumnarIndexes().getCount()
+                : snapshotSegment.getIndexesCount();
+    }
+
+    long getTimestamp(SnapshotSegment snapshotSegment, int index) {
+        return snapshotSegment.hasColumnarIndexes()
+                ? unpack(snapshotSegment.getColumnarIndexes().getTimestamps(), index)
+                : snapshotSegment.getIndexeAt(index).getTimestamp();
+    }
+
+    long getLedgerId(SnapshotSegment snapshotSegment, int index) {
+        return snapshotSegment.hasColumnarIndexes()
+                ? unpack(snapshotSegment.getColumnarIndexes().getLedgerIds(), index)
+                : snapshotSegment.getIndexeAt(index).getLedgerId();
+    }
+
+    long getEntryId(SnapshotSegment snapshotSegment, int index) {
+        return snapshotSegment.hasColumnarIndexes()
+                ? unpack(snapshotSegment.getColumnarIndexes().getEntryIds(), index)
+                : snapshotSegment.getIndexeAt(index).getEntryId();
+    }
+
+    /**
+     * Copy the index at the given position into {@code delayedIndex}.
+     */
+    void copyIndex(SnapshotSegment snapshotSegment, int index, DelayedIndex delayedIndex) {
+        delayedIndex.setTimestamp(getTimestamp(snapshotSegment, index))
+                .setLedgerId(getLedgerId(snapshotSegment, index))
+                .setEntryId(getEntryId(snapshotSegment, index));
+    }
+
+    List<DelayedIndex> getIndexesList(SnapshotSegment snapshotSegment) {
+        if (!snapshotSegment.hasColumnarIndexes()) {
+            return snapshotSegment.getIndexesList();
+        }
+        int count = size(snapshotSegment);
+        List<DelayedIndex> indexes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            DelayedIndex delayedIndex = new DelayedIndex();
+            copyIndex(snapshotSegment, i, delayedIndex);
+            indexes.add(delayedIndex);
+        }
+        return indexes;
+    }
+
+    private void pack(PackedColumn column, long[] values) {
+        long base = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (long value : values) {
+            base = Math.min(base, value);
+            max = Math.max(max, value);
+        }
+        if (values.length == 0) {
+            base = 0;
+            max = 0;
+        }
+        int bitWidth = 64 - Long.numberOfLeadingZeros(max - base);
+        column.setBase(base).setBitWidth(bitWidth);
+        if (bitWidth == 0) {
+            return;
+        }
+
+        long[] words = new long[(int) (((long) values.length * bitWidth + 63) >>> 6)];
+        for (int i = 0; i < values.length; i++) {
+            long value = values[i] - base;
+            long bitIndex = (long) i * bitWidth;
+            int wordIndex = (int) (bitIndex >>> 6);
+            int shift = (int) (bitIndex & 63);
+            words[wordIndex] |= value << shift;
+            if (shift + bitWidth > 64) {
+                words[wordIndex + 1] |= value >>> (64 - shift);
+            }
+        }
+        for (long word : words) {
+            column.addWord(word);
+        }
+    }
+
+    private long unpack(PackedColumn column, int index) {
+        int bitWidth = column.getBitWidth();
+        if (bitWidth == 0) {
+            return column.getBase();
+        }
+        long bitIndex = (long) index * bitWidth;
+        int wordIndex = (int) (bitIndex >>> 6);
+        int shift = (int) (bitIndex & 63);
+        long value = column.getWordAt(wordIndex) >>> shift;
+        if (shift + bitWidth > 64) {
+            value |= column.getWordAt(wordIndex + 1) << (64 - shift);
+        }
+        long mask = bitWidth == 64 ? -1L : (1L << bitWidth) - 1;
+        return column.getBase() + (value & mask);
+    }
+}
@@ -26,6 +26,7 @@ import java.util.concurrent.CompletableFuture;
 import org.apache.bookkeeper.mledger.Entry;
 import org.apache.bookkeeper.mledger.intercept.ManagedLedgerInterceptor;
 import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.pulsar.broker.service.Topic;
 import org.apache.pulsar.common.api.proto.BrokerEntryMetadata;
 import org.apache.pulsar.common.intercept.AppendIndexMetadataInterceptor;
 import org.apache.pulsar.common.intercept.BrokerEntryMetadataInterceptor;
@@ -87,7 +88,10 @@ public class ManagedLedgerInterceptorImpl implements ManagedLedgerInterceptor {
        if (op == null || numberOfMessages <= 0) {
            return;
        }
-        op.setData(Commands.addBrokerEntryMetadata(op.getData(), brokerEntryMetadataInterceptors, numberOfMessages));
+        boolean useHeadroom = op.getCtx() instanceof Topic.PublishContext publishContext
+                && publishContext.isHeadroomAvailableForBrokerEntryMetadata();
+        op.setData(Commands.addBrokerEntryMetadata(op.getData(), brokerEntryMetadataInterceptors, numberOfMessages,
+                useHeadroom));
     }
 
     @Override
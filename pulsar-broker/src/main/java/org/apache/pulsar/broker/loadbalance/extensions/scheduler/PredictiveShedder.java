@@ -0,0 +1,452 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.loadbalance.extensions.scheduler;
+
+import static org.apache.pulsar.broker.loadbalance.extensions.models.UnloadDecision.Label.Failure;
+import static org.apache.pulsar.broker.loadbalance.extensions.models.UnloadDecision.Label.Skip;
+import static org.apache.pulsar.broker.loadbalance.extensions.models.UnloadDecision.Reason.CoolDown;
+import static org.apache.pulsar.broker.loadbalance.extensions.models.UnloadDecision.Reason.HitCount;
+import static org.apache.pulsar.broker.loadbalance.extensions.models.UnloadDecision.Reason.NoBrokers;
+import static org.apache.pulsar.broker.loadbalance.extensions.models.UnloadDecision.Reason.NoBundles;
+import static org.apache.pulsar.broker.loadbalance.extensions.models.UnloadDecision.Reason.NoLoadData;
+import static org.apache.pulsar.broker.loadbalance.extensions.models.UnloadDecision.Reason.OutDatedData;
+import static org.apache.pulsar.broker.loadbalance.extensions.models.UnloadDecision.Reason.Overloaded;
+import static org.apache.pulsar.broker.loadbalance.extensions.models.UnloadDecision.Reason.Unknown;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.apache.pulsar.broker.PulsarService;
+import org.apache.pulsar.broker.ServiceConfiguration;
+import org.apache.pulsar.broker.loadbalance.extensions.ExtensibleLoadManagerImpl;
+import org.apache.pulsar.broker.loadbalance.extensions.LoadManagerContext;
+import org.apache.pulsar.broker.loadbalance.extensions.channel.ServiceUnitStateChannel;
+import org.apache.pulsar.broker.loadbalance.extensions.channel.ServiceUnitStateChannelImpl;
+import org.apache.pulsar.broker.loadbalance.extensions.data.BrokerLoadData;
+import org.apache.pulsar.broker.loadbalance.extensions.data.BrokerLookupData;
+import org.apache.pulsar.broker.loadbalance.extensions.data.TopBundlesLoadData;
+import org.apache.pulsar.broker.loadbalance.extensions.models.Unload;
+import org.apache.pulsar.broker.loadbalance.extensions.models.UnloadCounter;
+import org.apache.pulsar.broker.loadbalance.extensions.models.UnloadDecision;
+import org.apache.pulsar.broker.loadbalance.extensions.policies.AntiAffinityGroupPolicyHelper;
+import org.apache.pulsar.broker.loadbalance.extensions.policies.IsolationPoliciesHelper;
+import org.apache.pulsar.common.naming.NamespaceBundle;
+import org.apache.pulsar.common.naming.NamespaceName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Load shedding strategy that unloads bundles from the brokers predicted to be overloaded, before they are.
+ * This strategy is only configurable in the broker load balancer extensions introduced by
+ * PIP-192[https://github.com/apache/pulsar/issues/16691], with
+ * loadBalancerLoadSheddingStrategy=org.apache.pulsar.broker.loadbalance.extensions.scheduler.PredictiveShedder.
+ *
+ * While {@link TransferShedder} reacts to the exponential moving average of the broker load, once the brokers are
+ * already imbalanced, this load shedding strategy has the following goals:
+ * 1. Fit the throughput trend of each top bundle over its last loadBalancerPredictiveSheddingHistorySize load reports,
+ * with a least squares linear regression, and forecast its throughput loadBalancerPredictiveSheddingHorizonSeconds
+ * ahead.
+ * 2. Forecast the load of each broker, by scaling the throughput change of its top bundles with its current
+ * load per throughput.
+ * 3. Shed the brokers whose forecast load is above loadBalancerBrokerOverloadedThresholdPercentage, or while the
+ * standard deviation of the forecast loads is above loadBalancerBrokerLoadTargetStd,
+ * from the highest to the lowest forecast loaded brokers.
+ * 4. Prefer the bundles moving the most forecast traffic per connected producer and consumer, to limit the number of
+ * reconnecting clients.
+ * 5. Limit the transfers in flight, including the ones of the previous cycles within
+ * loadBalanceSheddingDelayInSeconds, to loadBalancerPredictiveSheddingMaxConcurrentTransfers.
+ * 6. As {@link TransferShedder}, do not use outdated broker load data, give enough time for each broker to recompute
+ * its load after unloading, skip the recently unloaded bundles and the bundles of
+ * loadBalancerSheddingExcludedNamespaces, and limit the number of brokers to shed for each cycle.
+ * 7. Only unload the bundles with namespace isolation policies or anti-affinity group policies if
+ * loadBalancerSheddingBundlesWithPoliciesEnabled=true, and let the broker selection apply these policies.
+ */
+@NoArgsConstructor
+public class PredictiveShedder implements NamespaceUnloadStrategy {
+    private static final Logger log = LoggerFactory.getLogger(PredictiveShedder.class);
+    private static final double KB = 1024;
+    private static final String CANNOT_CONTINUE_UNLOAD_MSG = "Can't continue the unload cycle.";
+    private static final String CANNOT_UNLOAD_BROKER_MSG = "Can't unload broker:%s.";
+
+    // The throughput samples of the top bundles, by bundle, one per unloading cycle
+    private final Map<String, BundleHistory> bundleHistories = new HashMap<>();
+    private long cycle = 0;
+    private final Set<UnloadDecision> decisionCache = new HashSet<>();
+    private PulsarService pulsar;
+    private IsolationPoliciesHelper isolationPoliciesHelper;
+    private AntiAffinityGroupPolicyHelper antiAffinityGroupPolicyHelper;
+    @Getter
+    private UnloadCounter counter;
+    private ServiceUnitStateChannel channel;
+
+    @VisibleForTesting
+    public PredictiveShedder(UnloadCounter counter) {
+        this.counter = counter;
+    }
+
+    @Override
+    public void initialize(PulsarService pulsar) {
+        this.pulsar = pulsar;
+        var manager = ExtensibleLoadManagerImpl.get(pulsar.getLoadManager().get());
+        this.counter = manager.getUnloadCounter();
+        this.isolationPoliciesHelper = manager.getIsolationPoliciesHelper();
+        this.antiAffinityGroupPolicyHelper = manager.getAntiAffinityGroupPolicyHelper();
+        this.channel = ServiceUnitStateChannelImpl.get(pulsar);
+    }
+
+    private record Sample(long timestamp, double throughput) {
+    }
+
+    static class BundleHistory {
+        private final ArrayDeque<Sample> samples = new ArrayDeque<>();
+
+        void add(long timestamp, double throughput, int historySize) {
+            samples.addLast(new Sample(timestamp, throughput));
+            while (samples.size() > Math.max(1, historySize)) {
+                samples.removeFirst();
+            }
+        }
+
+        /**
+         * Forecasts the throughput with a least squares linear regression of the samples.
+         */
+        double forecast(long horizonMillis) {
+            Sample last = samples.peekLast();
+            if (samples.size() < 2) {
+                return last.throughput();
+            }
+            long start = samples.peekFirst().timestamp();
+            double meanT = 0;
+            double meanY = 0;
+            for (Sample sample : samples) {
+                meanT += sample.timestamp() - start;
+                meanY += sample.throughput();
+            }
+            meanT /= samples.size();
+            meanY /= samples.size();
+            double sxx = 0;
+            double sxy = 0;
+            for (Sample sample : samples) {
+                double dt = sample.timestamp() - start - meanT;
+                sxx += dt * dt;
+                sxy += dt * (sample.throughput() - meanY);
+            }
+            double slope = sxy / sxx;
+            return Math.max(0, meanY + slope * (last.timestamp() - start + horizonMillis - meanT));
+        }
+    }
+
+    private static final class BrokerForecast {
+        private final String broker;
+        private final double load;
+        // The load of one byte/s of throughput on this broker
+        private final double loadPerThroughput;
+        private double forecastLoad;
+
+        BrokerForecast(String broker, double load, double throughput) {
+            this.broker = broker;
+            this.load = load;
+            this.loadPerThroughput = throughput > 0 ? load / throughput : 0;
+            this.forecastLoad = load;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{load:%.2f, forecastLoad:%.2f}", broker, load, forecastLoad);
+        }
+    }
+
+    private record Candidate(String bundle, double forecastThroughput, int clients) {
+        double forecastThroughputPerClient() {
+            return forecastThroughput / (1 + clients);
+        }
+    }
+
+    @Override
+    public Set<UnloadDecision> findBundlesForUnloading(LoadManagerContext context,
+                                                       Map<String, Long> recentlyUnloadedBundles,
+                                                       Map<String, Long> recentlyUnloadedBrokers) {
+        final var conf = context.brokerConfiguration();
+        decisionCache.clear();
+        cycle++;
+        Map<String, BrokerLookupData> availableBrokers;
+        try {
+            availableBrokers = context.brokerRegistry().getAvailableBrokerLookupDataAsync()
+                    .get(conf.getMetadataStoreOperationTimeoutSeconds(), TimeUnit.SECONDS);
+        } catch (ExecutionException | InterruptedException | TimeoutException e) {
+            counter.update(Failure, Unknown);
+            log.warn("Failed to fetch available brokers. Stop unloading.", e);
+            return decisionCache;
+        }
+
+        try {
+            boolean debugMode = ExtensibleLoadManagerImpl.debug(conf, log);
+            long now = System.currentTimeMillis();
+            Map<String, BrokerForecast> forecasts = new HashMap<>();
+            UnloadDecision.Reason skipReason = null;
+            var missingLoadDataBrokers = new HashSet<>(availableBrokers.keySet());
+            for (Map.Entry<String, BrokerLoadData> entry : context.brokerLoadDataStore().entrySet()) {
+                String broker = entry.getKey();
+                BrokerLoadData brokerLoadData = entry.getValue();
+                missingLoadDataBrokers.remove(broker);
+                if (now - brokerLoadData.getUpdatedAt() > conf.getLoadBalancerBrokerLoadDataTTLInSeconds() * 1000) {
+                    log.warn("Ignoring broker:{} load update because the load data timestamp:{} is too old.",
+                            broker, brokerLoadData.getUpdatedAt());
+                    skipReason = OutDatedData;
+                    continue;
+                }
+                if (recentlyUnloadedBrokers.containsKey(broker)) {
+                    var elapsed = brokerLoadData.getUpdatedAt() - recentlyUnloadedBrokers.get(broker);
+                    if (elapsed < conf.getLoadBalanceSheddingDelayInSeconds() * 1000) {
+                        if (debugMode) {
+                            log.info(CANNOT_CONTINUE_UNLOAD_MSG
+                                            + " Broker:{} load data is too early since the last transfer."
+                                            + " elapsed {} secs < threshold {} secs",
+                                    broker, TimeUnit.MILLISECONDS.toSeconds(elapsed),
+                                    conf.getLoadBalanceSheddingDelayInSeconds());
+                        }
+                        counter.update(Skip, CoolDown);
+                        return decisionCache;
+                    }
+                    recentlyUnloadedBrokers.remove(broker);
+                }
+                forecasts.put(broker, new BrokerForecast(broker, brokerLoadData.getWeightedMaxEMA(),
+                        brokerLoadData.getMsgThroughputIn() + brokerLoadData.getMsgThroughputOut()));
+            }
+            if (forecasts.isEmpty() || !missingLoadDataBrokers.isEmpty()) {
+                if (forecasts.isEmpty()) {
+                    skipReason = skipReason == null ? NoBrokers : skipReason;
+                } else {
+                    skipReason = NoLoadData;
+                }
+                if (debugMode) {
+                    log.info(CANNOT_CONTINUE_UNLOAD_MSG + " Reason:{}, brokers with missing load data:{}.",
+                            skipReason, missingLoadDataBrokers);
+                }
+                counter.update(Skip, skipReason);
+                return decisionCache;
+            }
+
+            Map<String, List<TopBundlesLoadData.BundleLoadData>> topBundles = updateForecasts(context, forecasts);
+
+            double sum = 0.0;
+            double sqSum = 0.0;
+            double forecastSum = 0.0;
+            double forecastSqSum = 0.0;
+            for (BrokerForecast forecast : forecasts.values()) {
+                sum += forecast.load;
+                sqSum += forecast.load * forecast.load;
+                forecastSum += forecast.forecastLoad;
+                forecastSqSum += forecast.forecastLoad * forecast.forecastLoad;
+            }
+            int totalBrokers = forecasts.size();
+            double avg = sum / totalBrokers;
+            counter.updateLoadData(avg, Math.sqrt(Math.max(0, sqSum / totalBrokers - avg * avg)));
+            double forecastAvg = forecastSum / totalBrokers;
+            double forecastStd = Math.sqrt(Math.max(0, forecastSqSum / totalBrokers - forecastAvg * forecastAvg));
+
+            List<BrokerForecast> brokersSortedByForecast = new ArrayList<>(forecasts.values());
+            brokersSortedByForecast.sort(Comparator.comparingDouble(forecast -> forecast.forecastLoad));
+            if (debugMode) {
+                log.info("brokers' forecast load avg:{}, std:{}, brokers:{}", forecastAvg, forecastStd,
+                        brokersSortedByForecast);
+            }
+
+            long inFlightTransfers = recentlyUnloadedBundles.values().stream()
+                    .filter(unloadedAt -> now - unloadedAt < conf.getLoadBalanceSheddingDelayInSeconds() * 1000)
+                    .count();
+            long maxTransfers = conf.getLoadBalancerPredictiveSheddingMaxConcurrentTransfers() - inFlightTransfers;
+            final double targetStd = conf.getLoadBalancerBrokerLoadTargetStd();
+            final double overloadThreshold = conf.getLoadBalancerBrokerOverloadedThresholdPercentage() / 100.0;
+            boolean transfer = conf.isLoadBalancerTransferEnabled();
+            int numOfBrokersWithFewBundles = 0;
+            int numOfBrokersShed = 0;
+            int minBrokerIndex = 0;
+            int maxBrokerIndex = brokersSortedByForecast.size() - 1;
+            while (minBrokerIndex < maxBrokerIndex
+                    && numOfBrokersShed < conf.getLoadBalancerMaxNumberOfBrokerSheddingPerCycle()) {
+                BrokerForecast max = brokersSortedByForecast.get(maxBrokerIndex);
+                BrokerForecast min = brokersSortedByForecast.get(minBrokerIndex);
+                if (max.forecastLoad <= overloadThreshold && forecastStd <= targetStd) {
+                    if (debugMode) {
+                        log.info(CANNOT_CONTINUE_UNLOAD_MSG
+                                        + " The forecast load meets the target, std:{} <= targetStd:{},"
+                                        + " maxBroker:{} is not overloaded.",
+                                forecastStd, targetStd, max);
+                    }
+                    break;
+                }
+                if (decisionCache.size() >= maxTransfers) {
+                    if (debugMode) {
+                        log.info(CANNOT_CONTINUE_UNLOAD_MSG
+                                        + " Reached the max number of concurrent transfers:{}, in flight:{}.",
+                                conf.getLoadBalancerPredictiveSheddingMaxConcurrentTransfers(), inFlightTransfers);
+                    }
+                    break;
+                }
+                maxBrokerIndex--;
+                if (max.loadPerThroughput == 0) {
+                    numOfBrokersWithFewBundles++;
+                    continue;
+                }
+                double offloadThroughput = (max.forecastLoad - min.forecastLoad) / 2 / max.loadPerThroughput;
+
+                List<TopBundlesLoadData.BundleLoadData> maxBrokerTopBundles =
+                        topBundles.getOrDefault(max.broker, List.of());
+                List<Candidate> candidates = new ArrayList<>();
+                for (var bundleLoadData : maxBrokerTopBundles) {
+                    String bundle = bundleLoadData.bundleName();
+                    if (isUnloadable(conf, bundle, max.broker, recentlyUnloadedBundles)) {
+                        var stats = bundleLoadData.stats();
+                        candidates.add(new Candidate(bundle,
+                                bundleHistories.get(bundle).forecast(horizonMillis(conf)),
+                                stats.producerCount + stats.consumerCount));
+                    }
+                }
+                candidates.sort(Comparator.comparingDouble(Candidate::forecastThroughputPerClient).reversed()
+                        .thenComparing(Candidate::bundle));
+
+                double trafficMarkedToOffload = 0;
+                int remainingTopBundles = maxBrokerTopBundles.size();
+                for (Candidate candidate : candidates) {
+                    if (remainingTopBundles <= 1 || decisionCache.size() >= maxTransfers) {
+                        break;
+                    }
+                    if (candidate.forecastThroughput() == 0
+                            || trafficMarkedToOffload + candidate.forecastThroughput() > offloadThroughput) {
+                        continue;
+                    }
+                    var destBroker = transfer && !hasPolicies(candidate.bundle())
+                            ? Optional.of(min.broker) : Optional.<String>empty();
+                    var decision = new UnloadDecision();
+                    decision.setUnload(new Unload(max.broker, candidate.bundle(), destBroker));
+                    decision.succeed(Overloaded);
+                    decisionCache.add(decision);
+                    trafficMarkedToOffload += candidate.forecastThroughput();
+                    remainingTopBundles--;
+                    if (debugMode) {
+                        log.info(String.format("Decided to unload bundle:%s from broker:%s, forecast throughput:%.2f"
+                                        + " KByte/s, clients:%d. The traffic marked to unload:%.2f KByte/s."
+                                        + " Target:%.2f KByte/s.",
+                                candidate.bundle(), max.broker, candidate.forecastThroughput() / KB,
+                                candidate.clients(), trafficMarkedToOffload / KB, offloadThroughput / KB));
+                    }
+                }
+
+                if (trafficMarkedToOffload > 0) {
+                    double offload = trafficMarkedToOffload * max.loadPerThroughput;
+                    forecastSqSum -= max.forecastLoad * max.forecastLoad + min.forecastLoad * min.forecastLoad;
+                    max.forecastLoad = Math.max(0, max.forecastLoad - offload);
+                    min.forecastLoad += offload;
+                    forecastSqSum += max.forecastLoad * max.forecastLoad + min.forecastLoad * min.forecastLoad;
+                    forecastStd = Math.sqrt(Math.max(0, forecastSqSum / totalBrokers - forecastAvg * forecastAvg));
+                    numOfBrokersShed++;
+                    minBrokerIndex++;
+                } else {
+                    numOfBrokersWithFewBundles++;
+                    log.warn(String.format(CANNOT_UNLOAD_BROKER_MSG
+                            + " There is no bundle that can be unloaded in top bundles load data.", max.broker));
+                }
+            }
+
+            if (debugMode) {
+                log.info("decisionCache:{}", decisionCache);
+            }
+            if (decisionCache.isEmpty()) {
+                counter.update(Skip, numOfBrokersWithFewBundles > 0 ? NoBundles : HitCount);
+            }
+        } catch (Throwable e) {
+            log.error("Failed to process unloading. ", e);
+            this.counter.update(Failure, Unknown);
+        }
+        return decisionCache;
+    }
+
+    /**
+     * Records the throughput of the top bundles, and forecasts the load of the brokers.
+     *
+     * @return the top bundles of each broker
+     */
+    private Map<String, List<TopBundlesLoadData.BundleLoadData>> updateForecasts(
+            LoadManagerContext context, Map<String, BrokerForecast> forecasts) {
+        var conf = context.brokerConfiguration();
+        long horizonMillis = horizonMillis(conf);
+        Map<String, List<TopBundlesLoadData.BundleLoadData>> topBundles = new HashMap<>();
+        Set<String> reportedBundles = new HashSet<>();
+        // The samples are taken at each unloading cycle, whether the brokers reported a new load or not, as the
+        // brokers only report when the load changes significantly.
+        long timestamp = cycle * TimeUnit.MINUTES.toMillis(conf.getLoadBalancerSheddingIntervalMinutes());
+        for (BrokerForecast forecast : forecasts.values()) {
+            var bundlesLoadData = context.topBundleLoadDataStore().get(forecast.broker)
+                    .map(TopBundlesLoadData::getTopBundlesLoadData).orElse(List.of());
+            double throughputChange = 0;
+            for (var bundleLoadData : bundlesLoadData) {
+                String bundle = bundleLoadData.bundleName();
+                double throughput = bundleLoadData.stats().msgThroughputIn + bundleLoadData.stats().msgThroughputOut;
+                BundleHistory history = bundleHistories.computeIfAbsent(bundle, __ -> new BundleHistory());
+                history.add(timestamp, throughput, conf.getLoadBalancerPredictiveSheddingHistorySize());
+                throughputChange += history.forecast(horizonMillis) - throughput;
+                reportedBundles.add(bundle);
+            }
+            forecast.forecastLoad = Math.max(0, forecast.load + throughputChange * forecast.loadPerThroughput);
+            topBundles.put(forecast.broker, bundlesLoadData);
+        }
+        // Forget the bundles which are not hot anymore, or were unloaded, split or deleted
+        bundleHistories.keySet().retainAll(reportedBundles);
+        return topBundles;
+    }
+
+    private static long horizonMillis(ServiceConfiguration conf) {
+        return TimeUnit.SECONDS.toMillis(conf.getLoadBalancerPredictiveSheddingHorizonSeconds());
+    }
+
+    private boolean isUnloadable(ServiceConfiguration conf, String bundle, String broker,
+                                 Map<String, Long> recentlyUnloadedBundles) {
+        if (channel != null && !channel.isOwner(bundle, broker)) {
+            return false;
+        }
+        if (conf.getLoadBalancerSheddingExcludedNamespaces().contains(NamespaceBundle.getBundleNamespace(bundle))) {
+            return false;
+        }
+        if (recentlyUnloadedBundles.containsKey(bundle)) {
+            return false;
+        }
+        return !hasPolicies(bundle) || conf.isLoadBalancerSheddingBundlesWithPoliciesEnabled();
+    }
+
+    private boolean hasPolicies(String bundle) {
+        if (isolationPoliciesHelper != null && isolationPoliciesHelper.hasIsolationPolicy(
+                NamespaceName.get(NamespaceBundle.getBundleNamespace(bundle)))) {
+            return true;
+        }
+        return antiAffinityGroupPolicyHelper != null
+                && antiAffinityGroupPolicyHelper.hasAntiAffinityGroupPolicy(bundle);
+    }
+}
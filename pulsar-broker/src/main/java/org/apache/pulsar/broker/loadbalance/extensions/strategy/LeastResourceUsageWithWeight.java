@@ -18,9 +18,11 @@
  */
 package org.apache.pulsar.broker.loadbalance.extensions.strategy;
 
+import com.google.common.annotations.VisibleForTesting;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 import javax.annotation.concurrent.ThreadSafe;
@@ -41,10 +43,18 @@ public class LeastResourceUsageWithWeight implements BrokerSelectionStrategy {
     // Maintain this list to reduce object creation.
     private final ThreadLocal<ArrayList<String>> bestBrokers;
     private final ThreadLocal<HashSet<String>> noLoadDataBrokers;
+    // Only set when the selections must be reproducible, e.g. in the load balancer simulations.
+    private final Random random;
 
     public LeastResourceUsageWithWeight() {
+        this(null);
+    }
+
+    @VisibleForTesting
+    public LeastResourceUsageWithWeight(Random random) {
         this.bestBrokers = ThreadLocal.withInitial(ArrayList::new);
         this.noLoadDataBrokers = ThreadLocal.withInitial(HashSet::new);
+        this.random = random;
     }
 
     // A broker's max resource usage with weight using its historical load and short-term load data with weight.
@@ -147,6 +157,7 @@ public class LeastResourceUsageWithWeight implements BrokerSelectionStrategy {
                     candidates,
                     noLoadDataBrokers);
         }
-        return Optional.of(bestBrokers.get(ThreadLocalRandom.current().nextInt(bestBrokers.size())));
+        Random rand = random != null ? random : ThreadLocalRandom.current();
+        return Optional.of(bestBrokers.get(rand.nextInt(bestBrokers.size())));
     }
 }
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.namespace;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.net.URI;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Cache of the owners of the namespace bundles, used to answer the topic lookups without reading the ownership
+ * info from the metadata store. The bundles are identified by their names, as returned by
+ * {@link org.apache.pulsar.common.naming.NamespaceBundle#toString()}.
+ *
+ * <p>An owner which was read from the metadata store is only cached if no invalidation happened meanwhile, so that
+ * an ownership change can't be overridden by a concurrent lookup which read the previous owner.
+ *
+ * <p>The bundles are also indexed by the id of their owner broker, as used in the load manager, so that the bundles of
+ * a broker can be invalidated without dropping the other entries.
+ */
+public class LookupResultCache {
+
+    // Upper bound of the time an owner is served, in case the invalidation is missed
+    private static final long EXPIRY_SECONDS = 60;
+
+    private final Cache<String, NamespaceEphemeralData> owners;
+    // The cached bundles of each broker. It may hold bundles which were already dropped or are now owned by another
+    // broker, which are skipped when the bundles of the broker are invalidated.
+    private final Map<String, Set<String>> bundlesByBroker = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    public LookupResultCache(int maxEntries) {
+        this.owners = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(EXPIRY_SECONDS, TimeUnit.SECONDS)
+                // Unindex the dropped bundles right away rather than from the common pool
+                .executor(Runnable::run)
+                .<String, NamespaceEphemeralData>removalListener((bundle, owner, cause) -> unindex(bundle, owner))
+                .build();
+    }
+
+    /**
+     * @return the cached owner of the bundle, or null if it's not cached
+     */
+    public NamespaceEphemeralData getOwner(String bundle) {
+        return owners.getIfPresent(bundle);
+    }
+
+    /**
+     * @return the generation to pass to {@link #putOwner} once the owner has been read
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Cache the owner of the bundle, unless it is disabled or an invalidation happened since the given generation.
+     */
+    public void putOwner(String bundle, NamespaceEphemeralData owner, long readGeneration) {
+        if (owner.isDisabled() || generation.get() != readGeneration) {
+            return;
+        }
+        owners.put(bundle, owner);
+        // Index after the put, which unindexes the replaced owner
+        String brokerId = brokerId(owner);
+        if (brokerId != null) {
+            bundlesByBroker.computeIfAbsent(brokerId, __ -> ConcurrentHashMap.newKeySet()).add(bundle);
+        }
+        if (generation.get() != readGeneration) {
+            // Raced with an invalidation which may have run before the put
+            owners.invalidate(bundle);
+        }
+    }
+
+    public void invalidate(String bundle) {
+        generation.incrementAndGet();
+        owners.invalidate(bundle);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        owners.invalidateAll();
+        bundlesByBroker.clear();
+    }
+
+    /**
+     * @return whether bundles owned by the broker are cached
+     */
+    public boolean hasBroker(String brokerId) {
+        return bundlesByBroker.containsKey(brokerId);
+    }
+
+    /**
+     * Invalidate the bundles owned by the broker.
+     */
+    public void invalidateBroker(String brokerId) {
+        invalidateBrokerIf(brokerId, __ -> true);
+    }
+
+    /**
+     * Invalidate the bundles owned by the broker, whose cached owner data matches the predicate.
+     */
+    public void invalidateBrokerIf(String brokerId, Predicate<NamespaceEphemeralData> stale) {
+        Set<String> bundles = bundlesByBroker.get(brokerId);
+        if (bundles == null) {
+            return;
+        }
+        generation.incrementAndGet();
+        for (String bundle : bundles) {
+            owners.asMap().computeIfPresent(bundle,
+                    (__, owner) -> brokerId.equals(brokerId(owner)) && stale.test(owner) ? null : owner);
+        }
+    }
+
+    private void unindex(String bundle, NamespaceEphemeralData owner) {
+        if (bundle == null || owner == null) {
+            return;
+        }
+        String brokerId = brokerId(owner);
+        if (brokerId == null) {
+            return;
+        }
+        NamespaceEphemeralData currentOwner = owners.getIfPresent(bundle);
+        if (currentOwner != null && brokerId.equals(brokerId(currentOwner))) {
+            // Owned by the same broker again
+            return;
+        }
+        bundlesByBroker.computeIfPresent(brokerId, (__, bundles) -> {
+            bundles.remove(bundle);
+            return bundles.isEmpty() ? null : bundles;
+        });
+    }
+
+    /**
+     * @return the id of the broker in the load manager, made of the advertised address and the web service port
+     */
+    static String brokerId(NamespaceEphemeralData owner) {
+        String httpUrl = owner.getHttpUrl() != null ? owner.getHttpUrl() : owner.getHttpUrlTls();
+        if (httpUrl == null) {
+            return null;
+        }
+        try {
+            URI uri = URI.create(httpUrl);
+            return uri.getHost() + ":" + uri.getPort();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -110,6 +110,8 @@ import org.apache.pulsar.common.topics.TopicList;
 import org.apache.pulsar.common.util.FutureUtil;
 import org.apache.pulsar.metadata.api.MetadataCache;
 import org.apache.pulsar.metadata.api.MetadataStoreException;
+import org.apache.pulsar.metadata.api.Notification;
+import org.apache.pulsar.metadata.api.NotificationType;
 import org.apache.pulsar.opentelemetry.annotations.PulsarDeprecatedMetric;
 import org.apache.pulsar.policies.data.loadbalancer.AdvertisedListener;
 import org.apache.pulsar.policies.data.loadbalancer.LocalBrokerData;
@@ -158,6 +160,9 @@ public class NamespaceService implements AutoCloseable {
 
     private final RedirectManager redirectManager;
 
+    // Owners of the bundles, used to answer the lookups without async hops. Null if disabled.
+    private final LookupResultCache lookupResultCache;
+
     public static final String LOOKUP_REQUEST_DURATION_METRIC_NAME = "pulsar.broker.request.topic.lookup.duration";
 
     private static final AttributeKey<String> PULSAR_LOOKUP_RESPONSE_ATTRIBUTE =
@@ -207,6 +212,12 @@ public class NamespaceService implements AutoCloseable {
         this.bundleSplitListeners = new CopyOnWriteArrayList<>();
         this.localBrokerDataCache = pulsar.getLocalMetadataStore().getMetadataCache(LocalBrokerData.class);
         this.redirectManager = new RedirectManager(pulsar);
+        if (config.getLookupResultCacheMaxEntries() > 0) {
+            this.lookupResultCache = new LookupResultCache(config.getLookupResultCacheMaxEntries());
+            pulsar.getLocalMetadataStore().registerListener(this::handleMetadataStoreNotification);
+        } else {
+            this.lookupResultCache = null;
+        }
 
         this.lookupLatencyHistogram = pulsar.getOpenTelemetry().getMeter()
                 .histogramBuilder(LOOKUP_REQUEST_DURATION_METRIC_NAME)
@@ -224,23 +235,37 @@ public class NamespaceService implements AutoCloseable {
     public CompletableFuture<Optional<LookupResult>> getBrokerServiceUrlAsync(TopicName topic, LookupOptions options) {
         long startTime = System.nanoTime();
 
-        CompletableFuture<Optional<LookupResult>> future = getBundleAsync(topic)
-                .thenCompose(bundle -> {
-                    // Do redirection if the cluster is in rollback or deploying.
-                    return findRedirectLookupResultAsync(bundle).thenCompose(optResult -> {
-                        if (optResult.isPresent()) {
-                            LOG.info("[{}] Redirect lookup request to {} for topic {}",
-                                    pulsar.getBrokerId(), optResult.get(), topic);
-                            return CompletableFuture.completedFuture(optResult);
-                        }
-                        if (ExtensibleLoadManagerImpl.isLoadManagerExtensionEnabled(pulsar)) {
-                            return loadManager.get().findBrokerServiceUrl(Optional.of(topic), bundle, options);
-                        } else {
-                            // TODO: Add unit tests cover it.
-                            return findBrokerServiceUrl(bundle, options);
-                        }
+        CompletableFuture<Optional<LookupResult>> future;
+        LookupResult cachedLookupResult = getCachedLookupResult(topic, options);
+        if (cachedLookupResult != null) {
+            // The redirection takes precedence over the cached owner
+            future = findRedirectLookupResultAsync(topic.getNamespaceObject()).thenApply(optResult -> {
+                if (optResult.isPresent()) {
+                    LOG.info("[{}] Redirect lookup request to {} for topic {}",
+                            pulsar.getBrokerId(), optResult.get(), topic);
+                    return optResult;
+                }
+                return Optional.of(cachedLookupResult);
+            });
+        } else {
+            future = getBundleAsync(topic)
+                    .thenCompose(bundle -> {
+                        // Do redirection if the cluster is in rollback or deploying.
+                        return findRedirectLookupResultAsync(bundle).thenCompose(optResult -> {
+                            if (optResult.isPresent()) {
+                                LOG.info("[{}] Redirect lookup request to {} for topic {}",
+                                        pulsar.getBrokerId(), optResult.get(), topic);
+                                return CompletableFuture.completedFuture(optResult);
+                            }
+                            if (ExtensibleLoadManagerImpl.isLoadManagerExtensionEnabled(pulsar)) {
+                                return loadManager.get().findBrokerServiceUrl(Optional.of(topic), bundle, options);
+                            } else {
+                                // TODO: Add unit tests cover it.
+                                return findBrokerServiceUrl(bundle, options);
+                            }
+                        });
                     });
-                });
+        }
 
         future.whenComplete((lookupResult, throwable) -> {
             var latencyNs = System.nanoTime() - startTime;
@@ -269,6 +294,84 @@ public class NamespaceService implements AutoCloseable {
         return future;
     }
 
+    /**
+     * Build the lookup result of the topic from the cached owner of its bundle, without any async hop.
+     *
+     * @return the lookup result, or null if it can't be served from the cache
+     */
+    private LookupResult getCachedLookupResult(TopicName topic, LookupOptions options) {
+        if (lookupResultCache == null || ExtensibleLoadManagerImpl.isLoadManagerExtensionEnabled(pulsar)) {
+            return null;
+        }
+        Optional<NamespaceBundle> bundle = getBundleIfPresent(topic);
+        if (bundle.isEmpty()) {
+            return null;
+        }
+        NamespaceEphemeralData owner = lookupResultCache.getOwner(bundle.get().toString());
+        if (owner == null) {
+            return null;
+        }
+        if (ownershipCache.getOwnedBundleAsync(bundle.get()).isPresent()
+                && !ownershipCache.isNamespaceBundleOwned(bundle.get())) {
+            // This broker is acquiring or unloading the bundle
+            return null;
+        }
+        if (options.hasAdvertisedListenerName()) {
+            AdvertisedListener listener = owner.getAdvertisedListeners().get(options.getAdvertisedListenerName());
+            if (listener == null) {
+                // Let the regular lookup report the error
+                return null;
+            }
+            URI url = listener.getBrokerServiceUrl();
+            URI urlTls = listener.getBrokerServiceUrlTls();
+            return new LookupResult(owner, url == null ? null : url.toString(),
+                    urlTls == null ? null : urlTls.toString());
+        }
+        return new LookupResult(owner);
+    }
+
+    private void handleMetadataStoreNotification(Notification notification) {
+        String path = notification.getPath();
+        String bundleName = ServiceUnitUtils.bundleNameFromPath(path);
+        if (bundleName != null) {
+            if (notification.getType() != NotificationType.ChildrenChanged) {
+                lookupResultCache.invalidate(bundleName);
+            }
+        } else if (path.startsWith(LoadManager.LOADBALANCE_BROKERS_ROOT + "/")) {
+            String brokerId = path.substring(LoadManager.LOADBALANCE_BROKERS_ROOT.length() + 1);
+            if (brokerId.contains("/") || !lookupResultCache.hasBroker(brokerId)) {
+                return;
+            }
+            switch (notification.getType()) {
+                case Created, Deleted ->
+                    // The broker went away, or is a new instance of the broker
+                    lookupResultCache.invalidateBroker(brokerId);
+                case Modified ->
+                    // The broker rewrites its load report continuously, only the changes of its urls matter
+                    localBrokerDataCache.get(path).whenComplete((brokerData, ex) -> {
+                        if (ex != null || brokerData.isEmpty()) {
+                            lookupResultCache.invalidateBroker(brokerId);
+                        } else {
+                            lookupResultCache.invalidateBrokerIf(brokerId,
+                                    owner -> !isSameServiceUrls(owner, brokerData.get()));
+                        }
+                    });
+                default -> {
+                }
+            }
+        }
+    }
+
+    private static boolean isSameServiceUrls(NamespaceEphemeralData owner, LocalBrokerData brokerData) {
+        Map<String, AdvertisedListener> advertisedListeners = brokerData.getAdvertisedListeners() != null
+                ? brokerData.getAdvertisedListeners() : Collections.emptyMap();
+        return Objects.equals(owner.getNativeUrl(), brokerData.getPulsarServiceUrl())
+                && Objects.equals(owner.getNativeUrlTls(), brokerData.getPulsarServiceUrlTls())
+                && Objects.equals(owner.getHttpUrl(), brokerData.getWebServiceUrl())
+                && Objects.equals(owner.getHttpUrlTls(), brokerData.getWebServiceUrlTls())
+                && owner.getAdvertisedListeners().equals(advertisedListeners);
+    }
+
     private CompletableFuture<Optional<LookupResult>> findRedirectLookupResultAsync(ServiceUnitId bundle) {
         if (isSLAOrHeartbeatNamespace(bundle.getNamespaceObject().toString())) {
             return CompletableFuture.completedFuture(Optional.empty());
@@ -485,6 +588,7 @@ public class NamespaceService implements AutoCloseable {
 
         return targetMap.computeIfAbsent(bundle, (k) -> {
             CompletableFuture<Optional<LookupResult>> future = new CompletableFuture<>();
+            long lookupResultCacheGeneration = lookupResultCache != null ? lookupResultCache.getGeneration() : 0;
 
             // First check if we or someone else already owns the bundle
             ownershipCache.getOwnerAsync(bundle).thenAccept(nsData -> {
@@ -505,6 +609,9 @@ public class NamespaceService implements AutoCloseable {
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("Namespace bundle {} already owned by {} ", bundle, nsData);
                     }
+                    if (lookupResultCache != null) {
+                        lookupResultCache.putOwner(bundle.toString(), nsData.get(), lookupResultCacheGeneration);
+                    }
                     // find the target
                     if (options.hasAdvertisedListenerName()) {
                         AdvertisedListener listener =
@@ -1300,12 +1407,14 @@ public class NamespaceService implements AutoCloseable {
     }
 
     public void onNamespaceBundleOwned(NamespaceBundle bundle) {
+        invalidateLookupResultCache(bundle);
         for (NamespaceBundleOwnershipListener bundleOwnedListener : bundleOwnershipListeners) {
             notifyNamespaceBundleOwnershipListener(bundle, bundleOwnedListener);
         }
     }
 
     public void onNamespaceBundleUnload(NamespaceBundle bundle) {
+        invalidateLookupResultCache(bundle);
         for (NamespaceBundleOwnershipListener bundleOwnedListener : bundleOwnershipListeners) {
             try {
                 if (bundleOwnedListener.test(bundle)) {
@@ -1317,7 +1426,14 @@ public class NamespaceService implements AutoCloseable {
         }
     }
 
+    private void invalidateLookupResultCache(NamespaceBundle bundle) {
+        if (lookupResultCache != null) {
+            lookupResultCache.invalidate(bundle.toString());
+        }
+    }
+
     public void onNamespaceBundleSplit(NamespaceBundle bundle) {
+        invalidateLookupResultCache(bundle);
         for (NamespaceBundleSplitListener bundleSplitListener : bundleSplitListeners) {
             try {
                 if (bundleSplitListener.test(bundle)) {
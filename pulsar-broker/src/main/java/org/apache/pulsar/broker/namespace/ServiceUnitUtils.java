@@ -41,6 +41,13 @@ public final class ServiceUnitUtils {
         return OWNER_INFO_ROOT + "/" + suname.toString();
     }
 
+    /**
+     * @return the name of the bundle whose ownership info is stored at the path, or null if it's not such a path
+     */
+    public static String bundleNameFromPath(String path) {
+        return path.startsWith(OWNER_INFO_ROOT + "/") ? path.substring(OWNER_INFO_ROOT.length() + 1) : null;
+    }
+
     public static NamespaceBundle suBundleFromPath(String path, NamespaceBundleFactory factory) {
         String[] parts = path.split("/");
         checkArgument(parts.length > 2);
@@ -219,7 +219,7 @@ public class BrokerService implements Closeable {
     private final PulsarService pulsar;
     private final ManagedLedgerStorage managedLedgerStorage;
 
-    private final Map<String, CompletableFuture<Optional<Topic>>> topics = new ConcurrentHashMap<>();
+    private final TopicRegistry topics = new TopicRegistry(this::getTopicBundleHashCode);
 
     private final Map<String, PulsarClient> replicationClients = new ConcurrentHashMap<>();
     private final Map<String, PulsarAdmin> clusterAdmins = new ConcurrentHashMap<>();
@@ -2411,7 +2411,7 @@ public class BrokerService implements Closeable {
                                                          boolean disconnectClients,
                                                          boolean closeWithoutWaitingClientDisconnect) {
         List<CompletableFuture<Void>> closeFutures = new ArrayList<>();
-        topics.forEach((name, topicFuture) -> {
+        topics.forEachInBundle(serviceUnit, (name, topicFuture) -> {
             TopicName topicName = TopicName.get(name);
             if (serviceUnit.includes(topicName)) {
                 if (ExtensibleLoadManagerImpl.isLoadManagerExtensionEnabled(pulsar)
@@ -2471,15 +2471,26 @@ public class BrokerService implements Closeable {
     }
 
     public void cleanUnloadedTopicFromCache(NamespaceBundle serviceUnit) {
-        for (String topic : topics.keySet()) {
-            TopicName topicName = TopicName.get(topic);
-            if (serviceUnit.includes(topicName) && getTopicReference(topic).isPresent()) {
-                log.info("[{}][{}] Clean unloaded topic from cache.", serviceUnit.toString(), topic);
-                pulsar.getBrokerService().removeTopicFromCache(topicName.toString(), serviceUnit, null);
+        List<String> unloadedTopics = new ArrayList<>();
+        topics.forEachInBundle(serviceUnit, (topic, __) -> {
+            if (getTopicReference(topic).isPresent()) {
+                unloadedTopics.add(topic);
             }
+        });
+        for (String topic : unloadedTopics) {
+            log.info("[{}][{}] Clean unloaded topic from cache.", serviceUnit.toString(), topic);
+            pulsar.getBrokerService().removeTopicFromCache(topic, serviceUnit, null);
         }
     }
 
+    public Map<String, CompletableFuture<Optional<Topic>>> getTopics() {
+        return topics;
+    }
+
+    private long getTopicBundleHashCode(String topic) {
+        return pulsar.getNamespaceService().getNamespaceBundleFactory().getLongHashCode(topic);
+    }
+
     public AuthorizationService getAuthorizationService() {
         return authorizationService;
     }
@@ -2589,22 +2600,20 @@ public class BrokerService implements Closeable {
                     }
                     LocalPolicies localPolicies = optLocalPolicies.get();
                     log.info("[{}] updating with {}", namespace, localPolicies);
-                    topics.forEach((name, topicFuture) -> {
-                        if (namespace.includes(TopicName.get(name))) {
-                            // If the topic is already created, immediately apply the updated policies, otherwise
-                            // once the topic is created it'll apply the policies update
-                            topicFuture.thenAccept(topic -> {
-                                if (log.isDebugEnabled()) {
-                                    log.debug("Notifying topic that local policies have changed: {}", name);
+                    topics.forEachInNamespace(namespace, (name, topicFuture) -> {
+                        // If the topic is already created, immediately apply the updated policies, otherwise
+                        // once the topic is created it'll apply the policies update
+                        topicFuture.thenAccept(topic -> {
+                            if (log.isDebugEnabled()) {
+                                log.debug("Notifying topic that local policies have changed: {}", name);
+                            }
+                            topic.ifPresent(t -> {
+                                if (t instanceof PersistentTopic) {
+                                    PersistentTopic topic1 = (PersistentTopic) t;
+                                    topic1.onLocalPoliciesUpdate();
                                 }
-                                topic.ifPresent(t -> {
-                                    if (t instanceof PersistentTopic) {
-                                        PersistentTopic topic1 = (PersistentTopic) t;
-                                        topic1.onLocalPoliciesUpdate();
-                                    }
-                                });
                             });
-                        }
+                        });
                     });
                 }, pulsar.getExecutor());
     }
@@ -2619,18 +2628,16 @@ public class BrokerService implements Closeable {
                     Policies policies = optPolicies.get();
                     log.info("[{}] updating with {}", namespace, policies);
 
-                    topics.forEach((name, topicFuture) -> {
-                        if (namespace.includes(TopicName.get(name))) {
-                            // If the topic is already created, immediately apply the updated policies, otherwise
-                            // once the topic is created it'll apply the policies update
-                            topicFuture.thenAccept(topic -> {
-                                if (log.isDebugEnabled()) {
-                                    log.debug("Notifying topic that policies have changed: {}", name);
-                                }
+                    topics.forEachInNamespace(namespace, (name, topicFuture) -> {
+                        // If the topic is already created, immediately apply the updated policies, otherwise
+                        // once the topic is created it'll apply the policies update
+                        topicFuture.thenAccept(topic -> {
+                            if (log.isDebugEnabled()) {
+                                log.debug("Notifying topic that policies have changed: {}", name);
+                            }
 
-                                topic.ifPresent(t -> t.onPoliciesUpdate(policies));
-                            });
-                        }
+                            topic.ifPresent(t -> t.onPoliciesUpdate(policies));
+                        });
                     });
 
                     // sometimes, some brokers don't receive policies-update watch and miss to remove
@@ -485,6 +485,12 @@ public class Producer {
             return supportsReplDedupByLidAndEid;
         }
 
+        @Override
+        public boolean isHeadroomAvailableForBrokerEntryMetadata() {
+            // the published buffer is the frame received by the connection, see PulsarDecoder
+            return true;
+        }
+
         @Override
         public void setOriginalHighestSequenceId(long originalHighestSequenceId) {
             this.originalHighestSequenceId = originalHighestSequenceId;
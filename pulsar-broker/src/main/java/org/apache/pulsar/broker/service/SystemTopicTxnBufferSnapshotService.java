@@ -48,6 +48,9 @@ public class SystemTopicTxnBufferSnapshotService<T> {
     private final ConcurrentHashMap<NamespaceName, ReferenceCountedWriter<T>> refCountedWriterMap;
     @Getter
     private final TableView<T> tableView;
+    // Whether the writers batch the snapshots written concurrently
+    @Getter
+    private final boolean batchedWriteEnabled;
 
     // The class ReferenceCountedWriter will maintain the reference count,
     // when the reference count decrement to 0, it will be removed from writerFutureMap, the writer will be closed.
@@ -109,6 +112,7 @@ public class SystemTopicTxnBufferSnapshotService<T> {
         this.schemaType = schemaType;
         this.clients = new ConcurrentHashMap<>();
         this.refCountedWriterMap = new ConcurrentHashMap<>();
+        this.batchedWriteEnabled = pulsar.getConfiguration().isTransactionBufferSnapshotBatchedWriteEnabled();
         this.tableView = new TableView<>(this::createReader,
                 client.getConfiguration().getOperationTimeoutMs(), pulsar.getExecutor());
     }
@@ -130,6 +130,14 @@ public interface Topic {
         default boolean supportsReplDedupByLidAndEid() {
             return false;
         }
+
+        /**
+         * Whether the bytes in front of the reader index of the published buffer are consumed and can be
+         * overwritten, so that the broker entry metadata can be written in place without allocating a new buffer.
+         */
+        default boolean isHeadroomAvailableForBrokerEntryMetadata() {
+            return false;
+        }
     }
 
     CompletableFuture<Void> initialize();
@@ -0,0 +1,455 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import org.apache.pulsar.common.naming.NamespaceBundle;
+import org.apache.pulsar.common.naming.NamespaceName;
+import org.apache.pulsar.common.naming.TopicName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The registry of the topics loaded (or being loaded) by a broker, keyed by the full topic name.
+ *
+ * <p>Besides the primary map, the registry keeps a secondary index per namespace, where the topics are sorted by the
+ * hash code used to assign them to a namespace bundle. This allows namespace and bundle wide operations (unloading,
+ * policies updates) to only visit the topics of the given namespace or bundle instead of scanning and parsing the
+ * names of all the topics served by the broker.
+ *
+ * <p>The index is updated while holding the lock of the primary map entry, so it is always consistent with the
+ * primary map for a given topic. Reads are lock-free. The key, value and entry views are backed by the registry, the
+ * removals through them also update the index.
+ */
+public class TopicRegistry implements ConcurrentMap<String, CompletableFuture<Optional<Topic>>> {
+
+    private static final Logger log = LoggerFactory.getLogger(TopicRegistry.class);
+
+    private static final Comparator<IndexKey> INDEX_KEY_COMPARATOR = Comparator
+            .comparingLong(IndexKey::bundleHash)
+            .thenComparing(IndexKey::topicName, Comparator.nullsFirst(Comparator.comparing(TopicName::toString)));
+
+    private final ConcurrentHashMap<String, CompletableFuture<Optional<Topic>>> topics = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<NamespaceName, NavigableMap<IndexKey, CompletableFuture<Optional<Topic>>>>
+            namespaceIndex = new ConcurrentHashMap<>();
+    private final ToLongFunction<String> topicHashFunction;
+
+    /**
+     * @param topicHashFunction the function used to compute the hash code that assigns a topic to a namespace bundle
+     */
+    public TopicRegistry(ToLongFunction<String> topicHashFunction) {
+        this.topicHashFunction = topicHashFunction;
+    }
+
+    /**
+     * Visit the topics of the given namespace.
+     */
+    public void forEachInNamespace(NamespaceName namespace,
+                                   BiConsumer<String, CompletableFuture<Optional<Topic>>> action) {
+        NavigableMap<IndexKey, CompletableFuture<Optional<Topic>>> index = namespaceIndex.get(namespace);
+        if (index != null) {
+            index.forEach((key, topicFuture) -> action.accept(key.topicName().toString(), topicFuture));
+        }
+    }
+
+    /**
+     * Visit the topics that are assigned to the given namespace bundle.
+     */
+    public void forEachInBundle(NamespaceBundle bundle,
+                                BiConsumer<String, CompletableFuture<Optional<Topic>>> action) {
+        NavigableMap<IndexKey, CompletableFuture<Optional<Topic>>> index =
+                namespaceIndex.get(bundle.getNamespaceObject());
+        if (index == null) {
+            return;
+        }
+        Range<Long> keyRange = bundle.getKeyRange();
+        IndexKey from = new IndexKey(keyRange.lowerEndpoint(), null);
+        IndexKey to = keyRange.upperBoundType() == BoundType.CLOSED
+                ? new IndexKey(keyRange.upperEndpoint() + 1, null)
+                : new IndexKey(keyRange.upperEndpoint(), null);
+        index.subMap(from, true, to, false)
+                .forEach((key, topicFuture) -> action.accept(key.topicName().toString(), topicFuture));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Topic>> get(Object topic) {
+        return topics.get(topic);
+    }
+
+    @Override
+    public boolean containsKey(Object topic) {
+        return topics.containsKey(topic);
+    }
+
+    @Override
+    public boolean containsValue(Object topicFuture) {
+        return topics.containsValue(topicFuture);
+    }
+
+    @Override
+    public int size() {
+        return topics.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return topics.isEmpty();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super CompletableFuture<Optional<Topic>>> action) {
+        topics.forEach(action);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new ViewIterator<>(Entry::getKey);
+            }
+
+            @Override
+            public int size() {
+                return topics.size();
+            }
+
+            @Override
+            public boolean contains(Object topic) {
+                return topics.containsKey(topic);
+            }
+
+            @Override
+            public boolean remove(Object topic) {
+                return TopicRegistry.this.remove(topic) != null;
+            }
+        };
+    }
+
+    @Override
+    public Collection<CompletableFuture<Optional<Topic>>> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<CompletableFuture<Optional<Topic>>> iterator() {
+                return new ViewIterator<>(Entry::getValue);
+            }
+
+            @Override
+            public int size() {
+                return topics.size();
+            }
+
+            @Override
+            public boolean contains(Object topicFuture) {
+                return topics.containsValue(topicFuture);
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<String, CompletableFuture<Optional<Topic>>>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, CompletableFuture<Optional<Topic>>>> iterator() {
+                return new ViewIterator<>(RegistryEntry::new);
+            }
+
+            @Override
+            public int size() {
+                return topics.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Entry<?, ?> entry && entry.getValue() != null
+                        && entry.getValue().equals(topics.get(entry.getKey()));
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                return o instanceof Entry<?, ?> entry && TopicRegistry.this.remove(entry.getKey(), entry.getValue());
+            }
+        };
+    }
+
+    @Override
+    public CompletableFuture<Optional<Topic>> computeIfAbsent(
+            String topic,
+            Function<? super String, ? extends CompletableFuture<Optional<Topic>>> mappingFunction) {
+        return topics.computeIfAbsent(topic, key -> {
+            CompletableFuture<Optional<Topic>> topicFuture = mappingFunction.apply(key);
+            if (topicFuture != null) {
+                addToIndex(key, topicFuture);
+            }
+            return topicFuture;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Optional<Topic>> computeIfPresent(
+            String topic,
+            BiFunction<? super String, ? super CompletableFuture<Optional<Topic>>,
+                    ? extends CompletableFuture<Optional<Topic>>> remappingFunction) {
+        return topics.computeIfPresent(topic, (key, oldValue) -> updateIndex(key, oldValue,
+                remappingFunction.apply(key, oldValue)));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Topic>> compute(
+            String topic,
+            BiFunction<? super String, ? super CompletableFuture<Optional<Topic>>,
+                    ? extends CompletableFuture<Optional<Topic>>> remappingFunction) {
+        return topics.compute(topic, (key, oldValue) -> updateIndex(key, oldValue,
+                remappingFunction.apply(key, oldValue)));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Topic>> merge(
+            String topic, CompletableFuture<Optional<Topic>> value,
+            BiFunction<? super CompletableFuture<Optional<Topic>>, ? super CompletableFuture<Optional<Topic>>,
+                    ? extends CompletableFuture<Optional<Topic>>> remappingFunction) {
+        return topics.compute(topic, (key, oldValue) -> updateIndex(key, oldValue,
+                oldValue == null ? value : remappingFunction.apply(oldValue, value)));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Optional<Topic>> put(String topic, CompletableFuture<Optional<Topic>> topicFuture) {
+        final CompletableFuture<Optional<Topic>>[] previous = new CompletableFuture[1];
+        topics.compute(topic, (key, oldValue) -> {
+            previous[0] = oldValue;
+            return updateIndex(key, oldValue, topicFuture);
+        });
+        return previous[0];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Optional<Topic>> putIfAbsent(String topic,
+                                                          CompletableFuture<Optional<Topic>> topicFuture) {
+        final CompletableFuture<Optional<Topic>>[] previous = new CompletableFuture[1];
+        topics.compute(topic, (key, oldValue) -> {
+            previous[0] = oldValue;
+            return oldValue != null ? oldValue : updateIndex(key, null, topicFuture);
+        });
+        return previous[0];
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends CompletableFuture<Optional<Topic>>> map) {
+        map.forEach(this::put);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Optional<Topic>> remove(Object topic) {
+        if (!(topic instanceof String)) {
+            return null;
+        }
+        final CompletableFuture<Optional<Topic>>[] previous = new CompletableFuture[1];
+        topics.computeIfPresent((String) topic, (key, oldValue) -> {
+            previous[0] = oldValue;
+            return updateIndex(key, oldValue, null);
+        });
+        return previous[0];
+    }
+
+    @Override
+    public boolean remove(Object topic, Object topicFuture) {
+        if (!(topic instanceof String) || topicFuture == null) {
+            return false;
+        }
+        final boolean[] removed = new boolean[1];
+        topics.computeIfPresent((String) topic, (key, oldValue) -> {
+            if (oldValue != topicFuture && !oldValue.equals(topicFuture)) {
+                return oldValue;
+            }
+            removed[0] = true;
+            return updateIndex(key, oldValue, null);
+        });
+        return removed[0];
+    }
+
+    @Override
+    public boolean replace(String topic, CompletableFuture<Optional<Topic>> oldTopicFuture,
+                           CompletableFuture<Optional<Topic>> newTopicFuture) {
+        final boolean[] replaced = new boolean[1];
+        topics.computeIfPresent(topic, (key, oldValue) -> {
+            if (!oldValue.equals(oldTopicFuture)) {
+                return oldValue;
+            }
+            replaced[0] = true;
+            return updateIndex(key, oldValue, newTopicFuture);
+        });
+        return replaced[0];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Optional<Topic>> replace(String topic, CompletableFuture<Optional<Topic>> topicFuture) {
+        final CompletableFuture<Optional<Topic>>[] previous = new CompletableFuture[1];
+        topics.computeIfPresent(topic, (key, oldValue) -> {
+            previous[0] = oldValue;
+            return updateIndex(key, oldValue, topicFuture);
+        });
+        return previous[0];
+    }
+
+    @Override
+    public void clear() {
+        topics.keySet().forEach(this::remove);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return topics.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return topics.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return topics.toString();
+    }
+
+    // Must be called while holding the lock of the primary map entry
+    private CompletableFuture<Optional<Topic>> updateIndex(String topic,
+                                                           CompletableFuture<Optional<Topic>> oldValue,
+                                                           CompletableFuture<Optional<Topic>> newValue) {
+        if (oldValue != null) {
+            removeFromIndex(topic, oldValue);
+        }
+        if (newValue != null) {
+            addToIndex(topic, newValue);
+        }
+        return newValue;
+    }
+
+    private void addToIndex(String topic, CompletableFuture<Optional<Topic>> topicFuture) {
+        IndexKey indexKey = newIndexKey(topic);
+        if (indexKey == null) {
+            return;
+        }
+        namespaceIndex.compute(indexKey.namespace(), (__, index) -> {
+            if (index == null) {
+                index = new ConcurrentSkipListMap<>(INDEX_KEY_COMPARATOR);
+            }
+            index.put(indexKey, topicFuture);
+            return index;
+        });
+    }
+
+    private void removeFromIndex(String topic, CompletableFuture<Optional<Topic>> topicFuture) {
+        IndexKey indexKey = newIndexKey(topic);
+        if (indexKey == null) {
+            return;
+        }
+        namespaceIndex.computeIfPresent(indexKey.namespace(), (__, index) -> {
+            index.remove(indexKey, topicFuture);
+            return index.isEmpty() ? null : index;
+        });
+    }
+
+    private IndexKey newIndexKey(String topic) {
+        TopicName topicName;
+        try {
+            topicName = TopicName.get(topic);
+        } catch (IllegalArgumentException e) {
+            log.warn("[{}] Invalid topic name, the topic is not indexed by namespace", topic);
+            return null;
+        }
+        return new IndexKey(topicHashFunction.applyAsLong(topicName.toString()), topicName);
+    }
+
+    // Iterates over the primary map, the removals go through the registry to update the index
+    private final class ViewIterator<T> implements Iterator<T> {
+        private final Iterator<Entry<String, CompletableFuture<Optional<Topic>>>> iterator =
+                topics.entrySet().iterator();
+        private final Function<Entry<String, CompletableFuture<Optional<Topic>>>, T> mapper;
+        private Entry<String, CompletableFuture<Optional<Topic>>> last;
+
+        ViewIterator(Function<Entry<String, CompletableFuture<Optional<Topic>>>, T> mapper) {
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            last = iterator.next();
+            return mapper.apply(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            TopicRegistry.this.remove(last.getKey(), last.getValue());
+            last = null;
+        }
+    }
+
+    // An entry of the entry set view, writing through the registry
+    private final class RegistryEntry extends AbstractMap.SimpleEntry<String, CompletableFuture<Optional<Topic>>> {
+        RegistryEntry(Entry<String, CompletableFuture<Optional<Topic>>> entry) {
+            super(entry);
+        }
+
+        @Override
+        public CompletableFuture<Optional<Topic>> setValue(CompletableFuture<Optional<Topic>> topicFuture) {
+            if (topicFuture == null) {
+                throw new NullPointerException();
+            }
+            put(getKey(), topicFuture);
+            return super.setValue(topicFuture);
+        }
+    }
+
+    private record IndexKey(long bundleHash, TopicName topicName) {
+        NamespaceName namespace() {
+            return topicName.getNamespaceObject();
+        }
+    }
+}
@@ -19,6 +19,10 @@
 package org.apache.pulsar.broker.systopic;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pulsar.broker.service.SystemTopicTxnBufferSnapshotService;
@@ -30,6 +34,7 @@ import org.apache.pulsar.client.api.PulsarClientException;
 import org.apache.pulsar.client.api.Schema;
 import org.apache.pulsar.common.naming.SystemTopicNames;
 import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.common.util.FutureUtil;
 
 @Slf4j
 public class  TransactionBufferSnapshotBaseSystemTopicClient<T> extends SystemTopicClientBase<T> {
@@ -63,11 +68,24 @@ public class  TransactionBufferSnapshotBaseSystemTopicClient<T> extends SystemTo
         protected final TransactionBufferSnapshotBaseSystemTopicClient<T>
                 transactionBufferSnapshotBaseSystemTopicClient;
 
+        private final boolean batchedWriteEnabled;
+        // The writes queued while a batch is written, by key, so that a snapshot replaces the queued one of its topic
+        private final Map<String, PendingWrite<T>> pendingWrites = new LinkedHashMap<>();
+        private boolean writingBatch = false;
+
         protected TransactionBufferSnapshotWriter(Producer<T> producer,
                                                   TransactionBufferSnapshotBaseSystemTopicClient<T>
                                                     transactionBufferSnapshotBaseSystemTopicClient) {
+            this(producer, transactionBufferSnapshotBaseSystemTopicClient, false);
+        }
+
+        protected TransactionBufferSnapshotWriter(Producer<T> producer,
+                                                  TransactionBufferSnapshotBaseSystemTopicClient<T>
+                                                    transactionBufferSnapshotBaseSystemTopicClient,
+                                                  boolean batchedWriteEnabled) {
             this.producer = producer;
             this.transactionBufferSnapshotBaseSystemTopicClient = transactionBufferSnapshotBaseSystemTopicClient;
+            this.batchedWriteEnabled = batchedWriteEnabled;
         }
 
         @Override
@@ -79,6 +97,9 @@ public class  TransactionBufferSnapshotBaseSystemTopicClient<T> extends SystemTo
 
         @Override
         public CompletableFuture<MessageId> writeAsync(String key, T t) {
+            if (batchedWriteEnabled) {
+                return queueWrite(key, t);
+            }
             return producer.newMessage()
                     .key(key)
                     .value(t).sendAsync();
@@ -95,12 +116,62 @@ public class  TransactionBufferSnapshotBaseSystemTopicClient<T> extends SystemTo
 
         @Override
         public CompletableFuture<MessageId> deleteAsync(String key, T t) {
+            if (batchedWriteEnabled) {
+                return queueWrite(key, null);
+            }
             return producer.newMessage()
                     .key(key)
                     .value(null)
                     .sendAsync();
         }
 
+        private CompletableFuture<MessageId> queueWrite(String key, T t) {
+            CompletableFuture<MessageId> future = new CompletableFuture<>();
+            synchronized (pendingWrites) {
+                // The latest value of the key is the one written, its previous ones are complete once it is written
+                PendingWrite<T> replaced = pendingWrites.remove(key);
+                List<CompletableFuture<MessageId>> futures = replaced != null ? replaced.futures() : new ArrayList<>();
+                futures.add(future);
+                pendingWrites.put(key, new PendingWrite<>(t, futures));
+                if (writingBatch) {
+                    return future;
+                }
+                writingBatch = true;
+            }
+            writeBatch();
+            return future;
+        }
+
+        private void writeBatch() {
+            Map<String, PendingWrite<T>> batch;
+            synchronized (pendingWrites) {
+                if (pendingWrites.isEmpty()) {
+                    writingBatch = false;
+                    return;
+                }
+                batch = new LinkedHashMap<>(pendingWrites);
+                pendingWrites.clear();
+            }
+            List<CompletableFuture<MessageId>> sendFutures = new ArrayList<>(batch.size());
+            batch.forEach((key, write) -> {
+                CompletableFuture<MessageId> sendFuture = producer.newMessage()
+                        .key(key)
+                        .value(write.value())
+                        .sendAsync();
+                sendFuture.whenComplete((messageId, e) -> write.futures().forEach(future -> {
+                    if (e != null) {
+                        future.completeExceptionally(e);
+                    } else {
+                        future.complete(messageId);
+                    }
+                }));
+                sendFutures.add(sendFuture);
+            });
+            // Do not wait for the batching delay of the producer, the next writes are queued meanwhile
+            producer.flushAsync();
+            FutureUtil.waitForAll(sendFutures).whenComplete((__, e) -> writeBatch());
+        }
+
         @Override
         public void close() throws IOException {
             this.closeAsync().join();
@@ -125,6 +196,9 @@ public class  TransactionBufferSnapshotBaseSystemTopicClient<T> extends SystemTo
         public SystemTopicClient<T> getSystemTopicClient() {
             return transactionBufferSnapshotBaseSystemTopicClient;
         }
+
+        private record PendingWrite<T>(T value, List<CompletableFuture<MessageId>> futures) {
+        }
     }
 
     protected static class TransactionBufferSnapshotReader<T> implements Reader<T> {
@@ -187,14 +261,15 @@ public class  TransactionBufferSnapshotBaseSystemTopicClient<T> extends SystemTo
 
     @Override
     protected CompletableFuture<Writer<T>> newWriterAsyncInternal() {
+        boolean batchedWriteEnabled = systemTopicTxnBufferSnapshotService.isBatchedWriteEnabled();
         return client.newProducer(Schema.AVRO(schemaType))
                 .topic(topicName.toString())
-                .enableBatching(false)
+                .enableBatching(batchedWriteEnabled)
                 .createAsync().thenApply(producer -> {
                     if (log.isDebugEnabled()) {
                         log.debug("[{}] A new {} writer is created", topicName, schemaType.getName());
                     }
-                    return  new TransactionBufferSnapshotWriter<>(producer, this);
+                    return  new TransactionBufferSnapshotWriter<>(producer, this, batchedWriteEnabled);
                 });
     }
 
@@ -0,0 +1,391 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.transaction.buffer.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.apache.pulsar.client.api.transaction.TxnID;
+import org.apache.pulsar.common.util.collections.SegmentedLongArray;
+
+/**
+ * Set of the aborted transaction IDs of a topic, kept in the order they were added, with the position of their
+ * abort marker.
+ *
+ * <p>The transactions are stored in direct memory as tuples of 4 longs, and looked up through an open addressing
+ * hash table keyed by the (mostSigBits, leastSigBits) pair of their ID, so that no object is retained per aborted
+ * transaction. The transactions can only be removed in the order they were added, which is the order of their
+ * abort markers in the topic.
+ *
+ * <p>When enabled, a bloom filter is checked before the hash table, so that the transactions which were not aborted,
+ * the common case, are most of the time found absent without reading the direct memory. The bloom filter is not
+ * updated on removals, and is rebuilt once too many transactions have been added or removed since it was built.
+ *
+ * <p>The memory is allocated on the first added transaction, and released by {@link #close()}. The transactions
+ * added once closed are ignored, so that they can't allocate the memory again.
+ */
+@NotThreadSafe
+public class AbortedTxnIndex implements AutoCloseable {
+
+    static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    // Each transaction is composed of 4 longs: mostSigBits, leastSigBits, ledgerId, entryId
+    private static final int ITEMS_COUNT = 4;
+
+    // The hash table is resized to keep its load factor between 1/8 and 1/2
+    private static final int MAX_LOAD_FACTOR_INVERSE = 2;
+    private static final int MIN_LOAD_FACTOR_INVERSE = 8;
+
+    private static final int BLOOM_FILTER_BITS_PER_TXN = 10;
+    private static final int BLOOM_FILTER_HASHES = 3;
+
+    private final int initialCapacity;
+    private final boolean bloomFilterEnabled;
+
+    // The transactions, by sequence: the transaction of sequence s is at the tuple s - firstTupleSequence.
+    private SegmentedLongArray tuples;
+    private long firstTupleSequence;
+    private long headSequence;
+    private long tailSequence;
+
+    // The hash table, holding the sequence of the transactions + 1, 0 for the empty slots
+    private SegmentedLongArray table;
+    private long tableCapacity;
+
+    private long[] bloomFilter;
+    private long bloomFilterAdded;
+    private long bloomFilterRemoved;
+
+    private boolean closed;
+
+    public AbortedTxnIndex() {
+        this(DEFAULT_INITIAL_CAPACITY, false);
+    }
+
+    public AbortedTxnIndex(int initialCapacity, boolean bloomFilterEnabled) {
+        checkArgument(initialCapacity > 0);
+        this.initialCapacity = initialCapacity;
+        this.bloomFilterEnabled = bloomFilterEnabled;
+    }
+
+    /**
+     * Add an aborted transaction, or update the position of its abort marker if it is already present, without
+     * changing its order.
+     *
+     * @return whether the transaction was added, always false once closed
+     */
+    public boolean add(long mostSigBits, long leastSigBits, long ledgerId, long entryId) {
+        if (closed) {
+            return false;
+        }
+        if (tuples == null) {
+            allocate();
+        }
+        long slot = findSlot(mostSigBits, leastSigBits);
+        long sequence = table.readLong(slot) - 1;
+        if (sequence >= 0) {
+            long idx = (sequence - firstTupleSequence) * ITEMS_COUNT;
+            tuples.writeLong(idx + 2, ledgerId);
+            tuples.writeLong(idx + 3, entryId);
+            return false;
+        }
+
+        if ((tailSequence - firstTupleSequence + 1) * ITEMS_COUNT > tuples.getCapacity()) {
+            compactOrGrowTuples();
+        }
+        long idx = (tailSequence - firstTupleSequence) * ITEMS_COUNT;
+        tuples.writeLong(idx, mostSigBits);
+        tuples.writeLong(idx + 1, leastSigBits);
+        tuples.writeLong(idx + 2, ledgerId);
+        tuples.writeLong(idx + 3, entryId);
+        table.writeLong(slot, tailSequence + 1);
+        tailSequence++;
+
+        if (size() * MAX_LOAD_FACTOR_INVERSE > tableCapacity) {
+            rehash(tableCapacity * 2);
+        }
+        if (bloomFilterEnabled) {
+            if (++bloomFilterAdded * BLOOM_FILTER_BITS_PER_TXN > (long) bloomFilter.length * Long.SIZE) {
+                rebuildBloomFilter();
+            } else {
+                addToBloomFilter(mostSigBits, leastSigBits);
+            }
+        }
+        return true;
+    }
+
+    public boolean add(TxnID txnID, long ledgerId, long entryId) {
+        return add(txnID.getMostSigBits(), txnID.getLeastSigBits(), ledgerId, entryId);
+    }
+
+    public boolean contains(long mostSigBits, long leastSigBits) {
+        if (isEmpty()) {
+            return false;
+        }
+        if (bloomFilterEnabled && !mightContain(mostSigBits, leastSigBits)) {
+            return false;
+        }
+        return table.readLong(findSlot(mostSigBits, leastSigBits)) != 0;
+    }
+
+    public boolean contains(TxnID txnID) {
+        return contains(txnID.getMostSigBits(), txnID.getLeastSigBits());
+    }
+
+    public boolean isEmpty() {
+        return headSequence == tailSequence;
+    }
+
+    /**
+     * Returns the number of aborted transactions.
+     */
+    public long size() {
+        return tailSequence - headSequence;
+    }
+
+    /**
+     * Read the mostSigBits of the ID of the first added transaction.
+     */
+    public long firstMostSigBits() {
+        return readFirst(0);
+    }
+
+    /**
+     * Read the leastSigBits of the ID of the first added transaction.
+     */
+    public long firstLeastSigBits() {
+        return readFirst(1);
+    }
+
+    /**
+     * Read the ledger id of the abort marker position of the first added transaction.
+     */
+    public long firstLedgerId() {
+        return readFirst(2);
+    }
+
+    /**
+     * Read the entry id of the abort marker position of the first added transaction.
+     */
+    public long firstEntryId() {
+        return readFirst(3);
+    }
+
+    /**
+     * Remove the first added transaction.
+     */
+    public void removeFirst() {
+        checkState(!isEmpty());
+        long idx = (headSequence - firstTupleSequence) * ITEMS_COUNT;
+        removeFromTable(findSlot(tuples.readLong(idx), tuples.readLong(idx + 1)));
+        headSequence++;
+        if (isEmpty()) {
+            // Restart from the beginning of the tuples
+            firstTupleSequence = headSequence;
+        }
+        if (tableCapacity > initialTableCapacity() && size() * MIN_LOAD_FACTOR_INVERSE < tableCapacity) {
+            rehash(tableCapacity / 2);
+        }
+        if (bloomFilterEnabled && ++bloomFilterRemoved > size()) {
+            rebuildBloomFilter();
+        }
+    }
+
+    /**
+     * Iterate over the transactions, in the order they were added.
+     */
+    public void forEach(AbortedTxnConsumer consumer) {
+        for (long sequence = headSequence; sequence < tailSequence; sequence++) {
+            long idx = (sequence - firstTupleSequence) * ITEMS_COUNT;
+            consumer.accept(tuples.readLong(idx), tuples.readLong(idx + 1),
+                    tuples.readLong(idx + 2), tuples.readLong(idx + 3));
+        }
+    }
+
+    /**
+     * The amount of memory used to back the index.
+     */
+    public long bytesCapacity() {
+        long bytes = tuples != null ? tuples.bytesCapacity() + table.bytesCapacity() : 0;
+        return bloomFilter != null ? bytes + (long) bloomFilter.length * Long.BYTES : bytes;
+    }
+
+    /**
+     * Remove all the transactions and free the memory associated.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (tuples != null) {
+            tuples.close();
+            table.close();
+            tuples = null;
+            table = null;
+            bloomFilter = null;
+        }
+        headSequence = tailSequence;
+        firstTupleSequence = tailSequence;
+    }
+
+    /**
+     * Consumer of the transactions of the index.
+     */
+    @FunctionalInterface
+    public interface AbortedTxnConsumer {
+        void accept(long mostSigBits, long leastSigBits, long ledgerId, long entryId);
+    }
+
+    private void allocate() {
+        tuples = new SegmentedLongArray((long) initialCapacity * ITEMS_COUNT);
+        tableCapacity = initialTableCapacity();
+        table = newTable(tableCapacity);
+        if (bloomFilterEnabled) {
+            bloomFilter = new long[bloomFilterLength(initialCapacity)];
+        }
+    }
+
+    private long initialTableCapacity() {
+        return Long.highestOneBit((long) initialCapacity * MAX_LOAD_FACTOR_INVERSE - 1) << 1;
+    }
+
+    private long readFirst(int item) {
+        checkState(!isEmpty());
+        return tuples.readLong((headSequence - firstTupleSequence) * ITEMS_COUNT + item);
+    }
+
+    private void compactOrGrowTuples() {
+        long offset = (headSequence - firstTupleSequence) * ITEMS_COUNT;
+        if (offset * 2 >= tuples.getCapacity()) {
+            // At least half of the tuples were removed, move the remaining ones to the beginning
+            long count = size() * ITEMS_COUNT;
+            for (long i = 0; i < count; i++) {
+                tuples.writeLong(i, tuples.readLong(offset + i));
+            }
+            firstTupleSequence = headSequence;
+            tuples.shrink(Math.max(count * 2, tuples.getInitialCapacity()));
+        } else {
+            tuples.increaseCapacity();
+        }
+    }
+
+    private static SegmentedLongArray newTable(long capacity) {
+        SegmentedLongArray table = new SegmentedLongArray(capacity);
+        for (long i = 0; i < capacity; i++) {
+            table.writeLong(i, 0);
+        }
+        return table;
+    }
+
+    private void rehash(long newCapacity) {
+        SegmentedLongArray oldTable = table;
+        table = newTable(newCapacity);
+        tableCapacity = newCapacity;
+        oldTable.close();
+        for (long sequence = headSequence; sequence < tailSequence; sequence++) {
+            long idx = (sequence - firstTupleSequence) * ITEMS_COUNT;
+            table.writeLong(findSlot(tuples.readLong(idx), tuples.readLong(idx + 1)), sequence + 1);
+        }
+    }
+
+    /**
+     * Find the slot of the hash table holding the transaction, or the empty slot where it should be inserted.
+     */
+    private long findSlot(long mostSigBits, long leastSigBits) {
+        long mask = tableCapacity - 1;
+        long slot = hash(mostSigBits, leastSigBits) & mask;
+        while (true) {
+            long sequence = table.readLong(slot) - 1;
+            if (sequence < 0) {
+                return slot;
+            }
+            long idx = (sequence - firstTupleSequence) * ITEMS_COUNT;
+            if (tuples.readLong(idx) == mostSigBits && tuples.readLong(idx + 1) == leastSigBits) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Empty the slot, moving back the following entries of the probe sequence which would not be reachable anymore.
+     */
+    private void removeFromTable(long slot) {
+        long mask = tableCapacity - 1;
+        long emptySlot = slot;
+        long next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            long value = table.readLong(next);
+            if (value == 0) {
+                break;
+            }
+            long idx = (value - 1 - firstTupleSequence) * ITEMS_COUNT;
+            long home = hash(tuples.readLong(idx), tuples.readLong(idx + 1)) & mask;
+            // The entry can be moved if its home slot is not cyclically in (emptySlot, next]
+            boolean reachable = emptySlot <= next
+                    ? emptySlot < home && home <= next
+                    : emptySlot < home || home <= next;
+            if (!reachable) {
+                table.writeLong(emptySlot, value);
+                emptySlot = next;
+            }
+        }
+        table.writeLong(emptySlot, 0);
+    }
+
+    private static long hash(long mostSigBits, long leastSigBits) {
+        long h = (mostSigBits * 0x9E3779B97F4A7C15L) ^ leastSigBits;
+        h *= 0xC2B2AE3D27D4EB4FL;
+        return h ^ (h >>> 29);
+    }
+
+    private static int bloomFilterLength(long expectedTxns) {
+        long bits = Math.max(expectedTxns, DEFAULT_INITIAL_CAPACITY) * BLOOM_FILTER_BITS_PER_TXN;
+        return (int) Math.min((bits + Long.SIZE - 1) / Long.SIZE, Integer.MAX_VALUE - 8);
+    }
+
+    private void rebuildBloomFilter() {
+        // Leave room for as many transactions as currently present before the next rebuild
+        bloomFilter = new long[bloomFilterLength(size() * 2)];
+        bloomFilterAdded = size();
+        bloomFilterRemoved = 0;
+        forEach((mostSigBits, leastSigBits, ledgerId, entryId) -> addToBloomFilter(mostSigBits, leastSigBits));
+    }
+
+    private void addToBloomFilter(long mostSigBits, long leastSigBits) {
+        long h = hash(leastSigBits, mostSigBits);
+        long bits = (long) bloomFilter.length * Long.SIZE;
+        for (int i = 0; i < BLOOM_FILTER_HASHES; i++) {
+            long bit = Math.floorMod(h + i * (h >>> 32), bits);
+            bloomFilter[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private boolean mightContain(long mostSigBits, long leastSigBits) {
+        long h = hash(leastSigBits, mostSigBits);
+        long bits = (long) bloomFilter.length * Long.SIZE;
+        for (int i = 0; i < BLOOM_FILTER_HASHES; i++) {
+            long bit = Math.floorMod(h + i * (h >>> 32), bits);
+            if ((bloomFilter[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
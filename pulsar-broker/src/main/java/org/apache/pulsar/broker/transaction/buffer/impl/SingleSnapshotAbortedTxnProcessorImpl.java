@@ -24,7 +24,6 @@ import java.util.concurrent.CompletableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.mledger.PositionFactory;
-import org.apache.commons.collections4.map.LinkedMap;
 import org.apache.pulsar.broker.service.SystemTopicTxnBufferSnapshotService.ReferenceCountedWriter;
 import org.apache.pulsar.broker.service.persistent.PersistentTopic;
 import org.apache.pulsar.broker.transaction.buffer.AbortedTxnProcessor;
@@ -39,10 +38,10 @@ public class SingleSnapshotAbortedTxnProcessorImpl implements AbortedTxnProcesso
     private final PersistentTopic topic;
     private final ReferenceCountedWriter<TransactionBufferSnapshot> takeSnapshotWriter;
     /**
-     * Aborts, map for jude message is aborted, linked for remove abort txn in memory when this
+     * Aborts, index for jude message is aborted, ordered for remove abort txn in memory when this
      * position have been deleted.
      */
-    private final LinkedMap<TxnID, Position> aborts = new LinkedMap<>();
+    private final AbortedTxnIndex aborts;
 
     private volatile long lastSnapshotTimestamps;
 
@@ -50,6 +49,8 @@ public class SingleSnapshotAbortedTxnProcessorImpl implements AbortedTxnProcesso
 
     public SingleSnapshotAbortedTxnProcessorImpl(PersistentTopic topic) {
         this.topic = topic;
+        this.aborts = new AbortedTxnIndex(AbortedTxnIndex.DEFAULT_INITIAL_CAPACITY, topic.getBrokerService()
+                .getPulsar().getConfiguration().isTransactionBufferAbortedTxnBloomFilterEnabled());
         this.takeSnapshotWriter = this.topic.getBrokerService().getPulsar()
                 .getTransactionBufferSnapshotServiceFactory()
                 .getTxnBufferSnapshotService().getReferenceWriter(TopicName.get(topic.getName()).getNamespaceObject());
@@ -62,25 +63,27 @@ public class SingleSnapshotAbortedTxnProcessorImpl implements AbortedTxnProcesso
 
     @Override
     public void putAbortedTxnAndPosition(TxnID abortedTxnId, Position abortedMarkerPersistentPosition) {
-        aborts.put(abortedTxnId, abortedMarkerPersistentPosition);
+        aborts.add(abortedTxnId, abortedMarkerPersistentPosition.getLedgerId(),
+                abortedMarkerPersistentPosition.getEntryId());
     }
 
     //In this implementation we clear the invalid aborted txn ID one by one.
     @Override
     public void trimExpiredAbortedTxns() {
         while (!aborts.isEmpty() && !topic.getManagedLedger().getLedgersInfo()
-                .containsKey(aborts.get(aborts.firstKey()).getLedgerId())) {
+                .containsKey(aborts.firstLedgerId())) {
             if (log.isDebugEnabled()) {
                 log.debug("[{}] Topic transaction buffer clear aborted transaction, TxnId : {}, Position : {}",
-                        topic.getName(), aborts.firstKey(), aborts.get(aborts.firstKey()));
+                        topic.getName(), new TxnID(aborts.firstMostSigBits(), aborts.firstLeastSigBits()),
+                        PositionFactory.create(aborts.firstLedgerId(), aborts.firstEntryId()));
             }
-            aborts.remove(aborts.firstKey());
+            aborts.removeFirst();
         }
     }
 
     @Override
     public boolean checkAbortedTransaction(TxnID txnID) {
-        return aborts.containsKey(txnID);
+        return aborts.contains(txnID);
     }
 
     @Override
@@ -117,20 +120,21 @@ public class SingleSnapshotAbortedTxnProcessorImpl implements AbortedTxnProcesso
 
     @Override
     public CompletableFuture<Void> takeAbortedTxnsSnapshot(Position maxReadPosition) {
+        // Copy the aborts now, the index must not be read by the thread completing the writer future
+        List<AbortTxnMetadata> list = new ArrayList<>();
+        aborts.forEach((mostSigBits, leastSigBits, ledgerId, entryId) -> {
+            AbortTxnMetadata abortTxnMetadata = new AbortTxnMetadata();
+            abortTxnMetadata.setTxnIdMostBits(mostSigBits);
+            abortTxnMetadata.setTxnIdLeastBits(leastSigBits);
+            abortTxnMetadata.setLedgerId(ledgerId);
+            abortTxnMetadata.setEntryId(entryId);
+            list.add(abortTxnMetadata);
+        });
         return takeSnapshotWriter.getFuture().thenCompose(writer -> {
             TransactionBufferSnapshot snapshot = new TransactionBufferSnapshot();
             snapshot.setTopicName(topic.getName());
             snapshot.setMaxReadPositionLedgerId(maxReadPosition.getLedgerId());
             snapshot.setMaxReadPositionEntryId(maxReadPosition.getEntryId());
-            List<AbortTxnMetadata> list = new ArrayList<>();
-            aborts.forEach((k, v) -> {
-                AbortTxnMetadata abortTxnMetadata = new AbortTxnMetadata();
-                abortTxnMetadata.setTxnIdMostBits(k.getMostSigBits());
-                abortTxnMetadata.setTxnIdLeastBits(k.getLeastSigBits());
-                abortTxnMetadata.setLedgerId(v.getLedgerId());
-                abortTxnMetadata.setEntryId(v.getEntryId());
-                list.add(abortTxnMetadata);
-            });
             snapshot.setAborts(list);
             return writer.writeAsync(snapshot.getTopicName(), snapshot).thenAccept(messageId -> {
                 this.lastSnapshotTimestamps = System.currentTimeMillis();
@@ -158,6 +162,7 @@ public class SingleSnapshotAbortedTxnProcessorImpl implements AbortedTxnProcesso
         if (!isClosed) {
             isClosed = true;
             takeSnapshotWriter.release();
+            aborts.close();
         }
         return CompletableFuture.completedFuture(null);
     }
@@ -165,10 +170,8 @@ public class SingleSnapshotAbortedTxnProcessorImpl implements AbortedTxnProcesso
     private void handleSnapshot(TransactionBufferSnapshot snapshot) {
         if (snapshot.getAborts() != null) {
             snapshot.getAborts().forEach(abortTxnMetadata ->
-                    aborts.put(new TxnID(abortTxnMetadata.getTxnIdMostBits(),
-                                    abortTxnMetadata.getTxnIdLeastBits()),
-                            PositionFactory.create(abortTxnMetadata.getLedgerId(),
-                                    abortTxnMetadata.getEntryId())));
+                    aborts.add(abortTxnMetadata.getTxnIdMostBits(), abortTxnMetadata.getTxnIdLeastBits(),
+                            abortTxnMetadata.getLedgerId(), abortTxnMetadata.getEntryId()));
         }
     }
 
@@ -96,14 +96,16 @@ public class SnapshotSegmentAbortedTxnProcessorImpl implements AbortedTxnProcess
     private final LinkedMap<Position, TxnID> segmentIndex = new LinkedMap<>();
 
     /**
-     * This map is used to check whether a transaction is an aborted transaction.
+     * This index is used to check whether a transaction is an aborted transaction.
      * <p>
      *     The transaction IDs is appended in order, so the processor can delete expired
      *     transaction IDs according to the latest expired transaction IDs in segmentIndex
      *     {@link SnapshotSegmentAbortedTxnProcessorImpl#segmentIndex}.
      * </p>
      */
-    private final LinkedMap<TxnID, TxnID> aborts = new LinkedMap<>();
+    private final AbortedTxnIndex aborts;
+
+    private volatile CompletableFuture<Position> recoverFuture = CompletableFuture.completedFuture(null);
     /**
      * This map stores the indexes of the snapshot segment.
      * <p>
@@ -140,6 +142,8 @@ public class SnapshotSegmentAbortedTxnProcessorImpl implements AbortedTxnProcess
     public SnapshotSegmentAbortedTxnProcessorImpl(PersistentTopic topic) {
         this.topic = topic;
         this.persistentWorker = new PersistentWorker(topic);
+        this.aborts = new AbortedTxnIndex(AbortedTxnIndex.DEFAULT_INITIAL_CAPACITY, topic.getBrokerService()
+                .getPulsar().getConfiguration().isTransactionBufferAbortedTxnBloomFilterEnabled());
         /*
            Calculate the segment capital according to its size configuration.
            <p>
@@ -158,7 +162,7 @@ public class SnapshotSegmentAbortedTxnProcessorImpl implements AbortedTxnProcess
     @Override
     public void putAbortedTxnAndPosition(TxnID txnID, Position position) {
         unsealedTxnIds.add(txnID);
-        aborts.put(txnID, txnID);
+        aborts.add(txnID, position.getLedgerId(), position.getEntryId());
         /*
            The size of lastAbortedTxns reaches the configuration of the size of snapshot segment.
            Append a task to persistent the segment with the aborted transaction IDs and the latest
@@ -175,7 +179,7 @@ public class SnapshotSegmentAbortedTxnProcessorImpl implements AbortedTxnProcess
 
     @Override
     public boolean checkAbortedTransaction(TxnID txnID) {
-        return aborts.containsKey(txnID);
+        return aborts.contains(txnID);
     }
 
     /**
@@ -198,10 +202,11 @@ public class SnapshotSegmentAbortedTxnProcessorImpl implements AbortedTxnProcess
             positionsNeedToDelete.add(positionNeedToDelete);
 
             TxnID theLatestDeletedTxnID = segmentIndex.remove(0);
-            while (!aborts.firstKey().equals(theLatestDeletedTxnID)) {
-                aborts.remove(0);
+            while (aborts.firstMostSigBits() != theLatestDeletedTxnID.getMostSigBits()
+                    || aborts.firstLeastSigBits() != theLatestDeletedTxnID.getLeastSigBits()) {
+                aborts.removeFirst();
             }
-            aborts.remove(0);
+            aborts.removeFirst();
         }
         //Batch delete the expired segment
         if (!positionsNeedToDelete.isEmpty()) {
@@ -228,6 +233,7 @@ public class SnapshotSegmentAbortedTxnProcessorImpl implements AbortedTxnProcess
     public CompletableFuture<Position> recoverFromSnapshot() {
         final var pulsar = topic.getBrokerService().getPulsar();
         final var future = new CompletableFuture<Position>();
+        recoverFuture = future;
         pulsar.getTransactionSnapshotRecoverExecutorProvider().getExecutor(this).execute(() -> {
             try {
                 final var indexes = pulsar.getTransactionBufferSnapshotServiceFactory()
@@ -250,7 +256,7 @@ public class SnapshotSegmentAbortedTxnProcessorImpl implements AbortedTxnProcess
                     // If there is no segment index, the persistent worker will write segment begin from 0.
                     persistentWorker.sequenceID.set(this.indexes.get(this.indexes.lastKey()).sequenceID + 1);
                 }
-                unsealedTxnIds.forEach(txnID -> aborts.put(txnID, txnID));
+                unsealedTxnIds.forEach(txnID -> aborts.add(txnID, -1L, -1L));
                 future.complete(startReadCursorPosition);
             } catch (Throwable throwable) {
                 future.completeExceptionally(throwable);
@@ -362,7 +368,7 @@ public class SnapshotSegmentAbortedTxnProcessorImpl implements AbortedTxnProcess
             snapshot.getAborts().forEach(abortTxnMetadata -> {
                 TxnID txnID = new TxnID(abortTxnMetadata.getTxnIdMostBits(),
                         abortTxnMetadata.getTxnIdLeastBits());
-                aborts.put(txnID, txnID);
+                aborts.add(txnID, abortTxnMetadata.getLedgerId(), abortTxnMetadata.getEntryId());
                 //The old data will be written into the first segment.
                 unsealedTxnIds.add(txnID);
             });
@@ -398,7 +404,10 @@ public class SnapshotSegmentAbortedTxnProcessorImpl implements AbortedTxnProcess
 
     @Override
     public CompletableFuture<Void> closeAsync() {
-        return persistentWorker.closeAsync();
+        // The recovery may still be adding the aborted transactions, only release them once it's done
+        return persistentWorker.closeAsync()
+                .thenCompose(__ -> recoverFuture.handle((position, e) -> null))
+                .thenRun(aborts::close);
     }
 
     private void handleSnapshotSegmentEntry(Entry entry) {
@@ -413,7 +422,8 @@ public class SnapshotSegmentAbortedTxnProcessorImpl implements AbortedTxnProcess
         segmentIndex.put(PositionFactory.create(snapshotSegment.getPersistentPositionLedgerId(),
                 snapshotSegment.getPersistentPositionEntryId()),
                 new TxnID(lastTxn.getMostSigBits(), lastTxn.getLeastSigBits()));
-        convertTypeToTxnID(snapshotSegment.getAborts()).forEach(txnID -> aborts.put(txnID, txnID));
+        snapshotSegment.getAborts().forEach(txnIDData ->
+                aborts.add(txnIDData.getMostSigBits(), txnIDData.getLeastSigBits(), -1L, -1L));
     }
 
     private long getSystemClientOperationTimeoutMs() throws Exception {
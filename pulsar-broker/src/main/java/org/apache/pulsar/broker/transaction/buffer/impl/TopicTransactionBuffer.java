@@ -543,7 +543,10 @@ public class TopicTransactionBuffer extends TopicTransactionBufferState implemen
     @Override
     public CompletableFuture<Void> closeAsync() {
         changeToCloseState();
-        return this.snapshotAbortedTxnProcessor.closeAsync();
+        // The aborted transactions are released, they must not be checked at the same time
+        synchronized (this) {
+            return this.snapshotAbortedTxnProcessor.closeAsync();
+        }
     }
 
     @Override
@@ -28,7 +28,9 @@ import io.netty.util.Timer;
 import io.netty.util.concurrent.FastThreadLocal;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentSkipListMap;
@@ -73,6 +75,16 @@ import org.slf4j.LoggerFactory;
  */
 public class MLPendingAckStore implements PendingAckStore {
 
+    /**
+     * The prefix of the snapshot entries, see {@link #takeSnapshotIfNeeded(Position)}. Same as the batched entries,
+     * the magic number can not be the beginning of a serialized {@link PendingAckMetadataEntry}.
+     */
+    public static final short PENDING_ACK_SNAPSHOT_PREFIX_MAGIC_NUMBER = 0x0e02;
+    public static final short PENDING_ACK_SNAPSHOT_PREFIX_VERSION = 1;
+
+    /** The properties of the cursor mark delete position which point to the latest snapshot entry. **/
+    static final String SNAPSHOT_LEDGER_ID_PROPERTY = "pendingAckSnapshotLedgerId";
+    static final String SNAPSHOT_ENTRY_ID_PROPERTY = "pendingAckSnapshotEntryId";
 
     private final ManagedLedger managedLedger;
 
@@ -118,8 +130,37 @@ public class MLPendingAckStore implements PendingAckStore {
 
     private TxnLogBufferedWriter<PendingAckMetadataEntry> bufferedWriter;
 
+    /**
+     * Write a snapshot of the pending acks after this many log records, 0 disables the snapshots. A snapshot holds the
+     * ack logs of the transactions which are neither committed nor aborted, once it is persisted the log before it is
+     * deleted, so the replay reads the snapshot and the log after it instead of the whole log.
+     */
+    private final long snapshotIntervalRecords;
+
+    /** The snapshot is skipped if its size exceeds this, to keep it writable as a single entry. **/
+    private final int snapshotMaxSize;
+
+    /**
+     * The ack logs of the transactions which are neither committed nor aborted, in the log order. Only maintained if
+     * the snapshots are enabled, and only accessed by the replay and by the ordered write callbacks.
+     */
+    private final LinkedHashMap<TxnID, List<PendingAckMetadataEntry>> ongoingTxnLogs = new LinkedHashMap<>();
+
+    private long recordsSinceLastSnapshot;
+
+    private volatile boolean snapshotInProgress;
+
+    public MLPendingAckStore(ManagedLedger managedLedger, ManagedCursor cursor,
+                             ManagedCursor subManagedCursor, long transactionPendingAckLogIndexMinLag,
+                             TxnLogBufferedWriterConfig bufferedWriterConfig,
+                             Timer timer, TxnLogBufferedWriterMetricsStats bufferedWriterMetrics, Executor executor) {
+        this(managedLedger, cursor, subManagedCursor, transactionPendingAckLogIndexMinLag, 0, bufferedWriterConfig,
+                timer, bufferedWriterMetrics, executor);
+    }
+
     public MLPendingAckStore(ManagedLedger managedLedger, ManagedCursor cursor,
                              ManagedCursor subManagedCursor, long transactionPendingAckLogIndexMinLag,
+                             long transactionPendingAckSnapshotIntervalRecords,
                              TxnLogBufferedWriterConfig bufferedWriterConfig,
                              Timer timer, TxnLogBufferedWriterMetricsStats bufferedWriterMetrics, Executor executor) {
         this.managedLedger = managedLedger;
@@ -137,6 +178,8 @@ public class MLPendingAckStore implements PendingAckStore {
                 bufferedWriterConfig.getBatchedWriteMaxDelayInMillis(), bufferedWriterConfig.isBatchEnabled(),
                 bufferedWriterMetrics);
         this.batchedPendingAckLogsWaitingForHandle = new ArrayList<>();
+        this.snapshotIntervalRecords = Math.max(transactionPendingAckSnapshotIntervalRecords, 0);
+        this.snapshotMaxSize = bufferedWriterConfig.getBatchedWriteMaxSize();
     }
 
     @Override
@@ -276,8 +319,13 @@ public class MLPendingAckStore implements PendingAckStore {
                 } else {
                     handleMetadataEntry(position, pendingAckMetadataEntry);
                 }
+                trackOngoingTxnLog(pendingAckMetadataEntry);
                 completableFuture.complete(null);
                 clearUselessLogData();
+                if (!(position instanceof TxnBatchedPositionImpl batchedPosition)
+                        || batchedPosition.getBatchIndex() == batchedPosition.getBatchSize() - 1) {
+                    takeSnapshotIfNeeded(PositionFactory.create(position.getLedgerId(), position.getEntryId()));
+                }
             }
 
             @Override
@@ -346,6 +394,138 @@ public class MLPendingAckStore implements PendingAckStore {
         });
     }
 
+    /**
+     * Maintain {@link #ongoingTxnLogs} for the next snapshot, must be called in the log order.
+     */
+    private void trackOngoingTxnLog(PendingAckMetadataEntry pendingAckMetadataEntry) {
+        if (snapshotIntervalRecords == 0) {
+            return;
+        }
+        recordsSinceLastSnapshot++;
+        TxnID txnID = new TxnID(pendingAckMetadataEntry.getTxnidMostBits(),
+                pendingAckMetadataEntry.getTxnidLeastBits());
+        if (bothNotAbortAndCommitPredicate.test(pendingAckMetadataEntry)) {
+            // Copy it, the replayed log is parsed from an entry buffer which is released after the replay.
+            ongoingTxnLogs.computeIfAbsent(txnID, k -> new ArrayList<>())
+                    .add(new PendingAckMetadataEntry().copyFrom(pendingAckMetadataEntry));
+        } else {
+            ongoingTxnLogs.remove(txnID);
+        }
+    }
+
+    /**
+     * Write a snapshot of {@link #ongoingTxnLogs} once {@link #snapshotIntervalRecords} records have been written
+     * since the last one, then mark delete the log up to {@param lastLogPosition}, the last log covered by the
+     * snapshot, and refer to the snapshot in the mark delete properties. The snapshot entry itself is skipped by the
+     * replay, so the logs written concurrently between {@param lastLogPosition} and the snapshot entry are still
+     * replayed after it, in their order.
+     */
+    private void takeSnapshotIfNeeded(Position lastLogPosition) {
+        if (snapshotIntervalRecords == 0 || recordsSinceLastSnapshot < snapshotIntervalRecords
+                || snapshotInProgress) {
+            return;
+        }
+        recordsSinceLastSnapshot = 0;
+        BatchedPendingAckMetadataEntry snapshot = new BatchedPendingAckMetadataEntry();
+        ongoingTxnLogs.values().forEach(snapshot::addAllPendingAckLogs);
+        int snapshotSize = BATCHED_ENTRY_DATA_PREFIX_MAGIC_NUMBER_LEN + BATCHED_ENTRY_DATA_PREFIX_VERSION_LEN
+                + snapshot.getSerializedSize();
+        if (snapshotSize > snapshotMaxSize) {
+            log.warn("[{}] Skip the pending ack snapshot, the size {} of {} ongoing transactions exceeds {}",
+                    managedLedger.getName(), snapshotSize, ongoingTxnLogs.size(), snapshotMaxSize);
+            return;
+        }
+        ByteBuf buf = PulsarByteBufAllocator.DEFAULT.buffer(snapshotSize, snapshotSize);
+        buf.writeShort(PENDING_ACK_SNAPSHOT_PREFIX_MAGIC_NUMBER);
+        buf.writeShort(PENDING_ACK_SNAPSHOT_PREFIX_VERSION);
+        snapshot.writeTo(buf);
+        snapshotInProgress = true;
+        managedLedger.asyncAddEntry(buf, new AsyncCallbacks.AddEntryCallback() {
+            @Override
+            public void addComplete(Position snapshotPosition, ByteBuf entryData, Object ctx) {
+                buf.release();
+                snapshotInProgress = false;
+                if (cursor.getMarkDeletedPosition() != null
+                        && lastLogPosition.compareTo(cursor.getMarkDeletedPosition()) <= 0) {
+                    return;
+                }
+                cursor.asyncMarkDelete(lastLogPosition,
+                        Map.of(SNAPSHOT_LEDGER_ID_PROPERTY, snapshotPosition.getLedgerId(),
+                                SNAPSHOT_ENTRY_ID_PROPERTY, snapshotPosition.getEntryId()),
+                        new AsyncCallbacks.MarkDeleteCallback() {
+                            @Override
+                            public void markDeleteComplete(Object ctx) {
+                                if (log.isDebugEnabled()) {
+                                    log.debug("[{}] Transaction pending ack store snapshot at [{}] covers the log"
+                                            + " up to [{}]", managedLedger.getName(), snapshotPosition,
+                                            lastLogPosition);
+                                }
+                            }
+
+                            @Override
+                            public void markDeleteFailed(ManagedLedgerException exception, Object ctx) {
+                                log.warn("[{}] Transaction pending ack store failed to mark delete the log up to"
+                                        + " snapshot [{}]", managedLedger.getName(), snapshotPosition, exception);
+                            }
+                        }, null);
+            }
+
+            @Override
+            public void addFailed(ManagedLedgerException exception, Object ctx) {
+                buf.release();
+                snapshotInProgress = false;
+                log.warn("[{}] Transaction pending ack store failed to write snapshot", managedLedger.getName(),
+                        exception);
+            }
+        }, null);
+    }
+
+    /**
+     * Replay the snapshot referred by the mark delete properties, if any, before the log after the mark delete
+     * position.
+     */
+    private void replaySnapshot(PendingAckReplyCallBack pendingAckReplyCallBack) throws Exception {
+        Map<String, Long> properties = cursor.getProperties();
+        if (properties == null || !properties.containsKey(SNAPSHOT_LEDGER_ID_PROPERTY)
+                || !properties.containsKey(SNAPSHOT_ENTRY_ID_PROPERTY)) {
+            return;
+        }
+        Position snapshotPosition = PositionFactory.create(properties.get(SNAPSHOT_LEDGER_ID_PROPERTY),
+                properties.get(SNAPSHOT_ENTRY_ID_PROPERTY));
+        CompletableFuture<Entry> entryFuture = new CompletableFuture<>();
+        managedLedger.asyncReadEntry(snapshotPosition, new AsyncCallbacks.ReadEntryCallback() {
+            @Override
+            public void readEntryComplete(Entry entry, Object ctx) {
+                entryFuture.complete(entry);
+            }
+
+            @Override
+            public void readEntryFailed(ManagedLedgerException exception, Object ctx) {
+                entryFuture.completeExceptionally(exception);
+            }
+        }, null);
+        Entry entry = entryFuture.get();
+        try {
+            ByteBuf buffer = entry.getDataBuffer();
+            if (buffer.readShort() != PENDING_ACK_SNAPSHOT_PREFIX_MAGIC_NUMBER) {
+                throw new IllegalStateException("The entry " + snapshotPosition + " is not a pending ack snapshot");
+            }
+            buffer.skipBytes(BATCHED_ENTRY_DATA_PREFIX_VERSION_LEN);
+            BatchedPendingAckMetadataEntry snapshot = new BatchedPendingAckMetadataEntry();
+            snapshot.parseFrom(buffer, buffer.readableBytes());
+            List<PendingAckMetadataEntry> logs = snapshot.getPendingAckLogsList();
+            for (PendingAckMetadataEntry log : logs) {
+                pendingAckReplyCallBack.handleMetadataEntry(log);
+                trackOngoingTxnLog(log);
+            }
+            handleMetadataEntry(cursor.getMarkDeletedPosition(), logs);
+            log.info("[{}] Transaction pending ack store replayed snapshot [{}] of {} logs",
+                    managedLedger.getName(), snapshotPosition, logs.size());
+        } finally {
+            entry.release();
+        }
+    }
+
     @VisibleForTesting
     void clearUselessLogData() {
         if (!pendingAckLogIndex.isEmpty()) {
@@ -358,6 +538,11 @@ public class MLPendingAckStore implements PendingAckStore {
                 deletePosition = pendingAckLogIndex.remove(pendingAckLogIndex.firstKey());
             }
 
+            // The snapshot may have already deleted the log further.
+            if (deletePosition != null && cursor.getMarkDeletedPosition() != null
+                    && deletePosition.compareTo(cursor.getMarkDeletedPosition()) <= 0) {
+                deletePosition = null;
+            }
             if (deletePosition != null) {
                 maxIndexLag = logIndexBackoff.next(pendingAckLogIndex.size());
                 Position finalDeletePosition = deletePosition;
@@ -403,23 +588,27 @@ public class MLPendingAckStore implements PendingAckStore {
                             cursor.getManagedLedger().getName());
                     return;
                 }
+                replaySnapshot(pendingAckReplyCallBack);
                 while (lastConfirmedEntry.compareTo(currentLoadPosition) > 0 && fillEntryQueueCallback.fillQueue()) {
                     Entry entry = entryQueue.poll();
                     if (entry != null) {
                         currentLoadPosition = PositionFactory.create(entry.getLedgerId(), entry.getEntryId());
                         List<PendingAckMetadataEntry> logs = deserializeEntry(entry);
                         if (logs.isEmpty()){
+                            entry.release();
                             continue;
                         } else if (logs.size() == 1){
                             currentIndexLag.incrementAndGet();
                             PendingAckMetadataEntry log = logs.get(0);
                             handleMetadataEntry(PositionFactory.create(entry.getLedgerId(), entry.getEntryId()), log);
                             pendingAckReplyCallBack.handleMetadataEntry(log);
+                            trackOngoingTxnLog(log);
                         } else {
                             int batchSize = logs.size();
                             for (int batchIndex = 0; batchIndex < batchSize; batchIndex++){
                                 PendingAckMetadataEntry log = logs.get(batchIndex);
                                 pendingAckReplyCallBack.handleMetadataEntry(log);
+                                trackOngoingTxnLog(log);
                             }
                             currentIndexLag.addAndGet(batchSize);
                             handleMetadataEntry(PositionFactory.create(entry.getLedgerId(), entry.getEntryId()), logs);
@@ -458,6 +647,9 @@ public class MLPendingAckStore implements PendingAckStore {
             BatchedPendingAckMetadataEntry batchedPendingAckMetadataEntry = new BatchedPendingAckMetadataEntry();
             batchedPendingAckMetadataEntry.parseFrom(buffer, buffer.readableBytes());
             return batchedPendingAckMetadataEntry.getPendingAckLogsList();
+        } else if (magicNum == PENDING_ACK_SNAPSHOT_PREFIX_MAGIC_NUMBER){
+            // The snapshot is replayed by its reference in the mark delete properties only.
+            return Collections.emptyList();
         } else {
             PendingAckMetadataEntry pendingAckMetadataEntry = new PendingAckMetadataEntry();
             pendingAckMetadataEntry.parseFrom(buffer, buffer.readableBytes());
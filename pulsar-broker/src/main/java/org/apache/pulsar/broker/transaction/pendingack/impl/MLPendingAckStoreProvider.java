@@ -155,6 +155,8 @@ public class MLPendingAckStoreProvider implements TransactionPendingAckStoreProv
                                                    Timer brokerClientSharedTimer,
                                                    PersistentTopic originPersistentTopic) {
         config.setCreateIfMissing(true);
+        final long snapshotIntervalRecords =
+                brokerService.getPulsar().getConfiguration().getTransactionPendingAckSnapshotIntervalRecords();
         brokerService
                 .getManagedLedgerFactoryForTopic(topicName, config.getStorageClassName())
                 .asyncOpen(pendingAckTopicNameObject.getPersistenceNamingEncoding(),
@@ -176,6 +178,7 @@ public class MLPendingAckStoreProvider implements TransactionPendingAckStoreProv
                                                                         .getPulsar()
                                                                         .getConfiguration()
                                                                         .getTransactionPendingAckLogIndexMinLag(),
+                                                                snapshotIntervalRecords,
                                                                 txnLogBufferedWriterConfig,
                                                                 brokerClientSharedTimer,
                                                                 bufferedWriterMetrics,
@@ -126,6 +126,19 @@ public class RawBatchConverter {
                                                       BiPredicate<String, MessageId> filter,
                                                       boolean retainNullKey)
             throws IOException {
+        return rebatchMessage(msg, metadata, filter, retainNullKey, false);
+    }
+
+    /**
+     * Same as {@link #rebatchMessage(RawMessage, MessageMetadata, BiPredicate, boolean)}, but the sub-messages with
+     * an empty payload which match the filter can be retained, so that the deletion of their key is kept.
+     */
+    public static Optional<RawMessage> rebatchMessage(RawMessage msg,
+                                                      MessageMetadata metadata,
+                                                      BiPredicate<String, MessageId> filter,
+                                                      boolean retainNullKey,
+                                                      boolean retainEmptyPayload)
+            throws IOException {
         checkArgument(msg.getMessageIdData().getBatchIndex() == -1);
 
         ByteBuf payload = msg.getHeadersAndPayload();
@@ -177,7 +190,7 @@ public class RawBatchConverter {
                                 Unpooled.EMPTY_BUFFER, batchBuffer);
                     }
                 } else if (filter.test(singleMessageMetadata.getPartitionKey(), id)
-                           && singleMessagePayload.readableBytes() > 0) {
+                           && (retainEmptyPayload || singleMessagePayload.readableBytes() > 0)) {
                     messagesRetained++;
                     Commands.serializeSingleMessageInBatchWithPayload(singleMessageMetadata,
                                                                       singleMessagePayload, batchBuffer);
@@ -19,9 +19,11 @@
 package org.apache.pulsar.compaction;
 
 import io.netty.buffer.ByteBuf;
+import java.io.Closeable;
 import java.io.IOException;
 import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -32,10 +34,12 @@ import java.util.function.BiPredicate;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.mledger.impl.LedgerMetadataUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.pulsar.broker.ServiceConfiguration;
 import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.MessageIdAdv;
 import org.apache.pulsar.client.api.PulsarClient;
 import org.apache.pulsar.client.api.RawMessage;
 import org.apache.pulsar.client.api.RawReader;
@@ -56,6 +60,8 @@ import org.slf4j.LoggerFactory;
  * <p>The two passes are required to avoid holding the payloads of each of
  * the latest values in memory, as the payload can be many orders of
  * magnitude larger than a message id.
+ *
+ * @param <T> the latest value of each key, filled by the phase one
  */
 public abstract class AbstractTwoPhaseCompactor<T> extends Compactor {
 
@@ -74,23 +80,93 @@ public abstract class AbstractTwoPhaseCompactor<T> extends Compactor {
     topicCompactionRetainNullKey = conf.isTopicCompactionRetainNullKey();
   }
 
-  protected abstract Map<String, MessageId> toLatestMessageIdForKey(Map<String, T> latestForKey);
+  /**
+   * Get the latest message id of each key, looked up by the phase two, from the latest value of each key.
+   */
+  protected abstract CompactionKeyIndex toLatestMessageIdForKey(String topic, T latestForKey) throws IOException;
+
+  /**
+   * Create the latest value of each key, filled by the phase one.
+   * If it implements {@link Closeable}, it's closed once the compaction is done.
+   */
+  protected abstract T newLatestForKey();
 
-  protected abstract boolean compactMessage(String topic, Map<String, T> latestForKey,
-      RawMessage m, MessageMetadata metadata, MessageId id);
+  /**
+   * @param retainTombstones whether the deletion of a key must be kept as its latest value, instead of removing it
+   */
+  protected abstract boolean compactMessage(String topic, T latestForKey,
+      RawMessage m, MessageMetadata metadata, MessageId id, boolean retainTombstones);
 
 
-  protected abstract boolean compactBatchMessage(String topic, Map<String, T> latestForKey,
+  protected abstract boolean compactBatchMessage(String topic, T latestForKey,
       RawMessage m,
-      MessageMetadata metadata, MessageId id);
+      MessageMetadata metadata, MessageId id, boolean retainTombstones);
+
+  /**
+   * Whether the compaction can only compact the messages published since the previous compaction, into a delta
+   * layer on top of the previous compacted ledger. It requires that a message always supersedes the messages of
+   * the same key published before it.
+   */
+  protected boolean supportsDeltaLayers() {
+    return false;
+  }
+
+  @Override
+  public CompletableFuture<Long> compact(String topic, CompactedTopicContext currentContext,
+      Position compactionHorizon) {
+    if (currentContext == null || compactionHorizon == null || !shouldAddDeltaLayer(currentContext)) {
+      return compact(topic);
+    }
+    DeltaLayerBase deltaBase = new DeltaLayerBase(currentContext, compactionHorizon);
+    return runCompaction(topic, reader -> doCompaction(reader, bk, deltaBase));
+  }
+
+  private boolean shouldAddDeltaLayer(CompactedTopicContext currentContext) {
+    int maxDeltaLayers = conf.getBrokerServiceCompactionMaxDeltaLayers();
+    if (!supportsDeltaLayers() || maxDeltaLayers <= 0) {
+      return false;
+    }
+    List<CompactedTopicContext> layers = currentContext.getLayers();
+    if (layers.size() > maxDeltaLayers) {
+      return false;
+    }
+    long baseSize = layers.get(0).getLedger().getLength();
+    long deltaSize = 0;
+    for (int i = 1; i < layers.size(); i++) {
+      deltaSize += layers.get(i).getLedger().getLength();
+    }
+    return deltaSize <= baseSize * conf.getBrokerServiceCompactionDeltaMergeRatio();
+  }
 
   @Override
   protected CompletableFuture<Long> doCompaction(RawReader reader, BookKeeper bk) {
-    return reader.hasMessageAvailableAsync()
+    return doCompaction(reader, bk, null);
+  }
+
+  private CompletableFuture<Long> doCompaction(RawReader reader, BookKeeper bk, DeltaLayerBase deltaBase) {
+    CompletableFuture<Void> seekFuture;
+    if (deltaBase != null) {
+      log.info("Compacting the messages of {} after {} into a delta layer on top of compacted ledger {}",
+          reader.getTopic(), deltaBase.horizon(), deltaBase.previousLayer().getLedger().getId());
+      // Only read the messages published after the compaction horizon
+      seekFuture = reader.seekAsync(
+          new MessageIdImpl(deltaBase.horizon().getLedgerId(), deltaBase.horizon().getEntryId(), -1));
+    } else {
+      seekFuture = CompletableFuture.completedFuture(null);
+    }
+    return seekFuture.thenCompose(__ -> reader.hasMessageAvailableAsync())
         .thenCompose(available -> {
           if (available) {
-            return phaseOne(reader).thenCompose(
-                (r) -> phaseTwo(reader, r.from, r.to, r.lastReadId, toLatestMessageIdForKey(r.latestForKey), bk));
+            return phaseOne(reader, deltaBase).thenCompose((r) -> {
+              CompletableFuture<Long> phaseTwoFuture;
+              try {
+                phaseTwoFuture = phaseTwo(reader, r.from, r.to, r.lastReadId,
+                    toLatestMessageIdForKey(reader.getTopic(), r.latestForKey), bk, deltaBase);
+              } catch (Exception e) {
+                phaseTwoFuture = CompletableFuture.failedFuture(e);
+              }
+              return phaseTwoFuture.whenComplete((__, ex) -> closeLatestForKey(r.latestForKey));
+            });
           } else {
             log.info("Skip compaction of the empty topic {}", reader.getTopic());
             return CompletableFuture.completedFuture(-1L);
@@ -98,9 +174,24 @@ public abstract class AbstractTwoPhaseCompactor<T> extends Compactor {
         });
   }
 
-  private CompletableFuture<PhaseOneResult> phaseOne(RawReader reader) {
-    Map<String, T> latestForKey = new HashMap<>();
-    CompletableFuture<PhaseOneResult> loopPromise = new CompletableFuture<>();
+  private void closeLatestForKey(T latestForKey) {
+    if (latestForKey instanceof Closeable closeable) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        log.warn("Failed to release the latest values of the keys", e);
+      }
+    }
+  }
+
+  private CompletableFuture<PhaseOneResult<T>> phaseOne(RawReader reader, DeltaLayerBase deltaBase) {
+    T latestForKey = newLatestForKey();
+    CompletableFuture<PhaseOneResult<T>> loopPromise = new CompletableFuture<>();
+    loopPromise.whenComplete((__, ex) -> {
+      if (ex != null) {
+        closeLatestForKey(latestForKey);
+      }
+    });
 
     reader.getLastMessageIdAsync()
         .thenAccept(lastMessageId -> {
@@ -112,7 +203,7 @@ public abstract class AbstractTwoPhaseCompactor<T> extends Compactor {
               lastImpl.getEntryId(),
               lastImpl.getPartitionIndex());
           phaseOneLoop(reader, Optional.empty(), Optional.empty(), lastEntryMessageId, latestForKey,
-              loopPromise);
+              loopPromise, deltaBase);
         }).exceptionally(ex -> {
           loopPromise.completeExceptionally(ex);
           return null;
@@ -125,8 +216,9 @@ public abstract class AbstractTwoPhaseCompactor<T> extends Compactor {
       Optional<MessageId> firstMessageId,
       Optional<MessageId> toMessageId,
       MessageId lastMessageId,
-      Map<String, T> latestForKey,
-      CompletableFuture<PhaseOneResult> loopPromise) {
+      T latestForKey,
+      CompletableFuture<PhaseOneResult<T>> loopPromise,
+      DeltaLayerBase deltaBase) {
     if (loopPromise.isDone()) {
       return;
     }
@@ -141,25 +233,30 @@ public abstract class AbstractTwoPhaseCompactor<T> extends Compactor {
         boolean deletedMessage = false;
         mxBean.addCompactionReadOp(reader.getTopic(), m.getHeadersAndPayload().readableBytes());
         MessageMetadata metadata = Commands.parseMessageMetadata(m.getHeadersAndPayload());
-        if (Markers.isServerOnlyMarker(metadata)) {
+        boolean retainTombstones = deltaBase != null;
+        if (deltaBase != null && deltaBase.horizon().compareTo(
+            ((MessageIdAdv) id).getLedgerId(), ((MessageIdAdv) id).getEntryId()) >= 0) {
+          // Already compacted into the previous layers
+          deletedMessage = true;
+        } else if (Markers.isServerOnlyMarker(metadata)) {
           mxBean.addCompactionRemovedEvent(reader.getTopic());
           deletedMessage = true;
         } else if (RawBatchConverter.isReadableBatch(metadata)) {
-          deletedMessage = compactBatchMessage(reader.getTopic(), latestForKey, m, metadata, id);
+          deletedMessage = compactBatchMessage(reader.getTopic(), latestForKey, m, metadata, id, retainTombstones);
         } else {
-          deletedMessage = compactMessage(reader.getTopic(), latestForKey, m, metadata, id);
+          deletedMessage = compactMessage(reader.getTopic(), latestForKey, m, metadata, id, retainTombstones);
         }
         MessageId first = firstMessageId.orElse(deletedMessage ? null : id);
         MessageId to = deletedMessage ? toMessageId.orElse(null) : id;
         if (id.compareTo(lastMessageId) == 0) {
-          loopPromise.complete(new PhaseOneResult(first == null ? id : first, to == null ? id : to,
+          loopPromise.complete(new PhaseOneResult<>(first == null ? id : first, to == null ? id : to,
               lastMessageId, latestForKey));
         } else {
           phaseOneLoop(reader,
               Optional.ofNullable(first),
               Optional.ofNullable(to),
               lastMessageId,
-              latestForKey, loopPromise);
+              latestForKey, loopPromise, deltaBase);
         }
       }
     }, scheduler).exceptionally(ex -> {
@@ -170,33 +267,71 @@ public abstract class AbstractTwoPhaseCompactor<T> extends Compactor {
 
   private CompletableFuture<Long> phaseTwo(RawReader reader, MessageId from, MessageId to,
       MessageId lastReadId,
-      Map<String, MessageId> latestForKey, BookKeeper bk) {
+      CompactionKeyIndex latestForKey, BookKeeper bk, DeltaLayerBase deltaBase) {
     Map<String, byte[]> metadata =
         LedgerMetadataUtils.buildMetadataForCompactedLedger(reader.getTopic(), to.toByteArray());
-    return createLedger(bk, metadata).thenCompose((ledger) -> {
-      log.info(
-          "Commencing phase two of compaction for {}, from {} to {}, compacting {} keys to ledger {}",
-          reader.getTopic(), from, to, latestForKey.size(), ledger.getId());
-      return phaseTwoSeekThenLoop(reader, from, to, lastReadId, latestForKey, bk, ledger);
+    Map<String, byte[]> compactedLedgerMetadata = new HashMap<>(metadata);
+    if (deltaBase != null) {
+      CompactedTopicImpl.setPreviousLayerLedgerId(compactedLedgerMetadata,
+          deltaBase.previousLayer().getLedger().getId());
+    }
+    boolean retainTombstones = deltaBase != null;
+    int seekIndexInterval = conf.getBrokerServiceCompactionSeekIndexInterval();
+    if (seekIndexInterval <= 0) {
+      return createLedger(bk, compactedLedgerMetadata).thenCompose((ledger) -> {
+        log.info(
+            "Commencing phase two of compaction for {}, from {} to {}, compacting {} keys to ledger {}",
+            reader.getTopic(), from, to, latestForKey.size(), ledger.getId());
+        return phaseTwoSeekThenLoop(reader, from, to, lastReadId, latestForKey, bk, ledger, null, null,
+            retainTombstones);
+      });
+    }
+    // The index ledger is created first, so that the compacted ledger metadata can reference it
+    return createLedger(bk, metadata).thenCompose((indexLedger) -> {
+      CompactedTopicIndex.setIndexLedgerId(compactedLedgerMetadata, indexLedger.getId());
+      CompletableFuture<LedgerHandle> ledgerFuture = createLedger(bk, compactedLedgerMetadata);
+      ledgerFuture.exceptionally((ex) -> {
+        deleteLedger(bk, indexLedger);
+        return null;
+      });
+      return ledgerFuture.thenCompose((ledger) -> {
+        log.info(
+            "Commencing phase two of compaction for {}, from {} to {}, compacting {} keys to ledger {}"
+                + " with index ledger {}",
+            reader.getTopic(), from, to, latestForKey.size(), ledger.getId(), indexLedger.getId());
+        return phaseTwoSeekThenLoop(reader, from, to, lastReadId, latestForKey, bk, ledger, indexLedger,
+            new CompactedTopicIndex.Writer(seekIndexInterval), retainTombstones);
+      });
     });
   }
 
   private CompletableFuture<Long> phaseTwoSeekThenLoop(RawReader reader, MessageId from,
       MessageId to,
-      MessageId lastReadId, Map<String, MessageId> latestForKey, BookKeeper bk,
-      LedgerHandle ledger) {
+      MessageId lastReadId, CompactionKeyIndex latestForKey, BookKeeper bk,
+      LedgerHandle ledger, LedgerHandle indexLedger, CompactedTopicIndex.Writer indexWriter,
+      boolean retainTombstones) {
     CompletableFuture<Long> promise = new CompletableFuture<>();
 
     reader.seekAsync(from).thenCompose((v) -> {
           Semaphore outstanding = new Semaphore(MAX_OUTSTANDING);
           CompletableFuture<Void> loopPromise = new CompletableFuture<>();
-          phaseTwoLoop(reader, to, latestForKey, ledger, outstanding, loopPromise, MessageId.earliest);
+          phaseTwoLoop(reader, to, latestForKey, ledger, outstanding, loopPromise, MessageId.earliest,
+              indexWriter, retainTombstones);
           return loopPromise;
-        }).thenCompose((v) -> closeLedger(ledger))
+        }).thenCompose((v) -> indexWriter != null
+            ? indexWriter.writeAndClose(indexLedger) : CompletableFuture.completedFuture(null))
+        .thenCompose((v) -> closeLedger(ledger))
         .thenCompose((v) -> reader.acknowledgeCumulativeAsync(lastReadId,
             Map.of(COMPACTED_TOPIC_LEDGER_PROPERTY, ledger.getId())))
         .whenComplete((res, exception) -> {
           if (exception != null) {
+            if (indexLedger != null) {
+              deleteLedger(bk, indexLedger).whenComplete((res2, exception2) -> {
+                if (exception2 != null) {
+                  log.warn("Cleanup of index ledger {} failed", indexLedger, exception2);
+                }
+              });
+            }
             deleteLedger(bk, ledger).whenComplete((res2, exception2) -> {
               if (exception2 != null) {
                 log.warn("Cleanup of ledger {} for failed", ledger, exception2);
@@ -211,9 +346,9 @@ public abstract class AbstractTwoPhaseCompactor<T> extends Compactor {
     return promise;
   }
 
-  private void phaseTwoLoop(RawReader reader, MessageId to, Map<String, MessageId> latestForKey,
+  private void phaseTwoLoop(RawReader reader, MessageId to, CompactionKeyIndex latestForKey,
       LedgerHandle lh, Semaphore outstanding, CompletableFuture<Void> promise,
-      MessageId lastCompactedMessageId) {
+      MessageId lastCompactedMessageId, CompactedTopicIndex.Writer indexWriter, boolean retainTombstones) {
     if (promise.isDone()) {
       return;
     }
@@ -225,7 +360,8 @@ public abstract class AbstractTwoPhaseCompactor<T> extends Compactor {
 
       if (m.getMessageId().compareTo(lastCompactedMessageId) <= 0) {
         m.close();
-        phaseTwoLoop(reader, to, latestForKey, lh, outstanding, promise, lastCompactedMessageId);
+        phaseTwoLoop(reader, to, latestForKey, lh, outstanding, promise, lastCompactedMessageId, indexWriter,
+            retainTombstones);
         return;
       }
 
@@ -240,7 +376,7 @@ public abstract class AbstractTwoPhaseCompactor<T> extends Compactor {
           try {
             messageToAdd = rebatchMessage(reader.getTopic(),
                 m, metadata, (key, subid) -> subid.equals(latestForKey.get(key)),
-                topicCompactionRetainNullKey);
+                topicCompactionRetainNullKey, retainTombstones);
           } catch (IOException ioe) {
             log.info("Error decoding batch for message {}. Whole batch will be included in output",
                 id, ioe);
@@ -253,7 +389,7 @@ public abstract class AbstractTwoPhaseCompactor<T> extends Compactor {
             messageToAdd = topicCompactionRetainNullKey ? Optional.of(m) : Optional.empty();
           } else if ((msg = latestForKey.get(keyAndSize.getLeft())) != null
               && msg.equals(id)) { // consider message only if present into latestForKey map
-            if (keyAndSize.getRight() <= 0) {
+            if (keyAndSize.getRight() <= 0 && !retainTombstones) {
               promise.completeExceptionally(new IllegalArgumentException(
                   "Compaction phase found empty record from sorted key-map"));
             }
@@ -265,6 +401,10 @@ public abstract class AbstractTwoPhaseCompactor<T> extends Compactor {
           RawMessage message = messageToAdd.get();
           try {
             outstanding.acquire();
+            if (indexWriter != null) {
+              // The entries are added in order, so the writer can count them to know their entry ids
+              indexWriter.entryAdded((MessageIdAdv) id);
+            }
             CompletableFuture<Void> addFuture = addToCompactedLedger(lh, message, reader.getTopic())
                 .whenComplete((res, exception2) -> {
                   outstanding.release();
@@ -303,7 +443,8 @@ public abstract class AbstractTwoPhaseCompactor<T> extends Compactor {
           }
           return;
         }
-        phaseTwoLoop(reader, to, latestForKey, lh, outstanding, promise, m.getMessageId());
+        phaseTwoLoop(reader, to, latestForKey, lh, outstanding, promise, m.getMessageId(), indexWriter,
+            retainTombstones);
       } finally {
         m.close();
       }
@@ -409,12 +550,20 @@ public abstract class AbstractTwoPhaseCompactor<T> extends Compactor {
   protected Optional<RawMessage> rebatchMessage(String topic, RawMessage msg,
       MessageMetadata metadata,
       BiPredicate<String, MessageId> filter,
-      boolean retainNullKey)
+      boolean retainNullKey,
+      boolean retainEmptyPayload)
       throws IOException {
     if (log.isDebugEnabled()) {
       log.debug("Rebatching message {} for topic {}", msg.getMessageId(), topic);
     }
-    return RawBatchConverter.rebatchMessage(msg, metadata, filter, retainNullKey);
+    return RawBatchConverter.rebatchMessage(msg, metadata, filter, retainNullKey, retainEmptyPayload);
+  }
+
+  /**
+   * The compacted ledger on top of which a delta layer is compacted, and the position up to which it covers
+   * the topic.
+   */
+  private record DeltaLayerBase(CompactedTopicContext previousLayer, Position horizon) {
   }
 
   protected static class PhaseOneResult<T> {
@@ -422,10 +571,10 @@ public abstract class AbstractTwoPhaseCompactor<T> extends Compactor {
     final MessageId from;
     final MessageId to; // last undeleted messageId
     final MessageId lastReadId; // last read messageId
-    final Map<String, T> latestForKey;
+    final T latestForKey;
 
     PhaseOneResult(MessageId from, MessageId to, MessageId lastReadId,
-        Map<String, T> latestForKey) {
+        T latestForKey) {
       this.from = from;
       this.to = to;
       this.lastReadId = lastReadId;
@@ -19,18 +19,46 @@
 package org.apache.pulsar.compaction;
 
 import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import lombok.Getter;
 import org.apache.bookkeeper.client.LedgerHandle;
 import org.apache.pulsar.common.api.proto.MessageIdData;
+import org.jspecify.annotations.Nullable;
 
 @Getter
 public class CompactedTopicContext {
 
     final LedgerHandle ledger;
     final AsyncLoadingCache<Long, MessageIdData> cache;
+    @Nullable
+    final CompactedTopicIndex index;
+    // The compacted ledger this one is a delta layer of, covering the older messages of the topic
+    @Nullable
+    final CompactedTopicContext previousLayer;
 
     public CompactedTopicContext(LedgerHandle ledger, AsyncLoadingCache<Long, MessageIdData> cache) {
+        this(ledger, cache, null, null);
+    }
+
+    public CompactedTopicContext(LedgerHandle ledger, AsyncLoadingCache<Long, MessageIdData> cache,
+                                 @Nullable CompactedTopicIndex index, @Nullable CompactedTopicContext previousLayer) {
         this.ledger = ledger;
         this.cache = cache;
+        this.index = index;
+        this.previousLayer = previousLayer;
+    }
+
+    /**
+     * @return the layers of the compacted topic, from the base compacted ledger to this one
+     */
+    public List<CompactedTopicContext> getLayers() {
+        List<CompactedTopicContext> layers = new ArrayList<>();
+        for (CompactedTopicContext layer = this; layer != null; layer = layer.previousLayer) {
+            layers.add(layer);
+        }
+        Collections.reverse(layers);
+        return layers;
     }
 }
@@ -18,6 +18,7 @@
  */
 package org.apache.pulsar.compaction;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.pulsar.common.protocol.Commands.DEFAULT_CONSUMER_EPOCH;
 import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
@@ -27,10 +28,14 @@ import io.netty.buffer.ByteBuf;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -52,6 +57,7 @@ import org.apache.pulsar.client.api.MessageId;
 import org.apache.pulsar.client.api.RawMessage;
 import org.apache.pulsar.client.impl.RawMessageImpl;
 import org.apache.pulsar.common.api.proto.MessageIdData;
+import org.apache.pulsar.common.util.FutureUtil;
 import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,10 +71,19 @@ public class CompactedTopicImpl implements CompactedTopic {
     static final long COMPACT_LEDGER_EMPTY = -0xfeed0fbbL;
     static final int DEFAULT_MAX_CACHE_SIZE = 100;
 
+    /**
+     * Custom metadata of a delta layer holding the id of the compacted ledger it is layered on.
+     */
+    static final String PREVIOUS_LAYER_METADATA = "pulsar/compactedTopicPreviousLayer";
+
     private final BookKeeper bk;
 
     private volatile Position compactionHorizon = null;
     private volatile CompletableFuture<CompactedTopicContext> compactedTopicContext = null;
+    // The index ledgers of the opened compacted ledgers, deleted with them
+    private final Map<Long, Long> indexLedgers = new ConcurrentHashMap<>();
+    // The previous layers of the opened delta layers, deleted with them unless still in use
+    private final Map<Long, Long> previousLayers = new ConcurrentHashMap<>();
 
     public CompactedTopicImpl(BookKeeper bk) {
         this.bk = bk;
@@ -78,7 +93,10 @@ public class CompactedTopicImpl implements CompactedTopic {
     public CompletableFuture<CompactedTopicContext> newCompactedLedger(Position p, long compactedLedgerId) {
         synchronized (this) {
             CompletableFuture<CompactedTopicContext> previousContext = compactedTopicContext;
-            compactedTopicContext = openCompactedLedger(bk, compactedLedgerId);
+            // the new ledger may be a delta layer on top of the current one, which can then be reused
+            CompactedTopicContext currentContext = previousContext != null && previousContext.isDone()
+                    && !previousContext.isCompletedExceptionally() ? previousContext.join() : null;
+            compactedTopicContext = openCompactedLedger(compactedLedgerId, currentContext);
 
             compactionHorizon = p;
 
@@ -104,7 +122,61 @@ public class CompactedTopicImpl implements CompactedTopic {
 
     @Override
     public CompletableFuture<Void> deleteCompactedLedger(long compactedLedgerId) {
-        return tryDeleteCompactedLedger(bk, compactedLedgerId);
+        CompletableFuture<CompactedTopicContext> currentContext = compactedTopicContext;
+        if (currentContext == null) {
+            currentContext = CompletableFuture.completedFuture(null);
+        }
+        return currentContext.exceptionally(__ -> null).thenCompose(context -> {
+            Set<Long> layersInUse = new HashSet<>();
+            if (context != null) {
+                for (CompactedTopicContext layer : context.getLayers()) {
+                    layersInUse.add(layer.getLedger().getId());
+                }
+            }
+            // delete the ledger with the layers below it which are no longer part of the current compacted topic
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            Long layer = compactedLedgerId;
+            while (layer != null && !layersInUse.contains(layer)) {
+                Long previousLayer = previousLayers.remove(layer);
+                futures.add(deleteLayer(layer));
+                layer = previousLayer != null && !previousLayers.containsValue(previousLayer) ? previousLayer : null;
+            }
+            return FutureUtil.waitForAll(futures);
+        });
+    }
+
+    private CompletableFuture<Void> deleteLayer(long compactedLedgerId) {
+        Long openedIndexLedgerId = indexLedgers.remove(compactedLedgerId);
+        CompletableFuture<Long> indexLedgerId = openedIndexLedgerId != null
+                ? CompletableFuture.completedFuture(openedIndexLedgerId)
+                : readIndexLedgerId(compactedLedgerId);
+        return indexLedgerId.thenCompose(indexId -> tryDeleteCompactedLedger(bk, compactedLedgerId)
+                .thenCompose(__ -> indexId >= 0 ? tryDeleteCompactedLedger(bk, indexId)
+                        : CompletableFuture.completedFuture(null)));
+    }
+
+    /**
+     * Read the id of the index ledger from the metadata of a compacted ledger which wasn't opened by this broker,
+     * e.g. the ledger of a compaction completed before the topic was loaded.
+     *
+     * @return the id of the index ledger, or -1 if it has none or the metadata can't be read
+     */
+    private CompletableFuture<Long> readIndexLedgerId(long compactedLedgerId) {
+        CompletableFuture<Long> promise = new CompletableFuture<>();
+        bk.asyncOpenLedgerNoRecovery(compactedLedgerId,
+                                     Compactor.COMPACTED_TOPIC_LEDGER_DIGEST_TYPE,
+                                     Compactor.COMPACTED_TOPIC_LEDGER_PASSWORD,
+                                     (rc, ledger, ctx) -> {
+                                         if (rc != BKException.Code.OK) {
+                                             log.warn("Failed to read the index ledger id of compacted ledger {}",
+                                                      compactedLedgerId, BKException.create(rc));
+                                             promise.complete(-1L);
+                                         } else {
+                                             promise.complete(CompactedTopicIndex.getIndexLedgerId(ledger));
+                                             ledger.closeAsync();
+                                         }
+                                     }, null);
+        return promise;
     }
 
     @Override
@@ -138,35 +210,29 @@ public class CompactedTopicImpl implements CompactedTopic {
                 int numberOfEntriesToRead = cursor.applyMaxSizeCap(maxEntries, bytesToRead);
 
                 compactedTopicContext.thenCompose(
-                    (context) -> findStartPoint(cursorPosition, context.ledger.getLastAddConfirmed(), context.cache)
-                        .thenCompose((startPoint) -> {
+                    (context) -> readCompactedEntries(context, cursorPosition, numberOfEntriesToRead)
+                        .thenAccept((entries) -> {
                             // do not need to read the compaction ledger if it is empty.
                             // the cursor just needs to be set to the compaction horizon
-                            if (startPoint == COMPACT_LEDGER_EMPTY || startPoint == NEWER_THAN_COMPACTED) {
+                            if (entries.isEmpty()) {
                                 cursor.seek(currentCompactionHorizon.getNext());
                                 callback.readEntriesComplete(Collections.emptyList(), readEntriesCtx);
-                                return CompletableFuture.completedFuture(null);
-                            } else {
-                                long endPoint = Math.min(context.ledger.getLastAddConfirmed(),
-                                                         startPoint + (numberOfEntriesToRead - 1));
-                                return readEntries(context.ledger, startPoint, endPoint)
-                                    .thenAccept((entries) -> {
-                                        long entriesSize = 0;
-                                        for (Entry entry : entries) {
-                                            entriesSize += entry.getLength();
-                                        }
-                                        cursor.updateReadStats(entries.size(), entriesSize);
-
-                                        Entry lastEntry = entries.get(entries.size() - 1);
-                                        // The compaction task depends on the last snapshot and the incremental
-                                        // entries to build the new snapshot. So for the compaction cursor, we
-                                        // need to force seek the read position to ensure the compactor can read
-                                        // the complete last snapshot because of the compactor will read the data
-                                        // before the compaction cursor mark delete position
-                                        cursor.seek(lastEntry.getPosition().getNext(), true);
-                                        callback.readEntriesComplete(entries, readEntriesCtx);
-                                    });
+                                return;
+                            }
+                            long entriesSize = 0;
+                            for (Entry entry : entries) {
+                                entriesSize += entry.getLength();
                             }
+                            cursor.updateReadStats(entries.size(), entriesSize);
+
+                            Entry lastEntry = entries.get(entries.size() - 1);
+                            // The compaction task depends on the last snapshot and the incremental
+                            // entries to build the new snapshot. So for the compaction cursor, we
+                            // need to force seek the read position to ensure the compactor can read
+                            // the complete last snapshot because of the compactor will read the data
+                            // before the compaction cursor mark delete position
+                            cursor.seek(lastEntry.getPosition().getNext(), true);
+                            callback.readEntriesComplete(entries, readEntriesCtx);
                         }))
                     .exceptionally((exception) -> {
                         if (exception.getCause() instanceof NoSuchElementException) {
@@ -180,13 +246,58 @@ public class CompactedTopicImpl implements CompactedTopic {
             }
     }
 
+    /**
+     * Read the compacted entries starting from the first one at or after the position. The layers of the compacted
+     * topic cover successive ranges of the topic, so the entries are read from the oldest layer having one.
+     * The layers are not merged: a key updated or deleted in a newer layer is still read from the older ones first,
+     * followed by its newer value or tombstone, so only the last message of each key gives its compacted value.
+     *
+     * @return the entries read, or an empty list if no compacted entry is at or after the position
+     */
+    static CompletableFuture<List<Entry>> readCompactedEntries(CompactedTopicContext context, Position p,
+                                                               int numberOfEntriesToRead) {
+        return readCompactedEntries(context.getLayers(), 0, p, numberOfEntriesToRead);
+    }
+
+    private static CompletableFuture<List<Entry>> readCompactedEntries(List<CompactedTopicContext> layers, int layer,
+                                                                       Position p, int numberOfEntriesToRead) {
+        if (layer == layers.size()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        CompactedTopicContext context = layers.get(layer);
+        long lastEntryId = context.ledger.getLastAddConfirmed();
+        return findStartPoint(p, lastEntryId, context.cache, context.index).thenCompose((startPoint) -> {
+            if (startPoint == COMPACT_LEDGER_EMPTY || startPoint == NEWER_THAN_COMPACTED) {
+                return readCompactedEntries(layers, layer + 1, p, numberOfEntriesToRead);
+            }
+            long endPoint = Math.min(lastEntryId, startPoint + (numberOfEntriesToRead - 1));
+            return readEntries(context.ledger, startPoint, endPoint);
+        });
+    }
+
     static CompletableFuture<Long> findStartPoint(Position p,
                                                   long lastEntryId,
                                                   AsyncLoadingCache<Long, MessageIdData> cache) {
+        return findStartPoint(p, lastEntryId, cache, null);
+    }
+
+    static CompletableFuture<Long> findStartPoint(Position p,
+                                                  long lastEntryId,
+                                                  AsyncLoadingCache<Long, MessageIdData> cache,
+                                                  @Nullable CompactedTopicIndex index) {
         CompletableFuture<Long> promise = new CompletableFuture<>();
         // if lastEntryId is less than zero it means there are no entries in the compact ledger
         if (lastEntryId < 0) {
             promise.complete(COMPACT_LEDGER_EMPTY);
+        } else if (index != null) {
+            // only search the entries between the index records around the position
+            long start = index.lowerBound(p);
+            long end = Math.min(index.upperBound(p, lastEntryId), lastEntryId);
+            if (start > end) {
+                promise.complete(NEWER_THAN_COMPACTED);
+            } else {
+                findStartPointLoop(p, start, end, promise, cache);
+            }
         } else {
             findStartPointLoop(p, 0, lastEntryId, promise, cache);
         }
@@ -255,7 +366,18 @@ public class CompactedTopicImpl implements CompactedTopic {
         return promise;
     }
 
-    private static CompletableFuture<CompactedTopicContext> openCompactedLedger(BookKeeper bk, long id) {
+    static long getPreviousLayerLedgerId(LedgerHandle compactedLedger) {
+        Map<String, byte[]> metadata = compactedLedger.getLedgerMetadata().getCustomMetadata();
+        byte[] previousLayerId = metadata != null ? metadata.get(PREVIOUS_LAYER_METADATA) : null;
+        return previousLayerId != null ? Long.parseLong(new String(previousLayerId, UTF_8)) : -1;
+    }
+
+    static void setPreviousLayerLedgerId(Map<String, byte[]> compactedLedgerMetadata, long previousLayerId) {
+        compactedLedgerMetadata.put(PREVIOUS_LAYER_METADATA, Long.toString(previousLayerId).getBytes(UTF_8));
+    }
+
+    private CompletableFuture<CompactedTopicContext> openCompactedLedger(long id,
+                                                                         @Nullable CompactedTopicContext current) {
         CompletableFuture<LedgerHandle> promise = new CompletableFuture<>();
         bk.asyncOpenLedger(id,
                            Compactor.COMPACTED_TOPIC_LEDGER_DIGEST_TYPE,
@@ -267,8 +389,43 @@ public class CompactedTopicImpl implements CompactedTopic {
                                    promise.complete(ledger);
                                }
                            }, null);
-        return promise.thenApply((ledger) -> new CompactedTopicContext(
-                                         ledger, createCache(ledger, DEFAULT_MAX_CACHE_SIZE)));
+        return promise.thenCompose((ledger) -> {
+            long previousLayerId = getPreviousLayerLedgerId(ledger);
+            CompletableFuture<CompactedTopicContext> previousLayer;
+            if (previousLayerId < 0) {
+                previousLayer = CompletableFuture.completedFuture(null);
+            } else {
+                previousLayers.put(id, previousLayerId);
+                previousLayer = findLayer(current, previousLayerId)
+                        .map(CompletableFuture::completedFuture)
+                        .orElseGet(() -> openCompactedLedger(previousLayerId, current));
+            }
+            long indexLedgerId = CompactedTopicIndex.getIndexLedgerId(ledger);
+            CompletableFuture<CompactedTopicIndex> index;
+            if (indexLedgerId < 0) {
+                index = CompletableFuture.completedFuture(null);
+            } else {
+                indexLedgers.put(id, indexLedgerId);
+                index = CompactedTopicIndex.read(bk, indexLedgerId)
+                        .exceptionally((ex) -> {
+                            // the readers fall back to a binary search over the whole compacted ledger
+                            log.warn("Failed to read the index ledger {} of compacted ledger {}",
+                                    indexLedgerId, id, ex);
+                            return null;
+                        });
+            }
+            return previousLayer.thenCombine(index, (previous, idx) -> new CompactedTopicContext(
+                    ledger, createCache(ledger, DEFAULT_MAX_CACHE_SIZE), idx, previous));
+        });
+    }
+
+    private static Optional<CompactedTopicContext> findLayer(@Nullable CompactedTopicContext context, long id) {
+        for (CompactedTopicContext layer = context; layer != null; layer = layer.previousLayer) {
+            if (layer.getLedger().getId() == id) {
+                return Optional.of(layer);
+            }
+        }
+        return Optional.empty();
     }
 
     private static CompletableFuture<Void> tryDeleteCompactedLedger(BookKeeper bk, long id) {
@@ -329,16 +486,22 @@ public class CompactedTopicImpl implements CompactedTopic {
         if (compactionHorizon == null) {
             return CompletableFuture.completedFuture(null);
         }
-        return compactedTopicContext.thenCompose(context -> {
-            if (context.ledger.getLastAddConfirmed() == -1) {
-                return CompletableFuture.completedFuture(null);
-            }
-            return readEntries(
-                    context.ledger, context.ledger.getLastAddConfirmed(), context.ledger.getLastAddConfirmed())
-                    .thenCompose(entries -> entries.size() > 0
-                            ? CompletableFuture.completedFuture(entries.get(0))
-                            : CompletableFuture.completedFuture(null));
-        });
+        return compactedTopicContext.thenCompose(CompactedTopicImpl::readLastEntry);
+    }
+
+    private static CompletableFuture<Entry> readLastEntry(@Nullable CompactedTopicContext context) {
+        if (context == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (context.ledger.getLastAddConfirmed() == -1) {
+            // the latest entry is in the previous layer if this delta layer is empty
+            return readLastEntry(context.previousLayer);
+        }
+        return readEntries(
+                context.ledger, context.ledger.getLastAddConfirmed(), context.ledger.getLastAddConfirmed())
+                .thenCompose(entries -> entries.size() > 0
+                        ? CompletableFuture.completedFuture(entries.get(0))
+                        : CompletableFuture.completedFuture(null));
     }
 
     CompletableFuture<Entry> findFirstMatchEntry(final Predicate<Entry> predicate) {
@@ -347,18 +510,27 @@ public class CompactedTopicImpl implements CompactedTopic {
         if (compactedTopicContextFuture == null) {
             return CompletableFuture.completedFuture(null);
         }
-        return compactedTopicContextFuture.thenCompose(compactedTopicContext -> {
-            LedgerHandle lh = compactedTopicContext.getLedger();
-            CompletableFuture<Long> promise = new CompletableFuture<>();
-            findFirstMatchIndexLoop(predicate, 0L, lh.getLastAddConfirmed(), promise, null, lh);
-            return promise.thenCompose(index -> {
-                if (index == null) {
-                    return CompletableFuture.completedFuture(null);
-                }
-                return readEntries(lh, index, index).thenApply(entries -> entries.get(0));
-            });
+        return compactedTopicContextFuture.thenCompose(compactedTopicContext ->
+                findFirstMatchEntry(predicate, compactedTopicContext.getLayers(), 0));
+    }
+
+    private static CompletableFuture<Entry> findFirstMatchEntry(final Predicate<Entry> predicate,
+                                                                final List<CompactedTopicContext> layers,
+                                                                final int layer) {
+        if (layer == layers.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        LedgerHandle lh = layers.get(layer).getLedger();
+        CompletableFuture<Long> promise = new CompletableFuture<>();
+        findFirstMatchIndexLoop(predicate, 0L, lh.getLastAddConfirmed(), promise, null, lh);
+        return promise.thenCompose(index -> {
+            if (index == null) {
+                return findFirstMatchEntry(predicate, layers, layer + 1);
+            }
+            return readEntries(lh, index, index).thenApply(entries -> entries.get(0));
         });
     }
+
     private static void findFirstMatchIndexLoop(final Predicate<Entry> predicate,
                                                 final long start, final long end,
                                                 final CompletableFuture<Long> promise,
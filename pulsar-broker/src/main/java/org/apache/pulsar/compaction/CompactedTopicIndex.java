@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.compaction;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.BookKeeper;
+import org.apache.bookkeeper.client.LedgerEntry;
+import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.pulsar.client.api.MessageIdAdv;
+import org.apache.pulsar.common.util.FutureUtil;
+
+/**
+ * Sparse index of a compacted ledger, mapping the position in the original topic of every n-th entry of the
+ * compacted ledger to its entry id.
+ *
+ * <p>The index is written by the compactor to a separate ledger, referenced by the custom metadata of the compacted
+ * ledger, so that the readers only have to binary search the compacted entries between two index records to find
+ * their start point, instead of the whole compacted ledger.
+ */
+public class CompactedTopicIndex {
+
+    /**
+     * Custom metadata of the compacted ledger holding the id of its index ledger.
+     */
+    static final String INDEX_LEDGER_METADATA = "pulsar/compactedTopicIndexLedger";
+
+    // Record layout: original ledger id, original entry id, compacted entry id
+    private static final int RECORD_SIZE = 3 * Long.BYTES;
+    private static final int RECORDS_PER_ENTRY = 8192;
+
+    private final long[] ledgerIds;
+    private final long[] entryIds;
+    private final long[] compactedEntryIds;
+
+    CompactedTopicIndex(long[] ledgerIds, long[] entryIds, long[] compactedEntryIds) {
+        this.ledgerIds = ledgerIds;
+        this.entryIds = entryIds;
+        this.compactedEntryIds = compactedEntryIds;
+    }
+
+    public int size() {
+        return compactedEntryIds.length;
+    }
+
+    /**
+     * @return the first compacted entry id which may be at or after the position
+     */
+    long lowerBound(Position p) {
+        int record = firstRecordAtOrAfter(p);
+        return record > 0 ? compactedEntryIds[record - 1] + 1 : 0;
+    }
+
+    /**
+     * @return the last compacted entry id to search for the first entry at or after the position
+     */
+    long upperBound(Position p, long lastEntryId) {
+        int record = firstRecordAtOrAfter(p);
+        return record < compactedEntryIds.length ? compactedEntryIds[record] : lastEntryId;
+    }
+
+    private int firstRecordAtOrAfter(Position p) {
+        int from = 0;
+        int to = compactedEntryIds.length;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (p.compareTo(ledgerIds[middle], entryIds[middle]) > 0) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    static long getIndexLedgerId(LedgerHandle compactedLedger) {
+        Map<String, byte[]> metadata = compactedLedger.getLedgerMetadata().getCustomMetadata();
+        byte[] indexLedgerId = metadata != null ? metadata.get(INDEX_LEDGER_METADATA) : null;
+        return indexLedgerId != null ? Long.parseLong(new String(indexLedgerId, UTF_8)) : -1;
+    }
+
+    static void setIndexLedgerId(Map<String, byte[]> compactedLedgerMetadata, long indexLedgerId) {
+        compactedLedgerMetadata.put(INDEX_LEDGER_METADATA, Long.toString(indexLedgerId).getBytes(UTF_8));
+    }
+
+    /**
+     * Read the whole index ledger.
+     */
+    static CompletableFuture<CompactedTopicIndex> read(BookKeeper bk, long indexLedgerId) {
+        CompletableFuture<LedgerHandle> openFuture = new CompletableFuture<>();
+        bk.asyncOpenLedger(indexLedgerId,
+                           Compactor.COMPACTED_TOPIC_LEDGER_DIGEST_TYPE,
+                           Compactor.COMPACTED_TOPIC_LEDGER_PASSWORD,
+                           (rc, ledger, ctx) -> {
+                               if (rc != BKException.Code.OK) {
+                                   openFuture.completeExceptionally(BKException.create(rc));
+                               } else {
+                                   openFuture.complete(ledger);
+                               }
+                           }, null);
+        return openFuture.thenCompose(ledger -> {
+            CompletableFuture<CompactedTopicIndex> promise = new CompletableFuture<>();
+            if (ledger.getLastAddConfirmed() < 0) {
+                promise.complete(new CompactedTopicIndex(new long[0], new long[0], new long[0]));
+            } else {
+                ledger.asyncReadEntries(0, ledger.getLastAddConfirmed(), (rc, _lh, seq, ctx) -> {
+                    if (rc != BKException.Code.OK) {
+                        promise.completeExceptionally(BKException.create(rc));
+                        return;
+                    }
+                    List<ByteBuf> buffers = new ArrayList<>();
+                    int records = 0;
+                    while (seq.hasMoreElements()) {
+                        LedgerEntry entry = seq.nextElement();
+                        buffers.add(entry.getEntryBuffer());
+                        records += entry.getEntryBuffer().readableBytes() / RECORD_SIZE;
+                    }
+                    long[] ledgerIds = new long[records];
+                    long[] entryIds = new long[records];
+                    long[] compactedEntryIds = new long[records];
+                    int record = 0;
+                    for (ByteBuf buf : buffers) {
+                        while (buf.readableBytes() >= RECORD_SIZE) {
+                            ledgerIds[record] = buf.readLong();
+                            entryIds[record] = buf.readLong();
+                            compactedEntryIds[record] = buf.readLong();
+                            record++;
+                        }
+                        buf.release();
+                    }
+                    promise.complete(new CompactedTopicIndex(ledgerIds, entryIds, compactedEntryIds));
+                }, null);
+            }
+            return promise.whenComplete((__, ex) -> ledger.asyncClose((rc, lh, ctx) -> { }, null));
+        });
+    }
+
+    /**
+     * Collect the index records while the compacted ledger is written, in the order of its entries.
+     */
+    static class Writer {
+        private final int interval;
+        private final ByteBuf records = Unpooled.buffer();
+        private long compactedEntries;
+
+        Writer(int interval) {
+            this.interval = interval;
+        }
+
+        /**
+         * Record the next entry added to the compacted ledger.
+         */
+        void entryAdded(MessageIdAdv id) {
+            if (compactedEntries % interval == 0) {
+                records.writeLong(id.getLedgerId());
+                records.writeLong(id.getEntryId());
+                records.writeLong(compactedEntries);
+            }
+            compactedEntries++;
+        }
+
+        /**
+         * Write the records to the index ledger and close it.
+         */
+        CompletableFuture<Void> writeAndClose(LedgerHandle indexLedger) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            int maxEntrySize = RECORDS_PER_ENTRY * RECORD_SIZE;
+            while (records.isReadable()) {
+                ByteBuf entry = records.readRetainedSlice(Math.min(maxEntrySize, records.readableBytes()));
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                indexLedger.asyncAddEntry(entry, (rc, ledger, entryId, ctx) -> {
+                    if (rc != BKException.Code.OK) {
+                        future.completeExceptionally(BKException.create(rc));
+                    } else {
+                        future.complete(null);
+                    }
+                }, null);
+                futures.add(future);
+            }
+            records.release();
+            return FutureUtil.waitForAll(futures).thenCompose(__ -> {
+                CompletableFuture<Void> closeFuture = new CompletableFuture<>();
+                indexLedger.asyncClose((rc, ledger, ctx) -> {
+                    if (rc != BKException.Code.OK) {
+                        closeFuture.completeExceptionally(BKException.create(rc));
+                    } else {
+                        closeFuture.complete(null);
+                    }
+                }, null);
+                return closeFuture;
+            });
+        }
+    }
+}
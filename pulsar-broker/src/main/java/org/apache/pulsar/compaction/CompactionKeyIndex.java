@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.compaction;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import org.apache.pulsar.client.api.MessageId;
+
+/**
+ * Index of the latest message id of each key, filled by the phase one of the compaction and looked up by its
+ * phase two. Unlike a map, its keys can't be iterated. The implementations are not thread-safe.
+ */
+public interface CompactionKeyIndex extends Closeable {
+
+    /**
+     * @return whether the key had a previous id, which may only be counted by {@link #seal()} when the previous id
+     *         was spilled to the disk
+     */
+    boolean put(String key, MessageId id);
+
+    void remove(String key);
+
+    /**
+     * Stop accepting updates, so that the keys can be looked up.
+     *
+     * @return the number of previous ids replaced by {@link #put} for which it returned false
+     */
+    long seal() throws IOException;
+
+    /**
+     * @return the latest id of the key, or null if it has none
+     */
+    MessageId get(String key);
+
+    /**
+     * @return the number of keys
+     */
+    long size();
+
+    @Override
+    void close();
+
+    /**
+     * Create the index used as the latest message id of each key.
+     *
+     * @param maxMemoryBytes the max memory of the index, or 0 to use an on-heap map of the keys
+     * @param spillDirectory the directory of the spilled runs, or null to use the default temporary directory
+     */
+    static CompactionKeyIndex create(long maxMemoryBytes, String spillDirectory) {
+        if (maxMemoryBytes <= 0) {
+            return new HeapCompactionKeyIndex();
+        }
+        return new SpillingCompactionKeyIndex(maxMemoryBytes, spillDirectory != null && !spillDirectory.isEmpty()
+                ? new File(spillDirectory) : null);
+    }
+}
@@ -56,6 +56,11 @@ public class CompactionRecord {
         compactionRemovedEventCount.increment();
     }
 
+    public void addCompactionRemovedEvents(long count) {
+        lastCompactionRemovedEventCountOp.add(count);
+        compactionRemovedEventCount.add(count);
+    }
+
     public void addCompactionStartOp() {
         lastCompactionRemovedEventCountOp.reset();
         lastCompactionStartTimeOp = System.currentTimeMillis();
@@ -21,7 +21,9 @@ package org.apache.pulsar.compaction;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
 import org.apache.bookkeeper.client.BookKeeper;
+import org.apache.bookkeeper.mledger.Position;
 import org.apache.pulsar.broker.ServiceConfiguration;
 import org.apache.pulsar.client.api.PulsarClient;
 import org.apache.pulsar.client.api.RawReader;
@@ -56,14 +58,32 @@ public abstract class Compactor {
     }
 
     public CompletableFuture<Long> compact(String topic) {
+        return runCompaction(topic, reader -> doCompaction(reader, bk));
+    }
+
+    /**
+     * Compact the topic, knowing its current compacted ledger, so that the compaction may only add a delta layer
+     * on top of it instead of compacting the whole topic again.
+     *
+     * @param currentContext the current compacted ledger of the topic
+     * @param compactionHorizon the position up to which the topic has been compacted in the current compacted ledger
+     */
+    public CompletableFuture<Long> compact(String topic, CompactedTopicContext currentContext,
+                                           Position compactionHorizon) {
+        return compact(topic);
+    }
+
+    protected CompletableFuture<Long> runCompaction(String topic,
+                                                    Function<RawReader, CompletableFuture<Long>> compaction) {
         return RawReader.create(pulsar, topic, COMPACTION_SUBSCRIPTION, false, false).thenComposeAsync(
-                this::compactAndCloseReader, scheduler);
+                reader -> compactAndCloseReader(reader, compaction), scheduler);
     }
 
-    private CompletableFuture<Long> compactAndCloseReader(RawReader reader) {
+    private CompletableFuture<Long> compactAndCloseReader(RawReader reader,
+                                                          Function<RawReader, CompletableFuture<Long>> compaction) {
         CompletableFuture<Long> promise = new CompletableFuture<>();
         mxBean.addCompactionStartOp(reader.getTopic());
-        doCompaction(reader, bk).whenComplete(
+        compaction.apply(reader).whenComplete(
                 (ledgerId, exception) -> {
                     reader.closeAsync().whenComplete((v, exception2) -> {
                         if (exception2 != null) {
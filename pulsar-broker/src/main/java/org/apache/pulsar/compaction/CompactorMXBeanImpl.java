@@ -31,6 +31,10 @@ public class CompactorMXBeanImpl implements CompactorMXBean {
         compactionRecordOps.computeIfAbsent(topic, k -> new CompactionRecord()).addCompactionRemovedEvent();
     }
 
+    public void addCompactionRemovedEvents(String topic, long count) {
+        compactionRecordOps.computeIfAbsent(topic, k -> new CompactionRecord()).addCompactionRemovedEvents(count);
+    }
+
     public void addCompactionStartOp(String topic) {
         compactionRecordOps.computeIfAbsent(topic, k -> new CompactionRecord()).addCompactionStartOp();
     }
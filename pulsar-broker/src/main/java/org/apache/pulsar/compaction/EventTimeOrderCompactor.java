@@ -20,11 +20,11 @@ package org.apache.pulsar.compaction;
 
 import io.netty.buffer.ByteBuf;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.stream.Collectors;
 import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -37,7 +37,7 @@ import org.apache.pulsar.common.api.proto.MessageMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class EventTimeOrderCompactor extends AbstractTwoPhaseCompactor<Pair<MessageId, Long>> {
+public class EventTimeOrderCompactor extends AbstractTwoPhaseCompactor<Map<String, Pair<MessageId, Long>>> {
 
   private static final Logger log = LoggerFactory.getLogger(EventTimeOrderCompactor.class);
 
@@ -49,18 +49,21 @@ public class EventTimeOrderCompactor extends AbstractTwoPhaseCompactor<Pair<Mess
   }
 
   @Override
-  protected Map<String, MessageId> toLatestMessageIdForKey(
+  protected Map<String, Pair<MessageId, Long>> newLatestForKey() {
+    return new HashMap<>();
+  }
+
+  @Override
+  protected CompactionKeyIndex toLatestMessageIdForKey(String topic,
       Map<String, Pair<MessageId, Long>> latestForKey) {
-    return latestForKey.entrySet()
-        .stream()
-        .collect(Collectors.toMap(
-            Map.Entry::getKey,
-            entry -> entry.getValue().getLeft()));
+    CompactionKeyIndex latestMessageIdForKey = new HeapCompactionKeyIndex();
+    latestForKey.forEach((key, value) -> latestMessageIdForKey.put(key, value.getLeft()));
+    return latestMessageIdForKey;
   }
 
   @Override
   protected boolean compactMessage(String topic, Map<String, Pair<MessageId, Long>> latestForKey,
-      RawMessage m, MessageMetadata metadata, MessageId id) {
+      RawMessage m, MessageMetadata metadata, MessageId id, boolean retainTombstones) {
     boolean deletedMessage = false;
     boolean replaceMessage = false;
     MessageCompactionData mcd = extractMessageCompactionData(m, metadata);
@@ -93,7 +96,7 @@ public class EventTimeOrderCompactor extends AbstractTwoPhaseCompactor<Pair<Mess
 
   @Override
   protected boolean compactBatchMessage(String topic, Map<String, Pair<MessageId, Long>> latestForKey, RawMessage m,
-      MessageMetadata metadata, MessageId id) {
+      MessageMetadata metadata, MessageId id, boolean retainTombstones) {
     boolean deletedMessage = false;
     try {
       int numMessagesInBatch = metadata.getNumMessagesInBatch();
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.compaction;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.pulsar.client.api.MessageId;
+
+/**
+ * Compaction key index keeping all the keys in an on-heap map.
+ */
+class HeapCompactionKeyIndex implements CompactionKeyIndex {
+
+    private final Map<String, MessageId> latestForKey = new HashMap<>();
+
+    @Override
+    public boolean put(String key, MessageId id) {
+        return latestForKey.put(key, id) != null;
+    }
+
+    @Override
+    public void remove(String key) {
+        latestForKey.remove(key);
+    }
+
+    @Override
+    public long seal() {
+        return 0;
+    }
+
+    @Override
+    public MessageId get(String key) {
+        return latestForKey.get(key);
+    }
+
+    @Override
+    public long size() {
+        return latestForKey.size();
+    }
+
+    @Override
+    public void close() {
+        latestForKey.clear();
+    }
+}
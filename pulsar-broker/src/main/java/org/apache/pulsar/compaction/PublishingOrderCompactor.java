@@ -20,7 +20,6 @@ package org.apache.pulsar.compaction;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
@@ -35,7 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
-public class PublishingOrderCompactor extends AbstractTwoPhaseCompactor<MessageId> {
+public class PublishingOrderCompactor extends AbstractTwoPhaseCompactor<CompactionKeyIndex> {
 
     private static final Logger log = LoggerFactory.getLogger(PublishingOrderCompactor.class);
 
@@ -47,20 +46,36 @@ public class PublishingOrderCompactor extends AbstractTwoPhaseCompactor<MessageI
     }
 
     @Override
-    protected Map<String, MessageId> toLatestMessageIdForKey(Map<String, MessageId> latestForKey) {
+    protected boolean supportsDeltaLayers() {
+        return true;
+    }
+
+    @Override
+    protected CompactionKeyIndex newLatestForKey() {
+        return CompactionKeyIndex.create(conf.getBrokerServiceCompactionKeyIndexMaxMemoryBytes(),
+                conf.getBrokerServiceCompactionKeyIndexSpillDirectory());
+    }
+
+    @Override
+    protected CompactionKeyIndex toLatestMessageIdForKey(String topic, CompactionKeyIndex latestForKey)
+        throws IOException {
+        // The messages replaced in the runs spilled to the disk are only known once merged
+        long replacedMessages = latestForKey.seal();
+        if (replacedMessages > 0) {
+            mxBean.addCompactionRemovedEvents(topic, replacedMessages);
+        }
         return latestForKey;
     }
 
     @Override
-    protected boolean compactMessage(String topic, Map<String, MessageId> latestForKey,
-        RawMessage m, MessageMetadata metadata, MessageId id) {
+    protected boolean compactMessage(String topic, CompactionKeyIndex latestForKey,
+        RawMessage m, MessageMetadata metadata, MessageId id, boolean retainTombstones) {
         boolean deletedMessage = false;
         boolean replaceMessage = false;
         Pair<String, Integer> keyAndSize = extractKeyAndSize(m, metadata);
         if (keyAndSize != null) {
-            if (keyAndSize.getRight() > 0) {
-                MessageId old = latestForKey.put(keyAndSize.getLeft(), id);
-                replaceMessage = old != null;
+            if (keyAndSize.getRight() > 0 || retainTombstones) {
+                replaceMessage = latestForKey.put(keyAndSize.getLeft(), id);
             } else {
                 deletedMessage = true;
                 latestForKey.remove(keyAndSize.getLeft());
@@ -77,8 +92,8 @@ public class PublishingOrderCompactor extends AbstractTwoPhaseCompactor<MessageI
     }
 
     @Override
-    protected boolean compactBatchMessage(String topic, Map<String, MessageId> latestForKey,
-        RawMessage m, MessageMetadata metadata, MessageId id) {
+    protected boolean compactBatchMessage(String topic, CompactionKeyIndex latestForKey,
+        RawMessage m, MessageMetadata metadata, MessageId id, boolean retainTombstones) {
         boolean deletedMessage = false;
         try {
             int numMessagesInBatch = metadata.getNumMessagesInBatch();
@@ -94,9 +109,8 @@ public class PublishingOrderCompactor extends AbstractTwoPhaseCompactor<MessageI
                         }
                         continue;
                     }
-                    if (e.getRight() > 0) {
-                        MessageId old = latestForKey.put(e.getMiddle(), e.getLeft());
-                        if (old != null) {
+                    if (e.getRight() > 0 || retainTombstones) {
+                        if (latestForKey.put(e.getMiddle(), e.getLeft())) {
                             mxBean.addCompactionRemovedEvent(topic);
                         }
                     } else {
@@ -19,14 +19,12 @@
 package org.apache.pulsar.compaction;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static org.apache.pulsar.compaction.CompactedTopicImpl.COMPACT_LEDGER_EMPTY;
-import static org.apache.pulsar.compaction.CompactedTopicImpl.NEWER_THAN_COMPACTED;
-import static org.apache.pulsar.compaction.CompactedTopicImpl.findStartPoint;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
@@ -62,6 +60,17 @@ public class PulsarTopicCompactionService implements TopicCompactionService {
         } catch (Throwable e) {
             return CompletableFuture.failedFuture(e);
         }
+        CompletableFuture<CompactedTopicContext> currentContext;
+        Optional<Position> compactionHorizon;
+        synchronized (compactedTopic) {
+            currentContext = compactedTopic.getCompactedTopicContextFuture();
+            compactionHorizon = compactedTopic.getCompactionHorizon();
+        }
+        if (currentContext != null && currentContext.isDone() && !currentContext.isCompletedExceptionally()
+                && compactionHorizon.isPresent()) {
+            // the compactor may only write the messages after the horizon, as a delta layer on the current ledger
+            return compactor.compact(topic, currentContext.join(), compactionHorizon.get()).thenApply(x -> null);
+        }
         return compactor.compact(topic).thenApply(x -> null);
     }
 
@@ -74,15 +83,8 @@ public class PulsarTopicCompactionService implements TopicCompactionService {
         CompletableFuture<List<Entry>> resultFuture = new CompletableFuture<>();
 
         Objects.requireNonNull(compactedTopic.getCompactedTopicContextFuture()).thenCompose(
-                (context) -> findStartPoint(startPosition, context.ledger.getLastAddConfirmed(),
-                        context.cache).thenCompose((startPoint) -> {
-                    if (startPoint == COMPACT_LEDGER_EMPTY || startPoint == NEWER_THAN_COMPACTED) {
-                        return CompletableFuture.completedFuture(Collections.emptyList());
-                    }
-                    long endPoint =
-                            Math.min(context.ledger.getLastAddConfirmed(), startPoint + (numberOfEntriesToRead - 1));
-                    return CompactedTopicImpl.readEntries(context.ledger, startPoint, endPoint);
-                })).whenComplete((result, ex) -> {
+                (context) -> CompactedTopicImpl.readCompactedEntries(context, startPosition, numberOfEntriesToRead))
+                .whenComplete((result, ex) -> {
                     if (ex == null) {
                         resultFuture.complete(result);
                     } else {
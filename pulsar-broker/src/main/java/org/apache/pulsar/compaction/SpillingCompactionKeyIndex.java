@@ -0,0 +1,512 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.compaction;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.MessageIdAdv;
+import org.apache.pulsar.client.impl.BatchMessageIdImpl;
+import org.apache.pulsar.client.impl.MessageIdImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compaction key index used instead of an on-heap map of the keys for the topics with a very large number of keys.
+ *
+ * <p>The keys are not kept, only a 128 bits digest of each of them, in an open addressing table allocated off-heap.
+ * Once the table exceeds its memory budget, its entries are sorted by digest and spilled to a run file on the disk,
+ * and the table is cleared. The removed keys are kept in the table as tombstones until the next spill, so that they
+ * shadow the older runs.
+ *
+ * <p>{@link #seal()} must be called once all the keys have been added. If some runs were spilled, they're merged
+ * into a single sorted file, keeping the latest entry of each digest, which is then looked up with a binary search.
+ *
+ * <p>{@link #put} only reports the previous ids found in the table. The previous ids replaced in the spilled runs
+ * are counted while merging them.
+ */
+public class SpillingCompactionKeyIndex implements CompactionKeyIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SpillingCompactionKeyIndex.class);
+
+    private static final HashFunction DIGEST = Hashing.murmur3_128();
+
+    // Entry layout: digest high bits, digest low bits, ledger id, entry id state, partition index, batch index
+    private static final int ENTRY_SIZE = 40;
+    private static final int LEDGER_ID_OFFSET = 16;
+    private static final int ENTRY_ID_OFFSET = 24;
+    private static final int PARTITION_INDEX_OFFSET = 32;
+    private static final int BATCH_INDEX_OFFSET = 36;
+
+    // The entry id state is the entry id shifted so that 0 marks an empty slot and 1 a removed key, followed by the
+    // FIRST_PUT bit, which tells whether the first update of the key since the previous spill was a put. The merge
+    // counts the ids of the older runs replaced by such a put.
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = 1;
+    private static final long ENTRY_ID_SHIFT = 2;
+    private static final long FIRST_PUT = 1;
+
+    private static final double MAX_LOAD_FACTOR = 0.7;
+    private static final int MIN_CAPACITY = 16;
+
+    private final File spillDirectory;
+    private final int capacity;
+    private final int maxUsedSlots;
+    private final ByteBuf table;
+    private int usedSlots;
+    private int liveEntriesInTable;
+
+    private final List<File> runs = new ArrayList<>();
+    private File mergedRun;
+    private RandomAccessFile mergedRunFile;
+    private long mergedRunEntries;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(ENTRY_SIZE);
+    private final ByteBuf readBuf = Unpooled.wrappedBuffer(readBuffer.array());
+    private boolean sealed;
+    private long size = -1;
+
+    /**
+     * @param maxMemoryBytes the max memory used by the in-memory table
+     * @param spillDirectory the directory of the spilled runs, or null to use the default temporary directory
+     */
+    public SpillingCompactionKeyIndex(long maxMemoryBytes, File spillDirectory) {
+        long maxCapacity = Math.max(MIN_CAPACITY, maxMemoryBytes / ENTRY_SIZE);
+        this.capacity = Integer.highestOneBit((int) Math.min(maxCapacity, Integer.MAX_VALUE / ENTRY_SIZE));
+        this.maxUsedSlots = (int) (capacity * MAX_LOAD_FACTOR);
+        this.spillDirectory = spillDirectory;
+        this.table = PooledByteBufAllocator.DEFAULT.directBuffer(capacity * ENTRY_SIZE, capacity * ENTRY_SIZE);
+        this.table.setZero(0, table.capacity());
+    }
+
+    @Override
+    public boolean put(String key, MessageId value) {
+        checkNotSealed();
+        MessageIdAdv id = (MessageIdAdv) value;
+        HashCode digest = DIGEST.hashString(key, StandardCharsets.UTF_8);
+        long high = digest.asLong();
+        long low = lowBits(digest);
+        int slot = findSlot(high, low);
+        int offset = slot * ENTRY_SIZE;
+        long state = table.getLong(offset + ENTRY_ID_OFFSET);
+        long storedEntryId = state >>> 1;
+        if (storedEntryId == EMPTY) {
+            usedSlots++;
+        }
+        if (storedEntryId <= TOMBSTONE) {
+            liveEntriesInTable++;
+        }
+        long firstPut = storedEntryId == EMPTY ? FIRST_PUT : state & FIRST_PUT;
+        table.setLong(offset, high);
+        table.setLong(offset + 8, low);
+        table.setLong(offset + LEDGER_ID_OFFSET, id.getLedgerId());
+        table.setLong(offset + ENTRY_ID_OFFSET, ((id.getEntryId() + ENTRY_ID_SHIFT) << 1) | firstPut);
+        table.setInt(offset + PARTITION_INDEX_OFFSET, id.getPartitionIndex());
+        table.setInt(offset + BATCH_INDEX_OFFSET, id.getBatchIndex());
+        maybeSpill();
+        return storedEntryId > TOMBSTONE;
+    }
+
+    @Override
+    public void remove(String key) {
+        checkNotSealed();
+        HashCode digest = DIGEST.hashString(key, StandardCharsets.UTF_8);
+        long high = digest.asLong();
+        long low = lowBits(digest);
+        int offset = findSlot(high, low) * ENTRY_SIZE;
+        long state = table.getLong(offset + ENTRY_ID_OFFSET);
+        long storedEntryId = state >>> 1;
+        if (storedEntryId == TOMBSTONE || (storedEntryId == EMPTY && runs.isEmpty())) {
+            // Nothing to shadow
+            return;
+        }
+        if (storedEntryId == EMPTY) {
+            usedSlots++;
+            table.setLong(offset, high);
+            table.setLong(offset + 8, low);
+        } else {
+            liveEntriesInTable--;
+        }
+        table.setLong(offset + ENTRY_ID_OFFSET, (TOMBSTONE << 1) | (state & FIRST_PUT));
+        maybeSpill();
+    }
+
+    @Override
+    public MessageId get(String key) {
+        HashCode digest = DIGEST.hashString(key, StandardCharsets.UTF_8);
+        long high = digest.asLong();
+        long low = lowBits(digest);
+        int offset = findSlot(high, low) * ENTRY_SIZE;
+        long storedEntryId = table.getLong(offset + ENTRY_ID_OFFSET) >>> 1;
+        if (storedEntryId == TOMBSTONE) {
+            return null;
+        } else if (storedEntryId != EMPTY) {
+            return readMessageId(table, offset);
+        }
+        if (mergedRunFile != null) {
+            return lookupMergedRun(high, low);
+        }
+        if (!runs.isEmpty()) {
+            throw new IllegalStateException("The spilled runs can only be looked up once the index is sealed");
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of keys, only known once the index is sealed if some runs have been spilled
+     */
+    @Override
+    public long size() {
+        if (runs.isEmpty() && mergedRunFile == null) {
+            return liveEntriesInTable;
+        }
+        if (size < 0) {
+            throw new IllegalStateException("The size is only known once the index is sealed");
+        }
+        return size;
+    }
+
+    /**
+     * Stop accepting updates and merge the spilled runs, if any, so that the keys can be looked up.
+     *
+     * @return the number of previous ids replaced in the spilled runs
+     */
+    @Override
+    public long seal() throws IOException {
+        if (sealed) {
+            return 0;
+        }
+        sealed = true;
+        if (runs.isEmpty()) {
+            size = liveEntriesInTable;
+            return 0;
+        }
+        spill();
+        mergedRun = createRunFile();
+        long start = System.nanoTime();
+        MergeResult result = mergeRuns(runs, mergedRun);
+        for (File run : runs) {
+            Files.deleteIfExists(run.toPath());
+        }
+        runs.clear();
+        mergedRunEntries = result.entries();
+        size = mergedRunEntries;
+        mergedRunFile = new RandomAccessFile(mergedRun, "r");
+        log.info("Merged the compaction key index runs into {} with {} keys in {} ms", mergedRun, size,
+                (System.nanoTime() - start) / 1_000_000);
+        return result.replacedEntries();
+    }
+
+    @Override
+    public void close() {
+        if (table.refCnt() > 0) {
+            table.release();
+        }
+        try {
+            if (mergedRunFile != null) {
+                mergedRunFile.close();
+            }
+            if (mergedRun != null) {
+                Files.deleteIfExists(mergedRun.toPath());
+            }
+            for (File run : runs) {
+                Files.deleteIfExists(run.toPath());
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete the compaction key index runs", e);
+        }
+        runs.clear();
+    }
+
+    private void checkNotSealed() {
+        if (sealed) {
+            throw new IllegalStateException("The compaction key index is sealed");
+        }
+    }
+
+    private static long lowBits(HashCode digest) {
+        return ByteBuffer.wrap(digest.asBytes()).getLong(8);
+    }
+
+    /**
+     * @return the slot of the digest, or the empty slot where it would be inserted
+     */
+    private int findSlot(long high, long low) {
+        int mask = capacity - 1;
+        int slot = (int) (low ^ (low >>> 32)) & mask;
+        while (true) {
+            int offset = slot * ENTRY_SIZE;
+            if (table.getLong(offset + ENTRY_ID_OFFSET) == EMPTY
+                    || (table.getLong(offset) == high && table.getLong(offset + 8) == low)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static MessageId readMessageId(ByteBuf buf, int offset) {
+        long ledgerId = buf.getLong(offset + LEDGER_ID_OFFSET);
+        long entryId = (buf.getLong(offset + ENTRY_ID_OFFSET) >>> 1) - ENTRY_ID_SHIFT;
+        int partitionIndex = buf.getInt(offset + PARTITION_INDEX_OFFSET);
+        int batchIndex = buf.getInt(offset + BATCH_INDEX_OFFSET);
+        return batchIndex >= 0 ? new BatchMessageIdImpl(ledgerId, entryId, partitionIndex, batchIndex)
+                : new MessageIdImpl(ledgerId, entryId, partitionIndex);
+    }
+
+    private void maybeSpill() {
+        if (usedSlots < maxUsedSlots) {
+            return;
+        }
+        try {
+            spill();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to spill the compaction key index", e);
+        }
+    }
+
+    /**
+     * Sort the entries of the table, tombstones included, and write them to a new run file.
+     */
+    private void spill() throws IOException {
+        // Move the used slots to the beginning of the table before sorting them
+        int count = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = slot * ENTRY_SIZE;
+            if (table.getLong(offset + ENTRY_ID_OFFSET) != EMPTY) {
+                if (slot != count) {
+                    table.setBytes(count * ENTRY_SIZE, table, offset, ENTRY_SIZE);
+                }
+                count++;
+            }
+        }
+        sort(0, count - 1);
+
+        File run = createRunFile();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(run.toPath()), 1024 * 1024))) {
+            table.getBytes(0, out, count * ENTRY_SIZE);
+        }
+        runs.add(run);
+        log.info("Spilled {} compaction key index entries to {}", count, run);
+
+        table.setZero(0, table.capacity());
+        usedSlots = 0;
+        liveEntriesInTable = 0;
+    }
+
+    private File createRunFile() throws IOException {
+        File file = spillDirectory != null
+                ? File.createTempFile("compaction-key-index-", ".run", spillDirectory)
+                : File.createTempFile("compaction-key-index-", ".run");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private int compareEntries(int i, int j) {
+        int offsetI = i * ENTRY_SIZE;
+        int offsetJ = j * ENTRY_SIZE;
+        int cmp = Long.compare(table.getLong(offsetI), table.getLong(offsetJ));
+        return cmp != 0 ? cmp : Long.compare(table.getLong(offsetI + 8), table.getLong(offsetJ + 8));
+    }
+
+    private void swapEntries(int i, int j) {
+        int offsetI = i * ENTRY_SIZE;
+        int offsetJ = j * ENTRY_SIZE;
+        for (int pos = 0; pos < ENTRY_SIZE; pos += 8) {
+            long tmp = table.getLong(offsetI + pos);
+            table.setLong(offsetI + pos, table.getLong(offsetJ + pos));
+            table.setLong(offsetJ + pos, tmp);
+        }
+    }
+
+    private void sort(int from, int to) {
+        // Quick sort in place, recursing on the smaller partition to bound the stack depth
+        while (from < to) {
+            int pivot = (from + to) >>> 1;
+            swapEntries(pivot, to);
+            int store = from;
+            for (int i = from; i < to; i++) {
+                if (compareEntries(i, to) < 0) {
+                    swapEntries(i, store++);
+                }
+            }
+            swapEntries(store, to);
+            if (store - from < to - store) {
+                sort(from, store - 1);
+                from = store + 1;
+            } else {
+                sort(store + 1, to);
+                to = store - 1;
+            }
+        }
+    }
+
+    private static final class RunReader implements Comparable<RunReader> {
+        private final DataInputStream in;
+        // The newer runs shadow the older ones
+        private final int age;
+        private final byte[] entry = new byte[ENTRY_SIZE];
+        private final ByteBuffer entryBuffer = ByteBuffer.wrap(entry);
+
+        RunReader(File run, int age) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.toPath()), 1024 * 1024));
+            this.age = age;
+        }
+
+        boolean next() throws IOException {
+            try {
+                in.readFully(entry);
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        long high() {
+            return entryBuffer.getLong(0);
+        }
+
+        long low() {
+            return entryBuffer.getLong(8);
+        }
+
+        boolean isTombstone() {
+            return entryBuffer.getLong(ENTRY_ID_OFFSET) >>> 1 == TOMBSTONE;
+        }
+
+        boolean isFirstPut() {
+            return (entryBuffer.getLong(ENTRY_ID_OFFSET) & FIRST_PUT) != 0;
+        }
+
+        @Override
+        public int compareTo(RunReader other) {
+            int cmp = Long.compare(high(), other.high());
+            if (cmp == 0) {
+                cmp = Long.compare(low(), other.low());
+            }
+            return cmp != 0 ? cmp : Integer.compare(age, other.age);
+        }
+    }
+
+    /**
+     * @param entries the number of entries of the merged run
+     * @param replacedEntries the number of entries replaced by a put of a newer run
+     */
+    private record MergeResult(long entries, long replacedEntries) {
+    }
+
+    /**
+     * Merge the sorted runs, keeping the entry of the newest run for each digest and dropping the tombstones.
+     */
+    private static MergeResult mergeRuns(List<File> runs, File mergedRun) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>();
+        List<RunReader> readers = new ArrayList<>();
+        long entries = 0;
+        long replacedEntries = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(mergedRun.toPath()), 1024 * 1024))) {
+            for (int i = 0; i < runs.size(); i++) {
+                RunReader reader = new RunReader(runs.get(i), runs.size() - i);
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            boolean hasPrevious = false;
+            long previousHigh = 0;
+            long previousLow = 0;
+            boolean previousIsFirstPut = false;
+            while (!queue.isEmpty()) {
+                // The entries of a digest are polled from the newest run to the oldest one
+                RunReader reader = queue.poll();
+                boolean shadowed = hasPrevious && reader.high() == previousHigh && reader.low() == previousLow;
+                if (!shadowed) {
+                    hasPrevious = true;
+                    previousHigh = reader.high();
+                    previousLow = reader.low();
+                    if (!reader.isTombstone()) {
+                        out.write(reader.entry);
+                        entries++;
+                    }
+                } else if (previousIsFirstPut && !reader.isTombstone()) {
+                    replacedEntries++;
+                }
+                previousIsFirstPut = reader.isFirstPut();
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.in.close();
+            }
+        }
+        return new MergeResult(entries, replacedEntries);
+    }
+
+    private MessageId lookupMergedRun(long high, long low) {
+        FileChannel channel = mergedRunFile.getChannel();
+        long from = 0;
+        long to = mergedRunEntries - 1;
+        try {
+            while (from <= to) {
+                long middle = (from + to) >>> 1;
+                readBuffer.clear();
+                while (readBuffer.hasRemaining()) {
+                    if (channel.read(readBuffer, middle * ENTRY_SIZE + readBuffer.position()) < 0) {
+                        throw new EOFException("Unexpected end of " + mergedRun);
+                    }
+                }
+                int cmp = Long.compare(readBuffer.getLong(0), high);
+                if (cmp == 0) {
+                    cmp = Long.compare(readBuffer.getLong(8), low);
+                }
+                if (cmp == 0) {
+                    return readMessageId(readBuf, 0);
+                } else if (cmp < 0) {
+                    from = middle + 1;
+                } else {
+                    to = middle - 1;
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the compaction key index from " + mergedRun, e);
+        }
+    }
+}
@@ -31,6 +31,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.mledger.impl.LedgerMetadataUtils;
 import org.apache.pulsar.broker.ServiceConfiguration;
 import org.apache.pulsar.client.api.Consumer;
@@ -79,6 +80,12 @@ public class StrategicTwoPhaseCompactor extends PublishingOrderCompactor {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public CompletableFuture<Long> compact(String topic, CompactedTopicContext currentContext,
+                                           Position compactionHorizon) {
+        throw new UnsupportedOperationException();
+    }
+
 
     public <T> CompletableFuture<Long> compact(String topic,
                                                TopicCompactionStrategy<T> strategy) {
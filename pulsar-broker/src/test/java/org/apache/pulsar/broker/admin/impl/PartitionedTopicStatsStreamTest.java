@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.admin.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.StreamingOutput;
+import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.common.partition.PartitionedTopicMetadata;
+import org.apache.pulsar.common.policies.data.TopicStats;
+import org.apache.pulsar.common.policies.data.stats.PartitionedTopicStatsImpl;
+import org.apache.pulsar.common.policies.data.stats.TopicStatsImpl;
+import org.apache.pulsar.common.util.ObjectMapperFactory;
+import org.awaitility.Awaitility;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-admin")
+public class PartitionedTopicStatsStreamTest {
+
+    private static final TopicName TOPIC = TopicName.get("persistent://tenant/ns/topic");
+    private final ObjectMapper mapper = ObjectMapperFactory.getMapper().getObjectMapper();
+
+    @Test
+    public void testStreamAllFields() throws Exception {
+        PartitionedTopicStatsStream stream = new PartitionedTopicStatsStream(TOPIC,
+                new PartitionedTopicMetadata(10), Set.of(), 3, partition -> CompletableFuture.completedFuture(
+                        newStats(partition.getPartitionIndex())));
+
+        PartitionedTopicStatsImpl stats = mapper.readValue(write(stream.collect().get()),
+                PartitionedTopicStatsImpl.class);
+        assertEquals(stats.getMetadata().partitions, 10);
+        assertEquals(stats.getPartitions().size(), 10);
+        assertEquals(stats.getMsgInCounter(), 45);
+        assertEquals(stats.getPartitions().get(TOPIC.getPartition(3).toString()).getMsgInCounter(), 3);
+    }
+
+    @Test
+    public void testStreamSelectedFields() throws Exception {
+        PartitionedTopicStatsStream stream = new PartitionedTopicStatsStream(TOPIC,
+                new PartitionedTopicMetadata(4), Set.of("msgInCounter"), 3, partition ->
+                CompletableFuture.completedFuture(newStats(partition.getPartitionIndex())));
+
+        JsonNode stats = mapper.readTree(write(stream.collect().get()));
+        assertEquals(stats.get("msgInCounter").asLong(), 6);
+        assertFalse(stats.has("msgRateIn"));
+        assertEquals(stats.get("metadata").get("partitions").asInt(), 4);
+        JsonNode partition = stats.get("partitions").get(TOPIC.getPartition(2).toString());
+        assertEquals(partition.size(), 1);
+        assertEquals(partition.get("msgInCounter").asLong(), 2);
+    }
+
+    @Test
+    public void testBoundedConcurrencyAndFailedPartitions() throws Exception {
+        List<CompletableFuture<TopicStats>> pending = new ArrayList<>();
+        PartitionedTopicStatsStream stream = new PartitionedTopicStatsStream(TOPIC,
+                new PartitionedTopicMetadata(5), Set.of(), 2, partition -> {
+                    CompletableFuture<TopicStats> future = new CompletableFuture<>();
+                    pending.add(future);
+                    return future;
+                });
+
+        CompletableFuture<StreamingOutput> output = stream.collect();
+        assertEquals(pending.size(), 2);
+        // A failed partition releases its permit at once
+        pending.get(0).completeExceptionally(new RuntimeException("failed"));
+        assertEquals(pending.size(), 3);
+        assertFalse(output.isDone());
+        // A fetched partition holds its permit until it is written
+        pending.get(1).complete(newStats(1));
+        assertTrue(output.isDone());
+        assertEquals(stream.getFetchedPartitions(), 1);
+        assertEquals(pending.size(), 3);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletableFuture<Void> written = CompletableFuture.runAsync(() -> {
+            try {
+                output.get().write(out);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        for (int i = 2; i < 5; i++) {
+            final int partition = i;
+            // Each written partition issues the request of the next one
+            Awaitility.await().until(() -> pending.size() == Math.min(partition + 2, 5));
+            pending.get(partition).complete(newStats(partition));
+        }
+        written.get();
+        assertEquals(stream.getFetchedPartitions(), 4);
+
+        PartitionedTopicStatsImpl stats = mapper.readValue(out.toByteArray(), PartitionedTopicStatsImpl.class);
+        assertEquals(stats.getPartitions().size(), 4);
+        assertFalse(stats.getPartitions().containsKey(TOPIC.getPartition(0).toString()));
+        assertEquals(stats.getMsgInCounter(), 1 + 2 + 3 + 4);
+    }
+
+    @Test
+    public void testAllPartitionsFailed() throws Exception {
+        PartitionedTopicStatsStream stream = new PartitionedTopicStatsStream(TOPIC,
+                new PartitionedTopicMetadata(3), Set.of(), 2,
+                partition -> CompletableFuture.failedFuture(new RuntimeException("failed")));
+
+        StreamingOutput output = stream.collect().get();
+        assertEquals(stream.getFetchedPartitions(), 0);
+        PartitionedTopicStatsImpl stats = mapper.readValue(write(output), PartitionedTopicStatsImpl.class);
+        assertTrue(stats.getPartitions().isEmpty());
+    }
+
+    @Test
+    public void testManySynchronousPartitions() throws Exception {
+        int partitions = 100_000;
+        // The synchronous completions must not recurse, neither while collecting nor while writing
+        PartitionedTopicStatsStream failedStream = new PartitionedTopicStatsStream(TOPIC,
+                new PartitionedTopicMetadata(partitions), Set.of(), 1,
+                partition -> CompletableFuture.failedFuture(new RuntimeException("failed")));
+        assertEquals(mapper.readTree(write(failedStream.collect().get())).get("partitions").size(), 0);
+
+        PartitionedTopicStatsStream stream = new PartitionedTopicStatsStream(TOPIC,
+                new PartitionedTopicMetadata(partitions), Set.of("msgInCounter"), 1,
+                partition -> CompletableFuture.completedFuture(newStats(1)));
+        JsonNode stats = mapper.readTree(write(stream.collect().get()));
+        assertEquals(stats.get("partitions").size(), partitions);
+        assertEquals(stats.get("msgInCounter").asLong(), partitions);
+    }
+
+    @Test
+    public void testPartitionsCompletedOnSingleThread() throws Exception {
+        // Like the stats of the partitions received by the admin client, completed one at a time by the same thread
+        ExecutorService statsExecutor = Executors.newSingleThreadExecutor();
+        ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+        try {
+            PartitionedTopicStatsStream stream = new PartitionedTopicStatsStream(TOPIC,
+                    new PartitionedTopicMetadata(20), Set.of("msgInCounter"), 4,
+                    partition -> CompletableFuture.supplyAsync(() -> newStats(partition.getPartitionIndex()),
+                            statsExecutor));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            // Written by another thread than the one completing the stats, as when resuming the response
+            stream.collect().thenAcceptAsync(output -> {
+                try {
+                    output.write(out);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }, writeExecutor).get(30, TimeUnit.SECONDS);
+
+            JsonNode stats = mapper.readTree(out.toByteArray());
+            assertEquals(stats.get("partitions").size(), 20);
+            assertEquals(stats.get("msgInCounter").asLong(), 190);
+        } finally {
+            statsExecutor.shutdownNow();
+            writeExecutor.shutdownNow();
+        }
+    }
+
+    private static TopicStatsImpl newStats(int partition) {
+        TopicStatsImpl stats = new TopicStatsImpl();
+        stats.msgInCounter = partition;
+        stats.msgRateIn = partition;
+        return stats;
+    }
+
+    private static byte[] write(StreamingOutput output) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        output.write(out);
+        return out.toByteArray();
+    }
+}
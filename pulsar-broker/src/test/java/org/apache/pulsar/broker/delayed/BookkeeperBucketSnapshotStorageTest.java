@@ -114,6 +114,33 @@ public class BookkeeperBucketSnapshotStorageTest extends MockedPulsarServiceBase
         }
     }
 
+    @Test
+    public void testGetColumnarSnapshot() throws ExecutionException, InterruptedException {
+        SnapshotMetadata snapshotMetadata = SnapshotMetadata.newBuilder().build();
+        long timeMillis = System.currentTimeMillis();
+        SnapshotSegment snapshotSegment = new SnapshotSegment();
+        for (int i = 0; i < 1000; i++) {
+            snapshotSegment.addIndexe().setLedgerId(100L).setEntryId(i).setTimestamp(timeMillis + i);
+        }
+
+        conf.setDelayedDeliveryBucketSnapshotColumnarFormatEnabled(true);
+        Long bucketId;
+        try {
+            bucketId = bucketSnapshotStorage.createBucketSnapshot(snapshotMetadata, List.of(snapshotSegment),
+                    UUID.randomUUID().toString(), TOPIC_NAME, CURSOR_NAME).get();
+        } finally {
+            conf.setDelayedDeliveryBucketSnapshotColumnarFormatEnabled(false);
+        }
+
+        List<SnapshotSegment> snapshotSegments = bucketSnapshotStorage.getBucketSnapshotSegment(bucketId, 1, 1).get();
+        Assert.assertEquals(snapshotSegments.size(), 1);
+        SnapshotSegment columnarSegment = snapshotSegments.get(0);
+        Assert.assertTrue(columnarSegment.hasColumnarIndexes());
+        Assert.assertEquals(columnarSegment.getColumnarIndexes().getCount(), 1000);
+        Assert.assertEquals(columnarSegment.getColumnarIndexes().getTimestamps().getBase(), timeMillis);
+        Assert.assertTrue(columnarSegment.getSerializedSize() < snapshotSegment.getSerializedSize() / 4);
+    }
+
     @Test
     public void testGetSnapshotMetadata() throws ExecutionException, InterruptedException {
         long timeMillis = System.currentTimeMillis();
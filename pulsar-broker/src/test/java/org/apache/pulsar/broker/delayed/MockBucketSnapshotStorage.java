@@ -33,6 +33,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pulsar.broker.delayed.bucket.BucketSnapshotStorage;
@@ -78,6 +79,25 @@ public class MockBucketSnapshotStorage implements BucketSnapshotStorage {
         deleteExceptionQueue.add(throwable);
     }
 
+    private volatile CompletableFuture<Void> getSegmentBlocker = CompletableFuture.completedFuture(null);
+    private final AtomicInteger unblockedGetSegmentCount = new AtomicInteger();
+
+    /**
+     * Hold back the segment reads after the first {@code unblockedCount} ones, until {@link #unblockGetSegment()}.
+     */
+    public void blockGetSegment(int unblockedCount) {
+        unblockedGetSegmentCount.set(unblockedCount);
+        getSegmentBlocker = new CompletableFuture<>();
+    }
+
+    public void unblockGetSegment() {
+        getSegmentBlocker.complete(null);
+    }
+
+    public int getBlockedGetSegmentCount() {
+        return getSegmentBlocker.getNumberOfDependents();
+    }
+
     @Override
     public CompletableFuture<Long> createBucketSnapshot(
             SnapshotMetadata snapshotMetadata, List<SnapshotSegment> bucketSnapshotSegments, String bucketKey,
@@ -130,6 +150,11 @@ public class MockBucketSnapshotStorage implements BucketSnapshotStorage {
     @Override
     public CompletableFuture<List<SnapshotSegment>> getBucketSnapshotSegment(long bucketId, long firstSegmentEntryId,
                                                                              long lastSegmentEntryId) {
+        CompletableFuture<Void> blocker = getSegmentBlocker;
+        if (!blocker.isDone() && unblockedGetSegmentCount.getAndDecrement() <= 0) {
+            return blocker.thenCompose(
+                    __ -> getBucketSnapshotSegment(bucketId, firstSegmentEntryId, lastSegmentEntryId));
+        }
         Throwable throwable = getSegmentExceptionQueue.poll();
         if (throwable != null) {
             return FutureUtil.failedFuture(throwable);
@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.lang.reflect.Method;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.mledger.PositionFactory;
+import org.apache.pulsar.broker.service.persistent.AbstractPersistentDispatcherMultipleConsumers;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker")
+public class TimingWheelDeliveryTrackerTest extends AbstractDeliveryTrackerTest {
+
+    @DataProvider(name = "delayedTracker")
+    public Object[][] provider(Method method) throws Exception {
+        dispatcher = mock(AbstractPersistentDispatcherMultipleConsumers.class);
+        clock = mock(Clock.class);
+        clockTime = new AtomicLong();
+        when(clock.millis()).then(x -> clockTime.get());
+
+        final String methodName = method.getName();
+        return switch (methodName) {
+            case "test" -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 1, clock,
+                            false, 0)
+            }};
+            case "testWithTimer" -> {
+                Timer timer = mock(Timer.class);
+
+                AtomicLong clockTime = new AtomicLong();
+                Clock clock = mock(Clock.class);
+                when(clock.millis()).then(x -> clockTime.get());
+
+                NavigableMap<Long, TimerTask> tasks = new TreeMap<>();
+
+                when(timer.newTimeout(any(), anyLong(), any())).then(invocation -> {
+                    TimerTask task = invocation.getArgument(0, TimerTask.class);
+                    long timeout = invocation.getArgument(1, Long.class);
+                    TimeUnit unit = invocation.getArgument(2, TimeUnit.class);
+                    long scheduleAt = clockTime.get() + unit.toMillis(timeout);
+                    tasks.put(scheduleAt, task);
+
+                    Timeout t = mock(Timeout.class);
+                    when(t.cancel()).then(i -> {
+                        tasks.remove(scheduleAt, task);
+                        return null;
+                    });
+                    return t;
+                });
+
+                yield new Object[][]{{
+                        new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 1, clock,
+                                false, 0),
+                        tasks
+                }};
+            }
+            case "testAddWithinTickTime" -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 100, clock,
+                            false, 0)
+            }};
+            case "testAddMessageWithStrictDelay" -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 1, clock,
+                            true, 0)
+            }};
+            case "testAddMessageWithDeliverAtTimeAfterNowBeforeTickTimeFrequencyWithStrict" -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 1000, clock,
+                            true, 0)
+            }};
+            case "testAddMessageWithDeliverAtTimeAfterNowAfterTickTimeFrequencyWithStrict" -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 1, clock,
+                            true, 0)
+            }};
+            case "testAddMessageWithDeliverAtTimeAfterFullTickTimeWithStrict" -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 500, clock,
+                            true, 0)
+            }};
+            case "testWithFixedDelays", "testWithMixedDelays", "testWithNoDelays" -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 8, clock,
+                            true, 100)
+            }};
+            default -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 1, clock,
+                            true, 0)
+            }};
+        };
+    }
+
+    @Test(dataProvider = "delayedTracker")
+    public void testWithFixedDelays(TimingWheelDelayedDeliveryTracker tracker) throws Exception {
+        assertFalse(tracker.hasMessageAvailable());
+
+        assertTrue(tracker.addMessage(1, 1, 10));
+        assertTrue(tracker.addMessage(2, 2, 20));
+        assertTrue(tracker.addMessage(3, 3, 30));
+        assertTrue(tracker.addMessage(4, 4, 40));
+        assertTrue(tracker.addMessage(5, 5, 50));
+
+        assertFalse(tracker.hasMessageAvailable());
+        assertEquals(tracker.getNumberOfDelayedMessages(), 5);
+        assertFalse(tracker.shouldPauseAllDeliveries());
+
+        for (int i = 6; i <= tracker.getFixedDelayDetectionLookahead(); i++) {
+            assertTrue(tracker.addMessage(i, i, i * 10));
+        }
+
+        assertTrue(tracker.shouldPauseAllDeliveries());
+
+        clockTime.set(tracker.getFixedDelayDetectionLookahead() * 10);
+
+        tracker.getScheduledMessages(100);
+
+        assertFalse(tracker.shouldPauseAllDeliveries());
+
+        // Empty the tracker
+        int removed = 0;
+        do {
+            removed = tracker.getScheduledMessages(100).size();
+        } while (removed > 0);
+
+        assertFalse(tracker.shouldPauseAllDeliveries());
+
+        tracker.close();
+    }
+
+    @Test(dataProvider = "delayedTracker")
+    public void testWithMixedDelays(TimingWheelDelayedDeliveryTracker tracker) throws Exception {
+        assertFalse(tracker.hasMessageAvailable());
+
+        assertTrue(tracker.addMessage(1, 1, 10));
+        assertTrue(tracker.addMessage(2, 2, 20));
+        assertTrue(tracker.addMessage(3, 3, 30));
+        assertTrue(tracker.addMessage(4, 4, 40));
+        assertTrue(tracker.addMessage(5, 5, 50));
+
+        assertFalse(tracker.shouldPauseAllDeliveries());
+
+        for (int i = 6; i <= tracker.getFixedDelayDetectionLookahead(); i++) {
+            assertTrue(tracker.addMessage(i, i, i * 10));
+        }
+
+        assertTrue(tracker.shouldPauseAllDeliveries());
+
+        // Add message with earlier delivery time
+        assertTrue(tracker.addMessage(5, 6, 5));
+
+        assertFalse(tracker.shouldPauseAllDeliveries());
+
+        tracker.close();
+    }
+
+    @Test(dataProvider = "delayedTracker")
+    public void testWithNoDelays(TimingWheelDelayedDeliveryTracker tracker) throws Exception {
+        assertFalse(tracker.hasMessageAvailable());
+
+        assertTrue(tracker.addMessage(1, 1, 10));
+        assertTrue(tracker.addMessage(2, 2, 20));
+        assertTrue(tracker.addMessage(3, 3, 30));
+        assertTrue(tracker.addMessage(4, 4, 40));
+        assertTrue(tracker.addMessage(5, 5, 50));
+
+        assertFalse(tracker.shouldPauseAllDeliveries());
+
+        for (int i = 6; i <= tracker.getFixedDelayDetectionLookahead(); i++) {
+            assertTrue(tracker.addMessage(i, i, i * 10));
+        }
+
+        assertTrue(tracker.shouldPauseAllDeliveries());
+
+        // Add message with no-delay
+        assertFalse(tracker.addMessage(5, 6, -1L));
+
+        assertFalse(tracker.shouldPauseAllDeliveries());
+
+        tracker.close();
+    }
+
+    @Test(dataProvider = "delayedTracker")
+    public void testDelaySequence(TimingWheelDelayedDeliveryTracker tracker) throws Exception {
+        assertFalse(tracker.hasMessageAvailable());
+
+        int messageCount = 5;
+        for (int i = 1; i <= messageCount; i++) {
+            assertTrue(tracker.addMessage(i, i, 1));
+        }
+        clockTime.set(10);
+        assertTrue(tracker.hasMessageAvailable());
+        assertEquals(tracker.getNumberOfDelayedMessages(), messageCount);
+
+        for (int i = 1; i <= messageCount; i++) {
+            Set<Position> scheduled = tracker.getScheduledMessages(1);
+            assertEquals(scheduled.size(), 1);
+            Position position = scheduled.iterator().next();
+            assertEquals(position.getLedgerId(), i);
+            assertEquals(position.getEntryId(), i);
+        }
+        tracker.close();
+    }
+
+    @Test(dataProvider = "delayedTracker")
+    public void testCascadeFarFutureMessages(TimingWheelDelayedDeliveryTracker tracker) throws Exception {
+        // Spread the messages over several levels of the wheel
+        long[] deliverAts = {70, 5_000, 300_000, 20_000_000, 1_500_000_000L, 100};
+        for (int i = 0; i < deliverAts.length; i++) {
+            assertTrue(tracker.addMessage(i, i, deliverAts[i]));
+        }
+        assertEquals(tracker.getNumberOfDelayedMessages(), deliverAts.length);
+        assertTrue(tracker.getBufferMemoryUsage() > 0);
+
+        long[] sorted = deliverAts.clone();
+        Arrays.sort(sorted);
+        for (long deliverAt : sorted) {
+            clockTime.set(deliverAt - 1);
+            assertFalse(tracker.hasMessageAvailable());
+            // The next wakeup never goes past the delivery time of the earliest message
+            assertTrue(tracker.nextDeliveryTime() <= deliverAt);
+            clockTime.set(deliverAt);
+            assertTrue(tracker.hasMessageAvailable());
+            Set<Position> scheduled = tracker.getScheduledMessages(10);
+            assertEquals(scheduled.size(), 1);
+            long ledgerId = scheduled.iterator().next().getLedgerId();
+            assertEquals(deliverAts[(int) ledgerId], deliverAt);
+        }
+        assertEquals(tracker.getNumberOfDelayedMessages(), 0);
+        assertEquals(tracker.getBufferMemoryUsage(), 0);
+        tracker.close();
+    }
+
+    @Test(dataProvider = "delayedTracker")
+    public void testRandomDeliveryTimes(TimingWheelDelayedDeliveryTracker tracker) throws Exception {
+        Random random = new Random(0);
+        NavigableMap<Long, Set<Position>> expected = new TreeMap<>();
+        int added = 0;
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 50; i++) {
+                long deliverAt = clockTime.get() + 1 + random.nextInt(random.nextBoolean() ? 100 : 1_000_000);
+                long entryId = added++;
+                assertTrue(tracker.addMessage(1, entryId, deliverAt));
+                expected.computeIfAbsent(deliverAt, k -> new HashSet<>())
+                        .add(PositionFactory.create(1, entryId));
+            }
+            clockTime.addAndGet(random.nextInt(20_000));
+
+            Set<Position> due = new HashSet<>();
+            expected.headMap(clockTime.get(), true).values().forEach(due::addAll);
+            expected.headMap(clockTime.get(), true).clear();
+            assertEquals(tracker.hasMessageAvailable(), !due.isEmpty());
+            Set<Position> scheduled = new HashSet<>(tracker.getScheduledMessages(Integer.MAX_VALUE));
+            assertEquals(scheduled, due);
+            assertFalse(tracker.hasMessageAvailable());
+        }
+        int remaining = expected.values().stream().mapToInt(Set::size).sum();
+        assertEquals(tracker.getNumberOfDelayedMessages(), remaining);
+
+        clockTime.set(expected.lastKey());
+        assertEquals(tracker.getScheduledMessages(Integer.MAX_VALUE).size(), remaining);
+        assertEquals(tracker.getNumberOfDelayedMessages(), 0);
+        tracker.close();
+    }
+
+    @Test(dataProvider = "delayedTracker")
+    public void testClear(TimingWheelDelayedDeliveryTracker tracker) throws Exception {
+        assertTrue(tracker.addMessage(1, 1, 10));
+        assertTrue(tracker.addMessage(1, 2, 1_000_000));
+        clockTime.set(10);
+        assertTrue(tracker.hasMessageAvailable());
+
+        tracker.clear().get();
+        assertEquals(tracker.getNumberOfDelayedMessages(), 0);
+        assertFalse(tracker.hasMessageAvailable());
+        clockTime.set(1_000_000);
+        assertTrue(tracker.getScheduledMessages(10).isEmpty());
+        tracker.close();
+    }
+
+}
@@ -33,6 +33,7 @@ import io.netty.util.TimerTask;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.time.Clock;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.NavigableMap;
@@ -133,7 +134,8 @@ public class BucketDelayedDeliveryTrackerTest extends AbstractDeliveryTrackerTes
                     new BucketDelayedDeliveryTracker(dispatcher, timer, 1000, clock,
                             true, bucketSnapshotStorage, 5, TimeUnit.MILLISECONDS.toMillis(10), -1, 50)
             }};
-            case "testAddMessageWithDeliverAtTimeAfterNowAfterTickTimeFrequencyWithStrict", "testRecoverSnapshot" ->
+            case "testAddMessageWithDeliverAtTimeAfterNowAfterTickTimeFrequencyWithStrict", "testRecoverSnapshot",
+                 "testLazyRecoverSnapshot" ->
                     new Object[][]{{
                             new BucketDelayedDeliveryTracker(dispatcher, timer, 100000, clock,
                                     true, bucketSnapshotStorage, 5, TimeUnit.MILLISECONDS.toMillis(10), -1, 50)
@@ -236,6 +238,53 @@ public class BucketDelayedDeliveryTrackerTest extends AbstractDeliveryTrackerTes
         tracker2.close();
     }
 
+    @Test(dataProvider = "delayedTracker")
+    public void testLazyRecoverSnapshot(BucketDelayedDeliveryTracker tracker) throws Exception {
+        for (int i = 1; i <= 100; i++) {
+            tracker.addMessage(i, i, i * 10);
+        }
+
+        Awaitility.await().untilAsserted(() -> {
+            Assert.assertTrue(
+                    tracker.getImmutableBuckets().asMapOfRanges().values().stream().noneMatch(x -> x.merging
+                            || !x.getSnapshotCreateFuture().get().isDone()));
+        });
+        int numBuckets = tracker.getImmutableBuckets().asMapOfRanges().size();
+        assertTrue(numBuckets > 1);
+
+        tracker.close();
+
+        // Only the segment holding the earliest message is loaded before the tracker is created
+        MockBucketSnapshotStorage mockBucketSnapshotStorage = (MockBucketSnapshotStorage) bucketSnapshotStorage;
+        mockBucketSnapshotStorage.blockGetSegment(1);
+        clockTime.set(45);
+
+        BucketDelayedDeliveryTracker tracker2 = new BucketDelayedDeliveryTracker(dispatcher, timer, 100000, clock,
+                true, bucketSnapshotStorage, 5, TimeUnit.MILLISECONDS.toMillis(10), -1, 50);
+
+        // The messages of the last mutable bucket were not persisted, and the ones before 45 are skipped
+        assertEquals(tracker2.getNumberOfDelayedMessages(), 91);
+        assertEquals(tracker2.getSharedBucketPriorityQueue().size(), 1);
+        assertEquals(mockBucketSnapshotStorage.getBlockedGetSegmentCount(), numBuckets - 1);
+
+        clockTime.set(100 * 10);
+        assertEquals(tracker2.getScheduledMessages(100), Set.of(PositionFactory.create(5, 5)));
+
+        mockBucketSnapshotStorage.unblockGetSegment();
+
+        List<Position> scheduledMessages = new ArrayList<>();
+        Awaitility.await().untilAsserted(() -> {
+            scheduledMessages.addAll(tracker2.getScheduledMessages(100));
+            assertEquals(scheduledMessages.size(), 90);
+        });
+        for (int i = 0; i < scheduledMessages.size(); i++) {
+            assertEquals(scheduledMessages.get(i), PositionFactory.create(i + 6, i + 6));
+        }
+        assertEquals(tracker2.getNumberOfDelayedMessages(), 0);
+
+        tracker2.close();
+    }
+
     @Test
     public void testRoaringBitmapSerialize() {
         List<Long> data = List.of(1L, 3L, 5L, 10L, 16L, 18L, 999L, 0L);
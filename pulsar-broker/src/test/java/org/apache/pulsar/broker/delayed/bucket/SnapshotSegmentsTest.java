@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed.bucket;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.pulsar.broker.delayed.proto.DelayedIndex;
+import org.apache.pulsar.broker.delayed.proto.SnapshotSegment;
+import org.testng.annotations.Test;
+
+public class SnapshotSegmentsTest {
+
+    @Test
+    public void testColumnarRoundTrip() {
+        Random random = new Random(0);
+        SnapshotSegment snapshotSegment = new SnapshotSegment();
+        long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < 1000; i++) {
+            timestamp += random.nextInt(1000);
+            snapshotSegment.addIndexe().setTimestamp(timestamp)
+                    .setLedgerId(100_000 + random.nextInt(50))
+                    .setEntryId(random.nextInt(Integer.MAX_VALUE));
+        }
+
+        SnapshotSegment columnarSegment = SnapshotSegments.toColumnar(snapshotSegment);
+        assertTrue(columnarSegment.hasColumnarIndexes());
+        assertEquals(columnarSegment.getIndexesCount(), 0);
+        assertTrue(columnarSegment.getSerializedSize() < snapshotSegment.getSerializedSize() / 2);
+
+        SnapshotSegment parsedSegment = new SnapshotSegment();
+        parsedSegment.parseFrom(columnarSegment.toByteArray());
+        assertEquals(SnapshotSegments.size(parsedSegment), 1000);
+        assertIndexesEquals(SnapshotSegments.getIndexesList(parsedSegment), snapshotSegment.getIndexesList());
+        for (int i = 0; i < 1000; i++) {
+            DelayedIndex delayedIndex = snapshotSegment.getIndexeAt(i);
+            assertEquals(SnapshotSegments.getTimestamp(parsedSegment, i), delayedIndex.getTimestamp());
+            assertEquals(SnapshotSegments.getLedgerId(parsedSegment, i), delayedIndex.getLedgerId());
+            assertEquals(SnapshotSegments.getEntryId(parsedSegment, i), delayedIndex.getEntryId());
+        }
+    }
+
+    @Test
+    public void testColumnarEdgeValues() {
+        SnapshotSegment snapshotSegment = new SnapshotSegment();
+        snapshotSegment.addIndexe().setTimestamp(0).setLedgerId(1).setEntryId(Long.MAX_VALUE);
+        snapshotSegment.addIndexe().setTimestamp(Long.MAX_VALUE).setLedgerId(1).setEntryId(0);
+        snapshotSegment.addIndexe().setTimestamp(Long.MAX_VALUE).setLedgerId(1).setEntryId(1);
+
+        SnapshotSegment parsedSegment = new SnapshotSegment();
+        parsedSegment.parseFrom(SnapshotSegments.toColumnar(snapshotSegment).toByteArray());
+        // All the ledger ids are the same, the column doesn't need any bit
+        assertEquals(parsedSegment.getColumnarIndexes().getLedgerIds().getBitWidth(), 0);
+        assertIndexesEquals(SnapshotSegments.getIndexesList(parsedSegment), snapshotSegment.getIndexesList());
+    }
+
+    @Test
+    public void testEmptySegment() {
+        SnapshotSegment parsedSegment = new SnapshotSegment();
+        parsedSegment.parseFrom(SnapshotSegments.toColumnar(new SnapshotSegment()).toByteArray());
+        assertTrue(parsedSegment.hasColumnarIndexes());
+        assertEquals(SnapshotSegments.size(parsedSegment), 0);
+        assertTrue(SnapshotSegments.getIndexesList(parsedSegment).isEmpty());
+    }
+
+    @Test
+    public void testMergeColumnarSegments() {
+        List<SnapshotSegment> plainSegments = new ArrayList<>();
+        List<SnapshotSegment> columnarSegments = new ArrayList<>();
+        for (int ledgerId = 1; ledgerId <= 3; ledgerId++) {
+            SnapshotSegment snapshotSegment = new SnapshotSegment();
+            for (int i = 0; i < 100; i++) {
+                snapshotSegment.addIndexe().setTimestamp(i * 3 + ledgerId).setLedgerId(ledgerId).setEntryId(i);
+            }
+            plainSegments.add(snapshotSegment);
+            columnarSegments.add(SnapshotSegments.toColumnar(snapshotSegment));
+        }
+        assertFalse(plainSegments.get(0).hasColumnarIndexes());
+
+        // Mix plain and columnar segments, like the buckets written before and after enabling the columnar format
+        CombinedSegmentDelayedIndexQueue queue = CombinedSegmentDelayedIndexQueue.wrap(List.of(
+                new ArrayList<>(List.of(columnarSegments.get(0))),
+                new ArrayList<>(List.of(plainSegments.get(1))),
+                new ArrayList<>(List.of(columnarSegments.get(2)))));
+        long expectedTimestamp = 1;
+        while (!queue.isEmpty()) {
+            assertEquals(queue.peekTimestamp(), expectedTimestamp);
+            DelayedIndex delayedIndex = new DelayedIndex();
+            queue.popToObject(delayedIndex);
+            assertEquals(delayedIndex.getTimestamp(), expectedTimestamp);
+            assertEquals(delayedIndex.getLedgerId(), (expectedTimestamp - 1) % 3 + 1);
+            assertEquals(delayedIndex.getEntryId(), (expectedTimestamp - 1) / 3);
+            expectedTimestamp++;
+        }
+        assertEquals(expectedTimestamp, 301);
+    }
+
+    private static void assertIndexesEquals(List<DelayedIndex> actual, List<DelayedIndex> expected) {
+        assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals(DelayedIndexQueue.COMPARATOR.compare(actual.get(i), expected.get(i)), 0);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.loadbalance.extensions.scheduler;
+
+import static org.apache.pulsar.broker.loadbalance.extensions.models.UnloadDecision.Label.Success;
+import static org.apache.pulsar.broker.loadbalance.extensions.models.UnloadDecision.Reason.Overloaded;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.pulsar.broker.ServiceConfiguration;
+import org.apache.pulsar.broker.loadbalance.extensions.LoadManagerContext;
+import org.apache.pulsar.broker.loadbalance.extensions.data.BrokerLoadData;
+import org.apache.pulsar.broker.loadbalance.extensions.data.TopBundlesLoadData;
+import org.apache.pulsar.broker.loadbalance.extensions.models.Unload;
+import org.apache.pulsar.broker.loadbalance.extensions.models.UnloadCounter;
+import org.apache.pulsar.broker.loadbalance.extensions.models.UnloadDecision;
+import org.apache.pulsar.broker.loadbalance.extensions.simulation.SimulatedLoadManagerContext;
+import org.apache.pulsar.policies.data.loadbalancer.NamespaceBundleStats;
+import org.apache.pulsar.policies.data.loadbalancer.ResourceUsage;
+import org.apache.pulsar.policies.data.loadbalancer.SystemResourceUsage;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker")
+public class PredictiveShedderTest {
+
+    private static final double MB = 1024 * 1024;
+    private static final String BROKER1 = "broker1:8080";
+    private static final String BROKER2 = "broker2:8080";
+    private static final String BROKER3 = "broker3:8080";
+
+    private ServiceConfiguration conf;
+    private LoadManagerContext ctx;
+
+    private record BundleLoad(String bundle, double throughput, int clients) {
+    }
+
+    @BeforeMethod
+    public void setup() {
+        conf = new ServiceConfiguration();
+        conf.setLoadBalancerDebugModeEnabled(true);
+        conf.setLoadBalancerBrokerLoadTargetStd(0.5);
+        conf.setLoadBalancerPredictiveSheddingHorizonSeconds(600);
+        ctx = new SimulatedLoadManagerContext(conf, List.of(BROKER1, BROKER2, BROKER3));
+    }
+
+    private void pushLoad(String broker, double load, BundleLoad... bundles) {
+        TopBundlesLoadData topBundles = new TopBundlesLoadData();
+        double throughput = 0;
+        for (BundleLoad bundle : bundles) {
+            NamespaceBundleStats stats = new NamespaceBundleStats();
+            stats.msgThroughputIn = bundle.throughput() / 2;
+            stats.msgThroughputOut = bundle.throughput() / 2;
+            stats.producerCount = bundle.clients();
+            topBundles.getTopBundlesLoadData().add(new TopBundlesLoadData.BundleLoadData(bundle.bundle(), stats));
+            throughput += bundle.throughput();
+        }
+        SystemResourceUsage usage = new SystemResourceUsage();
+        usage.setCpu(new ResourceUsage(load * 100, 100));
+        usage.setMemory(new ResourceUsage(0, 100));
+        usage.setDirectMemory(new ResourceUsage(0, 100));
+        usage.setBandwidthIn(new ResourceUsage(0, 100));
+        usage.setBandwidthOut(new ResourceUsage(0, 100));
+        BrokerLoadData brokerLoadData = new BrokerLoadData();
+        brokerLoadData.update(usage, throughput / 2, throughput / 2, 0, 0, bundles.length, bundles.length, conf);
+        ctx.brokerLoadDataStore().pushAsync(broker, brokerLoadData);
+        ctx.topBundleLoadDataStore().pushAsync(broker, topBundles);
+    }
+
+    private void pushIdleBrokers() {
+        pushLoad(BROKER2, 0.1, new BundleLoad("tenant/ns2/0x00000000_0x80000000", MB, 1),
+                new BundleLoad("tenant/ns2/0x80000000_0xffffffff", MB, 1));
+        pushLoad(BROKER3, 0.1, new BundleLoad("tenant/ns3/0x00000000_0x80000000", MB, 1),
+                new BundleLoad("tenant/ns3/0x80000000_0xffffffff", MB, 1));
+    }
+
+    private static Set<String> bundles(Set<UnloadDecision> decisions) {
+        return decisions.stream().map(decision -> decision.getUnload().serviceUnit()).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testForecast() {
+        var history = new PredictiveShedder.BundleHistory();
+        history.add(0, 10, 3);
+        assertEquals(history.forecast(60_000), 10.0);
+        history.add(60_000, 20, 3);
+        history.add(120_000, 30, 3);
+        assertEquals(history.forecast(60_000), 40.0, 1e-9);
+        // The oldest samples are dropped
+        history.add(180_000, 30, 3);
+        history.add(240_000, 30, 3);
+        assertEquals(history.forecast(60_000), 30.0, 1e-9);
+        history.add(300_000, 0, 3);
+        assertEquals(history.forecast(600_000), 0.0);
+    }
+
+    @Test
+    public void testUnloadBeforeOverload() {
+        var shedder = new PredictiveShedder(new UnloadCounter());
+        String growing = "tenant/ns1/0x00000000_0x80000000";
+        String steady = "tenant/ns1/0x80000000_0xffffffff";
+
+        // The broker is not overloaded yet, the trend is unknown
+        pushLoad(BROKER1, 0.6, new BundleLoad(growing, 10 * MB, 1), new BundleLoad(steady, 10 * MB, 1));
+        pushIdleBrokers();
+        assertTrue(shedder.findBundlesForUnloading(ctx, new HashMap<>(), new HashMap<>()).isEmpty());
+
+        // The growing bundle is forecast to overload the broker
+        pushLoad(BROKER1, 0.65, new BundleLoad(growing, 12 * MB, 1), new BundleLoad(steady, 10 * MB, 1));
+        pushIdleBrokers();
+        var decisions = shedder.findBundlesForUnloading(ctx, new HashMap<>(), new HashMap<>());
+        assertEquals(decisions.size(), 1);
+        var decision = decisions.iterator().next();
+        assertEquals(decision.getLabel(), Success);
+        assertEquals(decision.getReason(), Overloaded);
+        // The growing bundle alone would overload the min broker, the steady one is moved instead
+        assertEquals(decision.getUnload().sourceBroker(), BROKER1);
+        assertEquals(decision.getUnload().serviceUnit(), steady);
+        assertTrue(decision.getUnload().destBroker().isPresent());
+    }
+
+    @Test
+    public void testNoUnloadOnDecreasingLoad() {
+        var shedder = new PredictiveShedder(new UnloadCounter());
+        String bundle1 = "tenant/ns1/0x00000000_0x80000000";
+        String bundle2 = "tenant/ns1/0x80000000_0xffffffff";
+        conf.setLoadBalancerBrokerOverloadedThresholdPercentage(80);
+
+        pushLoad(BROKER1, 0.9, new BundleLoad(bundle1, 30 * MB, 1), new BundleLoad(bundle2, 10 * MB, 1));
+        pushIdleBrokers();
+        assertEquals(bundles(shedder.findBundlesForUnloading(ctx, new HashMap<>(), new HashMap<>())), Set.of(bundle2));
+
+        // The load is decreasing and is forecast to fall below the threshold
+        shedder = new PredictiveShedder(new UnloadCounter());
+        pushLoad(BROKER1, 0.9, new BundleLoad(bundle1, 30 * MB, 1), new BundleLoad(bundle2, 10 * MB, 1));
+        pushIdleBrokers();
+        shedder.findBundlesForUnloading(ctx, new HashMap<>(), new HashMap<>());
+        pushLoad(BROKER1, 0.81, new BundleLoad(bundle1, 26 * MB, 1), new BundleLoad(bundle2, 10 * MB, 1));
+        pushIdleBrokers();
+        assertTrue(shedder.findBundlesForUnloading(ctx, new HashMap<>(), new HashMap<>()).isEmpty());
+    }
+
+    @Test
+    public void testPreferBundlesWithFewClients() {
+        var shedder = new PredictiveShedder(new UnloadCounter());
+        pushLoad(BROKER1, 0.95,
+                new BundleLoad("tenant/ns1/0x00000000_0x40000000", 5 * MB, 100),
+                new BundleLoad("tenant/ns1/0x40000000_0x80000000", 5 * MB, 2),
+                new BundleLoad("tenant/ns1/0x80000000_0xffffffff", 5 * MB, 50));
+        pushIdleBrokers();
+        var decisions = shedder.findBundlesForUnloading(ctx, new HashMap<>(), new HashMap<>());
+        assertEquals(bundles(decisions), Set.of("tenant/ns1/0x40000000_0x80000000"));
+    }
+
+    @Test
+    public void testMaxConcurrentTransfers() {
+        conf.setLoadBalancerPredictiveSheddingMaxConcurrentTransfers(2);
+        conf.setLoadBalancerMaxNumberOfBrokerSheddingPerCycle(1);
+        var shedder = new PredictiveShedder(new UnloadCounter());
+        BundleLoad[] bundles = new BundleLoad[6];
+        for (int i = 0; i < bundles.length; i++) {
+            bundles[i] = new BundleLoad(String.format("tenant/ns1/0x%08x_0x%08x", i, i + 1), 2 * MB, 1);
+        }
+        pushLoad(BROKER1, 1.0, bundles);
+        pushLoad(BROKER2, 0.0, new BundleLoad("tenant/ns2/0x00000000_0xffffffff", 0, 1));
+        pushLoad(BROKER3, 0.0, new BundleLoad("tenant/ns3/0x00000000_0xffffffff", 0, 1));
+        assertEquals(shedder.findBundlesForUnloading(ctx, new HashMap<>(), new HashMap<>()).size(), 2);
+
+        // A transfer of the previous cycle is still in flight
+        long now = System.currentTimeMillis();
+        Map<String, Long> recentlyUnloadedBundles = new HashMap<>(Map.of("tenant/ns4/0x00000000_0xffffffff", now));
+        var decisions = shedder.findBundlesForUnloading(ctx, recentlyUnloadedBundles, new HashMap<>());
+        assertEquals(decisions.size(), 1);
+        Unload unload = decisions.iterator().next().getUnload();
+        assertEquals(unload.sourceBroker(), BROKER1);
+        assertTrue(Set.of(BROKER2, BROKER3).contains(unload.destBroker().orElseThrow()));
+
+        recentlyUnloadedBundles.put("tenant/ns5/0x00000000_0xffffffff", now);
+        assertTrue(shedder.findBundlesForUnloading(ctx, recentlyUnloadedBundles, new HashMap<>()).isEmpty());
+
+        // The transfers are done
+        recentlyUnloadedBundles.replaceAll((bundle, unloadedAt) ->
+                now - conf.getLoadBalanceSheddingDelayInSeconds() * 1000 - 1);
+        assertEquals(shedder.findBundlesForUnloading(ctx, recentlyUnloadedBundles, new HashMap<>()).size(), 2);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.loadbalance.extensions.simulation;
+
+import static org.apache.pulsar.broker.loadbalance.impl.ModularLoadManagerImpl.NUM_LONG_SAMPLES;
+import static org.apache.pulsar.broker.loadbalance.impl.ModularLoadManagerImpl.NUM_SHORT_SAMPLES;
+import com.google.common.collect.Multimap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apache.pulsar.broker.PulsarService;
+import org.apache.pulsar.broker.loadbalance.LoadData;
+import org.apache.pulsar.broker.loadbalance.LoadSheddingStrategy;
+import org.apache.pulsar.broker.loadbalance.extensions.LoadManagerContext;
+import org.apache.pulsar.broker.loadbalance.extensions.data.BrokerLoadData;
+import org.apache.pulsar.broker.loadbalance.extensions.data.TopBundlesLoadData;
+import org.apache.pulsar.broker.loadbalance.extensions.models.Unload;
+import org.apache.pulsar.broker.loadbalance.extensions.models.UnloadDecision;
+import org.apache.pulsar.broker.loadbalance.extensions.scheduler.NamespaceUnloadStrategy;
+import org.apache.pulsar.policies.data.loadbalancer.BrokerData;
+import org.apache.pulsar.policies.data.loadbalancer.BundleData;
+import org.apache.pulsar.policies.data.loadbalancer.LocalBrokerData;
+import org.apache.pulsar.policies.data.loadbalancer.NamespaceBundleStats;
+import org.apache.pulsar.policies.data.loadbalancer.SystemResourceUsage;
+
+/**
+ * Runs a {@link LoadSheddingStrategy} of the modular load manager, e.g. {@code ThresholdShedder} or
+ * {@code AvgShedder}, in a {@link LoadSimulation}.
+ *
+ * <p>The load reported by the simulated brokers is converted to the {@link LoadData} the modular load manager would
+ * have aggregated, the bundles of a broker being its top bundles.
+ */
+public class LoadSheddingStrategyAdapter implements NamespaceUnloadStrategy {
+
+    private final LoadSheddingStrategy strategy;
+    // Kept across the calls, for the time averages of the modular load manager
+    private final Map<String, LocalBrokerData> localBrokerData = new HashMap<>();
+    private final Map<String, BundleData> bundleData = new HashMap<>();
+
+    public LoadSheddingStrategyAdapter(LoadSheddingStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    @Override
+    public Set<UnloadDecision> findBundlesForUnloading(LoadManagerContext context,
+                                                       Map<String, Long> recentlyUnloadedBundles,
+                                                       Map<String, Long> recentlyUnloadedBrokers) {
+        LoadData loadData = new LoadData();
+        for (Map.Entry<String, BrokerLoadData> entry : context.brokerLoadDataStore().entrySet()) {
+            String broker = entry.getKey();
+            BrokerLoadData brokerLoadData = entry.getValue();
+            Map<String, NamespaceBundleStats> bundleStats = new HashMap<>();
+            context.topBundleLoadDataStore().get(broker).map(TopBundlesLoadData::getTopBundlesLoadData)
+                    .ifPresent(topBundles -> topBundles.forEach(bundle -> {
+                        bundleStats.put(bundle.bundleName(), bundle.stats());
+                        bundleData.computeIfAbsent(bundle.bundleName(),
+                                __ -> new BundleData(NUM_SHORT_SAMPLES, NUM_LONG_SAMPLES)).update(bundle.stats());
+                    }));
+            SystemResourceUsage usage = new SystemResourceUsage();
+            usage.setCpu(brokerLoadData.getCpu());
+            usage.setMemory(brokerLoadData.getMemory());
+            usage.setDirectMemory(brokerLoadData.getDirectMemory());
+            usage.setBandwidthIn(brokerLoadData.getBandwidthIn());
+            usage.setBandwidthOut(brokerLoadData.getBandwidthOut());
+            LocalBrokerData localData = localBrokerData.computeIfAbsent(broker, __ -> new LocalBrokerData());
+            localData.update(usage, bundleStats);
+            loadData.getBrokerData().put(broker, new BrokerData(localData));
+            bundleStats.keySet().forEach(bundle -> loadData.getBundleData().put(bundle, bundleData.get(bundle)));
+        }
+        loadData.getRecentlyUnloadedBundles().putAll(recentlyUnloadedBundles);
+
+        Multimap<String, String> bundlesToUnload =
+                strategy.findBundlesForUnloading(loadData, context.brokerConfiguration());
+        Set<UnloadDecision> decisions = new HashSet<>();
+        bundlesToUnload.forEach((broker, bundle) -> decisions.add(new UnloadDecision(new Unload(broker, bundle),
+                UnloadDecision.Label.Success, UnloadDecision.Reason.Overloaded)));
+        return decisions;
+    }
+
+    @Override
+    public void initialize(PulsarService pulsar) {
+    }
+}
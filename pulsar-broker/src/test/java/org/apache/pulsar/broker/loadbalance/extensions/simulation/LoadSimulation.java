@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.loadbalance.extensions.simulation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.broker.ServiceConfiguration;
+import org.apache.pulsar.broker.loadbalance.extensions.data.BrokerLoadData;
+import org.apache.pulsar.broker.loadbalance.extensions.data.TopBundlesLoadData;
+import org.apache.pulsar.broker.loadbalance.extensions.models.TopKBundles;
+import org.apache.pulsar.broker.loadbalance.extensions.models.Unload;
+import org.apache.pulsar.broker.loadbalance.extensions.models.UnloadDecision;
+import org.apache.pulsar.broker.loadbalance.extensions.scheduler.NamespaceUnloadStrategy;
+import org.apache.pulsar.broker.loadbalance.extensions.strategy.BrokerSelectionStrategy;
+import org.apache.pulsar.common.naming.NamespaceBundle;
+import org.apache.pulsar.common.naming.NamespaceName;
+import org.apache.pulsar.common.naming.ServiceUnitId;
+import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.policies.data.loadbalancer.NamespaceBundleStats;
+import org.apache.pulsar.policies.data.loadbalancer.ResourceUsage;
+import org.apache.pulsar.policies.data.loadbalancer.SystemResourceUsage;
+
+/**
+ * Runs a {@link NamespaceUnloadStrategy} and a {@link BrokerSelectionStrategy} against a simulated cluster, without
+ * any broker or metadata store, to compare how they balance a {@link SimulatedWorkload}.
+ *
+ * <p>At each tick, the brokers report the load of the bundles they own, as they would every
+ * {@link #tickMillis}, and every {@link ServiceConfiguration#getLoadBalancerSheddingIntervalMinutes()} the unload
+ * strategy decides which bundles to move. The moves take effect at the next tick. The utilization of a broker is the
+ * ratio of the throughput of its bundles to {@link #brokerCapacity}, the load is balanced when the standard deviation
+ * of the utilizations is below {@link ServiceConfiguration#getLoadBalancerBrokerLoadTargetStd()}.
+ *
+ * <p>The simulated time drives the shedding interval, the cool down of the brokers and the grace period of the
+ * unloaded bundles, so the same workload and strategies always give the same result, provided the strategies don't
+ * use a random source of their own.
+ */
+@Slf4j
+@Builder
+public class LoadSimulation {
+
+    private static final double MB = 1024 * 1024;
+
+    private final SimulatedWorkload workload;
+    private final NamespaceUnloadStrategy unloadStrategy;
+    private final BrokerSelectionStrategy selectionStrategy;
+    @Builder.Default
+    private final ServiceConfiguration conf = new ServiceConfiguration();
+    // The throughput at which a broker is fully used, in bytes/s
+    @Builder.Default
+    private final double brokerCapacity = 100 * MB;
+    @Builder.Default
+    private final int ticks = 120;
+    @Builder.Default
+    private final long tickMillis = TimeUnit.MINUTES.toMillis(1);
+
+    private record SimulatedBundle(String bundle) implements ServiceUnitId {
+
+        @Override
+        public NamespaceName getNamespaceObject() {
+            return NamespaceName.get(NamespaceBundle.getBundleNamespace(bundle));
+        }
+
+        @Override
+        public boolean includes(TopicName topicName) {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return bundle;
+        }
+    }
+
+    public LoadSimulationResult run() {
+        List<String> brokers = workload.brokers();
+        SimulatedLoadManagerContext context = new SimulatedLoadManagerContext(conf, brokers);
+        Map<String, String> owners = new TreeMap<>(workload.initialOwners());
+        Map<String, BrokerLoadData> brokerLoadData = new TreeMap<>();
+        for (String broker : brokers) {
+            BrokerLoadData loadData = new BrokerLoadData();
+            brokerLoadData.put(broker, loadData);
+            context.brokerLoadDataStore().pushAsync(broker, loadData);
+        }
+        // The simulated time of the last unload of the bundles and from the brokers
+        Map<String, Long> recentlyUnloadedBundles = new HashMap<>();
+        Map<String, Long> recentlyUnloadedBrokers = new HashMap<>();
+        long sheddingIntervalTicks = Math.max(1,
+                TimeUnit.MINUTES.toMillis(conf.getLoadBalancerSheddingIntervalMinutes()) / tickMillis);
+
+        int bundleMoves = 0;
+        int convergenceTick = -1;
+        List<Double> loadStd = new ArrayList<>(ticks);
+        double maxUtilization = 0;
+        double throttledBytes = 0;
+        double totalBytes = 0;
+
+        for (int tick = 0; tick < ticks; tick++) {
+            long now = tick * tickMillis;
+            Map<String, NamespaceBundleStats> bundleStats = new TreeMap<>();
+            for (String bundle : workload.bundles()) {
+                bundleStats.put(bundle, workload.stats(bundle, tick));
+            }
+            if (tick == 0) {
+                // The brokers report before any bundle is assigned
+                reportLoad(context, brokerLoadData, owners, bundleStats, tick);
+                for (String bundle : workload.bundles()) {
+                    if (!owners.containsKey(bundle)) {
+                        selectionStrategy.select(new TreeSet<>(brokers), new SimulatedBundle(bundle), context)
+                                .ifPresent(broker -> owners.put(bundle, broker));
+                    }
+                }
+            }
+
+            Map<String, Double> demand = brokerThroughput(brokers, owners, bundleStats, tick);
+            double sum = 0;
+            double sqSum = 0;
+            for (double throughput : demand.values()) {
+                double utilization = throughput / brokerCapacity;
+                sum += utilization;
+                sqSum += utilization * utilization;
+                maxUtilization = Math.max(maxUtilization, utilization);
+                double seconds = tickMillis / 1000.0;
+                totalBytes += throughput * seconds;
+                throttledBytes += Math.max(0, throughput - brokerCapacity) * seconds;
+            }
+            double avg = sum / brokers.size();
+            double std = Math.sqrt(Math.max(0, sqSum / brokers.size() - avg * avg));
+            loadStd.add(std);
+            if (std > conf.getLoadBalancerBrokerLoadTargetStd()) {
+                convergenceTick = -1;
+            } else if (convergenceTick < 0) {
+                convergenceTick = tick;
+            }
+
+            reportLoad(context, brokerLoadData, owners, bundleStats, tick);
+            if (tick == 0 || tick % sheddingIntervalTicks != 0) {
+                continue;
+            }
+
+            long gracePeriodStart = now - TimeUnit.MINUTES.toMillis(conf.getLoadBalancerSheddingGracePeriodMinutes());
+            recentlyUnloadedBundles.values().removeIf(unloadedAt -> unloadedAt < gracePeriodStart);
+            for (UnloadDecision decision : shed(context, brokerLoadData, recentlyUnloadedBundles,
+                    recentlyUnloadedBrokers, now)) {
+                if (decision.getLabel() != UnloadDecision.Label.Success) {
+                    continue;
+                }
+                Unload unload = decision.getUnload();
+                String bundle = unload.serviceUnit();
+                if (!unload.sourceBroker().equals(owners.get(bundle))) {
+                    log.warn("Ignoring the unload of {} from {}, which doesn't own it", bundle, unload.sourceBroker());
+                    continue;
+                }
+                Optional<String> destination = conf.isLoadBalancerTransferEnabled() && unload.destBroker().isPresent()
+                        ? unload.destBroker()
+                        : selectionStrategy.select(new TreeSet<>(brokers), new SimulatedBundle(bundle), context);
+                recentlyUnloadedBundles.put(bundle, now);
+                recentlyUnloadedBrokers.put(unload.sourceBroker(), now);
+                if (destination.isPresent() && !destination.get().equals(unload.sourceBroker())) {
+                    owners.put(bundle, destination.get());
+                    bundleMoves++;
+                }
+            }
+        }
+        return new LoadSimulationResult(tickMillis, bundleMoves, convergenceTick, loadStd, maxUtilization,
+                throttledBytes, totalBytes);
+    }
+
+    private Map<String, Double> brokerThroughput(List<String> brokers, Map<String, String> owners,
+                                                 Map<String, NamespaceBundleStats> bundleStats, int tick) {
+        Map<String, Double> throughput = new TreeMap<>();
+        for (String broker : brokers) {
+            throughput.put(broker, workload.backgroundThroughput(broker, tick));
+        }
+        owners.forEach((bundle, broker) -> {
+            NamespaceBundleStats stats = bundleStats.get(bundle);
+            if (stats != null) {
+                throughput.merge(broker, stats.msgThroughputIn + stats.msgThroughputOut, Double::sum);
+            }
+        });
+        return throughput;
+    }
+
+    private void reportLoad(SimulatedLoadManagerContext context, Map<String, BrokerLoadData> brokerLoadData,
+                            Map<String, String> owners, Map<String, NamespaceBundleStats> bundleStats, int tick) {
+        Map<String, Map<String, NamespaceBundleStats>> ownedBundles = new TreeMap<>();
+        brokerLoadData.keySet().forEach(broker -> ownedBundles.put(broker, new TreeMap<>()));
+        owners.forEach((bundle, broker) -> {
+            NamespaceBundleStats stats = bundleStats.get(bundle);
+            if (stats != null) {
+                ownedBundles.get(broker).put(bundle, stats);
+            }
+        });
+
+        ownedBundles.forEach((broker, stats) -> {
+            double background = workload.backgroundThroughput(broker, tick);
+            double msgThroughputIn = background / 2;
+            double msgThroughputOut = background / 2;
+            double msgRateIn = 0;
+            double msgRateOut = 0;
+            long topics = 0;
+            for (NamespaceBundleStats bundle : stats.values()) {
+                msgThroughputIn += bundle.msgThroughputIn;
+                msgThroughputOut += bundle.msgThroughputOut;
+                msgRateIn += bundle.msgRateIn;
+                msgRateOut += bundle.msgRateOut;
+                topics += bundle.topics;
+            }
+            SystemResourceUsage usage = new SystemResourceUsage();
+            usage.setCpu(new ResourceUsage(msgThroughputIn + msgThroughputOut, brokerCapacity));
+            usage.setMemory(new ResourceUsage(0, 100));
+            usage.setDirectMemory(new ResourceUsage(0, 100));
+            usage.setBandwidthIn(new ResourceUsage(msgThroughputIn, brokerCapacity / 2));
+            usage.setBandwidthOut(new ResourceUsage(msgThroughputOut, brokerCapacity / 2));
+            brokerLoadData.get(broker).update(usage, msgThroughputIn, msgThroughputOut, msgRateIn, msgRateOut,
+                    stats.size(), topics, conf);
+            context.topBundleLoadDataStore().pushAsync(broker, topBundles(stats));
+        });
+    }
+
+    // Same selection as TopKBundles, without the policies which need a running broker
+    private TopBundlesLoadData topBundles(Map<String, NamespaceBundleStats> bundleStats) {
+        List<Map.Entry<String, ? extends Comparable>> arr = new ArrayList<>();
+        bundleStats.entrySet().stream()
+                .filter(entry -> entry.getValue().msgThroughputIn + entry.getValue().msgThroughputOut > 0)
+                .forEach(arr::add);
+        TopBundlesLoadData loadData = new TopBundlesLoadData();
+        int topk = Math.min(conf.getLoadBalancerMaxNumberOfBundlesInBundleLoadReport(), arr.size());
+        if (topk == 0) {
+            return loadData;
+        }
+        TopKBundles.partitionSort(arr, topk);
+        for (int i = topk - 1; i >= 0; i--) {
+            var entry = arr.get(i);
+            loadData.getTopBundlesLoadData().add(
+                    new TopBundlesLoadData.BundleLoadData(entry.getKey(), (NamespaceBundleStats) entry.getValue()));
+        }
+        return loadData;
+    }
+
+    private Iterable<UnloadDecision> shed(SimulatedLoadManagerContext context,
+                                          Map<String, BrokerLoadData> brokerLoadData,
+                                          Map<String, Long> recentlyUnloadedBundles,
+                                          Map<String, Long> recentlyUnloadedBrokers,
+                                          long now) {
+        // The strategies compare the unload times to the wall clock times of the load reports, shift them
+        // so that the elapsed times are the simulated ones.
+        long wallClockNow = System.currentTimeMillis();
+        Map<String, Long> unloadedBundles = new HashMap<>();
+        recentlyUnloadedBundles.forEach((bundle, unloadedAt) ->
+                unloadedBundles.put(bundle, wallClockNow - (now - unloadedAt)));
+        Map<String, Long> unloadedBrokers = new HashMap<>();
+        recentlyUnloadedBrokers.forEach((broker, unloadedAt) ->
+                unloadedBrokers.put(broker, brokerLoadData.get(broker).getUpdatedAt() - (now - unloadedAt)));
+
+        var decisions = unloadStrategy.findBundlesForUnloading(context, unloadedBundles, unloadedBrokers);
+        // The strategies forget the brokers which cooled down
+        recentlyUnloadedBrokers.keySet().retainAll(unloadedBrokers.keySet());
+        return decisions;
+    }
+}
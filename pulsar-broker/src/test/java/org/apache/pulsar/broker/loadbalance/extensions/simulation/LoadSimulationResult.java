@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.loadbalance.extensions.simulation;
+
+import java.util.List;
+
+/**
+ * The outcome of a {@link LoadSimulation}.
+ *
+ * @param tickMillis the simulated time between two ticks
+ * @param bundleMoves the number of bundles moved to another broker
+ * @param convergenceTick the first tick from which the load stays balanced until the end of the simulation, or -1
+ * @param loadStd the standard deviation of the utilization of the brokers at each tick
+ * @param maxUtilization the highest utilization of a broker, the ratio of its throughput to its capacity
+ * @param throttledBytes the traffic above the capacity of the brokers, which would not be served
+ * @param totalBytes the traffic of all the bundles
+ */
+public record LoadSimulationResult(long tickMillis,
+                                   int bundleMoves,
+                                   int convergenceTick,
+                                   List<Double> loadStd,
+                                   double maxUtilization,
+                                   double throttledBytes,
+                                   double totalBytes) {
+
+    public boolean converged() {
+        return convergenceTick >= 0;
+    }
+
+    /**
+     * The simulated time until the load stays balanced, or -1 when it never does.
+     */
+    public long convergenceTimeMillis() {
+        return converged() ? convergenceTick * tickMillis : -1;
+    }
+
+    public double finalLoadStd() {
+        return loadStd.isEmpty() ? 0 : loadStd.get(loadStd.size() - 1);
+    }
+
+    public double meanLoadVariance() {
+        return loadStd.stream().mapToDouble(std -> std * std).average().orElse(0);
+    }
+
+    public double throttledRatio() {
+        return totalBytes == 0 ? 0 : throttledBytes / totalBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("bundleMoves: %d, convergenceTime: %d ms, finalLoadStd: %.3f, meanLoadVariance: %.4f, "
+                        + "maxUtilization: %.2f, throttledRatio: %.4f",
+                bundleMoves, convergenceTimeMillis(), finalLoadStd(), meanLoadVariance(), maxUtilization,
+                throttledRatio());
+    }
+}
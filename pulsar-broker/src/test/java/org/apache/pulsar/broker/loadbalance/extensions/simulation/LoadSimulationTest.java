@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.loadbalance.extensions.simulation;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.broker.ServiceConfiguration;
+import org.apache.pulsar.broker.loadbalance.extensions.data.BrokerLoadData;
+import org.apache.pulsar.broker.loadbalance.extensions.data.TopBundlesLoadData;
+import org.apache.pulsar.broker.loadbalance.extensions.models.UnloadCounter;
+import org.apache.pulsar.broker.loadbalance.extensions.scheduler.NamespaceUnloadStrategy;
+import org.apache.pulsar.broker.loadbalance.extensions.scheduler.PredictiveShedder;
+import org.apache.pulsar.broker.loadbalance.extensions.scheduler.TransferShedder;
+import org.apache.pulsar.broker.loadbalance.extensions.strategy.LeastResourceUsageWithWeight;
+import org.apache.pulsar.broker.loadbalance.impl.ThresholdShedder;
+import org.apache.pulsar.policies.data.loadbalancer.NamespaceBundleStats;
+import org.apache.pulsar.policies.data.loadbalancer.ResourceUsage;
+import org.apache.pulsar.policies.data.loadbalancer.SystemResourceUsage;
+import org.testng.annotations.Test;
+
+@Slf4j
+@Test(groups = "broker")
+public class LoadSimulationTest {
+
+    private static final double MB = 1024 * 1024;
+
+    private ServiceConfiguration conf() {
+        ServiceConfiguration conf = new ServiceConfiguration();
+        conf.setLoadBalancerBrokerLoadTargetStd(0.1);
+        conf.setLoadBalancerSheddingConditionHitCountThreshold(1);
+        return conf;
+    }
+
+    private SyntheticWorkload hotSpot() {
+        return SyntheticWorkload.builder()
+                .seed(1)
+                .hotSpotTick(10)
+                .hotSpotBundles(3)
+                .hotSpotFactor(5)
+                .build();
+    }
+
+    private LoadSimulationResult runTransferShedder(SimulatedWorkload workload, int ticks) {
+        return run(workload, new TransferShedder(new UnloadCounter()), ticks);
+    }
+
+    @Test
+    public void testTransferShedderBalancesHotSpot() {
+        LoadSimulationResult result = runTransferShedder(hotSpot(), 60);
+        log.info("{}", result);
+
+        double hotSpotStd = result.loadStd().get(10);
+        assertTrue(hotSpotStd > 0.1, "std at the hot spot " + hotSpotStd);
+        assertTrue(result.bundleMoves() > 0);
+        assertTrue(result.finalLoadStd() < hotSpotStd);
+        assertTrue(result.converged());
+        assertTrue(result.convergenceTick() > 10);
+    }
+
+    @Test
+    public void testSimulationIsReproducible() {
+        assertEquals(runTransferShedder(hotSpot(), 30), runTransferShedder(hotSpot(), 30));
+    }
+
+    @Test
+    public void testPredictiveShedderOnGrowingHotSpot() {
+        SyntheticWorkload workload = SyntheticWorkload.builder()
+                .seed(1)
+                .hotSpotTick(10)
+                .hotSpotBundles(3)
+                .hotSpotFactor(8)
+                .hotSpotRampTicks(20)
+                .build();
+        LoadSimulationResult transfer = run(workload, new TransferShedder(new UnloadCounter()), 60);
+        LoadSimulationResult predictive = run(workload, new PredictiveShedder(new UnloadCounter()), 60);
+        log.info("TransferShedder: {}", transfer);
+        log.info("PredictiveShedder: {}", predictive);
+
+        assertTrue(predictive.bundleMoves() > 0);
+        // The bundles are moved before the broker saturates
+        assertTrue(predictive.maxUtilization() < transfer.maxUtilization());
+        assertTrue(predictive.meanLoadVariance() < transfer.meanLoadVariance());
+        assertTrue(predictive.throttledBytes() <= transfer.throttledBytes());
+    }
+
+    private LoadSimulationResult run(SimulatedWorkload workload, NamespaceUnloadStrategy unloadStrategy, int ticks) {
+        return LoadSimulation.builder()
+                .workload(workload)
+                .conf(conf())
+                .unloadStrategy(unloadStrategy)
+                .selectionStrategy(new LeastResourceUsageWithWeight(new Random(0)))
+                .ticks(ticks)
+                .build()
+                .run();
+    }
+
+    @Test
+    public void testUnassignedBundlesAreSpread() {
+        SyntheticWorkload workload = SyntheticWorkload.builder().seed(2).initiallyAssigned(false).build();
+        LoadSimulationResult result = runTransferShedder(workload, 5);
+        assertTrue(result.maxUtilization() < 1, "max utilization " + result.maxUtilization());
+    }
+
+    @Test
+    public void testThresholdShedder() {
+        LoadSimulationResult result = LoadSimulation.builder()
+                .workload(hotSpot())
+                .conf(conf())
+                .unloadStrategy(new LoadSheddingStrategyAdapter(new ThresholdShedder()))
+                .selectionStrategy(new LeastResourceUsageWithWeight(new Random(0)))
+                .ticks(60)
+                .build()
+                .run();
+        log.info("{}", result);
+
+        assertTrue(result.bundleMoves() > 0);
+        assertTrue(result.finalLoadStd() < result.loadStd().get(10));
+    }
+
+    @Test
+    public void testTraceReplay() throws Exception {
+        long start = 1_700_000_000_000L;
+        LoadTrace trace = new LoadTrace();
+        for (int tick = 0; tick < 3; tick++) {
+            for (int i = 0; i < 2; i++) {
+                String broker = "broker-" + i + ":8080";
+                NamespaceBundleStats stats = new NamespaceBundleStats();
+                stats.msgThroughputIn = (i + 1) * 10 * MB;
+                stats.msgThroughputOut = (i + 1) * 10 * MB;
+                TopBundlesLoadData topBundles = new TopBundlesLoadData();
+                topBundles.getTopBundlesLoadData()
+                        .add(new TopBundlesLoadData.BundleLoadData("tenant/ns/0x00000000_0x0000000" + i, stats));
+                SystemResourceUsage usage = new SystemResourceUsage();
+                usage.setCpu(new ResourceUsage(10, 100));
+                BrokerLoadData brokerLoadData = new BrokerLoadData();
+                // 5MB/s of traffic in the bundles missing from the top bundles
+                brokerLoadData.update(usage, stats.msgThroughputIn + 5 * MB, stats.msgThroughputOut, 0, 0, 1, 1,
+                        new ServiceConfiguration());
+                trace.add(start + tick * 60_000L + i, broker, brokerLoadData, topBundles);
+            }
+        }
+
+        StringWriter writer = new StringWriter();
+        trace.write(writer);
+        LoadTrace read = LoadTrace.read(new StringReader(writer.toString()));
+        assertEquals(read.entries(), trace.entries());
+
+        SimulatedWorkload workload = read.toWorkload(60_000);
+        assertEquals(workload.brokers().size(), 2);
+        assertEquals(workload.bundles().size(), 2);
+        assertEquals(workload.initialOwners().get("tenant/ns/0x00000000_0x00000001"), "broker-1:8080");
+        assertEquals(workload.stats("tenant/ns/0x00000000_0x00000001", 2).msgThroughputIn, 20 * MB);
+        assertEquals(workload.backgroundThroughput("broker-0:8080", 1), 5 * MB);
+
+        LoadSimulationResult result = runTransferShedder(workload, 3);
+        assertEquals(result.loadStd().size(), 3);
+        assertEquals(result.loadStd().get(0), (45 - 25) * MB / 2 / (100 * MB), 1e-9);
+    }
+}
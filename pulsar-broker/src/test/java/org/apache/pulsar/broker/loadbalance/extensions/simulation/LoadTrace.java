@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.loadbalance.extensions.simulation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.pulsar.broker.loadbalance.extensions.data.BrokerLoadData;
+import org.apache.pulsar.broker.loadbalance.extensions.data.TopBundlesLoadData;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.common.util.ObjectMapperFactory;
+import org.apache.pulsar.policies.data.loadbalancer.NamespaceBundleStats;
+
+/**
+ * The load data reported by the brokers of a cluster, to replay it in a {@link LoadSimulation}.
+ *
+ * <p>A trace is written as JSON lines, one per report: {@code {"timestamp": ..., "broker": ...,
+ * "brokerLoadData": {...}, "topBundlesLoadData": {...}}}. The load data is encoded as in the load data topics of
+ * the extensible load manager, so a trace can be recorded by reading these topics.
+ */
+public class LoadTrace {
+
+    private static final Schema<BrokerLoadData> BROKER_LOAD_DATA_SCHEMA = Schema.JSON(BrokerLoadData.class);
+    private static final Schema<TopBundlesLoadData> TOP_BUNDLES_LOAD_DATA_SCHEMA =
+            Schema.JSON(TopBundlesLoadData.class);
+
+    public record Entry(long timestamp, String broker, BrokerLoadData brokerLoadData,
+                        TopBundlesLoadData topBundlesLoadData) {
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    public void add(long timestamp, String broker, BrokerLoadData brokerLoadData,
+                    TopBundlesLoadData topBundlesLoadData) {
+        entries.add(new Entry(timestamp, broker, brokerLoadData, topBundlesLoadData));
+    }
+
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    public void write(Writer writer) throws IOException {
+        ObjectMapper mapper = ObjectMapperFactory.getMapper().getObjectMapper();
+        for (Entry entry : entries) {
+            ObjectNode node = mapper.createObjectNode();
+            node.put("timestamp", entry.timestamp());
+            node.put("broker", entry.broker());
+            node.set("brokerLoadData", mapper.readTree(BROKER_LOAD_DATA_SCHEMA.encode(entry.brokerLoadData())));
+            node.set("topBundlesLoadData",
+                    mapper.readTree(TOP_BUNDLES_LOAD_DATA_SCHEMA.encode(entry.topBundlesLoadData())));
+            writer.write(mapper.writeValueAsString(node));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    public static LoadTrace read(Reader reader) throws IOException {
+        ObjectMapper mapper = ObjectMapperFactory.getMapper().getObjectMapper();
+        LoadTrace trace = new LoadTrace();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            ObjectNode node = (ObjectNode) mapper.readTree(line);
+            trace.add(node.get("timestamp").asLong(), node.get("broker").asText(),
+                    BROKER_LOAD_DATA_SCHEMA.decode(mapper.writeValueAsBytes(node.get("brokerLoadData"))),
+                    TOP_BUNDLES_LOAD_DATA_SCHEMA.decode(mapper.writeValueAsBytes(node.get("topBundlesLoadData"))));
+        }
+        return trace;
+    }
+
+    /**
+     * Converts the trace to a workload, the reports falling in the same tick of {@code tickMillis} being merged.
+     *
+     * <p>The brokers initially own the bundles they first reported. A bundle keeps the traffic of its last report
+     * until it is reported again, wherever it moves during the simulation. The throughput reported by a broker in
+     * excess of its top bundles stays on that broker.
+     */
+    public SimulatedWorkload toWorkload(long tickMillis) {
+        if (entries.isEmpty()) {
+            throw new IllegalStateException("The trace is empty");
+        }
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingLong(Entry::timestamp));
+        long start = sorted.get(0).timestamp();
+        int ticks = (int) ((sorted.get(sorted.size() - 1).timestamp() - start) / tickMillis) + 1;
+
+        Map<String, String> initialOwners = new TreeMap<>();
+        Map<String, NamespaceBundleStats[]> bundleStats = new TreeMap<>();
+        Map<String, double[]> backgroundThroughput = new TreeMap<>();
+        for (Entry entry : sorted) {
+            int tick = (int) ((entry.timestamp() - start) / tickMillis);
+            double background = entry.brokerLoadData().getMsgThroughputIn()
+                    + entry.brokerLoadData().getMsgThroughputOut();
+            for (TopBundlesLoadData.BundleLoadData bundle : entry.topBundlesLoadData().getTopBundlesLoadData()) {
+                initialOwners.putIfAbsent(bundle.bundleName(), entry.broker());
+                bundleStats.computeIfAbsent(bundle.bundleName(), __ -> new NamespaceBundleStats[ticks])[tick] =
+                        bundle.stats();
+                background -= bundle.stats().msgThroughputIn + bundle.stats().msgThroughputOut;
+            }
+            backgroundThroughput.computeIfAbsent(entry.broker(), __ -> {
+                double[] throughput = new double[ticks];
+                Arrays.fill(throughput, Double.NaN);
+                return throughput;
+            })[tick] = Math.max(0, background);
+        }
+        // Carry the last reports forward
+        bundleStats.values().forEach(stats -> {
+            for (int tick = 1; tick < ticks; tick++) {
+                if (stats[tick] == null) {
+                    stats[tick] = stats[tick - 1];
+                }
+            }
+        });
+        backgroundThroughput.values().forEach(throughput -> {
+            for (int tick = 0; tick < ticks; tick++) {
+                if (Double.isNaN(throughput[tick])) {
+                    throughput[tick] = tick > 0 ? throughput[tick - 1] : 0;
+                }
+            }
+        });
+        return new TraceWorkload(ticks, initialOwners, bundleStats, backgroundThroughput);
+    }
+
+    private record TraceWorkload(int ticks, Map<String, String> initialOwners,
+                                 Map<String, NamespaceBundleStats[]> bundleStats,
+                                 Map<String, double[]> backgroundThroughput) implements SimulatedWorkload {
+
+        @Override
+        public List<String> brokers() {
+            return new ArrayList<>(backgroundThroughput.keySet());
+        }
+
+        @Override
+        public List<String> bundles() {
+            return new ArrayList<>(bundleStats.keySet());
+        }
+
+        @Override
+        public NamespaceBundleStats stats(String bundle, int tick) {
+            NamespaceBundleStats[] stats = bundleStats.get(bundle);
+            NamespaceBundleStats sample = stats == null ? null : stats[Math.min(tick, ticks - 1)];
+            return sample != null ? sample : new NamespaceBundleStats();
+        }
+
+        @Override
+        public double backgroundThroughput(String broker, int tick) {
+            double[] throughput = backgroundThroughput.get(broker);
+            return throughput == null ? 0 : throughput[Math.min(tick, ticks - 1)];
+        }
+    }
+}
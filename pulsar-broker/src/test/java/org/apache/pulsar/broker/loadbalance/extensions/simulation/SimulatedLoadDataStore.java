@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.loadbalance.extensions.simulation;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import org.apache.pulsar.broker.loadbalance.extensions.store.LoadDataStore;
+
+/**
+ * An in-memory {@link LoadDataStore}, iterated in the order of the keys so that the simulations are reproducible.
+ */
+class SimulatedLoadDataStore<T> implements LoadDataStore<T> {
+
+    private final Map<String, T> map = new TreeMap<>();
+
+    @Override
+    public CompletableFuture<Void> pushAsync(String key, T loadData) {
+        map.put(key, loadData);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> removeAsync(String key) {
+        map.remove(key);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public Optional<T> get(String key) {
+        return Optional.ofNullable(map.get(key));
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, T> action) {
+        map.forEach(action);
+    }
+
+    @Override
+    public Set<Map.Entry<String, T>> entrySet() {
+        return map.entrySet();
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void closeTableView() {
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void init() {
+    }
+
+    @Override
+    public void startTableView() {
+    }
+
+    @Override
+    public void startProducer() {
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.loadbalance.extensions.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import org.apache.pulsar.broker.ServiceConfiguration;
+import org.apache.pulsar.broker.loadbalance.extensions.BrokerRegistry;
+import org.apache.pulsar.broker.loadbalance.extensions.ExtensibleLoadManagerImpl;
+import org.apache.pulsar.broker.loadbalance.extensions.LoadManagerContext;
+import org.apache.pulsar.broker.loadbalance.extensions.data.BrokerLoadData;
+import org.apache.pulsar.broker.loadbalance.extensions.data.BrokerLookupData;
+import org.apache.pulsar.broker.loadbalance.extensions.data.TopBundlesLoadData;
+import org.apache.pulsar.broker.loadbalance.extensions.store.LoadDataStore;
+import org.apache.pulsar.metadata.api.NotificationType;
+
+/**
+ * The {@link LoadManagerContext} of a simulated cluster, where all the brokers are available and the load data is
+ * pushed by the simulation.
+ */
+public class SimulatedLoadManagerContext implements LoadManagerContext {
+
+    private final ServiceConfiguration conf;
+    private final LoadDataStore<BrokerLoadData> brokerLoadDataStore = new SimulatedLoadDataStore<>();
+    private final LoadDataStore<TopBundlesLoadData> topBundleLoadDataStore = new SimulatedLoadDataStore<>();
+    private final BrokerRegistry brokerRegistry;
+
+    public SimulatedLoadManagerContext(ServiceConfiguration conf, List<String> brokers) {
+        this.conf = conf;
+        Map<String, BrokerLookupData> lookupData = new TreeMap<>();
+        for (String broker : brokers) {
+            lookupData.put(broker, new BrokerLookupData("http://" + broker, null, "pulsar://" + broker, null,
+                    Map.of(), Map.of(), true, true, ExtensibleLoadManagerImpl.class.getName(), 0L, null, Map.of()));
+        }
+        this.brokerRegistry = new SimulatedBrokerRegistry(brokers, lookupData);
+    }
+
+    @Override
+    public ServiceConfiguration brokerConfiguration() {
+        return conf;
+    }
+
+    @Override
+    public LoadDataStore<BrokerLoadData> brokerLoadDataStore() {
+        return brokerLoadDataStore;
+    }
+
+    @Override
+    public LoadDataStore<TopBundlesLoadData> topBundleLoadDataStore() {
+        return topBundleLoadDataStore;
+    }
+
+    @Override
+    public BrokerRegistry brokerRegistry() {
+        return brokerRegistry;
+    }
+
+    private record SimulatedBrokerRegistry(List<String> brokers, Map<String, BrokerLookupData> lookupData)
+            implements BrokerRegistry {
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public boolean isStarted() {
+            return true;
+        }
+
+        @Override
+        public boolean isRegistered() {
+            return true;
+        }
+
+        @Override
+        public CompletableFuture<Void> registerAsync() {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void unregister() {
+        }
+
+        @Override
+        public String getBrokerId() {
+            return brokers.get(0);
+        }
+
+        @Override
+        public CompletableFuture<List<String>> getAvailableBrokersAsync() {
+            return CompletableFuture.completedFuture(new ArrayList<>(brokers));
+        }
+
+        @Override
+        public CompletableFuture<Optional<BrokerLookupData>> lookupAsync(String broker) {
+            return CompletableFuture.completedFuture(Optional.ofNullable(lookupData.get(broker)));
+        }
+
+        @Override
+        public CompletableFuture<Map<String, BrokerLookupData>> getAvailableBrokerLookupDataAsync() {
+            // The strategies may filter the returned brokers
+            return CompletableFuture.completedFuture(new TreeMap<>(lookupData));
+        }
+
+        @Override
+        public void addListener(BiConsumer<String, NotificationType> listener) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
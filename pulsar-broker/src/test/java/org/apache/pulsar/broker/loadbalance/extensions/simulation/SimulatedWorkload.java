@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.loadbalance.extensions.simulation;
+
+import java.util.List;
+import java.util.Map;
+import org.apache.pulsar.policies.data.loadbalancer.NamespaceBundleStats;
+
+/**
+ * The traffic of the bundles of a simulated cluster over time.
+ *
+ * <p>Implementations must return the same values for the same arguments, so that the simulations are reproducible.
+ */
+public interface SimulatedWorkload {
+
+    /**
+     * The brokers of the cluster.
+     */
+    List<String> brokers();
+
+    /**
+     * The bundles of the cluster.
+     */
+    List<String> bundles();
+
+    /**
+     * The brokers owning the bundles when the simulation starts. The bundles missing from the returned map are
+     * assigned with the broker selection strategy.
+     */
+    Map<String, String> initialOwners();
+
+    /**
+     * The traffic of a bundle at a tick of the simulation.
+     */
+    NamespaceBundleStats stats(String bundle, int tick);
+
+    /**
+     * The throughput of a broker which is not attributed to any bundle, in bytes/s.
+     */
+    default double backgroundThroughput(String broker, int tick) {
+        return 0;
+    }
+}
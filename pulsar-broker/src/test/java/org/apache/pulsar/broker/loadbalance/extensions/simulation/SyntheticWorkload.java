@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.loadbalance.extensions.simulation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import lombok.Builder;
+import org.apache.pulsar.policies.data.loadbalancer.NamespaceBundleStats;
+
+/**
+ * A generated workload: the bundles have a random steady throughput, and from {@link #hotSpotTick} the throughput
+ * of {@link #hotSpotBundles} bundles, all initially owned by the first broker, is multiplied by
+ * {@link #hotSpotFactor}, at once or over {@link #hotSpotRampTicks}.
+ *
+ * <p>The bundles are initially spread over the brokers round-robin, or all assigned by the broker selection strategy
+ * when {@link #initiallyAssigned} is false.
+ */
+@Builder
+public class SyntheticWorkload implements SimulatedWorkload {
+
+    private static final double MB = 1024 * 1024;
+    private static final double AVG_MESSAGE_SIZE = 1024;
+
+    @Builder.Default
+    private final long seed = 0;
+    @Builder.Default
+    private final int numBrokers = 10;
+    @Builder.Default
+    private final int numNamespaces = 10;
+    @Builder.Default
+    private final int bundlesPerNamespace = 4;
+    // Min and max steady throughput of a bundle, in bytes/s
+    @Builder.Default
+    private final double minBundleThroughput = MB;
+    @Builder.Default
+    private final double maxBundleThroughput = 10 * MB;
+    // Relative amplitude of the random variations of the throughput between the ticks
+    @Builder.Default
+    private final double noise = 0.05;
+    @Builder.Default
+    private final int hotSpotTick = -1;
+    @Builder.Default
+    private final int hotSpotBundles = 0;
+    @Builder.Default
+    private final double hotSpotFactor = 10;
+    // Number of ticks for the throughput of the hot bundles to grow linearly to the hot spot factor, 0 for a step
+    @Builder.Default
+    private final int hotSpotRampTicks = 0;
+    @Builder.Default
+    private final boolean initiallyAssigned = true;
+
+    private final List<String> brokers = new ArrayList<>();
+    private final List<String> bundles = new ArrayList<>();
+    private final Map<String, String> initialOwners = new TreeMap<>();
+    private final Map<String, Double> baseThroughput = new HashMap<>();
+    private final Set<String> hotBundles = new TreeSet<>();
+
+    private synchronized void generate() {
+        if (!brokers.isEmpty()) {
+            return;
+        }
+        Random random = new Random(seed);
+        for (int i = 0; i < numBrokers; i++) {
+            brokers.add("broker-" + i + ":8080");
+        }
+        long rangeSize = 0x100000000L / bundlesPerNamespace;
+        for (int ns = 0; ns < numNamespaces; ns++) {
+            for (int b = 0; b < bundlesPerNamespace; b++) {
+                long lower = b * rangeSize;
+                long upper = b == bundlesPerNamespace - 1 ? 0xffffffffL : (b + 1) * rangeSize;
+                String bundle = String.format("simulation/ns-%d/0x%08x_0x%08x", ns, lower, upper);
+                String owner = brokers.get(bundles.size() % numBrokers);
+                bundles.add(bundle);
+                if (initiallyAssigned) {
+                    initialOwners.put(bundle, owner);
+                }
+                if (owner.equals(brokers.get(0)) && hotBundles.size() < hotSpotBundles) {
+                    hotBundles.add(bundle);
+                }
+                baseThroughput.put(bundle,
+                        minBundleThroughput + random.nextDouble() * (maxBundleThroughput - minBundleThroughput));
+            }
+        }
+    }
+
+    @Override
+    public List<String> brokers() {
+        generate();
+        return brokers;
+    }
+
+    @Override
+    public List<String> bundles() {
+        generate();
+        return bundles;
+    }
+
+    @Override
+    public Map<String, String> initialOwners() {
+        generate();
+        return initialOwners;
+    }
+
+    @Override
+    public NamespaceBundleStats stats(String bundle, int tick) {
+        generate();
+        double throughput = baseThroughput.get(bundle);
+        if (hotSpotTick >= 0 && tick >= hotSpotTick && hotBundles.contains(bundle)) {
+            double ramp = hotSpotRampTicks > 0 ? Math.min(1.0, (tick - hotSpotTick + 1.0) / hotSpotRampTicks) : 1.0;
+            throughput *= 1 + (hotSpotFactor - 1) * ramp;
+        }
+        Random random = new Random(seed ^ (31L * bundle.hashCode() + tick));
+        throughput *= 1 + noise * (2 * random.nextDouble() - 1);
+
+        NamespaceBundleStats stats = new NamespaceBundleStats();
+        stats.msgThroughputIn = throughput / 2;
+        stats.msgThroughputOut = throughput / 2;
+        stats.msgRateIn = stats.msgThroughputIn / AVG_MESSAGE_SIZE;
+        stats.msgRateOut = stats.msgThroughputOut / AVG_MESSAGE_SIZE;
+        stats.topics = 1;
+        stats.producerCount = 1;
+        stats.consumerCount = 1;
+        return stats;
+    }
+}
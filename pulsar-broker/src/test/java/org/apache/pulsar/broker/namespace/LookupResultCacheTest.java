@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.namespace;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker")
+public class LookupResultCacheTest {
+
+    private static final String BUNDLE = "tenant/ns/0x00000000_0xffffffff";
+
+    private final NamespaceEphemeralData owner = new NamespaceEphemeralData("pulsar://broker-1:6650",
+            "pulsar+ssl://broker-1:6651", "http://broker-1:8080", "https://broker-1:8443", false);
+    private final NamespaceEphemeralData disabledOwner = new NamespaceEphemeralData("pulsar://broker-1:6650",
+            "pulsar+ssl://broker-1:6651", "http://broker-1:8080", "https://broker-1:8443", true);
+
+    @Test
+    public void testPutAndInvalidate() {
+        LookupResultCache cache = new LookupResultCache(100);
+        assertNull(cache.getOwner(BUNDLE));
+
+        cache.putOwner(BUNDLE, owner, cache.getGeneration());
+        assertSame(cache.getOwner(BUNDLE), owner);
+
+        cache.invalidate(BUNDLE);
+        assertNull(cache.getOwner(BUNDLE));
+
+        cache.putOwner(BUNDLE, owner, cache.getGeneration());
+        cache.invalidateAll();
+        assertNull(cache.getOwner(BUNDLE));
+    }
+
+    @Test
+    public void testDisabledOwnerIsNotCached() {
+        LookupResultCache cache = new LookupResultCache(100);
+        cache.putOwner(BUNDLE, disabledOwner, cache.getGeneration());
+        assertNull(cache.getOwner(BUNDLE));
+    }
+
+    @Test
+    public void testOwnerReadBeforeInvalidationIsNotCached() {
+        LookupResultCache cache = new LookupResultCache(100);
+        long generation = cache.getGeneration();
+        // The ownership changed while the owner was being read
+        cache.invalidate(BUNDLE);
+        cache.putOwner(BUNDLE, owner, generation);
+        assertNull(cache.getOwner(BUNDLE));
+    }
+
+    @Test
+    public void testInvalidateBroker() {
+        String otherBundle = "tenant/ns/0x80000000_0xffffffff";
+        NamespaceEphemeralData otherOwner = new NamespaceEphemeralData("pulsar://broker-2:6650",
+                "pulsar+ssl://broker-2:6651", "http://broker-2:8080", "https://broker-2:8443", false);
+        LookupResultCache cache = new LookupResultCache(100);
+        assertEquals(LookupResultCache.brokerId(owner), "broker-1:8080");
+        cache.putOwner(BUNDLE, owner, cache.getGeneration());
+        cache.putOwner(otherBundle, otherOwner, cache.getGeneration());
+        assertTrue(cache.hasBroker("broker-1:8080"));
+
+        // The owners which are still up-to-date are kept
+        cache.invalidateBrokerIf("broker-1:8080", __ -> false);
+        assertSame(cache.getOwner(BUNDLE), owner);
+
+        cache.invalidateBroker("broker-1:8080");
+        assertNull(cache.getOwner(BUNDLE));
+        assertSame(cache.getOwner(otherBundle), otherOwner);
+        assertFalse(cache.hasBroker("broker-1:8080"));
+
+        // The bundle moved to another broker, the invalidation of its previous owner doesn't drop it
+        cache.putOwner(BUNDLE, owner, cache.getGeneration());
+        cache.putOwner(BUNDLE, otherOwner, cache.getGeneration());
+        assertFalse(cache.hasBroker("broker-1:8080"));
+        cache.invalidateBroker("broker-1:8080");
+        assertSame(cache.getOwner(BUNDLE), otherOwner);
+        cache.invalidateBroker("broker-2:8080");
+        assertNull(cache.getOwner(BUNDLE));
+        assertNull(cache.getOwner(otherBundle));
+        assertFalse(cache.hasBroker("broker-2:8080"));
+    }
+}
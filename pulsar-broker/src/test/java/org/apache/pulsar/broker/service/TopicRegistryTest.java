@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+import com.google.common.hash.Hashing;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.apache.pulsar.broker.PulsarService;
+import org.apache.pulsar.common.naming.NamespaceBundle;
+import org.apache.pulsar.common.naming.NamespaceBundleFactory;
+import org.apache.pulsar.common.naming.NamespaceName;
+import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.metadata.api.extended.MetadataStoreExtended;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker")
+public class TopicRegistryTest {
+
+    private static final NamespaceName NS1 = NamespaceName.get("tenant/ns1");
+    private static final NamespaceName NS2 = NamespaceName.get("tenant/ns2");
+
+    private NamespaceBundleFactory factory;
+    private TopicRegistry registry;
+
+    @BeforeMethod
+    public void setup() {
+        PulsarService pulsar = mock(PulsarService.class);
+        MetadataStoreExtended store = mock(MetadataStoreExtended.class);
+        when(pulsar.getLocalMetadataStore()).thenReturn(store);
+        when(pulsar.getConfigurationMetadataStore()).thenReturn(store);
+        factory = NamespaceBundleFactory.createFactory(pulsar, Hashing.crc32());
+        registry = new TopicRegistry(factory::getLongHashCode);
+    }
+
+    @Test
+    public void testForEachInBundle() {
+        for (int i = 0; i < 100; i++) {
+            registry.computeIfAbsent("persistent://tenant/ns1/topic-" + i, __ -> newTopicFuture());
+            registry.put("persistent://tenant/ns2/topic-" + i, newTopicFuture());
+        }
+        NamespaceBundle lower = factory.getBundle(NS1, Range.range(0L, BoundType.CLOSED, 0x80000000L, BoundType.OPEN));
+        NamespaceBundle upper = factory.getBundle(NS1,
+                Range.range(0x80000000L, BoundType.CLOSED, 0xffffffffL, BoundType.CLOSED));
+
+        Set<String> lowerTopics = collectBundle(lower);
+        Set<String> upperTopics = collectBundle(upper);
+        assertEquals(lowerTopics.size() + upperTopics.size(), 100);
+        lowerTopics.forEach(topic -> assertTrue(lower.includes(TopicName.get(topic))));
+        upperTopics.forEach(topic -> assertTrue(upper.includes(TopicName.get(topic))));
+
+        Set<String> ns2Topics = new HashSet<>();
+        registry.forEachInNamespace(NS2, (topic, __) -> ns2Topics.add(topic));
+        assertEquals(ns2Topics.size(), 100);
+        ns2Topics.forEach(topic -> assertTrue(NS2.includes(TopicName.get(topic))));
+    }
+
+    @Test
+    public void testIndexFollowsRemovals() {
+        String topic = "persistent://tenant/ns1/topic";
+        CompletableFuture<Optional<Topic>> topicFuture = newTopicFuture();
+        registry.computeIfAbsent(topic, __ -> topicFuture);
+        NamespaceBundle bundle = factory.getBundle(NS1,
+                Range.range(0L, BoundType.CLOSED, 0xffffffffL, BoundType.CLOSED));
+        assertEquals(collectBundle(bundle), Set.of(topic));
+
+        // a stale future must not remove the current entry
+        assertFalse(registry.remove(topic, newTopicFuture()));
+        assertEquals(collectBundle(bundle), Set.of(topic));
+
+        CompletableFuture<Optional<Topic>> newTopicFuture = newTopicFuture();
+        assertSame(registry.put(topic, newTopicFuture), topicFuture);
+        registry.forEachInBundle(bundle, (__, future) -> assertSame(future, newTopicFuture));
+
+        assertTrue(registry.remove(topic, newTopicFuture));
+        assertTrue(collectBundle(bundle).isEmpty());
+        assertNull(registry.get(topic));
+
+        registry.put(topic, topicFuture);
+        registry.clear();
+        assertTrue(registry.isEmpty());
+        assertTrue(collectBundle(bundle).isEmpty());
+    }
+
+    @Test
+    public void testViewsRemoveThroughRegistry() {
+        NamespaceBundle bundle = factory.getBundle(NS1,
+                Range.range(0L, BoundType.CLOSED, 0xffffffffL, BoundType.CLOSED));
+        for (int i = 0; i < 4; i++) {
+            registry.put("persistent://tenant/ns1/topic-" + i, newTopicFuture());
+        }
+
+        assertTrue(registry.keySet().remove("persistent://tenant/ns1/topic-0"));
+        registry.values().removeIf(topicFuture -> topicFuture == registry.get("persistent://tenant/ns1/topic-1"));
+        registry.entrySet().removeIf(entry -> entry.getKey().endsWith("topic-2"));
+        assertEquals(registry.keySet(), Set.of("persistent://tenant/ns1/topic-3"));
+        assertEquals(collectBundle(bundle), Set.of("persistent://tenant/ns1/topic-3"));
+
+        CompletableFuture<Optional<Topic>> newTopicFuture = newTopicFuture();
+        registry.entrySet().iterator().next().setValue(newTopicFuture);
+        assertSame(registry.get("persistent://tenant/ns1/topic-3"), newTopicFuture);
+        registry.forEachInBundle(bundle, (__, future) -> assertSame(future, newTopicFuture));
+    }
+
+    private Set<String> collectBundle(NamespaceBundle bundle) {
+        Set<String> topics = new HashSet<>();
+        registry.forEachInBundle(bundle, (topic, __) -> topics.add(topic));
+        return topics;
+    }
+
+    private static CompletableFuture<Optional<Topic>> newTopicFuture() {
+        return CompletableFuture.completedFuture(Optional.empty());
+    }
+}
@@ -47,7 +47,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.mledger.AsyncCallbacks;
 import org.apache.bookkeeper.mledger.Entry;
 import org.apache.bookkeeper.mledger.ManagedLedgerException;
-import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.mledger.PositionFactory;
 import org.apache.bookkeeper.mledger.ReadOnlyManagedLedger;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
@@ -65,6 +64,7 @@ import org.apache.pulsar.broker.service.persistent.PersistentTopic;
 import org.apache.pulsar.broker.systopic.NamespaceEventsSystemTopicFactory;
 import org.apache.pulsar.broker.systopic.SystemTopicClient;
 import org.apache.pulsar.broker.transaction.buffer.AbortedTxnProcessor;
+import org.apache.pulsar.broker.transaction.buffer.impl.AbortedTxnIndex;
 import org.apache.pulsar.broker.transaction.buffer.impl.SingleSnapshotAbortedTxnProcessorImpl;
 import org.apache.pulsar.broker.transaction.buffer.impl.TableView;
 import org.apache.pulsar.broker.transaction.buffer.impl.TopicTransactionBuffer;
@@ -85,7 +85,6 @@ import org.apache.pulsar.client.api.Schema;
 import org.apache.pulsar.client.api.SubscriptionType;
 import org.apache.pulsar.client.api.schema.GenericRecord;
 import org.apache.pulsar.client.api.transaction.Transaction;
-import org.apache.pulsar.client.api.transaction.TxnID;
 import org.apache.pulsar.client.impl.MessageIdImpl;
 import org.apache.pulsar.client.impl.transaction.TransactionImpl;
 import org.apache.pulsar.common.api.proto.MessageMetadata;
@@ -487,10 +486,9 @@ public class TopicTransactionBufferRecoverTest extends TransactionTestBase {
                         Field abortsField = SingleSnapshotAbortedTxnProcessorImpl.class.getDeclaredField("aborts");
                         abortsField.setAccessible(true);
 
-                        LinkedMap<TxnID, Position> linkedMap =
-                                (LinkedMap<TxnID, Position>) abortsField.get(abortedTxnProcessor);
-                        assertEquals(linkedMap.size(), 1);
-                        assertEquals(linkedMap.get(linkedMap.firstKey()).getLedgerId(),
+                        AbortedTxnIndex aborts = (AbortedTxnIndex) abortsField.get(abortedTxnProcessor);
+                        assertEquals(aborts.size(), 1);
+                        assertEquals(aborts.firstLedgerId(),
                                 ((MessageIdImpl) message.getMessageId()).getLedgerId());
                         exist = true;
                     }
@@ -738,6 +736,55 @@ public class TopicTransactionBufferRecoverTest extends TransactionTestBase {
         assertEquals(transactionBufferSnapshotIndex.getSequenceID(), 1L);
     }
 
+    @Test
+    public void testTransactionBufferSnapshotBatchedWrite() throws Exception {
+        final var pulsar = pulsarServiceList.get(0);
+        pulsar.getConfiguration().setTransactionBufferSnapshotBatchedWriteEnabled(true);
+        @Cleanup("close")
+        TransactionBufferSnapshotServiceFactory factory = new TransactionBufferSnapshotServiceFactory(pulsar);
+        pulsar.getConfiguration().setTransactionBufferSnapshotBatchedWriteEnabled(false);
+        SystemTopicTxnBufferSnapshotService<TransactionBufferSnapshot> snapshotService =
+                factory.getTxnBufferSnapshotService();
+        assertTrue(snapshotService.isBatchedWriteEnabled());
+
+        final String topicPrefix = NAMESPACE1 + "/batched-snapshot-write-";
+        final int numTopics = 5;
+        final int numWritesPerTopic = 20;
+        SystemTopicClient.Writer<TransactionBufferSnapshot> writer = snapshotService.getReferenceWriter(
+                TopicName.get(topicPrefix).getNamespaceObject()).getFuture().get();
+
+        // Writes for the same topic that are queued behind an in-flight batch replace each other
+        List<CompletableFuture<MessageId>> futures = new LinkedList<>();
+        for (int i = 0; i < numWritesPerTopic; i++) {
+            for (int j = 0; j < numTopics; j++) {
+                futures.add(writer.writeAsync(topicPrefix + j,
+                        new TransactionBufferSnapshot(topicPrefix + j, i, i, null)));
+            }
+        }
+        FutureUtil.waitForAll(futures).get(30, TimeUnit.SECONDS);
+
+        @Cleanup
+        SystemTopicClient.Reader<TransactionBufferSnapshot> reader =
+                snapshotService.createReader(TopicName.get(topicPrefix + 0)).get();
+        int messages = 0;
+        while (reader.hasMoreEvents()) {
+            @Cleanup("release")
+            Message<TransactionBufferSnapshot> message = reader.readNext();
+            if (message.getKey().startsWith(topicPrefix)) {
+                messages++;
+            }
+        }
+        assertTrue(messages >= numTopics);
+        assertTrue(messages < numTopics * numWritesPerTopic);
+
+        for (int j = 0; j < numTopics; j++) {
+            TransactionBufferSnapshot snapshot = snapshotService.getTableView()
+                    .readLatest(topicPrefix + j);
+            assertNotNull(snapshot);
+            assertEquals(snapshot.getMaxReadPositionEntryId(), numWritesPerTopic - 1);
+        }
+    }
+
     public static String buildKey(
             TransactionBufferSnapshotSegment snapshot) {
         return  "multiple-" + snapshot.getSequenceId() + "-" + snapshot.getTopicName();
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.transaction.buffer;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.pulsar.broker.transaction.buffer.impl.AbortedTxnIndex;
+import org.apache.pulsar.client.api.transaction.TxnID;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test {@link AbortedTxnIndex}.
+ */
+@Test(groups = "broker")
+public class AbortedTxnIndexTest {
+
+    @DataProvider(name = "bloomFilterEnabled")
+    public Object[][] bloomFilterEnabled() {
+        return new Object[][] {{false}, {true}};
+    }
+
+    @Test(dataProvider = "bloomFilterEnabled")
+    public void testAddAndRemoveInOrder(boolean bloomFilterEnabled) {
+        try (AbortedTxnIndex index = new AbortedTxnIndex(2, bloomFilterEnabled)) {
+            assertTrue(index.isEmpty());
+            assertFalse(index.contains(new TxnID(1, 1)));
+
+            for (int i = 0; i < 100; i++) {
+                assertTrue(index.add(new TxnID(i % 3, i), 10 + i / 10, i));
+            }
+            // Re-adding a transaction updates its position, not its order
+            assertFalse(index.add(new TxnID(0, 0), 5, 5));
+            assertEquals(index.size(), 100);
+            for (int i = 0; i < 100; i++) {
+                assertTrue(index.contains(i % 3, i));
+                assertFalse(index.contains((i + 1) % 3, i));
+            }
+
+            assertEquals(index.firstMostSigBits(), 0);
+            assertEquals(index.firstLeastSigBits(), 0);
+            assertEquals(index.firstLedgerId(), 5);
+            assertEquals(index.firstEntryId(), 5);
+            for (int i = 0; i < 60; i++) {
+                assertEquals(index.firstLeastSigBits(), i);
+                index.removeFirst();
+                assertFalse(index.contains(i % 3, i));
+            }
+            assertEquals(index.size(), 40);
+            assertEquals(index.firstLedgerId(), 16);
+
+            List<Long> entryIds = new ArrayList<>();
+            index.forEach((mostSigBits, leastSigBits, ledgerId, entryId) -> entryIds.add(entryId));
+            assertEquals(entryIds.size(), 40);
+            for (int i = 0; i < 40; i++) {
+                assertEquals(entryIds.get(i).longValue(), 60 + i);
+                assertTrue(index.contains((60 + i) % 3, 60 + i));
+            }
+        }
+    }
+
+    @Test(dataProvider = "bloomFilterEnabled")
+    public void testRandomOperations(boolean bloomFilterEnabled) {
+        Random random = new Random(0);
+        Map<TxnID, Long> expected = new LinkedHashMap<>();
+        try (AbortedTxnIndex index = new AbortedTxnIndex(1, bloomFilterEnabled)) {
+            for (int i = 0; i < 20_000; i++) {
+                if (random.nextInt(3) > 0) {
+                    TxnID txnID = new TxnID(random.nextInt(4), random.nextInt(10_000));
+                    assertEquals(index.add(txnID, 1, i), !expected.containsKey(txnID));
+                    expected.put(txnID, (long) i);
+                } else if (!expected.isEmpty()) {
+                    TxnID first = expected.keySet().iterator().next();
+                    assertEquals(index.firstMostSigBits(), first.getMostSigBits());
+                    assertEquals(index.firstLeastSigBits(), first.getLeastSigBits());
+                    assertEquals(index.firstEntryId(), expected.remove(first).longValue());
+                    index.removeFirst();
+                }
+                TxnID lookup = new TxnID(random.nextInt(4), random.nextInt(10_000));
+                assertEquals(index.contains(lookup), expected.containsKey(lookup));
+                assertEquals(index.size(), expected.size());
+            }
+            for (TxnID txnID : expected.keySet()) {
+                assertTrue(index.contains(txnID));
+            }
+        }
+    }
+
+    @Test
+    public void testCloseReleasesMemory() {
+        AbortedTxnIndex index = new AbortedTxnIndex();
+        assertEquals(index.bytesCapacity(), 0);
+        index.add(new TxnID(1, 1), 1, 1);
+        assertTrue(index.bytesCapacity() > 0);
+        index.close();
+        assertEquals(index.bytesCapacity(), 0);
+        assertTrue(index.isEmpty());
+        assertFalse(index.contains(new TxnID(1, 1)));
+
+        // A transaction added once closed, e.g. by a recovery still in progress, doesn't allocate the memory again
+        assertFalse(index.add(new TxnID(2, 2), 2, 2));
+        assertEquals(index.bytesCapacity(), 0);
+        assertTrue(index.isEmpty());
+    }
+}
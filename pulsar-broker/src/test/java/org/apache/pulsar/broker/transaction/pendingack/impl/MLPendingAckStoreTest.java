@@ -18,16 +18,20 @@
  */
 package org.apache.pulsar.broker.transaction.pendingack.impl;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -114,6 +118,8 @@ public class MLPendingAckStoreTest extends TransactionTestBase {
         );
         serviceConfiguration.setTransactionPendingAckBatchedWriteEnabled(defaultConfig
                 .isTransactionPendingAckBatchedWriteEnabled());
+        serviceConfiguration.setTransactionPendingAckSnapshotIntervalRecords(
+                defaultConfig.getTransactionPendingAckSnapshotIntervalRecords());
         admin.topics().delete("persistent://" + NAMESPACE1 + "/test-txn-topic", true);
     }
 
@@ -265,6 +271,95 @@ public class MLPendingAckStoreTest extends TransactionTestBase {
         closePendingAckStoreWithRetry(mlPendingAckStoreForRead);
     }
 
+    /**
+     * Verify the replay reads the latest snapshot and the log after it, and recovers the same ongoing transactions as
+     * the whole log.
+     */
+    @Test(dataProvider = "mainProcessArgs")
+    public void testReplayFromSnapshot(boolean writeWithBatch, boolean readWithBatch) throws Exception {
+        persistentSubscriptionMock.getTopic().getBrokerService().getPulsar().getConfiguration()
+                .setTransactionPendingAckSnapshotIntervalRecords(10);
+        TxnLogBufferedWriterConfig configForWrite = new TxnLogBufferedWriterConfig();
+        configForWrite.setBatchEnabled(writeWithBatch);
+        configForWrite.setBatchedWriteMaxRecords(2);
+        configForWrite.setBatchedWriteMaxDelayInMillis(1);
+        MLPendingAckStore mlPendingAckStoreForWrite = createPendingAckStore(configForWrite);
+        int recordCount = 0;
+        for (int i = 0; i < 20; i++){
+            mlPendingAckStoreForWrite.appendCumulativeAck(new TxnID(i, i), PositionFactory.create(i, i)).get();
+            recordCount++;
+        }
+        for (int i = 0; i < 10; i++){
+            mlPendingAckStoreForWrite.appendCommitMark(new TxnID(i, i), CommandAck.AckType.Cumulative).get();
+            recordCount++;
+        }
+        for (int i = 10; i < 15; i++){
+            mlPendingAckStoreForWrite.appendAbortMark(new TxnID(i, i), CommandAck.AckType.Cumulative).get();
+            recordCount++;
+        }
+        for (int i = 40; i < 50; i++){
+            mlPendingAckStoreForWrite.appendCumulativeAck(new TxnID(i, i), PositionFactory.create(i, i)).get();
+            recordCount++;
+        }
+        ManagedCursor pendingAckCursor = null;
+        for (ManagedCursor cursor : mlPendingAckStoreForWrite.getManagedLedger().get().getCursors()) {
+            if (cursor.getName().equals(MLPendingAckStore.getTransactionPendingAckStoreCursorName())) {
+                pendingAckCursor = cursor;
+            }
+        }
+        Assert.assertNotNull(pendingAckCursor);
+        ManagedCursor finalPendingAckCursor = pendingAckCursor;
+        Awaitility.await().until(() -> finalPendingAckCursor.getProperties()
+                .containsKey(MLPendingAckStore.SNAPSHOT_ENTRY_ID_PROPERTY));
+
+        // Replay.
+        TxnLogBufferedWriterConfig configForReplay = new TxnLogBufferedWriterConfig();
+        configForReplay.setBatchEnabled(readWithBatch);
+        MLPendingAckStore mlPendingAckStoreForRead = createPendingAckStore(configForReplay);
+        PendingAckHandleImpl pendingAckHandle = mock(PendingAckHandleImpl.class);
+        when(pendingAckHandle.getInternalPinnedExecutor()).thenReturn(internalPinnedExecutor);
+        when(pendingAckHandle.changeToReadyState()).thenReturn(true);
+        Set<TxnID> ongoingTxns = ConcurrentHashMap.newKeySet();
+        AtomicInteger replayedRecords = new AtomicInteger();
+        doAnswer(invocation -> {
+            replayedRecords.incrementAndGet();
+            ongoingTxns.add(invocation.getArgument(0));
+            return null;
+        }).when(pendingAckHandle).handleCumulativeAckRecover(any(), any());
+        doAnswer(invocation -> {
+            replayedRecords.incrementAndGet();
+            ongoingTxns.remove(invocation.getArgument(0));
+            return null;
+        }).when(pendingAckHandle).handleCommit(any(), any(), any());
+        doAnswer(invocation -> {
+            replayedRecords.incrementAndGet();
+            ongoingTxns.remove(invocation.getArgument(0));
+            return null;
+        }).when(pendingAckHandle).handleAbort(any(), any());
+        final AtomicInteger processController = new AtomicInteger();
+        doAnswer(invocation -> {
+            processController.incrementAndGet();
+            return null;
+        }).when(pendingAckHandle).completeHandleFuture();
+        mlPendingAckStoreForRead.replayAsync(pendingAckHandle, internalPinnedExecutor);
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> processController.get() == 1);
+
+        Set<TxnID> expectedOngoingTxns = new HashSet<>();
+        for (int i = 15; i < 20; i++){
+            expectedOngoingTxns.add(new TxnID(i, i));
+        }
+        for (int i = 40; i < 50; i++){
+            expectedOngoingTxns.add(new TxnID(i, i));
+        }
+        Assert.assertEquals(ongoingTxns, expectedOngoingTxns);
+        // The committed and aborted transactions before the snapshot are not replayed.
+        Assert.assertTrue(replayedRecords.get() < recordCount);
+
+        // cleanup.
+        closePendingAckStoreWithRetry(mlPendingAckStoreForWrite);
+        closePendingAckStoreWithRetry(mlPendingAckStoreForRead);
+    }
+
     /**
      * Why should retry?
      * Because when the cursor close and cursor switch ledger are concurrent executing, the bad version exception is
@@ -26,7 +26,10 @@ import io.netty.buffer.Unpooled;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.UUID;
@@ -55,6 +58,7 @@ import org.apache.pulsar.client.api.ProducerBuilder;
 import org.apache.pulsar.client.api.RawMessage;
 import org.apache.pulsar.client.api.Reader;
 import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.client.impl.MessageIdImpl;
 import org.apache.pulsar.client.impl.RawMessageImpl;
 import org.apache.pulsar.client.impl.ReaderImpl;
 import org.apache.pulsar.common.api.proto.MessageIdData;
@@ -215,6 +219,244 @@ public class CompactedTopicTest extends MockedPulsarServiceBaseTest {
         }
     }
 
+    @Test
+    public void testEntryLookupWithIndex() throws Exception {
+        @Cleanup
+        BookKeeper bk = pulsar.getBookKeeperClientFactory().create(
+                this.conf, null, null, Optional.empty(), null).get();
+
+        Triple<Long, List<Pair<MessageIdData, Long>>, List<Pair<MessageIdData, Long>>> compactedLedgerData =
+            buildCompactedLedger(bk, 500);
+
+        List<Pair<MessageIdData, Long>> positions = new ArrayList<>(compactedLedgerData.getMiddle());
+        List<Pair<MessageIdData, Long>> idsInGaps = compactedLedgerData.getRight();
+        positions.sort(Comparator.comparing(Pair::getRight));
+
+        CompactedTopicIndex.Writer writer = new CompactedTopicIndex.Writer(7);
+        for (Pair<MessageIdData, Long> p : positions) {
+            writer.entryAdded(new MessageIdImpl(p.getLeft().getLedgerId(), p.getLeft().getEntryId(), -1));
+        }
+        LedgerHandle indexLedger = bk.createLedger(1, 1,
+                                                   Compactor.COMPACTED_TOPIC_LEDGER_DIGEST_TYPE,
+                                                   Compactor.COMPACTED_TOPIC_LEDGER_PASSWORD);
+        writer.writeAndClose(indexLedger).get();
+        CompactedTopicIndex index = CompactedTopicIndex.read(bk, indexLedger.getId()).get();
+        Assert.assertEquals(index.size(), (positions.size() + 6) / 7);
+
+        LedgerHandle lh = bk.openLedger(compactedLedgerData.getLeft(),
+                                        Compactor.COMPACTED_TOPIC_LEDGER_DIGEST_TYPE,
+                                        Compactor.COMPACTED_TOPIC_LEDGER_PASSWORD);
+        long lastEntryId = lh.getLastAddConfirmed();
+        AsyncLoadingCache<Long, MessageIdData> cache = CompactedTopicImpl.createCache(lh, 50);
+
+        Pair<MessageIdData, Long> lastPosition = positions.get(positions.size() - 1);
+        Assert.assertEquals(CompactedTopicImpl.findStartPoint(PositionFactory.create(0, 0), lastEntryId, cache,
+                                                              index).get(),
+                            Long.valueOf(0));
+        Assert.assertEquals(CompactedTopicImpl.findStartPoint(PositionFactory
+                             .create(lastPosition.getLeft().getLedgerId(), lastPosition.getLeft().getEntryId() + 1),
+                                                              lastEntryId, cache, index).get(),
+                            Long.valueOf(CompactedTopicImpl.NEWER_THAN_COMPACTED));
+
+        for (Pair<MessageIdData, Long> p : positions) {
+            Position pos = PositionFactory.create(p.getLeft().getLedgerId(), p.getLeft().getEntryId());
+            Assert.assertEquals(CompactedTopicImpl.findStartPoint(pos, lastEntryId, cache, index).get(),
+                                p.getRight());
+        }
+        for (Pair<MessageIdData, Long> gap : idsInGaps) {
+            Position pos = PositionFactory.create(gap.getLeft().getLedgerId(), gap.getLeft().getEntryId());
+            Assert.assertEquals(CompactedTopicImpl.findStartPoint(pos, lastEntryId, cache, index).get(),
+                                gap.getRight());
+        }
+    }
+
+    @Test
+    public void testCompactionWithSeekIndex() throws Exception {
+        conf.setBrokerServiceCompactionSeekIndexInterval(3);
+        String topic = "persistent://my-property/use/my-ns/testCompactionWithSeekIndex-" + UUID.randomUUID();
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING).topic(topic).enableBatching(false)
+                .create();
+        List<MessageId> messageIds = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            messageIds.add(producer.newMessage().key("key-" + i).value("value-" + i).send());
+        }
+        triggerCompactionAndWait(topic);
+
+        PersistentTopic persistentTopic = (PersistentTopic) pulsar.getBrokerService().getTopicReference(topic).get();
+        CompactedTopicImpl compactedTopic =
+                ((PulsarTopicCompactionService) persistentTopic.getTopicCompactionService()).getCompactedTopic();
+        CompactedTopicContext context = compactedTopic.getCompactedTopicContext().get();
+        Assert.assertNotNull(context.getIndex());
+        Assert.assertEquals(context.getIndex().size(), 10);
+        long indexLedgerId = CompactedTopicIndex.getIndexLedgerId(context.getLedger());
+        Assert.assertTrue(pulsarTestContext.getMockBookKeeper().getLedgers().contains(indexLedgerId));
+
+        @Cleanup
+        Reader<String> reader = pulsarClient.newReader(Schema.STRING)
+                .topic(topic)
+                .readCompacted(true)
+                .startMessageId(messageIds.get(10))
+                .startMessageIdInclusive()
+                .create();
+        for (int i = 10; i < 30; i++) {
+            Assert.assertEquals(reader.readNext(5, TimeUnit.SECONDS).getKey(), "key-" + i);
+        }
+
+        // the index ledger is deleted with its compacted ledger
+        producer.newMessage().key("key-0").value("value-30").send();
+        triggerCompactionAndWait(topic);
+        Awaitility.await().untilAsserted(() -> Assert.assertFalse(
+                pulsarTestContext.getMockBookKeeper().getLedgers().contains(indexLedgerId)));
+    }
+
+    @Test
+    public void testDeleteCompactedLedgerWithSeekIndexNotOpened() throws Exception {
+        conf.setBrokerServiceCompactionSeekIndexInterval(3);
+        String topic = "persistent://my-property/use/my-ns/testDeleteCompactedLedgerWithSeekIndexNotOpened-"
+                + UUID.randomUUID();
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING).topic(topic).enableBatching(false)
+                .create();
+        for (int i = 0; i < 10; i++) {
+            producer.newMessage().key("key-" + i).value("value-" + i).send();
+        }
+        triggerCompactionAndWait(topic);
+
+        PersistentTopic persistentTopic = (PersistentTopic) pulsar.getBrokerService().getTopicReference(topic).get();
+        CompactedTopicContext context = ((PulsarTopicCompactionService) persistentTopic.getTopicCompactionService())
+                .getCompactedTopic().getCompactedTopicContext().get();
+        long compactedLedgerId = context.getLedger().getId();
+        long indexLedgerId = CompactedTopicIndex.getIndexLedgerId(context.getLedger());
+        Assert.assertTrue(indexLedgerId >= 0);
+
+        // a compacted topic which never opened the compacted ledger, e.g. after the topic is loaded by another broker
+        CompactedTopicImpl compactedTopic = new CompactedTopicImpl(pulsarTestContext.getMockBookKeeper());
+        compactedTopic.deleteCompactedLedger(compactedLedgerId).get();
+        Assert.assertFalse(pulsarTestContext.getMockBookKeeper().getLedgers().contains(compactedLedgerId));
+        Assert.assertFalse(pulsarTestContext.getMockBookKeeper().getLedgers().contains(indexLedgerId));
+    }
+
+    @Test
+    public void testCompactionWithDeltaLayers() throws Exception {
+        conf.setBrokerServiceCompactionMaxDeltaLayers(2);
+        conf.setBrokerServiceCompactionDeltaMergeRatio(100);
+        String topic = "persistent://my-property/use/my-ns/testCompactionWithDeltaLayers-" + UUID.randomUUID();
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING).topic(topic).enableBatching(false)
+                .create();
+        for (int i = 0; i < 10; i++) {
+            producer.newMessage().key("key-" + i).value("value-" + i).send();
+        }
+        triggerCompactionAndWait(topic);
+
+        PersistentTopic persistentTopic = (PersistentTopic) pulsar.getBrokerService().getTopicReference(topic).get();
+        CompactedTopicImpl compactedTopic =
+                ((PulsarTopicCompactionService) persistentTopic.getTopicCompactionService()).getCompactedTopic();
+        long baseLedgerId = compactedTopic.getCompactedTopicContext().get().getLedger().getId();
+
+        // only the updates are compacted, into a delta layer keeping the tombstones
+        producer.newMessage().key("key-1").value("value-1-1").send();
+        producer.newMessage().key("key-2").value(null).send();
+        triggerCompactionAndWait(topic);
+        List<CompactedTopicContext> layers = compactedTopic.getCompactedTopicContext().get().getLayers();
+        Assert.assertEquals(layers.size(), 2);
+        Assert.assertEquals(layers.get(0).getLedger().getId(), baseLedgerId);
+        Assert.assertEquals(layers.get(1).getLedger().getLastAddConfirmed(), 1);
+        Assert.assertTrue(pulsarTestContext.getMockBookKeeper().getLedgers().contains(baseLedgerId));
+        Map<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            expected.put("key-" + i, "value-" + i);
+        }
+        expected.put("key-1", "value-1-1");
+        expected.remove("key-2");
+        Assert.assertEquals(readCompactedValues(topic), expected);
+
+        producer.newMessage().key("key-3").value("value-3-1").send();
+        triggerCompactionAndWait(topic);
+        Assert.assertEquals(compactedTopic.getCompactedTopicContext().get().getLayers().size(), 3);
+        expected.put("key-3", "value-3-1");
+        Assert.assertEquals(readCompactedValues(topic), expected);
+
+        // too many layers, all of them are merged by a full compaction
+        producer.newMessage().key("key-4").value("value-4-1").send();
+        triggerCompactionAndWait(topic);
+        CompactedTopicContext context = compactedTopic.getCompactedTopicContext().get();
+        Assert.assertEquals(context.getLayers().size(), 1);
+        Assert.assertEquals(context.getLedger().getLastAddConfirmed(), 8);
+        expected.put("key-4", "value-4-1");
+        Assert.assertEquals(readCompactedValues(topic), expected);
+        Awaitility.await().untilAsserted(() -> {
+            for (CompactedTopicContext layer : layers) {
+                Assert.assertFalse(pulsarTestContext.getMockBookKeeper().getLedgers()
+                        .contains(layer.getLedger().getId()));
+            }
+        });
+    }
+
+    @Test
+    public void testKeyUpdatedAndDeletedInDeltaLayer() throws Exception {
+        conf.setBrokerServiceCompactionMaxDeltaLayers(2);
+        conf.setBrokerServiceCompactionDeltaMergeRatio(100);
+        String topic = "persistent://my-property/use/my-ns/testKeyUpdatedAndDeletedInDeltaLayer-"
+                + UUID.randomUUID();
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING).topic(topic).enableBatching(false)
+                .create();
+        producer.newMessage().key("updated").value("value-0").send();
+        producer.newMessage().key("deleted").value("value-0").send();
+        producer.newMessage().key("unchanged").value("value-0").send();
+        triggerCompactionAndWait(topic);
+        producer.newMessage().key("updated").value("value-1").send();
+        producer.newMessage().key("deleted").value(null).send();
+        triggerCompactionAndWait(topic);
+
+        PersistentTopic persistentTopic = (PersistentTopic) pulsar.getBrokerService().getTopicReference(topic).get();
+        CompactedTopicImpl compactedTopic =
+                ((PulsarTopicCompactionService) persistentTopic.getTopicCompactionService()).getCompactedTopic();
+        Assert.assertEquals(compactedTopic.getCompactedTopicContext().get().getLayers().size(), 2);
+
+        // the layers are not merged, the base values are read before the delta layer superseding them
+        @Cleanup
+        Reader<String> reader = pulsarClient.newReader(Schema.STRING)
+                .topic(topic)
+                .readCompacted(true)
+                .startMessageId(MessageId.earliest)
+                .create();
+        List<String> received = new ArrayList<>();
+        while (reader.hasMessageAvailable()) {
+            Message<String> message = reader.readNext(5, TimeUnit.SECONDS);
+            received.add(message.getKey() + "=" + message.getValue());
+        }
+        Assert.assertEquals(received, List.of("updated=value-0", "deleted=value-0", "unchanged=value-0",
+                "updated=value-1", "deleted=null"));
+    }
+
+    private Map<String, String> readCompactedValues(String topic) throws Exception {
+        @Cleanup
+        Reader<String> reader = pulsarClient.newReader(Schema.STRING)
+                .topic(topic)
+                .readCompacted(true)
+                .startMessageId(MessageId.earliest)
+                .create();
+        Map<String, String> values = new HashMap<>();
+        while (reader.hasMessageAvailable()) {
+            Message<String> message = reader.readNext(5, TimeUnit.SECONDS);
+            if (message.getValue() == null) {
+                values.remove(message.getKey());
+            } else {
+                values.put(message.getKey(), message.getValue());
+            }
+        }
+        return values;
+    }
+
+    private void triggerCompactionAndWait(String topic) throws Exception {
+        admin.topics().triggerCompaction(topic);
+        Awaitility.await().untilAsserted(() -> Assert.assertEquals(admin.topics().compactionStatus(topic).status,
+                LongRunningProcessStatus.Status.SUCCESS));
+    }
+
     @Test
     public void testCleanupOldCompactedTopicLedger() throws Exception {
         @Cleanup
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.compaction;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.impl.BatchMessageIdImpl;
+import org.apache.pulsar.client.impl.MessageIdImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-compaction")
+public class CompactionKeyIndexTest {
+
+    private File spillDirectory;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        spillDirectory = Files.createTempDirectory("compaction-key-index-test").toFile();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void cleanup() throws Exception {
+        File[] files = spillDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        Files.deleteIfExists(spillDirectory.toPath());
+    }
+
+    @Test
+    public void testInMemory() throws Exception {
+        try (CompactionKeyIndex index = new SpillingCompactionKeyIndex(1024 * 1024, spillDirectory)) {
+            MessageId id1 = new MessageIdImpl(1, 1, -1);
+            MessageId id2 = new BatchMessageIdImpl(1, 2, -1, 3);
+            assertFalse(index.put("a", id1));
+            assertTrue(index.put("a", id2));
+            assertFalse(index.put("b", id1));
+            index.remove("b");
+            assertFalse(index.put("b", id1));
+            index.remove("b");
+            assertEquals(index.size(), 1);
+
+            assertEquals(index.seal(), 0);
+            assertEquals(index.get("a"), id2);
+            assertTrue(index.get("a") instanceof BatchMessageIdImpl);
+            assertNull(index.get("b"));
+            assertEquals(index.size(), 1);
+            assertEquals(spillDirectory.listFiles().length, 0);
+            expectThrows(IllegalStateException.class, () -> index.put("c", id1));
+        }
+    }
+
+    @Test
+    public void testSpillAndMerge() throws Exception {
+        Random random = new Random(0);
+        Map<String, MessageId> expected = new HashMap<>();
+        long expectedReplaced = 0;
+        long replaced = 0;
+        // A budget of 16 entries forces many spills
+        CompactionKeyIndex index = new SpillingCompactionKeyIndex(16 * 40, spillDirectory);
+        for (int i = 0; i < 10_000; i++) {
+            String key = "key-" + random.nextInt(500);
+            if (random.nextInt(4) == 0) {
+                expected.remove(key);
+                index.remove(key);
+            } else {
+                MessageId id = random.nextBoolean() ? new MessageIdImpl(i / 100, i, -1)
+                        : new BatchMessageIdImpl(i / 100, i, -1, random.nextInt(10));
+                if (expected.put(key, id) != null) {
+                    expectedReplaced++;
+                }
+                if (index.put(key, id)) {
+                    replaced++;
+                }
+            }
+        }
+        assertTrue(spillDirectory.listFiles().length > 1);
+        expectThrows(IllegalStateException.class, index::size);
+
+        replaced += index.seal();
+        assertEquals(replaced, expectedReplaced);
+        assertEquals(spillDirectory.listFiles().length, 1);
+        assertEquals(index.size(), expected.size());
+        for (int i = 0; i < 500; i++) {
+            String key = "key-" + i;
+            assertEquals(index.get(key), expected.get(key), key);
+        }
+        assertNull(index.get("unknown"));
+
+        index.close();
+        assertEquals(spillDirectory.listFiles().length, 0);
+    }
+
+    @Test
+    public void testCreate() {
+        try (CompactionKeyIndex index = CompactionKeyIndex.create(0, null)) {
+            assertTrue(index instanceof HeapCompactionKeyIndex);
+        }
+        try (CompactionKeyIndex index = CompactionKeyIndex.create(1024, spillDirectory.getAbsolutePath())) {
+            assertTrue(index instanceof SpillingCompactionKeyIndex);
+        }
+    }
+}
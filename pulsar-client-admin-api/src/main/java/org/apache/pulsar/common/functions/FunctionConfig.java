@@ -129,6 +129,9 @@ public class FunctionConfig {
     // Max pending async requests per instance to avoid large number of concurrent requests.
     // Only used in AsyncFunction. Default: 1000.
     private Integer maxPendingAsyncRequests;
+    // Number of threads processing the messages of each Java instance. The messages with the same key are processed
+    // by the same thread, in order, and the results are acknowledged in the input order. Default: 1.
+    private Integer processingThreads;
     // Whether the pulsar admin client exposed to function context, default is disabled.
     private Boolean exposePulsarAdminClientEnabled;
     // Whether the consumer should skip to latest position in case of failure recovery
@@ -320,6 +320,10 @@ public class CmdFunctions extends CmdBase {
         @Option(names = "--parallelism", description = "The parallelism factor of a Pulsar Function "
                 + "(i.e. the number of function instances to run) #Java")
         protected Integer parallelism;
+        @Option(names = "--processing-threads", description = "The number of threads processing the messages of "
+                + "each function instance, the messages with the same key are processed in order by the same thread"
+                + " #Java")
+        protected Integer processingThreads;
         @Option(names = "--cpu", description = "The cpu in cores that need to be allocated "
                 + "per function instance(applicable only to docker runtime) #Java(Process & K8s),Python(K8s),Go(K8s)")
         protected Double cpu;
@@ -571,6 +575,10 @@ public class CmdFunctions extends CmdBase {
                 functionConfig.setParallelism(parallelism);
             }
 
+            if (processingThreads != null) {
+                functionConfig.setProcessingThreads(processingThreads);
+            }
+
             Resources resources = functionConfig.getResources();
             if (cpu != null) {
                 if (resources == null) {
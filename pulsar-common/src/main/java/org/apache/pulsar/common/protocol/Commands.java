@@ -129,6 +129,8 @@ public class Commands {
     @SuppressWarnings("checkstyle:ConstantName")
     public static final short magicBrokerEntryMetadata = 0x0e02;
     private static final int checksumSize = 4;
+    // magic number (2 bytes) + broker entry metadata size (4 bytes)
+    private static final int brokerEntryMetadataHeaderSize = 6;
 
     @VisibleForTesting
     static final FastThreadLocal<BaseCommand> LOCAL_BASE_COMMAND = new FastThreadLocal<BaseCommand>() {
@@ -1731,6 +1733,22 @@ public class Commands {
     public static ByteBuf addBrokerEntryMetadata(ByteBuf headerAndPayload,
                                                  Set<BrokerEntryMetadataInterceptor> brokerInterceptors,
                                                  int numberOfMessages) {
+        return addBrokerEntryMetadata(headerAndPayload, brokerInterceptors, numberOfMessages, false);
+    }
+
+    /**
+     * Prepend the broker entry metadata to the given buffer.
+     *
+     * <p>When {@code useHeadroom} is true, the bytes in front of the reader index of {@code headerAndPayload} are
+     * considered as consumed (e.g. the already parsed command of a frame received by {@link PulsarDecoder}) and the
+     * broker entry metadata is written in place into them when there is enough room. Otherwise, the broker entry
+     * metadata is written into a new buffer which is combined with {@code headerAndPayload}.
+     *
+     * <p>In both cases the ownership of {@code headerAndPayload} is transferred to the returned buffer.
+     */
+    public static ByteBuf addBrokerEntryMetadata(ByteBuf headerAndPayload,
+                                                 Set<BrokerEntryMetadataInterceptor> brokerInterceptors,
+                                                 int numberOfMessages, boolean useHeadroom) {
         //   | BROKER_ENTRY_METADATA_MAGIC_NUMBER | BROKER_ENTRY_METADATA_SIZE |         BROKER_ENTRY_METADATA         |
         //   |         2 bytes                    |       4 bytes              |    BROKER_ENTRY_METADATA_SIZE bytes   |
 
@@ -1744,8 +1762,23 @@ public class Commands {
         }
 
         int brokerMetaSize = brokerEntryMetadata.getSerializedSize();
-        ByteBuf brokerMeta =
-                PulsarByteBufAllocator.DEFAULT.buffer(brokerMetaSize + 6, brokerMetaSize + 6);
+        int headroomSize = brokerMetaSize + brokerEntryMetadataHeaderSize;
+        if (useHeadroom && headerAndPayload.readerIndex() >= headroomSize && !headerAndPayload.isReadOnly()) {
+            // Use a derived buffer so that the indexes of the original buffer, which might be shared with other
+            // components (e.g. broker interceptors), are left untouched
+            int metadataStart = headerAndPayload.readerIndex() - headroomSize;
+            int writerIndex = headerAndPayload.writerIndex();
+            ByteBuf headerAndPayloadWithBrokerEntryMetadata = headerAndPayload.retainedDuplicate();
+            headerAndPayload.release();
+            headerAndPayloadWithBrokerEntryMetadata.setIndex(metadataStart, metadataStart);
+            headerAndPayloadWithBrokerEntryMetadata.writeShort(Commands.magicBrokerEntryMetadata);
+            headerAndPayloadWithBrokerEntryMetadata.writeInt(brokerMetaSize);
+            brokerEntryMetadata.writeTo(headerAndPayloadWithBrokerEntryMetadata);
+            headerAndPayloadWithBrokerEntryMetadata.writerIndex(writerIndex);
+            return headerAndPayloadWithBrokerEntryMetadata;
+        }
+
+        ByteBuf brokerMeta = PulsarByteBufAllocator.DEFAULT.buffer(headroomSize, headroomSize);
         brokerMeta.writeShort(Commands.magicBrokerEntryMetadata);
         brokerMeta.writeInt(brokerMetaSize);
         brokerEntryMetadata.writeTo(brokerMeta);
@@ -217,7 +217,9 @@ public abstract class PulsarDecoder extends ChannelInboundHandlerAdapter {
                 checkArgument(cmd.hasSend());
                 try {
                     interceptCommand(cmd);
-                    // Store a buffer marking the content + headers
+                    // Store a buffer marking the content + headers. The bytes of the frame in front of the
+                    // reader index (command size and command) are consumed at this point and are kept as headroom
+                    // in which the broker entry metadata can be written in place
                     ByteBuf headersAndPayload = buffer.markReaderIndex();
                     handleSend(cmd.getSend(), headersAndPayload);
                 } catch (InterceptException e) {
@@ -19,6 +19,7 @@
 package org.apache.pulsar.common.protocol;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
@@ -148,6 +149,52 @@ public class CommandUtilsTest {
         dataWithBrokerEntryMetadata.release();
     }
 
+    @Test
+    public void testAddBrokerEntryMetadataIntoHeadroom() throws Exception {
+        int mockBatchSize = 10;
+        int headroom = 64;
+        String data = "test-message";
+        ByteBuf byteBuf = PulsarByteBufAllocator.DEFAULT.buffer(headroom + data.length());
+        byteBuf.writerIndex(headroom);
+        byteBuf.readerIndex(headroom);
+        byteBuf.writeBytes(data.getBytes(StandardCharsets.UTF_8));
+
+        ByteBuf dataWithBrokerEntryMetadata = Commands.addBrokerEntryMetadata(byteBuf,
+                getBrokerEntryMetadataInterceptors(), mockBatchSize, true);
+        assertFalse(dataWithBrokerEntryMetadata instanceof CompositeByteBuf);
+        // the indexes of the original buffer are left untouched
+        assertEquals(byteBuf.readerIndex(), headroom);
+        assertEquals(byteBuf.refCnt(), 1);
+
+        BrokerEntryMetadata brokerMetadata =
+                Commands.parseBrokerEntryMetadataIfExist(dataWithBrokerEntryMetadata);
+        assertEquals(brokerMetadata.getIndex(), mockBatchSize - 1);
+        byte [] content = new byte[dataWithBrokerEntryMetadata.readableBytes()];
+        dataWithBrokerEntryMetadata.readBytes(content);
+        assertEquals(new String(content, StandardCharsets.UTF_8), data);
+        dataWithBrokerEntryMetadata.release();
+        assertEquals(byteBuf.refCnt(), 0);
+    }
+
+    @Test
+    public void testAddBrokerEntryMetadataWithoutEnoughHeadroom() throws Exception {
+        int mockBatchSize = 10;
+        String data = "test-message";
+        ByteBuf byteBuf = PulsarByteBufAllocator.DEFAULT.buffer(2 + data.length());
+        byteBuf.writerIndex(2);
+        byteBuf.readerIndex(2);
+        byteBuf.writeBytes(data.getBytes(StandardCharsets.UTF_8));
+
+        ByteBuf dataWithBrokerEntryMetadata = Commands.addBrokerEntryMetadata(byteBuf,
+                getBrokerEntryMetadataInterceptors(), mockBatchSize, true);
+        assertTrue(dataWithBrokerEntryMetadata instanceof CompositeByteBuf);
+        BrokerEntryMetadata brokerMetadata =
+                Commands.parseBrokerEntryMetadataIfExist(dataWithBrokerEntryMetadata);
+        assertEquals(brokerMetadata.getIndex(), mockBatchSize - 1);
+        assertEquals(data.length(), dataWithBrokerEntryMetadata.readableBytes());
+        dataWithBrokerEntryMetadata.release();
+    }
+
     @Test
     public void testSkipBrokerEntryMetadata() throws Exception {
         String data = "test-message";
@@ -94,6 +94,8 @@ class ContextImpl implements Context, SinkContext, SourceContext, AutoCloseable
 
     // Per Message related
     private Record<?> record;
+    // the record processed by the current thread, when the messages are processed by multiple threads
+    private final ThreadLocal<Record<?>> threadRecord = new ThreadLocal<>();
 
     private final ClientBuilder clientBuilder;
     private final PulsarClient client;
@@ -246,11 +248,13 @@ class ContextImpl implements Context, SinkContext, SourceContext, AutoCloseable
 
     public void setCurrentMessageContext(Record<?> record) {
         this.record = record;
+        this.threadRecord.set(record);
     }
 
     @Override
     public Record<?> getCurrentRecord() {
-        return new PulsarFunctionRecord(record, config.getFunctionDetails());
+        Record<?> currentRecord = threadRecord.get();
+        return new PulsarFunctionRecord(currentRecord != null ? currentRecord : record, config.getFunctionDetails());
     }
 
     @Override
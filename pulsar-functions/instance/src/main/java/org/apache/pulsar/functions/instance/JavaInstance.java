@@ -31,6 +31,7 @@ import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.util.ExecutorProvider;
 import org.apache.pulsar.common.util.FutureUtil;
 import org.apache.pulsar.functions.api.Function;
 import org.apache.pulsar.functions.api.Record;
@@ -63,6 +64,8 @@ public class JavaInstance implements AutoCloseable {
     @Getter
     private final Semaphore asyncRequestsConcurrencyLimiter;
     private final boolean asyncPreserveInputOrderForOutputMessages;
+    // the threads processing the messages, by key, when more than one processing thread is configured
+    private final ExecutorProvider processingExecutors;
 
     public JavaInstance(ContextImpl contextImpl, Object userClassObject, InstanceConfig instanceConfig) {
 
@@ -70,6 +73,13 @@ public class JavaInstance implements AutoCloseable {
         this.instanceConfig = instanceConfig;
         this.executor = Executors.newSingleThreadExecutor();
 
+        // The messages are processed in order by the instance thread when the ordering of all of them is retained
+        int processingThreads = instanceConfig.getFunctionDetails() != null
+                && !instanceConfig.getFunctionDetails().getRetainOrdering()
+                ? instanceConfig.getFunctionDetails().getProcessingThreads() : 0;
+        this.processingExecutors = processingThreads > 1
+                ? new ExecutorProvider(processingThreads, "function-processing-thread") : null;
+
         asyncPreserveInputOrderForOutputMessages =
                 resolveAsyncPreserveInputOrderForOutputMessages(instanceConfig);
 
@@ -91,6 +101,11 @@ public class JavaInstance implements AutoCloseable {
 
     // resolve whether to preserve input order for output messages for async functions
     private boolean resolveAsyncPreserveInputOrderForOutputMessages(InstanceConfig instanceConfig) {
+        // the messages processed by multiple threads are always acknowledged in the input order
+        if (processingExecutors != null) {
+            return true;
+        }
+
         // no need to preserve input order for output messages if the function returns Void type
         boolean voidReturnType = instanceConfig.getFunctionDetails() != null
                 && instanceConfig.getFunctionDetails().getSink() != null
@@ -113,6 +128,10 @@ public class JavaInstance implements AutoCloseable {
     public JavaExecutionResult handleMessage(Record<?> record, Object input,
                                              JavaInstanceRunnable.AsyncResultConsumer asyncResultConsumer,
                                              Consumer<Throwable> asyncFailureHandler) {
+        if (processingExecutors != null) {
+            return handleMessageInProcessingThread(record, input, asyncResultConsumer, asyncFailureHandler);
+        }
+
         if (context != null) {
             context.setCurrentMessageContext(record);
         }
@@ -122,59 +141,112 @@ public class JavaInstance implements AutoCloseable {
         final Object output;
 
         try {
-            if (function != null) {
-                output = function.process(input, context);
-            } else {
-                output = javaUtilFunction.apply(input);
-            }
+            output = process(input);
         } catch (Exception ex) {
             executionResult.setUserException(ex);
             return executionResult;
         }
 
         if (output instanceof CompletableFuture) {
+            return handleAsyncResult(record, (CompletableFuture<Object>) output, executionResult,
+                    asyncResultConsumer, asyncFailureHandler);
+        } else {
+            if (log.isDebugEnabled()) {
+                log.debug("Got result: object: {}", output);
+            }
+            executionResult.setResult(output);
+            return executionResult;
+        }
+    }
+
+    private Object process(Object input) throws Exception {
+        if (function != null) {
+            return function.process(input, context);
+        } else {
+            return javaUtilFunction.apply(input);
+        }
+    }
+
+    // processes the message in the thread of its key, the results are handled as the results of an async function
+    private JavaExecutionResult handleMessageInProcessingThread(Record<?> record, Object input,
+                                                                JavaInstanceRunnable.AsyncResultConsumer
+                                                                        asyncResultConsumer,
+                                                                Consumer<Throwable> asyncFailureHandler) {
+        JavaExecutionResult executionResult = new JavaExecutionResult();
+        CompletableFuture<Object> output = new CompletableFuture<>();
+        JavaExecutionResult pendingResult = handleAsyncResult(record, output, executionResult,
+                asyncResultConsumer, asyncFailureHandler);
+        if (pendingResult != null) {
+            return pendingResult;
+        }
+
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        ExecutorService processingExecutor = record.getKey().isPresent()
+                ? processingExecutors.getExecutor(record.getKey().get()) : processingExecutors.getExecutor();
+        processingExecutor.execute(() -> {
+            Thread.currentThread().setContextClassLoader(classLoader);
+            if (context != null) {
+                context.setCurrentMessageContext(record);
+            }
             try {
-                if (asyncPreserveInputOrderForOutputMessages) {
-                    // Function is in format: Function<I, CompletableFuture<O>>
-                    AsyncFuncRequest request = new AsyncFuncRequest(
-                            record, (CompletableFuture) output, executionResult
-                    );
-                    pendingAsyncRequests.put(request);
+                Object result = process(input);
+                if (result instanceof CompletableFuture) {
+                    ((CompletableFuture<Object>) result).whenComplete((res, cause) -> {
+                        if (cause != null) {
+                            output.completeExceptionally(cause);
+                        } else {
+                            output.complete(res);
+                        }
+                    });
                 } else {
-                    asyncRequestsConcurrencyLimiter.acquire();
+                    output.complete(result);
                 }
-                ((CompletableFuture<Object>) output).whenCompleteAsync((Object res, Throwable cause) -> {
-                    try {
-                        if (asyncPreserveInputOrderForOutputMessages) {
-                            processAsyncResultsInInputOrder(asyncResultConsumer);
-                        } else {
-                            try {
-                                if (cause != null) {
-                                    executionResult.setUserException(FutureUtil.unwrapCompletionException(cause));
-                                } else {
-                                    executionResult.setResult(res);
-                                }
-                                asyncResultConsumer.accept(record, executionResult);
-                            } finally {
-                                asyncRequestsConcurrencyLimiter.release();
+            } catch (Throwable t) {
+                output.completeExceptionally(t);
+            }
+        });
+        return null;
+    }
+
+    private JavaExecutionResult handleAsyncResult(Record<?> record, CompletableFuture<Object> output,
+                                                  JavaExecutionResult executionResult,
+                                                  JavaInstanceRunnable.AsyncResultConsumer asyncResultConsumer,
+                                                  Consumer<Throwable> asyncFailureHandler) {
+        try {
+            if (asyncPreserveInputOrderForOutputMessages) {
+                // Function is in format: Function<I, CompletableFuture<O>>
+                AsyncFuncRequest request = new AsyncFuncRequest(
+                        record, output, executionResult
+                );
+                pendingAsyncRequests.put(request);
+            } else {
+                asyncRequestsConcurrencyLimiter.acquire();
+            }
+            output.whenCompleteAsync((Object res, Throwable cause) -> {
+                try {
+                    if (asyncPreserveInputOrderForOutputMessages) {
+                        processAsyncResultsInInputOrder(asyncResultConsumer);
+                    } else {
+                        try {
+                            if (cause != null) {
+                                executionResult.setUserException(FutureUtil.unwrapCompletionException(cause));
+                            } else {
+                                executionResult.setResult(res);
                             }
+                            asyncResultConsumer.accept(record, executionResult);
+                        } finally {
+                            asyncRequestsConcurrencyLimiter.release();
                         }
-                    } catch (Throwable innerException) {
-                        // the thread used for processing async results failed
-                        asyncFailureHandler.accept(innerException);
                     }
-                }, executor);
-                return null;
-            } catch (InterruptedException ie) {
-                log.warn("Exception while put Async requests", ie);
-                executionResult.setUserException(ie);
-                return executionResult;
-            }
-        } else {
-            if (log.isDebugEnabled()) {
-                log.debug("Got result: object: {}", output);
-            }
-            executionResult.setResult(output);
+                } catch (Throwable innerException) {
+                    // the thread used for processing async results failed
+                    asyncFailureHandler.accept(innerException);
+                }
+            }, executor);
+            return null;
+        } catch (InterruptedException ie) {
+            log.warn("Exception while put Async requests", ie);
+            executionResult.setUserException(ie);
             return executionResult;
         }
     }
@@ -210,6 +282,13 @@ public class JavaInstance implements AutoCloseable {
 
     @Override
     public void close() {
+        if (processingExecutors != null) {
+            processingExecutors.shutdownNow();
+            // The messages dropped or interrupted by the shutdown are not processed, fail them instead of leaving
+            // their results pending
+            IllegalStateException closed = new IllegalStateException("The function instance is closed");
+            pendingAsyncRequests.forEach(request -> request.getProcessResult().completeExceptionally(closed));
+        }
         if (function != null) {
             try {
                 function.close();
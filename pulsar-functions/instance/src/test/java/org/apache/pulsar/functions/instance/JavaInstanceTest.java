@@ -19,12 +19,20 @@
 package org.apache.pulsar.functions.instance;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -309,4 +317,91 @@ public class JavaInstanceTest {
         log.info("start:{} end:{} during:{}", startTime, endTime, endTime - startTime);
         instance.close();
     }
+
+    @Test
+    public void testProcessingThreadsKeepKeyOrder() throws Exception {
+        InstanceConfig instanceConfig = new InstanceConfig();
+        instanceConfig.setFunctionDetails(org.apache.pulsar.functions.proto.Function.FunctionDetails.newBuilder()
+                .setProcessingThreads(4)
+                .build());
+        Map<String, List<Integer>> processedByKey = new ConcurrentHashMap<>();
+        Set<String> processingThreads = ConcurrentHashMap.newKeySet();
+
+        Function<Integer, Integer> function = (input, context) -> {
+            processingThreads.add(Thread.currentThread().getName());
+            processedByKey.computeIfAbsent("key-" + input % 8, key -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(input);
+            Thread.sleep(1);
+            return input;
+        };
+
+        JavaInstance instance = new JavaInstance(
+                mock(ContextImpl.class),
+                function,
+                instanceConfig);
+        int numMessages = 200;
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch resultsLatch = new CountDownLatch(numMessages);
+        JavaInstanceRunnable.AsyncResultConsumer asyncResultConsumer = (rec, result) -> {
+            results.add((Integer) result.getResult());
+            resultsLatch.countDown();
+        };
+        for (int i = 0; i < numMessages; i++) {
+            Record<Integer> record = mock(Record.class);
+            when(record.getKey()).thenReturn(Optional.of("key-" + i % 8));
+            assertNull(instance.handleMessage(record, i, asyncResultConsumer, cause -> {}));
+        }
+        assertTrue(resultsLatch.await(10, TimeUnit.SECONDS));
+
+        // the results are handled in the input order
+        for (int i = 0; i < numMessages; i++) {
+            assertEquals(results.get(i).intValue(), i);
+        }
+        // the messages of each key are processed in order
+        processedByKey.values().forEach(processed -> {
+            for (int i = 1; i < processed.size(); i++) {
+                assertTrue(processed.get(i - 1) < processed.get(i));
+            }
+        });
+        assertTrue(processingThreads.size() > 1);
+        instance.close();
+    }
+
+    @Test
+    public void testCloseFailsPendingProcessing() throws Exception {
+        InstanceConfig instanceConfig = new InstanceConfig();
+        instanceConfig.setFunctionDetails(org.apache.pulsar.functions.proto.Function.FunctionDetails.newBuilder()
+                .setProcessingThreads(2)
+                .build());
+        CountDownLatch processingStarted = new CountDownLatch(1);
+        Function<Integer, Integer> function = (input, context) -> {
+            processingStarted.countDown();
+            new CountDownLatch(1).await();
+            return input;
+        };
+
+        JavaInstance instance = new JavaInstance(
+                mock(ContextImpl.class),
+                function,
+                instanceConfig);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch resultsLatch = new CountDownLatch(2);
+        JavaInstanceRunnable.AsyncResultConsumer asyncResultConsumer = (rec, result) -> {
+            failures.add(result.getUserException());
+            resultsLatch.countDown();
+        };
+        for (int i = 0; i < 2; i++) {
+            Record<Integer> record = mock(Record.class);
+            when(record.getKey()).thenReturn(Optional.of("key"));
+            assertNull(instance.handleMessage(record, i, asyncResultConsumer, cause -> {}));
+        }
+        assertTrue(processingStarted.await(10, TimeUnit.SECONDS));
+
+        // the first message is interrupted, the second one, queued behind it, is dropped
+        instance.close();
+        assertTrue(resultsLatch.await(10, TimeUnit.SECONDS));
+        assertEquals(failures.size(), 2);
+        failures.forEach(Assert::assertNotNull);
+        assertTrue(instance.getPendingAsyncRequests().isEmpty());
+    }
 }
@@ -289,6 +289,11 @@ public class FunctionConfigUtils {
         if (functionConfig.getRetainOrdering() != null) {
             functionDetailsBuilder.setRetainOrdering(functionConfig.getRetainOrdering());
         }
+        // Only known by the Java instances, the FunctionDetails of the other runtimes don't have the field
+        if (functionConfig.getProcessingThreads() != null
+                && functionConfig.getRuntime() == FunctionConfig.Runtime.JAVA) {
+            functionDetailsBuilder.setProcessingThreads(functionConfig.getProcessingThreads());
+        }
 
         if (functionConfig.getMaxMessageRetries() != null && functionConfig.getMaxMessageRetries() >= 0) {
             Function.RetryDetails.Builder retryBuilder = Function.RetryDetails.newBuilder();
@@ -428,6 +433,9 @@ public class FunctionConfigUtils {
         }
         functionConfig.setRetainOrdering(functionDetails.getRetainOrdering());
         functionConfig.setRetainKeyOrdering(functionDetails.getRetainKeyOrdering());
+        if (functionDetails.getProcessingThreads() > 0) {
+            functionConfig.setProcessingThreads(functionDetails.getProcessingThreads());
+        }
 
         functionConfig.setCleanupSubscription(functionDetails.getSource().getCleanupSubscription());
         functionConfig.setAutoAck(functionDetails.getAutoAck());
@@ -746,6 +754,10 @@ public class FunctionConfigUtils {
         if (functionConfig.getMaxMessageRetries() != null && functionConfig.getMaxMessageRetries() >= 0) {
             throw new IllegalArgumentException("Message retries not yet supported in python");
         }
+
+        if (functionConfig.getProcessingThreads() != null) {
+            throw new IllegalArgumentException("Processing threads not yet supported in python");
+        }
     }
 
     private static void doGolangChecks(FunctionConfig functionConfig) {
@@ -764,6 +776,10 @@ public class FunctionConfigUtils {
         if (functionConfig.getRetainKeyOrdering() != null && functionConfig.getRetainKeyOrdering()) {
             throw new IllegalArgumentException("Retain Key Orderering not yet supported in Go function");
         }
+
+        if (functionConfig.getProcessingThreads() != null) {
+            throw new IllegalArgumentException("Processing threads not yet supported in Go function");
+        }
     }
 
     private static void verifyNoTopicClash(Collection<String> inputTopics, String outputTopic)
@@ -827,6 +843,9 @@ public class FunctionConfigUtils {
         if (functionConfig.getParallelism() != null && functionConfig.getParallelism() <= 0) {
             throw new IllegalArgumentException("Function parallelism must be a positive number");
         }
+        if (functionConfig.getProcessingThreads() != null && functionConfig.getProcessingThreads() <= 0) {
+            throw new IllegalArgumentException("Function processing threads must be a positive number");
+        }
         // Ensure that topics aren't being used as both input and output
         verifyNoTopicClash(allInputTopics, functionConfig.getOutput());
 
@@ -874,6 +893,10 @@ public class FunctionConfigUtils {
                 && functionConfig.getRetainOrdering() != null && functionConfig.getRetainOrdering()) {
             throw new IllegalArgumentException("Only one of retain ordering or retain key ordering can be set");
         }
+        if (functionConfig.getRetainOrdering() != null && functionConfig.getRetainOrdering()
+                && functionConfig.getProcessingThreads() != null && functionConfig.getProcessingThreads() > 1) {
+            throw new IllegalArgumentException("Retain ordering cannot be set with multiple processing threads");
+        }
 
         if (!isEmpty(functionConfig.getPy()) && !org.apache.pulsar.common.functions.Utils
                 .isFunctionPackageUrlSupported(functionConfig.getPy())
@@ -1090,6 +1113,9 @@ public class FunctionConfigUtils {
         if (newConfig.getParallelism() != null) {
             mergedConfig.setParallelism(newConfig.getParallelism());
         }
+        if (newConfig.getProcessingThreads() != null) {
+            mergedConfig.setProcessingThreads(newConfig.getProcessingThreads());
+        }
         if (newConfig.getResources() != null) {
             mergedConfig
                     .setResources(ResourceConfigUtils.merge(existingConfig.getResources(), newConfig.getResources()));
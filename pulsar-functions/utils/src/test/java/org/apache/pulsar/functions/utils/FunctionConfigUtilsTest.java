@@ -25,6 +25,7 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertThrows;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
 import com.google.gson.Gson;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.util.JsonFormat;
@@ -107,6 +108,7 @@ public class FunctionConfigUtilsTest {
         functionConfig.setAutoAck(true);
         functionConfig.setTimeoutMs(2000L);
         functionConfig.setRuntimeFlags("-DKerberos");
+        functionConfig.setProcessingThreads(4);
         ProducerConfig producerConfig = new ProducerConfig();
         producerConfig.setMaxPendingMessages(100);
         producerConfig.setMaxPendingMessagesAcrossPartitions(1000);
@@ -430,6 +432,42 @@ public class FunctionConfigUtilsTest {
         );
     }
 
+    @Test
+    public void testMergeDifferentProcessingThreads() {
+        FunctionConfig functionConfig = createFunctionConfig();
+        FunctionConfig newFunctionConfig = createUpdatedFunctionConfig("processingThreads", 8);
+        FunctionConfig mergedConfig = FunctionConfigUtils.validateUpdate(functionConfig, newFunctionConfig);
+        assertEquals(
+                mergedConfig.getProcessingThreads(),
+                Integer.valueOf(8)
+        );
+        mergedConfig.setProcessingThreads(functionConfig.getProcessingThreads());
+        assertEquals(
+                new Gson().toJson(functionConfig),
+                new Gson().toJson(mergedConfig)
+        );
+    }
+
+    @Test
+    public void testProcessingThreadsOnlyForJava() {
+        FunctionConfig functionConfig = createFunctionConfig();
+        functionConfig.setRuntime(PYTHON);
+        functionConfig.setProcessingThreads(1);
+        assertEquals(FunctionConfigUtils.convert(functionConfig).getProcessingThreads(), 0);
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+                () -> FunctionConfigUtils.validateNonJavaFunction(functionConfig));
+        assertEquals(e.getMessage(), "Processing threads not yet supported in python");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class,
+            expectedExceptionsMessageRegExp = "Retain ordering cannot be set with multiple processing threads")
+    public void testRetainOrderingWithProcessingThreads() {
+        FunctionConfig functionConfig = createFunctionConfig();
+        functionConfig.setRetainOrdering(true);
+        functionConfig.setProcessingThreads(2);
+        FunctionConfigUtils.doCommonChecks(functionConfig);
+    }
+
     @Test
     public void testMergeDifferentResources() {
         FunctionConfig functionConfig = createFunctionConfig();
@@ -24,17 +24,18 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
@@ -47,6 +48,11 @@ import org.apache.pulsar.io.core.SinkContext;
 
 /**
  * A Simple abstract class for Jdbc sink.
+ *
+ * <p>The records are written by {@link JdbcSinkConfig#getFlushWorkers()} workers, each with its own connection and
+ * prepared statements. The records with the same key, or from the same partition when they have no key, are always
+ * written by the same worker, in order. Each worker fills a batch while its previous batch is written, and
+ * {@link #write(Record)} blocks when both are full, which pauses the consumption of the source.
  */
 @Slf4j
 public abstract class JdbcAbstractSink<T> implements Sink<T> {
@@ -58,10 +64,8 @@ public abstract class JdbcAbstractSink<T> implements Sink<T> {
     private String tableName;
 
     private JdbcUtils.TableId tableId;
-    private PreparedStatement insertStatement;
-    private PreparedStatement updateStatement;
-    private PreparedStatement upsertStatement;
-    private PreparedStatement deleteStatement;
+    private List<String> keyList;
+    private List<String> nonKeyList;
 
 
     protected static final String ACTION_PROPERTY = "ACTION";
@@ -69,9 +73,10 @@ public abstract class JdbcAbstractSink<T> implements Sink<T> {
     protected JdbcUtils.TableDefinition tableDefinition;
 
     // for flush
-    private Deque<Record<T>> incomingList;
-    private AtomicBoolean isFlushing;
+    private List<FlushWorker> workers;
     private int batchSize;
+    // The max number of records buffered by each worker, flushed once it is hit
+    private int maxPendingRecords;
     private ScheduledExecutorService flushExecutor;
 
     @Override
@@ -84,56 +89,57 @@ public abstract class JdbcAbstractSink<T> implements Sink<T> {
             throw new IllegalArgumentException("Required jdbc Url not set.");
         }
 
-        Properties properties = new Properties();
-        String username = jdbcSinkConfig.getUserName();
-        String password = jdbcSinkConfig.getPassword();
-        if (username != null) {
-            properties.setProperty("user", username);
-        }
-        if (password != null) {
-            properties.setProperty("password", password);
-        }
-
-        connection = DriverManager.getConnection(jdbcSinkConfig.getJdbcUrl(), properties);
-        connection.setAutoCommit(!jdbcSinkConfig.isUseTransactions());
+        connection = openConnection();
         log.info("Opened jdbc connection: {}, autoCommit: {}", jdbcUrl, connection.getAutoCommit());
 
         tableName = jdbcSinkConfig.getTableName();
         tableId = JdbcUtils.getTableId(connection, tableName);
-        // Init PreparedStatement include insert, delete, update
+        // Init the table definition, used by the PreparedStatements of each worker
         initStatement();
 
         int timeoutMs = jdbcSinkConfig.getTimeoutMs();
         batchSize = jdbcSinkConfig.getBatchSize();
-        incomingList = new LinkedList<>();
-        isFlushing = new AtomicBoolean(false);
+        maxPendingRecords = batchSize > 0 ? batchSize : jdbcSinkConfig.getMaxPendingRecords();
+        workers = new ArrayList<>(jdbcSinkConfig.getFlushWorkers());
+        workers.add(new FlushWorker(connection));
+        for (int i = 1; i < jdbcSinkConfig.getFlushWorkers(); i++) {
+            workers.add(new FlushWorker(openConnection()));
+        }
 
-        flushExecutor = Executors.newScheduledThreadPool(1);
+        flushExecutor = Executors.newScheduledThreadPool(workers.size());
         if (timeoutMs > 0) {
             flushExecutor.scheduleAtFixedRate(this::flush, timeoutMs, timeoutMs, TimeUnit.MILLISECONDS);
         }
     }
 
+    private Connection openConnection() throws SQLException {
+        Properties properties = new Properties();
+        String username = jdbcSinkConfig.getUserName();
+        String password = jdbcSinkConfig.getPassword();
+        if (username != null) {
+            properties.setProperty("user", username);
+        }
+        if (password != null) {
+            properties.setProperty("password", password);
+        }
+
+        Connection connection = DriverManager.getConnection(jdbcSinkConfig.getJdbcUrl(), properties);
+        connection.setAutoCommit(!jdbcSinkConfig.isUseTransactions());
+        return connection;
+    }
+
     private void initStatement()  throws Exception {
-        List<String> keyList = getListFromConfig(jdbcSinkConfig.getKey());
-        List<String> nonKeyList = getListFromConfig(jdbcSinkConfig.getNonKey());
+        keyList = getListFromConfig(jdbcSinkConfig.getKey());
+        nonKeyList = getListFromConfig(jdbcSinkConfig.getNonKey());
 
         tableDefinition = JdbcUtils.getTableDefinition(connection, tableId,
                 keyList, nonKeyList, jdbcSinkConfig.isExcludeNonDeclaredFields());
-        insertStatement = connection.prepareStatement(generateInsertQueryStatement());
 
         if (jdbcSinkConfig.getInsertMode() == JdbcSinkConfig.InsertMode.UPSERT) {
             if (nonKeyList.isEmpty() || keyList.isEmpty()) {
                 throw new IllegalStateException("UPSERT mode is not configured if 'key' and 'nonKey' "
                         + "config are not set.");
             }
-            upsertStatement = connection.prepareStatement(generateUpsertQueryStatement());
-        }
-        if (!nonKeyList.isEmpty()) {
-            updateStatement = connection.prepareStatement(generateUpdateQueryStatement());
-        }
-        if (!keyList.isEmpty()) {
-            deleteStatement = connection.prepareStatement(generateDeleteQueryStatement());
         }
     }
 
@@ -154,41 +160,30 @@ public abstract class JdbcAbstractSink<T> implements Sink<T> {
             flushExecutor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
             flushExecutor = null;
         }
-        if (insertStatement != null) {
-            insertStatement.close();
-        }
-        if (updateStatement != null) {
-            updateStatement.close();
-        }
-        if (upsertStatement != null) {
-            upsertStatement.close();
-        }
-        if (deleteStatement != null) {
-            deleteStatement.close();
-        }
-        if (connection != null && jdbcSinkConfig.isUseTransactions()) {
-            connection.commit();
-        }
-        if (connection != null) {
-            connection.close();
-            connection = null;
+        if (workers != null) {
+            for (FlushWorker worker : workers) {
+                worker.close();
+            }
+            workers = null;
         }
+        connection = null;
         log.info("Closed jdbc connection: {}", jdbcUrl);
     }
 
     @Override
     public void write(Record<T> record) throws Exception {
-        int number;
-        synchronized (incomingList) {
-            incomingList.add(record);
-            number = incomingList.size();
-        }
-        if (batchSize > 0 && number >= batchSize) {
-            if (log.isDebugEnabled()) {
-                log.debug("flushing by batches, hit batch size {}", batchSize);
-            }
-            flushExecutor.schedule(this::flush, 0, TimeUnit.MILLISECONDS);
+        workers.get(workerIndex(record)).add(record);
+    }
+
+    // The records of the same key, or else of the same partition, must be written in order by the same worker
+    private int workerIndex(Record<T> record) {
+        if (workers.size() == 1) {
+            return 0;
         }
+        Object orderingKey = record.getKey().isPresent() ? record.getKey().get()
+                : record.getPartitionId().isPresent() ? record.getPartitionId().get()
+                : record.getTopicName().orElse("");
+        return Math.floorMod(orderingKey.hashCode(), workers.size());
     }
 
     public String generateInsertQueryStatement() {
@@ -229,22 +224,81 @@ public abstract class JdbcAbstractSink<T> implements Sink<T> {
 
 
     private void flush() {
-        if (incomingList.size() > 0 && isFlushing.compareAndSet(false, true)) {
-            boolean needAnotherRound;
-            final Deque<Record<T>> swapList = new LinkedList<>();
+        for (FlushWorker worker : workers) {
+            worker.flush();
+        }
+    }
 
-            synchronized (incomingList) {
+    /**
+     * Writes a share of the records with its own connection, reusing its prepared statements for all the batches.
+     */
+    private class FlushWorker {
+        private final Connection connection;
+        private final PreparedStatement insertStatement;
+        private PreparedStatement updateStatement;
+        private PreparedStatement upsertStatement;
+        private PreparedStatement deleteStatement;
+
+        // The records to write in the next batch, while the previous batch is written
+        private final Deque<Record<T>> incomingList = new ArrayDeque<>();
+        private boolean flushing = false;
+
+        FlushWorker(Connection connection) throws SQLException {
+            this.connection = connection;
+            insertStatement = connection.prepareStatement(generateInsertQueryStatement());
+            if (jdbcSinkConfig.getInsertMode() == JdbcSinkConfig.InsertMode.UPSERT) {
+                upsertStatement = connection.prepareStatement(generateUpsertQueryStatement());
+            }
+            if (!nonKeyList.isEmpty()) {
+                updateStatement = connection.prepareStatement(generateUpdateQueryStatement());
+            }
+            if (!keyList.isEmpty()) {
+                deleteStatement = connection.prepareStatement(generateDeleteQueryStatement());
+            }
+        }
+
+        synchronized void add(Record<T> record) throws InterruptedException {
+            // Both the next batch and the batch being written are full
+            while (flushing && incomingList.size() >= maxPendingRecords) {
+                wait();
+            }
+            incomingList.add(record);
+            if (incomingList.size() >= maxPendingRecords) {
                 if (log.isDebugEnabled()) {
-                    log.debug("Starting flush, queue size: {}", incomingList.size());
+                    log.debug("flushing by batches, hit max pending records {}", maxPendingRecords);
                 }
-                final int actualBatchSize = batchSize > 0 ? Math.min(incomingList.size(), batchSize) :
-                        incomingList.size();
+                flush();
+            }
+        }
 
-                for (int i = 0; i < actualBatchSize; i++) {
-                    swapList.add(incomingList.removeFirst());
+        synchronized void flush() {
+            if (incomingList.isEmpty() || flushing) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Already in flushing state or empty, will not flush, queue size: {}",
+                            incomingList.size());
                 }
-                needAnotherRound = batchSize > 0 && !incomingList.isEmpty() && incomingList.size() >= batchSize;
+                return;
             }
+            if (log.isDebugEnabled()) {
+                log.debug("Starting flush, queue size: {}", incomingList.size());
+            }
+            final int actualBatchSize = batchSize > 0 ? Math.min(incomingList.size(), batchSize) :
+                    incomingList.size();
+            final Deque<Record<T>> swapList = new ArrayDeque<>(actualBatchSize);
+            for (int i = 0; i < actualBatchSize; i++) {
+                swapList.add(incomingList.removeFirst());
+            }
+            flushing = true;
+            notifyAll();
+            try {
+                flushExecutor.execute(() -> flush(swapList));
+            } catch (RejectedExecutionException e) {
+                // The sink is closing, the records will be redelivered
+                flushing = false;
+            }
+        }
+
+        private void flush(Deque<Record<T>> swapList) {
             long start = System.nanoTime();
 
             int count = 0;
@@ -252,7 +306,7 @@ public abstract class JdbcAbstractSink<T> implements Sink<T> {
                 PreparedStatement currentBatch = null;
                 final List<Mutation> mutations = swapList
                         .stream()
-                        .map(this::createMutation)
+                        .map(JdbcAbstractSink.this::createMutation)
                         .collect(Collectors.toList());
                 // bind each record value
                 PreparedStatement statement;
@@ -310,71 +364,89 @@ public abstract class JdbcAbstractSink<T> implements Sink<T> {
                         connection.rollback();
                     }
                 } catch (Exception ex) {
-                    throw new RuntimeException(ex);
+                    log.error("Failed to rollback the transaction", ex);
                 }
             }
 
-            isFlushing.set(false);
-            if (needAnotherRound) {
-                flush();
-            }
-        } else {
-            if (log.isDebugEnabled()) {
-                log.debug("Already in flushing state, will not flush, queue size: {}", incomingList.size());
+            synchronized (this) {
+                flushing = false;
+                notifyAll();
+                if (incomingList.size() >= maxPendingRecords) {
+                    flush();
+                }
             }
         }
-    }
 
-    private void internalFlush(Deque<Record<T>> swapList) throws SQLException {
-        if (jdbcSinkConfig.isUseTransactions()) {
-            connection.commit();
-            swapList.forEach(Record::ack);
+        private void internalFlush(Deque<Record<T>> swapList) throws SQLException {
+            if (jdbcSinkConfig.isUseTransactions()) {
+                connection.commit();
+                swapList.forEach(Record::ack);
+            }
         }
-    }
 
-    private void internalFlushBatch(
-            Deque<Record<T>> swapList,
-            PreparedStatement currentBatch,
-            int count,
-            long start
-    ) throws SQLException {
-        executeBatch(swapList, currentBatch);
-        if (log.isDebugEnabled()) {
-            log.debug("Flushed {} messages in {} ms", count, (System.nanoTime() - start) / 1000 / 1000);
+        private void internalFlushBatch(
+                Deque<Record<T>> swapList,
+                PreparedStatement currentBatch,
+                int count,
+                long start
+        ) throws SQLException {
+            executeBatch(swapList, currentBatch);
+            if (log.isDebugEnabled()) {
+                log.debug("Flushed {} messages in {} ms", count, (System.nanoTime() - start) / 1000 / 1000);
+            }
         }
-    }
 
-    private void executeBatch(Deque<Record<T>> swapList, PreparedStatement statement) throws SQLException {
-        final int[] results = statement.executeBatch();
-        Map<Integer, Integer> failuresMapping = null;
-        final boolean useTransactions = jdbcSinkConfig.isUseTransactions();
+        private void executeBatch(Deque<Record<T>> swapList, PreparedStatement statement) throws SQLException {
+            final int[] results = statement.executeBatch();
+            Map<Integer, Integer> failuresMapping = null;
+            final boolean useTransactions = jdbcSinkConfig.isUseTransactions();
 
-        for (int r: results) {
-            if (isBatchItemFailed(r)) {
-                if (failuresMapping == null) {
-                    failuresMapping = new HashMap<>();
+            for (int r: results) {
+                if (isBatchItemFailed(r)) {
+                    if (failuresMapping == null) {
+                        failuresMapping = new HashMap<>();
+                    }
+                    final Integer current = failuresMapping.computeIfAbsent(r, code -> 1);
+                    failuresMapping.put(r, current + 1);
                 }
-                final Integer current = failuresMapping.computeIfAbsent(r, code -> 1);
-                failuresMapping.put(r, current + 1);
+            }
+            if (failuresMapping == null || failuresMapping.isEmpty()) {
+                if (useTransactions) {
+                    connection.commit();
+                }
+                for (int r: results) {
+                    swapList.removeFirst().ack();
+                }
+            } else {
+                if (useTransactions) {
+                    connection.rollback();
+                }
+                for (int r: results) {
+                    swapList.removeFirst().fail();
+                }
+                String msg = "Batch failed, got error results (error_code->count): " + failuresMapping;
+                // throwing an exception here means the main loop cycle will nack the messages in the next batch
+                throw new SQLException(msg);
             }
         }
-        if (failuresMapping == null || failuresMapping.isEmpty()) {
-            if (useTransactions) {
-                connection.commit();
+
+        void close() throws SQLException {
+            if (insertStatement != null) {
+                insertStatement.close();
             }
-            for (int r: results) {
-                swapList.removeFirst().ack();
+            if (updateStatement != null) {
+                updateStatement.close();
             }
-        } else {
-            if (useTransactions) {
-                connection.rollback();
+            if (upsertStatement != null) {
+                upsertStatement.close();
             }
-            for (int r: results) {
-                swapList.removeFirst().fail();
+            if (deleteStatement != null) {
+                deleteStatement.close();
             }
-            String msg = "Batch failed, got error results (error_code->count): " + failuresMapping;
-            // throwing an exception here means the main loop cycle will nack the messages in the next batch
-            throw new SQLException(msg);
+            if (jdbcSinkConfig.isUseTransactions()) {
+                connection.commit();
+            }
+            connection.close();
         }
     }
 
@@ -113,6 +113,23 @@ public class JdbcSinkConfig implements Serializable {
     )
     private boolean useTransactions = true;
 
+    @FieldDoc(
+            required = false,
+            defaultValue = "1",
+            help = "The number of workers writing to the database, each with its own connection. The records with the "
+                    + "same key, or from the same partition when they have no key, are written by the same worker, "
+                    + "in order. Each worker buffers up to batchSize records while its previous batch is written."
+    )
+    private int flushWorkers = 1;
+
+    @FieldDoc(
+            required = false,
+            defaultValue = "10000",
+            help = "The max number of records each worker buffers while its previous batch is written, when batchSize "
+                    + "is not set. The records are then flushed by timeoutMs, and once the limit is hit."
+    )
+    private int maxPendingRecords = 10000;
+
     @FieldDoc(
             required = false,
             defaultValue = "INSERT",
@@ -155,6 +172,12 @@ public class JdbcSinkConfig implements Serializable {
         if (timeoutMs <= 0 && batchSize <= 0) {
             throw new IllegalArgumentException("timeoutMs or batchSize must be set to a positive value.");
         }
+        if (flushWorkers < 1) {
+            throw new IllegalArgumentException("flushWorkers must be set to a positive value.");
+        }
+        if (batchSize <= 0 && maxPendingRecords < 1) {
+            throw new IllegalArgumentException("maxPendingRecords must be set to a positive value.");
+        }
     }
 
 }
@@ -23,7 +23,9 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,7 +34,6 @@ import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -420,7 +421,8 @@ public class SqliteJdbcSinkTest {
         config.put("timeoutMs", 0);
         restartSinkWithConfig(config);
         // block the auto flushing mechanism
-        FieldUtils.writeField(jdbcSink, "isFlushing", new AtomicBoolean(true), true);
+        Object worker = ((List<?>) FieldUtils.readField(jdbcSink, "workers", true)).get(0);
+        FieldUtils.writeField(worker, "flushing", true, true);
         Foo updateObj = new Foo("f1", "f12", 1);
         Map<String, String> updateProperties = Maps.newHashMap();
         updateProperties.put("ACTION", "INSERT");
@@ -428,7 +430,7 @@ public class SqliteJdbcSinkTest {
         jdbcSink.write(createMockFooRecord(updateObj, updateProperties, futureByEntries1));
         Assert.assertThrows(TimeoutException.class, () -> futureByEntries1.get(1, TimeUnit.SECONDS));
 
-        FieldUtils.writeField(jdbcSink, "isFlushing", new AtomicBoolean(false), true);
+        FieldUtils.writeField(worker, "flushing", false, true);
 
         updateObj = new Foo("f2", "f12", 1);
         updateProperties = Maps.newHashMap();
@@ -440,6 +442,131 @@ public class SqliteJdbcSinkTest {
         futureByEntries2.get(1, TimeUnit.SECONDS);
     }
 
+    @Test
+    public void testFlushWorkers() throws Exception {
+        Map<String, Object> config = new HashMap<>();
+        config.put("batchSize", 2);
+        config.put("timeoutMs", 100);
+        config.put("flushWorkers", 2);
+        restartSinkWithConfig(config);
+        Assert.assertEquals(((List<?>) FieldUtils.readField(jdbcSink, "workers", true)).size(), 2);
+
+        Map<String, String> insertProperties = Maps.newHashMap();
+        insertProperties.put("ACTION", "INSERT");
+        final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int i = 10; i < 15; i++) {
+            final CompletableFuture<Boolean> future = new CompletableFuture<>();
+            jdbcSink.write(createMockFooRecord(new Foo("f" + i, "f2", i), insertProperties, future));
+            futures.add(future);
+        }
+        for (CompletableFuture<Boolean> future : futures) {
+            Assert.assertTrue(future.get(1, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(sqliteUtils.select("select field1 from " + tableName + " where field3 >= 10",
+                (resultSet) -> {}), 5);
+    }
+
+    @Test
+    public void testMaxPendingRecordsWithoutBatchSize() throws Exception {
+        Map<String, Object> config = new HashMap<>();
+        config.put("batchSize", 0);
+        // Only flushed once maxPendingRecords is hit
+        config.put("timeoutMs", 60_000);
+        config.put("maxPendingRecords", 2);
+        restartSinkWithConfig(config);
+
+        Map<String, String> insertProperties = Maps.newHashMap();
+        insertProperties.put("ACTION", "INSERT");
+        final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int i = 20; i < 24; i++) {
+            final CompletableFuture<Boolean> future = new CompletableFuture<>();
+            jdbcSink.write(createMockFooRecord(new Foo("f" + i, "f2", i), insertProperties, future));
+            futures.add(future);
+        }
+        for (CompletableFuture<Boolean> future : futures) {
+            Assert.assertTrue(future.get(1, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(sqliteUtils.select("select field1 from " + tableName + " where field3 >= 20",
+                (resultSet) -> {}), 4);
+    }
+
+    @Test
+    public void testWriteBlocksWhileFlushing() throws Exception {
+        Map<String, Object> config = new HashMap<>();
+        config.put("batchSize", 0);
+        config.put("timeoutMs", 60_000);
+        config.put("maxPendingRecords", 2);
+        restartSinkWithConfig(config);
+        // hold the worker in the flushing state
+        Object worker = ((List<?>) FieldUtils.readField(jdbcSink, "workers", true)).get(0);
+        FieldUtils.writeField(worker, "flushing", true, true);
+
+        Map<String, String> insertProperties = Maps.newHashMap();
+        insertProperties.put("ACTION", "INSERT");
+        final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int i = 40; i < 43; i++) {
+            futures.add(new CompletableFuture<>());
+        }
+        jdbcSink.write(createMockFooRecord(new Foo("f40", "f2", 40), insertProperties, futures.get(0)));
+        jdbcSink.write(createMockFooRecord(new Foo("f41", "f2", 41), insertProperties, futures.get(1)));
+        // the next batch is full while the previous one is written
+        CompletableFuture<Void> blockedWrite = CompletableFuture.runAsync(() -> {
+            try {
+                jdbcSink.write(createMockFooRecord(new Foo("f42", "f2", 42), insertProperties, futures.get(2)));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Assert.assertThrows(TimeoutException.class, () -> blockedWrite.get(1, TimeUnit.SECONDS));
+        Assert.assertEquals(((Collection<?>) FieldUtils.readField(worker, "incomingList", true)).size(), 2);
+
+        synchronized (worker) {
+            FieldUtils.writeField(worker, "flushing", false, true);
+            worker.notifyAll();
+        }
+        blockedWrite.get(1, TimeUnit.SECONDS);
+        for (CompletableFuture<Boolean> future : futures) {
+            Assert.assertTrue(future.get(1, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(sqliteUtils.select("select field1 from " + tableName + " where field3 >= 40",
+                (resultSet) -> {}), 3);
+    }
+
+    @Test
+    public void testSameKeyUpdatesWithFlushWorkers() throws Exception {
+        Map<String, Object> config = new HashMap<>();
+        config.put("batchSize", 2);
+        config.put("timeoutMs", 100);
+        config.put("flushWorkers", 4);
+        restartSinkWithConfig(config);
+
+        Map<String, String> insertProperties = Maps.newHashMap();
+        insertProperties.put("ACTION", "INSERT");
+        Map<String, String> updateProperties = Maps.newHashMap();
+        updateProperties.put("ACTION", "UPDATE");
+        final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int key = 50; key < 54; key++) {
+            final CompletableFuture<Boolean> future = new CompletableFuture<>();
+            jdbcSink.write(createMockFooRecord(new Foo(key + "-v0", "f2", key), insertProperties, future,
+                    String.valueOf(key)));
+            futures.add(future);
+        }
+        // the updates of the keys are interleaved, each key must still be written in order by its worker
+        for (int i = 1; i <= 20; i++) {
+            for (int key = 50; key < 54; key++) {
+                final CompletableFuture<Boolean> future = new CompletableFuture<>();
+                jdbcSink.write(createMockFooRecord(new Foo(key + "-v" + i, "f2", key), updateProperties, future,
+                        String.valueOf(key)));
+                futures.add(future);
+            }
+        }
+        for (CompletableFuture<Boolean> future : futures) {
+            Assert.assertTrue(future.get(5, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(sqliteUtils.select("select field1, field3 from " + tableName + " where field3 >= 50",
+                (resultSet) -> Assert.assertEquals(resultSet.getString(1), resultSet.getInt(2) + "-v20")), 4);
+    }
+
     @DataProvider(name = "useTransactions")
     public Object[] useTransactions() {
         return Arrays.asList(true, false).toArray();
@@ -863,7 +990,16 @@ public class SqliteJdbcSinkTest {
     @SuppressWarnings("unchecked")
     private Record<GenericObject> createMockFooRecord(Foo record, Map<String, String> actionProperties,
                                                         CompletableFuture<Boolean> future) {
+        return createMockFooRecord(record, actionProperties, future, null);
+    }
+
+    private Record<GenericObject> createMockFooRecord(Foo record, Map<String, String> actionProperties,
+                                                        CompletableFuture<Boolean> future, String key) {
         Message<GenericRecord> insertMessage = mock(MessageImpl.class);
+        if (key != null) {
+            when(insertMessage.hasKey()).thenReturn(true);
+            when(insertMessage.getKey()).thenReturn(key);
+        }
         GenericSchema<GenericRecord> genericAvroSchema;
         AvroSchema<Foo> schema = AvroSchema.of(SchemaDefinition.<Foo>builder()
                 .withPojo(Foo.class).withAlwaysAllowNull(true).build());
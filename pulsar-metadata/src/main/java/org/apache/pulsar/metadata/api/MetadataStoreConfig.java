@@ -88,6 +88,13 @@ public class MetadataStoreConfig {
     @Builder.Default
     private final boolean fsyncEnable = true;
 
+    /**
+     * Maximum number of values written by the metadata store that are served locally until the notification of the
+     * change is received, 0 to disable. Only used by the stores which are notified of the changes of all the paths.
+     */
+    @Builder.Default
+    private final int readYourWritesCacheMaxEntries = 0;
+
     /**
      * Pluggable MetadataEventSynchronizer to sync metadata events across the
      * separate clusters.
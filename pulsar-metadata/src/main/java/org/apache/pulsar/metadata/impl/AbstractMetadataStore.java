@@ -23,6 +23,7 @@ import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
 import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.annotations.VisibleForTesting;
@@ -36,6 +37,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
@@ -43,6 +45,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -70,6 +73,9 @@ import org.apache.pulsar.metadata.impl.stats.MetadataStoreStats;
 @Slf4j
 public abstract class AbstractMetadataStore implements MetadataStoreExtended, Consumer<Notification> {
     private static final long CACHE_REFRESH_TIME_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    // Upper bound of the time a locally written value is served, in case its notification is missed
+    private static final long READ_YOUR_WRITES_CACHE_EXPIRY_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final int READ_INVALIDATION_SLOTS = 4096;
 
     private final CopyOnWriteArrayList<Consumer<Notification>> listeners = new CopyOnWriteArrayList<>();
     private final CopyOnWriteArrayList<Consumer<SessionEvent>> sessionListeners = new CopyOnWriteArrayList<>();
@@ -79,6 +85,14 @@ public abstract class AbstractMetadataStore implements MetadataStoreExtended, Co
     private final AsyncLoadingCache<String, Boolean> existsCache;
     private final CopyOnWriteArrayList<MetadataCacheImpl<?>> metadataCaches = new CopyOnWriteArrayList<>();
     private final MetadataStoreStats metadataStoreStats;
+    // In-flight reads, shared by the concurrent gets on the same path
+    private final ConcurrentHashMap<String, CompletableFuture<Optional<GetResult>>> pendingGets =
+            new ConcurrentHashMap<>();
+    // Values written by this store, served until the notification of the change is received
+    private final Cache<String, Optional<GetResult>> readYourWritesCache;
+    // Incremented on each invalidation of the paths hashed to the slot, so that a written value is not served when
+    // a newer change was notified before the write completed
+    private final AtomicLongArray readInvalidations = new AtomicLongArray(READ_INVALIDATION_SLOTS);
 
     // We don't strictly need to use 'volatile' here because we don't need the precise consistent semantic. Instead,
     // we want to avoid the overhead of 'volatile'.
@@ -92,6 +106,16 @@ public abstract class AbstractMetadataStore implements MetadataStoreExtended, Co
     protected abstract CompletableFuture<Boolean> existsFromStore(String path);
 
     protected AbstractMetadataStore(String metadataStoreName, OpenTelemetry openTelemetry) {
+        this(metadataStoreName, openTelemetry, 0);
+    }
+
+    /**
+     * @param readYourWritesCacheMaxEntries the max number of written values that are served locally until the
+     *                                      notification of the change is received, 0 to disable. It must only be
+     *                                      enabled by the stores which receive the notifications of all the paths.
+     */
+    protected AbstractMetadataStore(String metadataStoreName, OpenTelemetry openTelemetry,
+                                    int readYourWritesCacheMaxEntries) {
         this.executor = new ScheduledThreadPoolExecutor(1,
                 new DefaultThreadFactory(
                         StringUtils.isNotBlank(metadataStoreName) ? metadataStoreName : getClass().getSimpleName()));
@@ -143,6 +167,15 @@ public abstract class AbstractMetadataStore implements MetadataStoreExtended, Co
                 });
         CacheMetricsCollector.CAFFEINE.addCache(metadataStoreName + "-exists", existsCache);
 
+        if (readYourWritesCacheMaxEntries > 0) {
+            this.readYourWritesCache = Caffeine.newBuilder()
+                    .maximumSize(readYourWritesCacheMaxEntries)
+                    .expireAfterWrite(READ_YOUR_WRITES_CACHE_EXPIRY_MILLIS, TimeUnit.MILLISECONDS)
+                    .build();
+        } else {
+            this.readYourWritesCache = null;
+        }
+
         this.metadataStoreName = metadataStoreName;
         this.metadataStoreStats = new MetadataStoreStats(metadataStoreName, openTelemetry);
     }
@@ -279,7 +312,15 @@ public abstract class AbstractMetadataStore implements MetadataStoreExtended, Co
             return FutureUtil
                     .failedFuture(new MetadataStoreException.InvalidPathException(path));
         }
-        return storeGet(path)
+        if (readYourWritesCache != null) {
+            Optional<GetResult> writtenValue = readYourWritesCache.getIfPresent(path);
+            if (writtenValue != null) {
+                metadataStoreStats.recordGetOpsServedLocally();
+                metadataStoreStats.recordGetOpsSucceeded(System.currentTimeMillis() - start);
+                return CompletableFuture.completedFuture(writtenValue);
+            }
+        }
+        return coalescedStoreGet(path)
                 .whenComplete((v, t) -> {
                     if (t != null) {
                         metadataStoreStats.recordGetOpsFailed(System.currentTimeMillis() - start);
@@ -289,6 +330,72 @@ public abstract class AbstractMetadataStore implements MetadataStoreExtended, Co
                 });
     }
 
+    private CompletableFuture<Optional<GetResult>> coalescedStoreGet(String path) {
+        CompletableFuture<Optional<GetResult>> future = new CompletableFuture<>();
+        CompletableFuture<Optional<GetResult>> pendingGet = pendingGets.putIfAbsent(path, future);
+        if (pendingGet != null) {
+            metadataStoreStats.recordGetOpsCoalesced();
+            // Each caller gets its own future, so that completing it doesn't affect the other callers
+            return pendingGet.copy();
+        }
+        metadataStoreStats.recordGetOpsIssued();
+        storeGet(path).whenComplete((result, ex) -> {
+            pendingGets.remove(path, future);
+            if (ex != null) {
+                future.completeExceptionally(ex);
+            } else {
+                future.complete(result);
+            }
+        });
+        return future.copy();
+    }
+
+    /**
+     * Called when the value of the path is changed, so that the reads which are issued later are not served with
+     * stale data.
+     */
+    private long invalidateReads(String path) {
+        long generation = readInvalidations.incrementAndGet(readInvalidationSlot(path));
+        pendingGets.remove(path);
+        if (readYourWritesCache != null) {
+            readYourWritesCache.invalidate(path);
+        }
+        return generation;
+    }
+
+    private static int readInvalidationSlot(String path) {
+        return Math.floorMod(path.hashCode(), READ_INVALIDATION_SLOTS);
+    }
+
+    private long readInvalidationGeneration(String path) {
+        return readInvalidations.get(readInvalidationSlot(path));
+    }
+
+    /**
+     * Invalidates the reads when the write completes, and records the written value if the path was not invalidated
+     * since the write was issued. Otherwise a newer change may have been notified already, and the written value
+     * would be stale.
+     *
+     * @param generation the invalidation generation of the path when the write was issued
+     * @param value the written value, or null if it can't be served locally
+     */
+    private void completeWrite(String path, long generation, Optional<GetResult> value) {
+        boolean unchanged = readInvalidationGeneration(path) == generation;
+        long currentGeneration = invalidateReads(path);
+        if (readYourWritesCache == null || value == null || !unchanged) {
+            return;
+        }
+        // Keep the latest version in case the completions of concurrent writes are reordered
+        readYourWritesCache.asMap().merge(path, value, (oldValue, newValue) ->
+                oldValue.isPresent() && newValue.isPresent()
+                        && oldValue.get().getStat().getVersion() > newValue.get().getStat().getVersion()
+                        ? oldValue : newValue);
+        if (readInvalidationGeneration(path) != currentGeneration) {
+            // Invalidated while recording the value
+            readYourWritesCache.invalidate(path);
+        }
+    }
+
     protected abstract CompletableFuture<Optional<GetResult>> storeGet(String path);
 
     @Override
@@ -327,6 +434,9 @@ public abstract class AbstractMetadataStore implements MetadataStoreExtended, Co
     }
 
     protected CompletableFuture<Void> receivedNotification(Notification notification) {
+        if (notification.getType() != NotificationType.ChildrenChanged) {
+            invalidateReads(notification.getPath());
+        }
         try {
             return CompletableFuture.supplyAsync(() -> {
                 listeners.forEach(listener -> {
@@ -406,8 +516,15 @@ public abstract class AbstractMetadataStore implements MetadataStoreExtended, Co
     }
 
     private CompletableFuture<Void> deleteInternal(String path, Optional<Long> expectedVersion) {
+        long generation = readInvalidationGeneration(path);
         // Ensure caches are invalidated before the operation is confirmed
-        return storeDelete(path, expectedVersion).thenRun(() -> {
+        return storeDelete(path, expectedVersion).whenComplete((__, ex) -> {
+            if (ex != null) {
+                // The value may have been changed by another writer
+                invalidateReads(path);
+            }
+        }).thenRun(() -> {
+            completeWrite(path, generation, Optional.empty());
             existsCache.synchronous().invalidate(path);
             childrenCache.synchronous().invalidate(path);
             String parent = parent(path);
@@ -483,10 +600,21 @@ public abstract class AbstractMetadataStore implements MetadataStoreExtended, Co
     }
     public final CompletableFuture<Stat> putInternal(String path, byte[] data, Optional<Long> optExpectedVersion,
             Set<CreateOption> options) {
+        long generation = readInvalidationGeneration(path);
         // Ensure caches are invalidated before the operation is confirmed
         return storePut(path, data, optExpectedVersion,
                 (options != null && !options.isEmpty()) ? EnumSet.copyOf(options) : EnumSet.noneOf(CreateOption.class))
+                .whenComplete((__, ex) -> {
+                    if (ex != null) {
+                        // The value may have been changed by another writer, e.g. on BadVersion
+                        invalidateReads(path);
+                    }
+                })
                 .thenApply(stat -> {
+                    // The stat returned when creating a node doesn't carry the timestamps. Ephemeral nodes are
+                    // skipped since they can be removed by the session expiry without this store noticing it.
+                    completeWrite(path, generation, data != null && stat.getModificationTimestamp() > 0
+                            && !stat.isEphemeral() ? Optional.of(new GetResult(data, stat)) : null);
                     NotificationType type = stat.isFirstVersion() ? NotificationType.Created
                             : NotificationType.Modified;
                     if (type == NotificationType.Created) {
@@ -510,6 +638,14 @@ public abstract class AbstractMetadataStore implements MetadataStoreExtended, Co
     protected void receivedSessionEvent(SessionEvent event) {
         isConnected = event.isConnected();
 
+        // Notifications can be missed while disconnected, stop serving the values written locally.
+        if (!event.isConnected()) {
+            pendingGets.clear();
+            if (readYourWritesCache != null) {
+                readYourWritesCache.invalidateAll();
+            }
+        }
+
         // Clear cache after session expired.
         if (event == SessionEvent.SessionReestablished || event == SessionEvent.Reconnected) {
             for (MetadataCacheImpl metadataCache : metadataCaches) {
@@ -554,6 +690,10 @@ public abstract class AbstractMetadataStore implements MetadataStoreExtended, Co
     public void invalidateAll() {
         childrenCache.synchronous().invalidateAll();
         existsCache.synchronous().invalidateAll();
+        pendingGets.clear();
+        if (readYourWritesCache != null) {
+            readYourWritesCache.invalidateAll();
+        }
     }
 
     public void invalidateCaches(String...paths) {
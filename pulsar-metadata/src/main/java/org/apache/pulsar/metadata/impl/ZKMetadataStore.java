@@ -84,7 +84,8 @@ public class ZKMetadataStore extends AbstractBatchedMetadataStore
 
     public ZKMetadataStore(String metadataURL, MetadataStoreConfig metadataStoreConfig, boolean enableSessionWatcher)
             throws MetadataStoreException {
-        super(metadataStoreConfig);
+        // The persistent recursive watch on the root notifies the changes of all the paths
+        super(metadataStoreConfig, metadataStoreConfig.getReadYourWritesCacheMaxEntries());
 
         try {
             if (metadataURL.startsWith(ZK_SCHEME_IDENTIFIER)) {
@@ -135,7 +136,7 @@ public class ZKMetadataStore extends AbstractBatchedMetadataStore
     @VisibleForTesting
     @SneakyThrows
     public ZKMetadataStore(ZooKeeper zkc, MetadataStoreConfig config, boolean isZkManaged) {
-        super(config);
+        super(config, config.getReadYourWritesCacheMaxEntries());
         this.zkConnectString = null;
         this.rootPath = null;
         this.metadataStoreConfig = null;
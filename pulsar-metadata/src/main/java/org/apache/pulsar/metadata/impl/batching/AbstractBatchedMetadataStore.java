@@ -56,7 +56,11 @@ public abstract class AbstractBatchedMetadataStore extends AbstractMetadataStore
     private final BatchMetadataStoreStats batchMetadataStoreStats;
 
     protected AbstractBatchedMetadataStore(MetadataStoreConfig conf) {
-        super(conf.getMetadataStoreName(), conf.getOpenTelemetry());
+        this(conf, 0);
+    }
+
+    protected AbstractBatchedMetadataStore(MetadataStoreConfig conf, int readYourWritesCacheMaxEntries) {
+        super(conf.getMetadataStoreName(), conf.getOpenTelemetry(), readYourWritesCacheMaxEntries);
 
         this.enabled = conf.isBatchingEnabled();
         this.maxDelayMillis = conf.getBatchingMaxDelayMillis();
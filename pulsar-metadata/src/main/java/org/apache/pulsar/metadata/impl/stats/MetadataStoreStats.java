@@ -31,12 +31,16 @@ public final class MetadataStoreStats implements AutoCloseable {
     private static final String OPS_TYPE_LABEL_NAME = "type";
     private static final String METADATA_STORE_LABEL_NAME = "name";
     private static final String STATUS = "status";
+    private static final String GET_SOURCE_LABEL_NAME = "source";
 
     private static final String OPS_TYPE_GET = "get";
     private static final String OPS_TYPE_DEL = "del";
     private static final String OPS_TYPE_PUT = "put";
     private static final String STATUS_SUCCESS = "success";
     private static final String STATUS_FAIL = "fail";
+    private static final String GET_SOURCE_ISSUED = "issued";
+    private static final String GET_SOURCE_COALESCED = "coalesced";
+    private static final String GET_SOURCE_LOCAL = "local";
 
     protected static final String PREFIX = "pulsar_metadata_store_";
 
@@ -51,12 +55,25 @@ public final class MetadataStoreStats implements AutoCloseable {
             .unit("bytes")
             .labelNames(METADATA_STORE_LABEL_NAME)
             .register();
+    private static final Counter GET_OPS = Counter
+            .build(PREFIX + "get_ops", "Get operations by source: issued to the store, coalesced with an "
+                    + "in-flight read of the same path or served locally with a value written by this store")
+            .labelNames(METADATA_STORE_LABEL_NAME, GET_SOURCE_LABEL_NAME)
+            .register();
 
     public static final AttributeKey<String> METADATA_STORE_NAME = AttributeKey.stringKey("pulsar.metadata.store.name");
     public static final String METADATA_STORE_PUT_BYTES_COUNTER_METRIC_NAME =
             "pulsar.broker.metadata.store.outgoing.size";
+    public static final AttributeKey<String> METADATA_STORE_GET_SOURCE =
+            AttributeKey.stringKey("pulsar.metadata.store.get.source");
+    public static final String METADATA_STORE_GET_OPS_COUNTER_METRIC_NAME =
+            "pulsar.broker.metadata.store.get.operation.count";
     private final Attributes attributes;
     private final LongCounter putBytesCounter;
+    private final LongCounter getOpsCounter;
+    private final Attributes getOpsIssuedAttributes;
+    private final Attributes getOpsCoalescedAttributes;
+    private final Attributes getOpsLocalAttributes;
 
     private final Histogram.Child getOpsSucceedChild;
     private final Histogram.Child delOpsSucceedChild;
@@ -65,6 +82,9 @@ public final class MetadataStoreStats implements AutoCloseable {
     private final Histogram.Child delOpsFailedChild;
     private final Histogram.Child putOpsFailedChild;
     private final Counter.Child putBytesChild;
+    private final Counter.Child getOpsIssuedChild;
+    private final Counter.Child getOpsCoalescedChild;
+    private final Counter.Child getOpsLocalChild;
     private final String metadataStoreName;
     private final AtomicBoolean closed = new AtomicBoolean(false);
 
@@ -78,6 +98,9 @@ public final class MetadataStoreStats implements AutoCloseable {
         this.delOpsFailedChild = OPS_LATENCY.labels(metadataStoreName, OPS_TYPE_DEL, STATUS_FAIL);
         this.putOpsFailedChild = OPS_LATENCY.labels(metadataStoreName, OPS_TYPE_PUT, STATUS_FAIL);
         this.putBytesChild = PUT_BYTES.labels(metadataStoreName);
+        this.getOpsIssuedChild = GET_OPS.labels(metadataStoreName, GET_SOURCE_ISSUED);
+        this.getOpsCoalescedChild = GET_OPS.labels(metadataStoreName, GET_SOURCE_COALESCED);
+        this.getOpsLocalChild = GET_OPS.labels(metadataStoreName, GET_SOURCE_LOCAL);
 
         attributes = Attributes.of(METADATA_STORE_NAME, metadataStoreName);
         putBytesCounter = openTelemetry.getMeter("org.apache.pulsar")
@@ -85,6 +108,15 @@ public final class MetadataStoreStats implements AutoCloseable {
                 .setDescription("The total amount of data written to the metadata store")
                 .setUnit("{By}")
                 .build();
+        getOpsCounter = openTelemetry.getMeter("org.apache.pulsar")
+                .counterBuilder(METADATA_STORE_GET_OPS_COUNTER_METRIC_NAME)
+                .setDescription("The total number of get operations, by source")
+                .setUnit("{operation}")
+                .build();
+        getOpsIssuedAttributes = attributes.toBuilder().put(METADATA_STORE_GET_SOURCE, GET_SOURCE_ISSUED).build();
+        getOpsCoalescedAttributes =
+                attributes.toBuilder().put(METADATA_STORE_GET_SOURCE, GET_SOURCE_COALESCED).build();
+        getOpsLocalAttributes = attributes.toBuilder().put(METADATA_STORE_GET_SOURCE, GET_SOURCE_LOCAL).build();
     }
 
     public void recordGetOpsSucceeded(long millis) {
@@ -101,6 +133,21 @@ public final class MetadataStoreStats implements AutoCloseable {
         this.putBytesCounter.add(bytes, attributes);
     }
 
+    public void recordGetOpsIssued() {
+        this.getOpsIssuedChild.inc();
+        this.getOpsCounter.add(1, getOpsIssuedAttributes);
+    }
+
+    public void recordGetOpsCoalesced() {
+        this.getOpsCoalescedChild.inc();
+        this.getOpsCounter.add(1, getOpsCoalescedAttributes);
+    }
+
+    public void recordGetOpsServedLocally() {
+        this.getOpsLocalChild.inc();
+        this.getOpsCounter.add(1, getOpsLocalAttributes);
+    }
+
     public void recordGetOpsFailed(long millis) {
         this.getOpsFailedChild.observe(millis);
     }
@@ -123,6 +170,9 @@ public final class MetadataStoreStats implements AutoCloseable {
             OPS_LATENCY.remove(this.metadataStoreName, OPS_TYPE_DEL, STATUS_FAIL);
             OPS_LATENCY.remove(this.metadataStoreName, OPS_TYPE_PUT, STATUS_FAIL);
             PUT_BYTES.remove(this.metadataStoreName);
+            GET_OPS.remove(this.metadataStoreName, GET_SOURCE_ISSUED);
+            GET_OPS.remove(this.metadataStoreName, GET_SOURCE_COALESCED);
+            GET_OPS.remove(this.metadataStoreName, GET_SOURCE_LOCAL);
         }
     }
 }
@@ -786,4 +786,74 @@ public class MetadataStoreTest extends BaseMetadataStoreTest {
         // There is a chance watcher event is not triggered before the store1.exists() call.
         assertFalse(store1.exists(parent + "/b").get());
     }
+
+    @Test(dataProvider = "impl")
+    public void testConcurrentGetsAreCoalesced(String provider, Supplier<String> urlSupplier) throws Exception {
+        @Cleanup
+        MetadataStore store = MetadataStoreFactory.create(urlSupplier.get(),
+                MetadataStoreConfig.builder().fsyncEnable(false).batchingMaxDelayMillis(500).build());
+
+        String key = newKey();
+        store.put(key, "value-1".getBytes(StandardCharsets.UTF_8), Optional.empty()).join();
+
+        List<CompletableFuture<Optional<GetResult>>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(store.get(key));
+        }
+        // Completing the future of a caller must not affect the other callers
+        futures.get(0).completeExceptionally(new Exception("cancelled by the caller"));
+        for (int i = 1; i < futures.size(); i++) {
+            assertEquals(futures.get(i).join().get().getValue(), "value-1".getBytes(StandardCharsets.UTF_8));
+        }
+
+        // A read issued after a write must observe it, even if an earlier read is still in flight
+        CompletableFuture<Optional<GetResult>> earlierRead = store.get(key);
+        Stat stat = store.put(key, "value-2".getBytes(StandardCharsets.UTF_8), Optional.empty()).join();
+        GetResult result = store.get(key).join().get();
+        assertEquals(result.getValue(), "value-2".getBytes(StandardCharsets.UTF_8));
+        assertEquals(result.getStat().getVersion(), stat.getVersion());
+        assertTrue(earlierRead.join().isPresent());
+    }
+
+    @Test(dataProvider = "zkImpls")
+    public void testReadYourWrites(String provider, Supplier<String> urlSupplier) throws Exception {
+        @Cleanup
+        MetadataStore store = MetadataStoreFactory.create(urlSupplier.get(),
+                MetadataStoreConfig.builder().fsyncEnable(false).readYourWritesCacheMaxEntries(1000).build());
+        @Cleanup
+        MetadataStore otherStore = MetadataStoreFactory.create(urlSupplier.get(),
+                MetadataStoreConfig.builder().fsyncEnable(false).build());
+
+        String key = newKey();
+        store.put(key, "value-1".getBytes(StandardCharsets.UTF_8), Optional.empty()).join();
+        for (int i = 2; i <= 5; i++) {
+            byte[] value = ("value-" + i).getBytes(StandardCharsets.UTF_8);
+            Stat stat = store.put(key, value, Optional.empty()).join();
+            GetResult result = store.get(key).join().get();
+            assertEquals(result.getValue(), value);
+            assertEquals(result.getStat(), stat);
+        }
+
+        // The values written by the other stores are observed once notified
+        otherStore.put(key, "value-6".getBytes(StandardCharsets.UTF_8), Optional.empty()).join();
+        Awaitility.await().untilAsserted(() -> assertEquals(store.get(key).join().get().getValue(),
+                "value-6".getBytes(StandardCharsets.UTF_8)));
+
+        store.delete(key, Optional.empty()).join();
+        assertFalse(store.get(key).join().isPresent());
+        otherStore.put(key, "value-7".getBytes(StandardCharsets.UTF_8), Optional.empty()).join();
+        Awaitility.await().untilAsserted(() -> assertEquals(store.get(key).join().get().getValue(),
+                "value-7".getBytes(StandardCharsets.UTF_8)));
+
+        // A failed conditional write drops the written value, even before the newer change is notified
+        Stat stat = store.put(key, "value-8".getBytes(StandardCharsets.UTF_8), Optional.empty()).join();
+        otherStore.put(key, "value-9".getBytes(StandardCharsets.UTF_8), Optional.of(stat.getVersion())).join();
+        try {
+            store.put(key, "value-10".getBytes(StandardCharsets.UTF_8), Optional.of(stat.getVersion())).join();
+            fail("Expected the write to fail with a bad version");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof MetadataStoreException.BadVersionException);
+        }
+        assertEquals(store.get(key).join().get().getValue(), "value-9".getBytes(StandardCharsets.UTF_8));
+    }
 }
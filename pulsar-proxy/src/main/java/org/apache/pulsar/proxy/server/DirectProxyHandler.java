@@ -118,30 +118,8 @@ public class DirectProxyHandler {
             inboundChannel.close();
             return;
         }
-        PulsarSslFactory sslFactory =
-                tlsEnabledWithBroker ? pulsarSslFactoryMap.computeIfAbsent(remoteHost, (hostname) -> {
-                    AuthenticationDataProvider authData = null;
-
-                    if (!isEmpty(service.getConfiguration().getBrokerClientAuthenticationPlugin())) {
-                        try {
-                            authData = authentication.getAuthData(remoteHost);
-                        } catch (PulsarClientException e) {
-                            throw new RuntimeException(e);
-                        }
-                    }
-                    PulsarSslConfiguration sslConfiguration =
-                            buildSslConfiguration(service.getConfiguration(), authData);
-                    try {
-                        PulsarSslFactory factory =
-                                (PulsarSslFactory) Class.forName(service.getConfiguration().getSslFactoryPlugin())
-                                        .getConstructor().newInstance();
-                        factory.initialize(sslConfiguration);
-                        factory.createInternalSslContext();
-                        return factory;
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-                }) : null;
+        PulsarSslFactory sslFactory = tlsEnabledWithBroker ? pulsarSslFactoryMap.computeIfAbsent(remoteHost,
+                (hostname) -> createSslFactory(service, authentication, hostname)) : null;
         ProxyConfiguration config = service.getConfiguration();
 
         // Start the connection attempt.
@@ -195,12 +173,36 @@ public class DirectProxyHandler {
                 // Close the connection if the connection attempt has failed.
                 log.warn("[{}] Establishing connection to {} ({}) failed. Closing inbound channel.", inboundChannel,
                         targetBrokerAddress, brokerHostAndPort, future.cause());
+                service.invalidateCachedLookups(brokerHostAndPort);
                 inboundChannel.close();
             }
         });
     }
 
-    private static String parseHost(String brokerPortAndHost) {
+    static PulsarSslFactory createSslFactory(ProxyService service, Authentication authentication, String remoteHost) {
+        AuthenticationDataProvider authData = null;
+
+        if (!isEmpty(service.getConfiguration().getBrokerClientAuthenticationPlugin())) {
+            try {
+                authData = authentication.getAuthData(remoteHost);
+            } catch (PulsarClientException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        PulsarSslConfiguration sslConfiguration = buildSslConfiguration(service.getConfiguration(), authData);
+        try {
+            PulsarSslFactory factory =
+                    (PulsarSslFactory) Class.forName(service.getConfiguration().getSslFactoryPlugin())
+                            .getConstructor().newInstance();
+            factory.initialize(sslConfiguration);
+            factory.createInternalSslContext();
+            return factory;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static String parseHost(String brokerPortAndHost) {
         int pos = brokerPortAndHost.lastIndexOf(':');
         if (pos > 0) {
             return brokerPortAndHost.substring(0, pos);
@@ -476,8 +478,8 @@ public class DirectProxyHandler {
         NettyChannelUtil.writeAndFlushWithVoidPromise(outboundChannel, cmd);
     }
 
-    protected PulsarSslConfiguration buildSslConfiguration(ProxyConfiguration config,
-                                                           AuthenticationDataProvider authData) {
+    static PulsarSslConfiguration buildSslConfiguration(ProxyConfiguration config,
+                                                        AuthenticationDataProvider authData) {
         return PulsarSslConfiguration.builder()
                 .tlsProvider(config.getBrokerClientSslProvider())
                 .tlsKeyStoreType(config.getBrokerClientTlsKeyStoreType())
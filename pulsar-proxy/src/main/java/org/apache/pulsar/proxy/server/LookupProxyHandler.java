@@ -25,8 +25,11 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.pulsar.client.api.PulsarClientException;
 import org.apache.pulsar.client.impl.BinaryProtoLookupService;
@@ -83,11 +86,25 @@ public class LookupProxyHandler {
             .build("pulsar_proxy_rejected_get_topics_of_namespace_requests",
                     "Counter of getTopicsOfNamespace requests rejected due to throttling")
             .create().register();
+    private static final int MAX_TRACKED_CACHED_LOOKUPS = 1000;
+
     private final Semaphore lookupRequestSemaphore;
+    private final ProxyLookupCache lookupCache;
+    private final long lookupCacheTtlNanos;
+    // The time each topic was last looked up from the cache on this connection. Only accessed from the event loop
+    // of the connection.
+    private final Map<String, Long> cachedLookupTimes = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_TRACKED_CACHED_LOOKUPS;
+        }
+    };
 
     public LookupProxyHandler(ProxyService proxy, ProxyConnection proxyConnection) {
         this.discoveryProvider = proxy.getDiscoveryProvider();
         this.lookupRequestSemaphore = proxy.getLookupRequestSemaphore();
+        this.lookupCache = proxy.getLookupCache();
+        this.lookupCacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(proxy.getConfiguration().getLookupCacheTtlMs());
         this.proxyConnection = proxyConnection;
         this.clientAddress = proxyConnection.clientAddress();
         this.connectWithTLS = proxy.getConfiguration().isTlsEnabledWithBroker();
@@ -100,6 +117,19 @@ public class LookupProxyHandler {
             log.debug("Received Lookup from {}", clientAddress);
         }
         long clientRequestId = lookup.getRequestId();
+        if (lookupCache != null && isLookupRetry(lookup)) {
+            // The cached owner may be stale, e.g. after the topic was unloaded or transferred
+            invalidateCachedLookup(lookup.getTopic());
+        } else if (lookupCache != null) {
+            String brokerUrl = lookupCache.getLookup(proxyConnection.clientAuthRole, lookup.getTopic());
+            if (brokerUrl != null) {
+                cachedLookupTimes.put(lookup.getTopic(), System.nanoTime());
+                LOOKUP_REQUESTS.inc();
+                writeAndFlush(Commands.newLookupResponse(brokerUrl, brokerUrl, true,
+                        LookupType.Connect, clientRequestId, true /* this is coming from proxy */));
+                return;
+            }
+        }
         if (lookupRequestSemaphore.tryAcquire()) {
             try {
                 LOOKUP_REQUESTS.inc();
@@ -125,6 +155,7 @@ public class LookupProxyHandler {
     private void performLookup(long clientRequestId, String topic, String brokerServiceUrl, boolean authoritative,
             int numberOfRetries) {
         if (numberOfRetries == 0) {
+            invalidateCachedLookup(topic);
             writeAndFlush(Commands.newLookupErrorResponse(ServerError.ServiceNotReady,
                     "Reached max number of redirections", clientRequestId));
             return;
@@ -153,11 +184,14 @@ public class LookupProxyHandler {
             clientCnx.newLookup(command, requestId).whenComplete((r, t) -> {
                 if (t != null) {
                     log.warn("[{}] Failed to lookup topic {}: {}", clientAddress, topic, t.getMessage());
+                    invalidateCachedLookup(topic);
                     writeAndFlush(
                         Commands.newLookupErrorResponse(getServerError(t), t.getMessage(), clientRequestId));
                 } else {
                     String brokerUrl = resolveBrokerUrlFromLookupDataResult(r);
                     if (r.redirect) {
+                        // The topic may be moving, don't answer from the cache until it's resolved again
+                        invalidateCachedLookup(topic);
                         // Need to try the lookup again on a different broker
                         performLookup(clientRequestId, topic, brokerUrl, r.authoritative, numberOfRetries - 1);
                     } else {
@@ -173,6 +207,9 @@ public class LookupProxyHandler {
                                             + " with clientReq Id '{}' and lookup-broker {}",
                                     addr, topic, clientRequestId, brokerUrl);
                         }
+                        if (lookupCache != null) {
+                            lookupCache.putLookup(proxyConnection.clientAuthRole, topic, brokerUrl);
+                        }
                         writeAndFlush(Commands.newLookupResponse(brokerUrl, brokerUrl, true,
                             LookupType.Connect, clientRequestId, true /* this is coming from proxy */));
                     }
@@ -181,12 +218,36 @@ public class LookupProxyHandler {
             });
         }).exceptionally(ex -> {
             // Failed to connect to backend broker
+            invalidateCachedLookup(topic);
             writeAndFlush(
                     Commands.newLookupErrorResponse(getServerError(ex), ex.getMessage(), clientRequestId));
             return null;
         });
     }
 
+    /**
+     * A lookup is retried when it is authoritative, or when the client looks up again a topic it was served from the
+     * cache on this connection while the result could still be cached, most likely because the broker failed it.
+     */
+    private boolean isLookupRetry(CommandLookupTopic lookup) {
+        Long cachedLookupTime = cachedLookupTimes.remove(lookup.getTopic());
+        return lookup.isAuthoritative()
+                || (cachedLookupTime != null && System.nanoTime() - cachedLookupTime < lookupCacheTtlNanos);
+    }
+
+    private void invalidateCachedLookup(String topic) {
+        if (lookupCache != null) {
+            lookupCache.invalidateLookup(proxyConnection.clientAuthRole, topic);
+        }
+    }
+
+    private void invalidateCachedPartitionedMetadata(String topic, boolean metadataAutoCreationEnabled) {
+        if (lookupCache != null) {
+            lookupCache.invalidatePartitionedMetadata(proxyConnection.clientAuthRole, topic,
+                    metadataAutoCreationEnabled);
+        }
+    }
+
     protected String resolveBrokerUrlFromLookupDataResult(BinaryProtoLookupService.LookupDataResult r) {
         return connectWithTLS ? r.brokerUrlTls : r.brokerUrl;
     }
@@ -197,6 +258,15 @@ public class LookupProxyHandler {
             log.debug("[{}] Received PartitionMetadataLookup", clientAddress);
         }
         final long clientRequestId = partitionMetadata.getRequestId();
+        if (lookupCache != null) {
+            Integer partitions = lookupCache.getPartitionedMetadata(proxyConnection.clientAuthRole,
+                    TopicName.toFullTopicName(partitionMetadata.getTopic()),
+                    partitionMetadata.isMetadataAutoCreationEnabled());
+            if (partitions != null) {
+                writeAndFlush(Commands.newPartitionMetadataResponse(partitions, clientRequestId));
+                return;
+            }
+        }
         if (lookupRequestSemaphore.tryAcquire()) {
             try {
                 handlePartitionMetadataResponse(partitionMetadata, clientRequestId);
@@ -215,13 +285,14 @@ public class LookupProxyHandler {
     }
 
     /**
-     *   Always get partition metadata from broker service.
+     *   Get partition metadata from broker service, when it's not cached.
      *
      *
      **/
     private void handlePartitionMetadataResponse(CommandPartitionedTopicMetadata partitionMetadata,
             long clientRequestId) {
         String topicName = TopicName.toFullTopicName(partitionMetadata.getTopic());
+        boolean metadataAutoCreationEnabled = partitionMetadata.isMetadataAutoCreationEnabled();
 
         String serviceUrl = getBrokerServiceUrl(clientRequestId);
         if (serviceUrl == null) {
@@ -242,15 +313,20 @@ public class LookupProxyHandler {
             long requestId = proxyConnection.newRequestId();
             ByteBuf command;
             command = Commands.newPartitionMetadataRequest(topicName.toString(), requestId,
-                    partitionMetadata.isMetadataAutoCreationEnabled());
+                    metadataAutoCreationEnabled);
             clientCnx.newLookup(command, requestId).whenComplete((r, t) -> {
                 if (t != null) {
                     log.warn("[{}] failed to get Partitioned metadata : {}", topicName,
                         t.getMessage(), t);
                     PulsarClientException pce = PulsarClientException.unwrap(t);
+                    invalidateCachedPartitionedMetadata(topicName, metadataAutoCreationEnabled);
                     writeAndFlush(Commands.newLookupErrorResponse(clientCnx.revertClientExToErrorCode(pce),
                             t.getMessage(), clientRequestId));
                 } else {
+                    if (lookupCache != null) {
+                        lookupCache.putPartitionedMetadata(proxyConnection.clientAuthRole, topicName,
+                                metadataAutoCreationEnabled, r.partitions);
+                    }
                     writeAndFlush(
                         Commands.newPartitionMetadataResponse(r.partitions, clientRequestId));
                 }
@@ -258,6 +334,7 @@ public class LookupProxyHandler {
             });
         }).exceptionally(ex -> {
             // Failed to connect to backend broker
+            invalidateCachedPartitionedMetadata(topicName, metadataAutoCreationEnabled);
             writeAndFlush(Commands.newPartitionMetadataResponse(getServerError(ex),
                     ex.getMessage(), clientRequestId));
             return null;
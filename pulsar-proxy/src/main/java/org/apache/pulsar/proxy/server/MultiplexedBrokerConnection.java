@@ -0,0 +1,634 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.proxy.server;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.handler.ssl.SslHandler;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import org.apache.pulsar.PulsarVersion;
+import org.apache.pulsar.client.api.Authentication;
+import org.apache.pulsar.client.api.AuthenticationDataProvider;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
+import org.apache.pulsar.common.api.AuthData;
+import org.apache.pulsar.common.api.proto.BaseCommand;
+import org.apache.pulsar.common.api.proto.CommandAckResponse;
+import org.apache.pulsar.common.api.proto.CommandAuthChallenge;
+import org.apache.pulsar.common.api.proto.CommandCloseConsumer;
+import org.apache.pulsar.common.api.proto.CommandCloseProducer;
+import org.apache.pulsar.common.api.proto.CommandConnected;
+import org.apache.pulsar.common.api.proto.CommandError;
+import org.apache.pulsar.common.api.proto.CommandProducerSuccess;
+import org.apache.pulsar.common.api.proto.CommandTopicMigrated;
+import org.apache.pulsar.common.api.proto.CommandWatchTopicListSuccess;
+import org.apache.pulsar.common.api.proto.FeatureFlags;
+import org.apache.pulsar.common.protocol.Commands;
+import org.apache.pulsar.common.protocol.PulsarHandler;
+import org.apache.pulsar.common.util.PulsarSslFactory;
+import org.apache.pulsar.common.util.SecurityUtility;
+import org.apache.pulsar.common.util.netty.EventLoopUtil;
+import org.apache.pulsar.common.util.netty.NettyChannelUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A connection from the proxy to a broker, shared by the client connections relayed with
+ * {@link MultiplexedProxyHandler}.
+ *
+ * <p>The connection is authenticated with the credentials of the proxy and carries the role of the clients as
+ * original principal, the broker authorizes the operations per connection so a connection is only shared by the
+ * clients with the same role. The producer, consumer, topic list watcher and request ids chosen by the clients are only
+ * unique per client connection, they are replaced by ids unique on this connection when the commands are relayed to
+ * the broker, and the ids of the clients are restored in the commands relayed back.
+ */
+public class MultiplexedBrokerConnection extends PulsarHandler {
+
+    /**
+     * The clients sharing a connection to a broker must have the same role, and use the same protocol version and
+     * features, which are negotiated per connection.
+     */
+    record Key(String brokerHostAndPort, String originalPrincipal, int protocolVersion, int featureFlags) {
+        private static final int SUPPORTS_BROKER_ENTRY_METADATA = 1;
+        private static final int SUPPORTS_PARTIAL_PRODUCER = 1 << 1;
+        private static final int SUPPORTS_TOPIC_WATCHERS = 1 << 2;
+        private static final int SUPPORTS_GET_PARTITIONED_METADATA_WITHOUT_AUTO_CREATION = 1 << 3;
+        private static final int SUPPORTS_REPL_DEDUP_BY_LID_AND_EID = 1 << 4;
+
+        static Key of(String brokerHostAndPort, String originalPrincipal, int protocolVersion,
+                      FeatureFlags clientFeatures) {
+            int featureFlags = 0;
+            if (clientFeatures.isSupportsBrokerEntryMetadata()) {
+                featureFlags |= SUPPORTS_BROKER_ENTRY_METADATA;
+            }
+            if (clientFeatures.isSupportsPartialProducer()) {
+                featureFlags |= SUPPORTS_PARTIAL_PRODUCER;
+            }
+            if (clientFeatures.isSupportsTopicWatchers()) {
+                featureFlags |= SUPPORTS_TOPIC_WATCHERS;
+            }
+            if (clientFeatures.isSupportsGetPartitionedMetadataWithoutAutoCreation()) {
+                featureFlags |= SUPPORTS_GET_PARTITIONED_METADATA_WITHOUT_AUTO_CREATION;
+            }
+            if (clientFeatures.isSupportsReplDedupByLidAndEid()) {
+                featureFlags |= SUPPORTS_REPL_DEDUP_BY_LID_AND_EID;
+            }
+            return new Key(brokerHostAndPort, originalPrincipal, protocolVersion, featureFlags);
+        }
+
+        FeatureFlags toFeatureFlags() {
+            return new FeatureFlags()
+                    // The proxy answers the auth challenges of the broker with its own credentials
+                    .setSupportsAuthRefresh(true)
+                    .setSupportsBrokerEntryMetadata((featureFlags & SUPPORTS_BROKER_ENTRY_METADATA) != 0)
+                    .setSupportsPartialProducer((featureFlags & SUPPORTS_PARTIAL_PRODUCER) != 0)
+                    .setSupportsTopicWatchers((featureFlags & SUPPORTS_TOPIC_WATCHERS) != 0)
+                    .setSupportsGetPartitionedMetadataWithoutAutoCreation(
+                            (featureFlags & SUPPORTS_GET_PARTITIONED_METADATA_WITHOUT_AUTO_CREATION) != 0)
+                    .setSupportsReplDedupByLidAndEid((featureFlags & SUPPORTS_REPL_DEDUP_BY_LID_AND_EID) != 0);
+        }
+    }
+
+    /**
+     * The client connection owning a producer, consumer, watcher or pending request, with the id it uses for it.
+     */
+    private record Route(MultiplexedProxyHandler session, long clientId) {
+    }
+
+    enum State {
+        Connecting, Connected, Closed
+    }
+
+    private final ProxyService service;
+    private final Key key;
+    private final String remoteHostName;
+    private final Authentication authentication;
+    private AuthenticationDataProvider authenticationDataProvider;
+    private volatile Channel channel;
+    private final CompletableFuture<MultiplexedBrokerConnection> connectFuture = new CompletableFuture<>();
+    private volatile State state = State.Connecting;
+    private volatile int maxMessageSize = Commands.INVALID_MAX_MESSAGE_SIZE;
+    private volatile int protocolVersion;
+    private volatile boolean supportsTopicWatchers;
+
+    private final Set<MultiplexedProxyHandler> sessions = ConcurrentHashMap.newKeySet();
+    // The close of the connection once it has no sessions for the idle timeout, guarded by this
+    private ScheduledFuture<?> idleCloseTask;
+    private final Map<Long, Route> producers = new ConcurrentHashMap<>();
+    private final Map<Long, Route> consumers = new ConcurrentHashMap<>();
+    private final Map<Long, Route> watchers = new ConcurrentHashMap<>();
+    private final Map<Long, Route> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicLong producerIdGenerator = new AtomicLong();
+    private final AtomicLong consumerIdGenerator = new AtomicLong();
+    private final AtomicLong watcherIdGenerator = new AtomicLong();
+    private final AtomicLong requestIdGenerator = new AtomicLong();
+
+    // Only accessed in the event loop of the connection
+    private final BaseCommand cmd = new BaseCommand();
+
+    private MultiplexedBrokerConnection(ProxyService service, Key key) {
+        super(service.getConfiguration().getKeepAliveIntervalSeconds(), TimeUnit.SECONDS);
+        this.service = service;
+        this.key = key;
+        this.remoteHostName = DirectProxyHandler.parseHost(key.brokerHostAndPort());
+        this.authentication = service.getProxyClientAuthenticationPlugin();
+    }
+
+    static CompletableFuture<MultiplexedBrokerConnection> connect(ProxyService service, Key key,
+                                                                  InetSocketAddress brokerAddress) {
+        MultiplexedBrokerConnection connection;
+        try {
+            connection = new MultiplexedBrokerConnection(service, key);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        ProxyConfiguration config = service.getConfiguration();
+        EventLoopGroup workerGroup = service.getWorkerGroup();
+        PulsarSslFactory sslFactory = config.isTlsEnabledWithBroker()
+                ? DirectProxyHandler.createSslFactory(service, connection.authentication, connection.remoteHostName)
+                : null;
+
+        Bootstrap b = new Bootstrap();
+        b.option(ChannelOption.ALLOCATOR, PulsarByteBufAllocator.DEFAULT);
+        if (config.getBrokerProxyConnectTimeoutMs() > 0) {
+            b.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getBrokerProxyConnectTimeoutMs());
+        }
+        b.group(workerGroup)
+                .channel(EventLoopUtil.getClientSocketChannelClass(workerGroup))
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast("consolidation", new FlushConsolidationHandler(1024, true));
+                        if (sslFactory != null) {
+                            SslHandler handler = new SslHandler(sslFactory.createClientSslEngine(ch.alloc(),
+                                    brokerAddress.getHostString(), brokerAddress.getPort()));
+                            if (config.isTlsHostnameVerificationEnabled()) {
+                                SecurityUtility.configureSSLHandler(handler);
+                            }
+                            ch.pipeline().addLast(DirectProxyHandler.TLS_HANDLER, handler);
+                        }
+                        ch.pipeline().addLast("frameDecoder", new LengthFieldBasedFrameDecoder(
+                                config.getMaxMessageSize() + Commands.MESSAGE_SIZE_FRAME_PADDING, 0, 4, 0, 4));
+                        ch.pipeline().addLast("handler", connection);
+                    }
+                });
+        ChannelFuture f = b.connect(brokerAddress);
+        connection.channel = f.channel();
+        f.addListener(future -> {
+            if (!future.isSuccess()) {
+                log.warn("Establishing multiplexed connection to {} ({}) failed", brokerAddress,
+                        key.brokerHostAndPort(), future.cause());
+                connection.connectFuture.completeExceptionally(future.cause());
+            }
+        });
+        return connection.connectFuture;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        super.channelActive(ctx);
+        authenticationDataProvider = authentication.getAuthData(remoteHostName);
+        AuthData authData = authenticationDataProvider.authenticate(AuthData.INIT_AUTH_DATA);
+        ByteBuf command = Commands.newConnect(authentication.getAuthMethodName(), authData, key.protocolVersion(),
+                "Pulsar-Proxy-v" + PulsarVersion.getVersion(), null /* target broker */,
+                key.originalPrincipal(), null /* original auth data */, null /* original auth method */,
+                PulsarVersion.getVersion(), key.toFeatureFlags());
+        NettyChannelUtil.writeAndFlushWithVoidPromise(ctx, command);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        super.channelInactive(ctx);
+        state = State.Closed;
+        log.info("[{}] Multiplexed connection to broker closed, closing {} client connections", this,
+                sessions.size());
+        connectFuture.completeExceptionally(
+                new PulsarClientException.ConnectException("Connection to " + key.brokerHostAndPort() + " closed"));
+        service.getMultiplexedBrokerConnectionPool().remove(key, this);
+        // The clients reconnect, and recreate their producers and consumers on a new connection
+        sessions.forEach(MultiplexedProxyHandler::brokerConnectionClosed);
+        sessions.clear();
+        producers.clear();
+        consumers.clear();
+        watchers.clear();
+        pendingRequests.clear();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.warn("[{}] Caught exception on multiplexed broker connection: {}", this, cause.getMessage(), cause);
+        ctx.close();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        // Stop reading from the clients while the broker connection is not writable
+        boolean writable = ctx.channel().isWritable();
+        sessions.forEach(session -> session.setAutoRead(writable));
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    protected boolean isHandshakeCompleted() {
+        return state == State.Connected;
+    }
+
+    @Override
+    protected void handleConnected(CommandConnected connected) {
+        checkArgument(state == State.Connecting, "Unexpected state %s", state);
+        if (connected.hasMaxMessageSize()) {
+            maxMessageSize = connected.getMaxMessageSize();
+            ctx.pipeline().replace("frameDecoder", "frameDecoder", new LengthFieldBasedFrameDecoder(
+                    maxMessageSize + Commands.MESSAGE_SIZE_FRAME_PADDING, 0, 4, 0, 4));
+        }
+        protocolVersion = connected.getProtocolVersion();
+        supportsTopicWatchers = connected.hasFeatureFlags() && connected.getFeatureFlags().isSupportsTopicWatchers();
+        setRemoteEndpointProtocolVersion(protocolVersion);
+        state = State.Connected;
+        log.info("[{}] Multiplexed connection to broker {} established for role {}", this, key.brokerHostAndPort(),
+                key.originalPrincipal());
+        connectFuture.complete(this);
+        // Closed if the client which opened the connection went away before using it
+        synchronized (this) {
+            if (sessions.isEmpty()) {
+                scheduleIdleClose();
+            }
+        }
+    }
+
+    @Override
+    protected void handleError(CommandError error) {
+        // Relayed once connected, an error at this point is a failed handshake
+        log.warn("[{}] Failed to connect to broker {}: {}", this, key.brokerHostAndPort(), error.getMessage());
+        connectFuture.completeExceptionally(new PulsarClientException(error.getMessage()));
+        ctx.close();
+    }
+
+    @Override
+    protected void handleAuthChallenge(CommandAuthChallenge authChallenge) {
+        checkArgument(authChallenge.hasChallenge());
+        checkArgument(authChallenge.getChallenge().hasAuthData());
+
+        if (Arrays.equals(AuthData.REFRESH_AUTH_DATA_BYTES, authChallenge.getChallenge().getAuthData())) {
+            try {
+                authenticationDataProvider = authentication.getAuthData(remoteHostName);
+            } catch (PulsarClientException e) {
+                log.error("{} Error when refreshing authentication data provider: {}", this, e);
+                return;
+            }
+        }
+
+        try {
+            AuthData authData = authenticationDataProvider
+                    .authenticate(AuthData.of(authChallenge.getChallenge().getAuthData()));
+            checkState(!authData.isComplete());
+            NettyChannelUtil.writeAndFlushWithVoidPromise(ctx, Commands.newAuthResponse(
+                    authentication.getAuthMethodName(), authData, key.protocolVersion(),
+                    PulsarVersion.getVersion()));
+        } catch (Exception e) {
+            log.error("[{}] Error mutual verify", this, e);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (state != State.Connected) {
+            super.channelRead(ctx, msg);
+            return;
+        }
+        ByteBuf frame = (ByteBuf) msg;
+        frame.markReaderIndex();
+        int cmdSize = (int) frame.readUnsignedInt();
+        cmd.parseFrom(frame, cmdSize);
+        switch (cmd.getType()) {
+            case PING, PONG, AUTH_CHALLENGE -> {
+                // Handled by the proxy itself
+                frame.resetReaderIndex();
+                super.channelRead(ctx, msg);
+            }
+            default -> {
+                try {
+                    messageReceived();
+                    MultiplexedProxyHandler session = restoreClientIds(cmd);
+                    if (session != null) {
+                        session.writeToClient(newFrame(cmd, frame));
+                    } else if (log.isDebugEnabled()) {
+                        log.debug("[{}] Dropping {} from broker, the client is gone", this, cmd.getType());
+                    }
+                } finally {
+                    frame.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace the ids of the connection in a command received from the broker by the ids of the client it is for.
+     *
+     * @return the client the command is for, or null if the command is not for any current client
+     */
+    private MultiplexedProxyHandler restoreClientIds(BaseCommand cmd) {
+        return switch (cmd.getType()) {
+            case SUCCESS -> restoreRequestId(cmd.getSuccess().getRequestId(), cmd.getSuccess()::setRequestId, true);
+            case ERROR -> restoreRequestId(cmd.getError().getRequestId(), cmd.getError()::setRequestId, true);
+            case PRODUCER_SUCCESS -> {
+                CommandProducerSuccess producerSuccess = cmd.getProducerSuccess();
+                // A producer waiting for the exclusive access gets another response once it is ready
+                boolean completed = !producerSuccess.hasProducerReady() || producerSuccess.isProducerReady();
+                yield restoreRequestId(producerSuccess.getRequestId(), producerSuccess::setRequestId, completed);
+            }
+            case SEND_RECEIPT -> restoreId(producers, cmd.getSendReceipt().getProducerId(),
+                    cmd.getSendReceipt()::setProducerId, false);
+            case SEND_ERROR -> restoreId(producers, cmd.getSendError().getProducerId(),
+                    cmd.getSendError()::setProducerId, false);
+            case MESSAGE -> restoreId(consumers, cmd.getMessage().getConsumerId(),
+                    cmd.getMessage()::setConsumerId, false);
+            case ACTIVE_CONSUMER_CHANGE -> restoreId(consumers, cmd.getActiveConsumerChange().getConsumerId(),
+                    cmd.getActiveConsumerChange()::setConsumerId, false);
+            case REACHED_END_OF_TOPIC -> restoreId(consumers, cmd.getReachedEndOfTopic().getConsumerId(),
+                    cmd.getReachedEndOfTopic()::setConsumerId, false);
+            case ACK_RESPONSE -> {
+                CommandAckResponse ackResponse = cmd.getAckResponse();
+                if (ackResponse.hasRequestId()) {
+                    restoreRequestId(ackResponse.getRequestId(), ackResponse::setRequestId, true);
+                }
+                yield restoreId(consumers, ackResponse.getConsumerId(), ackResponse::setConsumerId, false);
+            }
+            case CLOSE_PRODUCER -> {
+                // Closed by the broker, the client recreates the producer with the same id
+                CommandCloseProducer closeProducer = cmd.getCloseProducer();
+                yield restoreId(producers, closeProducer.getProducerId(), closeProducer::setProducerId, true);
+            }
+            case CLOSE_CONSUMER -> {
+                CommandCloseConsumer closeConsumer = cmd.getCloseConsumer();
+                yield restoreId(consumers, closeConsumer.getConsumerId(), closeConsumer::setConsumerId, true);
+            }
+            case TOPIC_MIGRATED -> {
+                CommandTopicMigrated topicMigrated = cmd.getTopicMigrated();
+                Map<Long, Route> resources =
+                        topicMigrated.getResourceType() == CommandTopicMigrated.ResourceType.Producer
+                                ? producers : consumers;
+                yield restoreId(resources, topicMigrated.getResourceId(), topicMigrated::setResourceId, false);
+            }
+            case WATCH_TOPIC_LIST_SUCCESS -> {
+                CommandWatchTopicListSuccess watchSuccess = cmd.getWatchTopicListSuccess();
+                restoreId(watchers, watchSuccess.getWatcherId(), watchSuccess::setWatcherId, false);
+                yield restoreRequestId(watchSuccess.getRequestId(), watchSuccess::setRequestId, true);
+            }
+            case WATCH_TOPIC_UPDATE -> restoreId(watchers, cmd.getWatchTopicUpdate().getWatcherId(),
+                    cmd.getWatchTopicUpdate()::setWatcherId, false);
+            case LOOKUP_RESPONSE -> restoreRequestId(cmd.getLookupTopicResponse().getRequestId(),
+                    cmd.getLookupTopicResponse()::setRequestId, true);
+            case PARTITIONED_METADATA_RESPONSE -> restoreRequestId(cmd.getPartitionMetadataResponse().getRequestId(),
+                    cmd.getPartitionMetadataResponse()::setRequestId, true);
+            case CONSUMER_STATS_RESPONSE -> restoreRequestId(cmd.getConsumerStatsResponse().getRequestId(),
+                    cmd.getConsumerStatsResponse()::setRequestId, true);
+            case GET_LAST_MESSAGE_ID_RESPONSE -> restoreRequestId(cmd.getGetLastMessageIdResponse().getRequestId(),
+                    cmd.getGetLastMessageIdResponse()::setRequestId, true);
+            case GET_TOPICS_OF_NAMESPACE_RESPONSE -> restoreRequestId(
+                    cmd.getGetTopicsOfNamespaceResponse().getRequestId(),
+                    cmd.getGetTopicsOfNamespaceResponse()::setRequestId, true);
+            case GET_SCHEMA_RESPONSE -> restoreRequestId(cmd.getGetSchemaResponse().getRequestId(),
+                    cmd.getGetSchemaResponse()::setRequestId, true);
+            case GET_OR_CREATE_SCHEMA_RESPONSE -> restoreRequestId(cmd.getGetOrCreateSchemaResponse().getRequestId(),
+                    cmd.getGetOrCreateSchemaResponse()::setRequestId, true);
+            case TC_CLIENT_CONNECT_RESPONSE -> restoreRequestId(cmd.getTcClientConnectResponse().getRequestId(),
+                    cmd.getTcClientConnectResponse()::setRequestId, true);
+            case NEW_TXN_RESPONSE -> restoreRequestId(cmd.getNewTxnResponse().getRequestId(),
+                    cmd.getNewTxnResponse()::setRequestId, true);
+            case ADD_PARTITION_TO_TXN_RESPONSE -> restoreRequestId(cmd.getAddPartitionToTxnResponse().getRequestId(),
+                    cmd.getAddPartitionToTxnResponse()::setRequestId, true);
+            case ADD_SUBSCRIPTION_TO_TXN_RESPONSE -> restoreRequestId(
+                    cmd.getAddSubscriptionToTxnResponse().getRequestId(),
+                    cmd.getAddSubscriptionToTxnResponse()::setRequestId, true);
+            case END_TXN_RESPONSE -> restoreRequestId(cmd.getEndTxnResponse().getRequestId(),
+                    cmd.getEndTxnResponse()::setRequestId, true);
+            default -> {
+                log.warn("[{}] Unexpected command {} from broker on multiplexed connection", this, cmd.getType());
+                yield null;
+            }
+        };
+    }
+
+    private MultiplexedProxyHandler restoreId(Map<Long, Route> routes, long id, LongConsumer setter,
+                                              boolean remove) {
+        Route route = remove ? routes.remove(id) : routes.get(id);
+        if (route == null) {
+            return null;
+        }
+        setter.accept(route.clientId());
+        if (remove) {
+            route.session().resourceClosedByBroker(routes == producers, route.clientId());
+        }
+        return route.session();
+    }
+
+    private MultiplexedProxyHandler restoreRequestId(long requestId, LongConsumer setter, boolean completed) {
+        Route route = completed ? pendingRequests.remove(requestId) : pendingRequests.get(requestId);
+        if (route == null) {
+            return null;
+        }
+        setter.accept(route.clientId());
+        return route.session();
+    }
+
+    /**
+     * Frame a command rewritten by the proxy with the rest of the frame it was read from, like the message payload.
+     */
+    static ByteBuf newFrame(BaseCommand cmd, ByteBuf rest) {
+        int cmdSize = cmd.getSerializedSize();
+        int headerSize = 4 + 4 + cmdSize;
+        ByteBuf header = PulsarByteBufAllocator.DEFAULT.buffer(headerSize, headerSize);
+        header.writeInt(4 + cmdSize + rest.readableBytes());
+        header.writeInt(cmdSize);
+        cmd.writeTo(header);
+        if (!rest.isReadable()) {
+            return header;
+        }
+        CompositeByteBuf frame = PulsarByteBufAllocator.DEFAULT.compositeDirectBuffer(2);
+        frame.addComponents(true, header, rest.retainedSlice());
+        return frame;
+    }
+
+    void write(ByteBuf frame) {
+        channel.writeAndFlush(frame, channel.voidPromise());
+    }
+
+    synchronized boolean addSession(MultiplexedProxyHandler session) {
+        sessions.add(session);
+        if (state == State.Closed) {
+            sessions.remove(session);
+            return false;
+        }
+        if (idleCloseTask != null) {
+            idleCloseTask.cancel(false);
+            idleCloseTask = null;
+        }
+        // The writability changes of the connection before the session was added are not relayed to it
+        session.setAutoRead(channel.isWritable());
+        return true;
+    }
+
+    void removeSession(MultiplexedProxyHandler session) {
+        synchronized (this) {
+            if (sessions.remove(session) && sessions.isEmpty()) {
+                scheduleIdleClose();
+            }
+        }
+        pendingRequests.values().removeIf(route -> route.session() == session);
+    }
+
+    private void scheduleIdleClose() {
+        if (state == State.Closed) {
+            return;
+        }
+        if (idleCloseTask != null) {
+            idleCloseTask.cancel(false);
+        }
+        idleCloseTask = channel.eventLoop().schedule(this::closeIfIdle,
+                service.getConfiguration().getBrokerProxyMultiplexedConnectionIdleTimeoutSeconds(),
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Close the connection if no session was added since the idle timeout started. It is first removed from the
+     * pool, so that the new clients don't get a connection being closed.
+     */
+    private void closeIfIdle() {
+        if (!sessions.isEmpty()) {
+            return;
+        }
+        service.getMultiplexedBrokerConnectionPool().remove(key, this);
+        synchronized (this) {
+            // A session added meanwhile keeps using the connection, which is closed once idle again
+            if (!sessions.isEmpty() || state == State.Closed) {
+                return;
+            }
+            state = State.Closed;
+            idleCloseTask = null;
+        }
+        log.info("[{}] Closing the idle multiplexed connection to broker {}", this, key.brokerHostAndPort());
+        close();
+    }
+
+    long registerProducer(MultiplexedProxyHandler session, long clientProducerId) {
+        return register(producers, producerIdGenerator, session, clientProducerId);
+    }
+
+    long registerConsumer(MultiplexedProxyHandler session, long clientConsumerId) {
+        return register(consumers, consumerIdGenerator, session, clientConsumerId);
+    }
+
+    long registerWatcher(MultiplexedProxyHandler session, long clientWatcherId) {
+        return register(watchers, watcherIdGenerator, session, clientWatcherId);
+    }
+
+    long registerRequest(MultiplexedProxyHandler session, long clientRequestId) {
+        return register(pendingRequests, requestIdGenerator, session, clientRequestId);
+    }
+
+    private static long register(Map<Long, Route> routes, AtomicLong idGenerator, MultiplexedProxyHandler session,
+                                 long clientId) {
+        long id = idGenerator.getAndIncrement();
+        routes.put(id, new Route(session, clientId));
+        return id;
+    }
+
+    void unregisterProducer(long producerId) {
+        producers.remove(producerId);
+    }
+
+    void unregisterConsumer(long consumerId) {
+        consumers.remove(consumerId);
+    }
+
+    void unregisterWatcher(long watcherId) {
+        watchers.remove(watcherId);
+    }
+
+    /**
+     * Release the producers, consumers and watchers of a client that disconnected from the proxy.
+     */
+    void closeResources(Iterable<Long> producerIds, Iterable<Long> consumerIds, Iterable<Long> watcherIds) {
+        if (state != State.Connected) {
+            return;
+        }
+        // The responses are dropped, as the requests are not registered
+        for (long producerId : producerIds) {
+            producers.remove(producerId);
+            write(Commands.newCloseProducer(producerId, requestIdGenerator.getAndIncrement()));
+        }
+        for (long consumerId : consumerIds) {
+            consumers.remove(consumerId);
+            write(Commands.newCloseConsumer(consumerId, requestIdGenerator.getAndIncrement(), null, null));
+        }
+        for (long watcherId : watcherIds) {
+            watchers.remove(watcherId);
+            write(Commands.serializeWithSize(
+                    Commands.newWatchTopicListClose(watcherId, requestIdGenerator.getAndIncrement())));
+        }
+    }
+
+    Key getKey() {
+        return key;
+    }
+
+    int getMaxMessageSize() {
+        return maxMessageSize;
+    }
+
+    int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    boolean isSupportsTopicWatchers() {
+        return supportsTopicWatchers;
+    }
+
+    int getSessionCount() {
+        return sessions.size();
+    }
+
+    void close() {
+        channel.close();
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(MultiplexedBrokerConnection.class);
+}
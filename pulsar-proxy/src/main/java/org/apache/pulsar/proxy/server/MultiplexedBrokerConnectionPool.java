@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.proxy.server;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.pulsar.common.api.proto.FeatureFlags;
+
+/**
+ * The connections from the proxy to the brokers shared by the clients, when
+ * {@link ProxyConfiguration#isBrokerProxyConnectionMultiplexingEnabled()} is set.
+ *
+ * <p>Up to {@link ProxyConfiguration#getBrokerProxyMultiplexedConnectionsPerBroker()} connections are opened for each
+ * broker and each {@link MultiplexedBrokerConnection.Key}, the clients are spread randomly over them.
+ */
+public class MultiplexedBrokerConnectionPool {
+
+    private final ProxyService service;
+    private final int connectionsPerBroker;
+    private final Map<MultiplexedBrokerConnection.Key,
+            Map<Integer, CompletableFuture<MultiplexedBrokerConnection>>> pool = new ConcurrentHashMap<>();
+
+    MultiplexedBrokerConnectionPool(ProxyService service) {
+        this.service = service;
+        this.connectionsPerBroker =
+                Math.max(1, service.getConfiguration().getBrokerProxyMultiplexedConnectionsPerBroker());
+    }
+
+    CompletableFuture<MultiplexedBrokerConnection> getConnection(String brokerHostAndPort,
+                                                                 InetSocketAddress brokerAddress,
+                                                                 String originalPrincipal, int protocolVersion,
+                                                                 FeatureFlags clientFeatures) {
+        MultiplexedBrokerConnection.Key key =
+                MultiplexedBrokerConnection.Key.of(brokerHostAndPort, originalPrincipal, protocolVersion,
+                        clientFeatures);
+        int index = ThreadLocalRandom.current().nextInt(connectionsPerBroker);
+        Map<Integer, CompletableFuture<MultiplexedBrokerConnection>> connections =
+                pool.computeIfAbsent(key, __ -> new ConcurrentHashMap<>());
+        CompletableFuture<MultiplexedBrokerConnection> future = connections.computeIfAbsent(index,
+                __ -> MultiplexedBrokerConnection.connect(service, key, brokerAddress));
+        future.exceptionally(__ -> {
+            connections.remove(index, future);
+            return null;
+        });
+        return future;
+    }
+
+    void remove(MultiplexedBrokerConnection.Key key, MultiplexedBrokerConnection connection) {
+        Map<Integer, CompletableFuture<MultiplexedBrokerConnection>> connections = pool.get(key);
+        if (connections != null) {
+            connections.values().removeIf(future -> future.isDone() && !future.isCompletedExceptionally()
+                    && future.join() == connection);
+        }
+    }
+
+    int getConnectionCount() {
+        return pool.values().stream().mapToInt(Map::size).sum();
+    }
+
+    void close() {
+        pool.values().forEach(connections -> connections.values().forEach(future ->
+                future.thenAccept(MultiplexedBrokerConnection::close)));
+        pool.clear();
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.proxy.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+import org.apache.pulsar.common.api.proto.BaseCommand;
+import org.apache.pulsar.common.api.proto.CommandAck;
+import org.apache.pulsar.common.api.proto.ServerError;
+import org.apache.pulsar.common.protocol.Commands;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Relays the commands of a client connected to the proxy over a {@link MultiplexedBrokerConnection} shared with other
+ * clients, instead of a connection of its own like {@link DirectProxyHandler}.
+ *
+ * <p>The ids of the producers, consumers, watchers and requests of the client are replaced by ids allocated by the
+ * shared connection, this handler keeps the ids of the producers, consumers and watchers of the client while they are
+ * open, the shared connection routes the commands of the broker back to the client.
+ */
+public class MultiplexedProxyHandler {
+
+    private final ProxyConnection proxyConnection;
+    private final Channel inboundChannel;
+    private final MultiplexedBrokerConnection brokerConnection;
+    // Ids of the client to ids on the broker connection
+    private final Map<Long, Long> producerIds = new ConcurrentHashMap<>();
+    private final Map<Long, Long> consumerIds = new ConcurrentHashMap<>();
+    private final Map<Long, Long> watcherIds = new ConcurrentHashMap<>();
+
+    // Only accessed in the event loop of the client connection
+    private final BaseCommand cmd = new BaseCommand();
+
+    MultiplexedProxyHandler(ProxyConnection proxyConnection, MultiplexedBrokerConnection brokerConnection) {
+        this.proxyConnection = proxyConnection;
+        this.inboundChannel = proxyConnection.ctx().channel();
+        this.brokerConnection = brokerConnection;
+    }
+
+    MultiplexedBrokerConnection getBrokerConnection() {
+        return brokerConnection;
+    }
+
+    /**
+     * Relay a frame received from the client to the broker.
+     *
+     * @return false if the frame is a command to be handled by the proxy connection itself, which keeps the ownership
+     *         of the frame
+     */
+    boolean relayToBroker(ByteBuf frame) {
+        frame.markReaderIndex();
+        int cmdSize = (int) frame.readUnsignedInt();
+        cmd.parseFrom(frame, cmdSize);
+        switch (cmd.getType()) {
+            case PING, PONG, AUTH_RESPONSE -> {
+                frame.resetReaderIndex();
+                return false;
+            }
+            default -> {
+                try {
+                    if (replaceClientIds(cmd)) {
+                        ProxyService.OPS_COUNTER.inc();
+                        ProxyService.BYTES_COUNTER.inc(frame.readableBytes() + cmdSize);
+                        brokerConnection.write(MultiplexedBrokerConnection.newFrame(cmd, frame));
+                    }
+                } finally {
+                    frame.release();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Replace the ids of the client in a command by the ids on the broker connection.
+     *
+     * @return false if the command is not relayed, because it refers to an unknown producer or consumer
+     */
+    private boolean replaceClientIds(BaseCommand cmd) {
+        switch (cmd.getType()) {
+            case PRODUCER -> {
+                long producerId = producerIds.computeIfAbsent(cmd.getProducer().getProducerId(),
+                        clientId -> brokerConnection.registerProducer(this, clientId));
+                cmd.getProducer().setProducerId(producerId);
+                replaceRequestId(cmd.getProducer().getRequestId(), cmd.getProducer()::setRequestId);
+                return true;
+            }
+            case SEND -> {
+                return replaceId(producerIds, cmd.getSend().getProducerId(), cmd.getSend()::setProducerId);
+            }
+            case CLOSE_PRODUCER -> {
+                long clientRequestId = cmd.getCloseProducer().getRequestId();
+                Long producerId = producerIds.remove(cmd.getCloseProducer().getProducerId());
+                if (producerId == null) {
+                    // Like the broker, closing an unknown producer succeeds
+                    writeToClient(Commands.newSuccess(clientRequestId));
+                    return false;
+                }
+                brokerConnection.unregisterProducer(producerId);
+                cmd.getCloseProducer().setProducerId(producerId);
+                replaceRequestId(clientRequestId, cmd.getCloseProducer()::setRequestId);
+                return true;
+            }
+            case SUBSCRIBE -> {
+                long consumerId = consumerIds.computeIfAbsent(cmd.getSubscribe().getConsumerId(),
+                        clientId -> brokerConnection.registerConsumer(this, clientId));
+                cmd.getSubscribe().setConsumerId(consumerId);
+                replaceRequestId(cmd.getSubscribe().getRequestId(), cmd.getSubscribe()::setRequestId);
+                return true;
+            }
+            case CLOSE_CONSUMER -> {
+                long clientRequestId = cmd.getCloseConsumer().getRequestId();
+                Long consumerId = consumerIds.remove(cmd.getCloseConsumer().getConsumerId());
+                if (consumerId == null) {
+                    writeToClient(Commands.newSuccess(clientRequestId));
+                    return false;
+                }
+                brokerConnection.unregisterConsumer(consumerId);
+                cmd.getCloseConsumer().setConsumerId(consumerId);
+                replaceRequestId(clientRequestId, cmd.getCloseConsumer()::setRequestId);
+                return true;
+            }
+            case FLOW -> {
+                return replaceId(consumerIds, cmd.getFlow().getConsumerId(), cmd.getFlow()::setConsumerId);
+            }
+            case REDELIVER_UNACKNOWLEDGED_MESSAGES -> {
+                return replaceId(consumerIds, cmd.getRedeliverUnacknowledgedMessages().getConsumerId(),
+                        cmd.getRedeliverUnacknowledgedMessages()::setConsumerId);
+            }
+            case ACK -> {
+                CommandAck ack = cmd.getAck();
+                if (!replaceId(consumerIds, ack.getConsumerId(), ack::setConsumerId)) {
+                    return false;
+                }
+                if (ack.hasRequestId()) {
+                    replaceRequestId(ack.getRequestId(), ack::setRequestId);
+                }
+                return true;
+            }
+            case UNSUBSCRIBE -> {
+                return replaceConsumerAndRequestIds(cmd.getUnsubscribe().getConsumerId(),
+                        cmd.getUnsubscribe()::setConsumerId, cmd.getUnsubscribe().getRequestId(),
+                        cmd.getUnsubscribe()::setRequestId);
+            }
+            case SEEK -> {
+                return replaceConsumerAndRequestIds(cmd.getSeek().getConsumerId(), cmd.getSeek()::setConsumerId,
+                        cmd.getSeek().getRequestId(), cmd.getSeek()::setRequestId);
+            }
+            case CONSUMER_STATS -> {
+                return replaceConsumerAndRequestIds(cmd.getConsumerStats().getConsumerId(),
+                        cmd.getConsumerStats()::setConsumerId, cmd.getConsumerStats().getRequestId(),
+                        cmd.getConsumerStats()::setRequestId);
+            }
+            case GET_LAST_MESSAGE_ID -> {
+                return replaceConsumerAndRequestIds(cmd.getGetLastMessageId().getConsumerId(),
+                        cmd.getGetLastMessageId()::setConsumerId, cmd.getGetLastMessageId().getRequestId(),
+                        cmd.getGetLastMessageId()::setRequestId);
+            }
+            case WATCH_TOPIC_LIST -> {
+                long watcherId = watcherIds.computeIfAbsent(cmd.getWatchTopicList().getWatcherId(),
+                        clientId -> brokerConnection.registerWatcher(this, clientId));
+                cmd.getWatchTopicList().setWatcherId(watcherId);
+                replaceRequestId(cmd.getWatchTopicList().getRequestId(), cmd.getWatchTopicList()::setRequestId);
+                return true;
+            }
+            case WATCH_TOPIC_LIST_CLOSE -> {
+                Long watcherId = watcherIds.remove(cmd.getWatchTopicListClose().getWatcherId());
+                if (watcherId == null) {
+                    return false;
+                }
+                brokerConnection.unregisterWatcher(watcherId);
+                cmd.getWatchTopicListClose().setWatcherId(watcherId);
+                replaceRequestId(cmd.getWatchTopicListClose().getRequestId(),
+                        cmd.getWatchTopicListClose()::setRequestId);
+                return true;
+            }
+            case LOOKUP -> replaceRequestId(cmd.getLookupTopic().getRequestId(), cmd.getLookupTopic()::setRequestId);
+            case PARTITIONED_METADATA -> replaceRequestId(cmd.getPartitionMetadata().getRequestId(),
+                    cmd.getPartitionMetadata()::setRequestId);
+            case GET_TOPICS_OF_NAMESPACE -> replaceRequestId(cmd.getGetTopicsOfNamespace().getRequestId(),
+                    cmd.getGetTopicsOfNamespace()::setRequestId);
+            case GET_SCHEMA -> replaceRequestId(cmd.getGetSchema().getRequestId(), cmd.getGetSchema()::setRequestId);
+            case GET_OR_CREATE_SCHEMA -> replaceRequestId(cmd.getGetOrCreateSchema().getRequestId(),
+                    cmd.getGetOrCreateSchema()::setRequestId);
+            case TC_CLIENT_CONNECT_REQUEST -> replaceRequestId(cmd.getTcClientConnectRequest().getRequestId(),
+                    cmd.getTcClientConnectRequest()::setRequestId);
+            case NEW_TXN -> replaceRequestId(cmd.getNewTxn().getRequestId(), cmd.getNewTxn()::setRequestId);
+            case ADD_PARTITION_TO_TXN -> replaceRequestId(cmd.getAddPartitionToTxn().getRequestId(),
+                    cmd.getAddPartitionToTxn()::setRequestId);
+            case ADD_SUBSCRIPTION_TO_TXN -> replaceRequestId(cmd.getAddSubscriptionToTxn().getRequestId(),
+                    cmd.getAddSubscriptionToTxn()::setRequestId);
+            case END_TXN -> replaceRequestId(cmd.getEndTxn().getRequestId(), cmd.getEndTxn()::setRequestId);
+            default -> {
+                log.warn("[{}] Unexpected command {} from client on multiplexed connection", inboundChannel,
+                        cmd.getType());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean replaceConsumerAndRequestIds(long clientConsumerId, LongConsumer consumerIdSetter,
+                                                 long clientRequestId, LongConsumer requestIdSetter) {
+        if (!replaceId(consumerIds, clientConsumerId, consumerIdSetter)) {
+            writeToClient(Commands.newError(clientRequestId, ServerError.ConsumerNotFound,
+                    "Consumer " + clientConsumerId + " not found"));
+            return false;
+        }
+        replaceRequestId(clientRequestId, requestIdSetter);
+        return true;
+    }
+
+    private boolean replaceId(Map<Long, Long> ids, long clientId, LongConsumer setter) {
+        Long id = ids.get(clientId);
+        if (id == null) {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Dropping {} for unknown id {}", inboundChannel, cmd.getType(), clientId);
+            }
+            return false;
+        }
+        setter.accept(id);
+        return true;
+    }
+
+    private void replaceRequestId(long clientRequestId, LongConsumer setter) {
+        setter.accept(brokerConnection.registerRequest(this, clientRequestId));
+    }
+
+    void writeToClient(ByteBuf frame) {
+        ProxyService.OPS_COUNTER.inc();
+        ProxyService.BYTES_COUNTER.inc(frame.readableBytes());
+        inboundChannel.writeAndFlush(frame, inboundChannel.voidPromise());
+    }
+
+    void resourceClosedByBroker(boolean producer, long clientId) {
+        (producer ? producerIds : consumerIds).remove(clientId);
+    }
+
+    void setAutoRead(boolean autoRead) {
+        inboundChannel.config().setAutoRead(autoRead);
+    }
+
+    void brokerConnectionClosed() {
+        inboundChannel.close();
+    }
+
+    /**
+     * Close the producers, consumers and watchers of the client on the broker, once the client is disconnected.
+     */
+    void close() {
+        brokerConnection.closeResources(producerIds.values(), consumerIds.values(), watcherIds.values());
+        brokerConnection.removeSession(this);
+        producerIds.clear();
+        consumerIds.clear();
+        watcherIds.clear();
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(MultiplexedProxyHandler.class);
+}
@@ -253,6 +253,32 @@ public class ProxyConfiguration implements PulsarConfiguration {
             doc = "Allowed broker target ports")
     private String brokerProxyAllowedTargetPorts = "6650,6651";
 
+    @FieldContext(
+            category = CATEGORY_BROKER_PROXY,
+            doc = "When enabled, the clients connected to a broker through the proxy share a few connections from the "
+                    + "proxy to the broker, instead of each client having a dedicated connection to the broker. "
+                    + "A connection is shared by the clients with the same role, the proxy remaps the producer, "
+                    + "consumer and request ids of the clients. Not supported with forwardAuthorizationCredentials "
+                    + "and haProxyProtocolEnabled, which require a connection per client."
+    )
+    private boolean brokerProxyConnectionMultiplexingEnabled = false;
+
+    @FieldContext(
+            category = CATEGORY_BROKER_PROXY,
+            minValue = 1,
+            doc = "The number of shared connections to each broker for each client role, "
+                    + "when brokerProxyConnectionMultiplexingEnabled is set."
+    )
+    private int brokerProxyMultiplexedConnectionsPerBroker = 4;
+
+    @FieldContext(
+            category = CATEGORY_BROKER_PROXY,
+            minValue = 0,
+            doc = "The time in seconds after which a shared connection to a broker without clients is closed, "
+                    + "when brokerProxyConnectionMultiplexingEnabled is set."
+    )
+    private int brokerProxyMultiplexedConnectionIdleTimeoutSeconds = 60;
+
     @FieldContext(
         category = CATEGORY_SERVER,
         doc = "Hostname or IP address the service binds on"
@@ -473,6 +499,23 @@ public class ProxyConfiguration implements PulsarConfiguration {
     )
     private int maxConcurrentLookupRequests = 50000;
 
+    @FieldContext(
+        category = CATEGORY_RATE_LIMITING,
+        doc = "Time in milliseconds the proxy caches the results of the topic lookup and partitioned topic metadata"
+            + " requests, so that the clients reconnecting at once don't all hit the brokers. The cached results"
+            + " are per client role, and are dropped when the request fails or the target broker can't be"
+            + " reached. Authoritative lookups, and lookups a client repeats on the same connection after being"
+            + " served a cached result, go to the brokers. Set it to 0 to disable the cache."
+    )
+    private long lookupCacheTtlMs = 0;
+
+    @FieldContext(
+        category = CATEGORY_RATE_LIMITING,
+        minValue = 1,
+        doc = "Max number of topic lookup and partitioned topic metadata results cached by the proxy"
+    )
+    private int lookupCacheMaxEntries = 100000;
+
     @FieldContext(
         category = CATEGORY_CLIENT_AUTHENTICATION,
         doc = "The authentication plugin used by the Pulsar proxy to authenticate with Pulsar brokers"
@@ -29,6 +29,7 @@ import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.handler.codec.haproxy.HAProxyMessage;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.resolver.dns.DnsAddressResolverGroup;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.ScheduledFuture;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
@@ -99,6 +100,7 @@ public class ProxyConnection extends PulsarHandler {
     private LookupProxyHandler lookupProxyHandler = null;
     @Getter
     private DirectProxyHandler directProxyHandler = null;
+    private MultiplexedProxyHandler multiplexedProxyHandler = null;
     private ScheduledFuture<?> authRefreshTask;
     // When authChallengeSentTime is not Long.MAX_VALUE, it means the proxy is waiting for the client to respond
     // to an auth challenge. When authChallengeSentTime is Long.MAX_VALUE, there are no pending auth challenges.
@@ -145,6 +147,11 @@ public class ProxyConnection extends PulsarHandler {
         // looking into it
         ProxyConnectionToBroker,
 
+        // If we are proxying a connection to a specific broker over a connection
+        // shared with other clients, we are relaying the commands after replacing
+        // the ids of the client by the ids of the shared connection
+        ProxyMultiplexedToBroker,
+
         Closing,
 
         Closed,
@@ -211,6 +218,11 @@ public class ProxyConnection extends PulsarHandler {
             directProxyHandler = null;
         }
 
+        if (multiplexedProxyHandler != null) {
+            multiplexedProxyHandler.close();
+            multiplexedProxyHandler = null;
+        }
+
         if (authRefreshTask != null) {
             authRefreshTask.cancel(false);
         }
@@ -310,6 +322,17 @@ public class ProxyConnection extends PulsarHandler {
                         msg instanceof ByteBuf ? ((ByteBuf) msg).readableBytes() : -1);
             }
             break;
+        case ProxyMultiplexedToBroker:
+            if (multiplexedProxyHandler != null) {
+                messageReceived();
+                if (!multiplexedProxyHandler.relayToBroker((ByteBuf) msg)) {
+                    // Ping, pong and auth response commands are handled by the proxy
+                    super.channelRead(ctx, msg);
+                }
+            } else {
+                ReferenceCountUtil.release(msg);
+            }
+            break;
         case ProxyConnectingToBroker:
             LOG.warn("Received message of type {} while connecting to broker. "
                             + "Dropping the input message (readable bytes={}).", msg.getClass(),
@@ -353,6 +376,7 @@ public class ProxyConnection extends PulsarHandler {
                 state = State.Closing;
                 LOG.warn("[{}] Target broker '{}' isn't available. authenticated with {} role {}.",
                         remoteAddress, proxyToBrokerUrl, authMethod, clientAuthRole);
+                service.invalidateCachedLookups(proxyToBrokerUrl);
                 final ByteBuf msg = Commands.newError(-1,
                         ServerError.ServiceNotReady, "Target broker isn't available.");
                 writeAndFlushAndClose(msg);
@@ -376,6 +400,7 @@ public class ProxyConnection extends PulsarHandler {
                             LOG.error("[{}] Error validating target broker '{}'. authenticated with {} role {}.",
                                     remoteAddress, proxyToBrokerUrl, authMethod, clientAuthRole, throwable);
                         }
+                        service.invalidateCachedLookups(proxyToBrokerUrl);
                         final ByteBuf msg = Commands.newError(-1, ServerError.ServiceNotReady,
                                 "Target broker cannot be validated.");
                         writeAndFlushAndClose(msg);
@@ -406,20 +431,24 @@ public class ProxyConnection extends PulsarHandler {
 
             state = State.ProxyLookupRequests;
             lookupProxyHandler = service.newLookupProxyHandler(this);
-            if (service.getConfiguration().isAuthenticationEnabled()
-                    && service.getConfiguration().getAuthenticationRefreshCheckSeconds() > 0) {
-                authRefreshTask = ctx.executor().scheduleAtFixedRate(
-                        Runnables.catchingAndLoggingThrowables(
-                                this::refreshAuthenticationCredentialsAndCloseIfTooExpired),
-                        service.getConfiguration().getAuthenticationRefreshCheckSeconds(),
-                        service.getConfiguration().getAuthenticationRefreshCheckSeconds(),
-                        TimeUnit.SECONDS);
-            }
+            scheduleAuthRefreshTask();
             final ByteBuf msg = Commands.newConnected(protocolVersionToAdvertise, false);
             writeAndFlush(msg);
         }
     }
 
+    private void scheduleAuthRefreshTask() {
+        if (service.getConfiguration().isAuthenticationEnabled()
+                && service.getConfiguration().getAuthenticationRefreshCheckSeconds() > 0) {
+            authRefreshTask = ctx.executor().scheduleAtFixedRate(
+                    Runnables.catchingAndLoggingThrowables(
+                            this::refreshAuthenticationCredentialsAndCloseIfTooExpired),
+                    service.getConfiguration().getAuthenticationRefreshCheckSeconds(),
+                    service.getConfiguration().getAuthenticationRefreshCheckSeconds(),
+                    TimeUnit.SECONDS);
+        }
+    }
+
     private void handleBrokerConnected(DirectProxyHandler directProxyHandler, CommandConnected connected) {
         assert ctx.executor().inEventLoop();
         if (state == State.ProxyConnectingToBroker && ctx.channel().isOpen() && this.directProxyHandler == null) {
@@ -443,10 +472,49 @@ public class ProxyConnection extends PulsarHandler {
 
     private void connectToBroker(InetSocketAddress brokerAddress) {
         assert ctx.executor().inEventLoop();
+        if (service.getMultiplexedBrokerConnectionPool() != null) {
+            service.getMultiplexedBrokerConnectionPool()
+                    .getConnection(proxyToBrokerUrl, brokerAddress, clientAuthRole, protocolVersionToAdvertise,
+                            features)
+                    .whenCompleteAsync((brokerConnection, throwable) -> {
+                        if (throwable != null) {
+                            LOG.warn("[{}] Failed to connect to broker '{}'. authenticated with {} role {}.",
+                                    remoteAddress, proxyToBrokerUrl, authMethod, clientAuthRole, throwable);
+                            service.invalidateCachedLookups(proxyToBrokerUrl);
+                            writeAndFlushAndClose(Commands.newError(-1, ServerError.ServiceNotReady,
+                                    "Target broker isn't available."));
+                        } else {
+                            handleMultiplexedBrokerConnected(brokerConnection);
+                        }
+                    }, ctx.executor());
+            return;
+        }
         DirectProxyHandler directProxyHandler = new DirectProxyHandler(service, this);
         directProxyHandler.connect(proxyToBrokerUrl, brokerAddress, protocolVersionToAdvertise, features);
     }
 
+    private void handleMultiplexedBrokerConnected(MultiplexedBrokerConnection brokerConnection) {
+        assert ctx.executor().inEventLoop();
+        if (state != State.ProxyConnectingToBroker || !ctx.channel().isOpen()) {
+            LOG.warn("[{}] Channel is {}. ProxyConnection is in state {}. Not using the connection to broker '{}'.",
+                    remoteAddress, ctx.channel().isOpen() ? "open" : "already closed", state, proxyToBrokerUrl);
+            ctx.close();
+            return;
+        }
+        MultiplexedProxyHandler multiplexedProxyHandler = new MultiplexedProxyHandler(this, brokerConnection);
+        if (!brokerConnection.addSession(multiplexedProxyHandler)) {
+            writeAndFlushAndClose(Commands.newError(-1, ServerError.ServiceNotReady,
+                    "Target broker isn't available."));
+            return;
+        }
+        this.multiplexedProxyHandler = multiplexedProxyHandler;
+        state = State.ProxyMultiplexedToBroker;
+        // The proxy keeps authenticating the client, the shared connection is authenticated with the proxy role
+        scheduleAuthRefreshTask();
+        writeAndFlush(Commands.newConnected(brokerConnection.getProtocolVersion(),
+                brokerConnection.getMaxMessageSize(), brokerConnection.isSupportsTopicWatchers()));
+    }
+
     public void brokerConnected(DirectProxyHandler directProxyHandler, CommandConnected connected) {
         try {
             final CommandConnected finalConnected = new CommandConnected().copyFrom(connected);
@@ -513,7 +581,7 @@ public class ProxyConnection extends PulsarHandler {
 
     private void refreshAuthenticationCredentialsAndCloseIfTooExpired() {
         assert ctx.executor().inEventLoop();
-        if (state != State.ProxyLookupRequests) {
+        if (state != State.ProxyLookupRequests && state != State.ProxyMultiplexedToBroker) {
             // Happens when an exception is thrown that causes this connection to close.
             return;
         } else if (!authState.isExpired()) {
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.proxy.server;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.prometheus.client.Counter;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the results of the topic lookup and partitioned topic metadata requests relayed by the proxy to the brokers,
+ * for {@link ProxyConfiguration#getLookupCacheTtlMs()}.
+ *
+ * <p>The brokers authorize the requests with the role of the client, so the results are cached per role. A result is
+ * dropped when the same request fails, and the lookups resolving to a broker are dropped when the proxy can't connect
+ * to that broker. The lookups are indexed by broker, so that dropping the lookups of a broker doesn't scan the cache.
+ */
+public class ProxyLookupCache {
+
+    private static final Counter CACHE_HITS = Counter
+            .build("pulsar_proxy_lookup_cache_hits", "Counter of lookup requests answered from the proxy cache")
+            .labelNames("type")
+            .create().register();
+
+    private static final Counter CACHE_MISSES = Counter
+            .build("pulsar_proxy_lookup_cache_misses", "Counter of lookup requests not found in the proxy cache")
+            .labelNames("type")
+            .create().register();
+
+    private static final Counter CACHE_INVALIDATIONS = Counter
+            .build("pulsar_proxy_lookup_cache_invalidations", "Counter of lookup results dropped from the proxy cache")
+            .labelNames("type")
+            .create().register();
+
+    private static final String TYPE_LOOKUP = "lookup";
+    private static final String TYPE_PARTITIONED_METADATA = "partitioned_metadata";
+
+    private record LookupKey(String role, String topic) {
+    }
+
+    private record PartitionedMetadataKey(String role, String topic, boolean metadataAutoCreationEnabled) {
+    }
+
+    // The broker service url resolved for each topic
+    private final Cache<LookupKey, String> lookups;
+    // The cached lookups resolved to each broker, by host and port. It may hold lookups that were already dropped,
+    // or resolved to another broker since, which are skipped when the lookups of the broker are invalidated.
+    private final Map<String, Set<LookupKey>> lookupsByBroker = new ConcurrentHashMap<>();
+    private final Cache<PartitionedMetadataKey, Integer> partitionedMetadata;
+
+    ProxyLookupCache(long ttlMs, int maxEntries) {
+        this.lookups = Caffeine.newBuilder()
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .maximumSize(maxEntries)
+                // Unindex the dropped lookups right away rather than from the common pool
+                .executor(Runnable::run)
+                .<LookupKey, String>removalListener((key, brokerUrl, cause) -> unindexLookup(key, brokerUrl))
+                .build();
+        this.partitionedMetadata = Caffeine.newBuilder()
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .maximumSize(maxEntries)
+                .build();
+    }
+
+    String getLookup(String role, String topic) {
+        String brokerUrl = lookups.getIfPresent(new LookupKey(role, topic));
+        (brokerUrl != null ? CACHE_HITS : CACHE_MISSES).labels(TYPE_LOOKUP).inc();
+        return brokerUrl;
+    }
+
+    void putLookup(String role, String topic, String brokerUrl) {
+        LookupKey key = new LookupKey(role, topic);
+        // Index after the put, which unindexes the replaced lookup
+        lookups.put(key, brokerUrl);
+        lookupsByBroker.computeIfAbsent(hostAndPort(brokerUrl), broker -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    private void unindexLookup(LookupKey key, String brokerUrl) {
+        if (key == null || brokerUrl == null) {
+            return;
+        }
+        String broker = hostAndPort(brokerUrl);
+        String currentBrokerUrl = lookups.getIfPresent(key);
+        if (currentBrokerUrl != null && hostAndPort(currentBrokerUrl).equals(broker)) {
+            // Resolved to the same broker again
+            return;
+        }
+        lookupsByBroker.computeIfPresent(broker, (b, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    void invalidateLookup(String role, String topic) {
+        if (lookups.asMap().remove(new LookupKey(role, topic)) != null) {
+            CACHE_INVALIDATIONS.labels(TYPE_LOOKUP).inc();
+        }
+    }
+
+    /**
+     * Drops the lookups resolved to a broker, when the proxy fails to connect to it.
+     *
+     * @param brokerHostAndPort the broker as requested by the clients connecting through the proxy
+     */
+    void invalidateBroker(String brokerHostAndPort) {
+        Set<LookupKey> keys = lookupsByBroker.remove(brokerHostAndPort);
+        if (keys == null) {
+            return;
+        }
+        for (LookupKey key : keys) {
+            lookups.asMap().computeIfPresent(key, (k, brokerUrl) -> {
+                if (hostAndPort(brokerUrl).equals(brokerHostAndPort)) {
+                    CACHE_INVALIDATIONS.labels(TYPE_LOOKUP).inc();
+                    return null;
+                }
+                return brokerUrl;
+            });
+        }
+    }
+
+    private static String hostAndPort(String brokerUrl) {
+        try {
+            URI uri = new URI(brokerUrl);
+            return uri.getHost() + ":" + uri.getPort();
+        } catch (URISyntaxException e) {
+            return brokerUrl;
+        }
+    }
+
+    Integer getPartitionedMetadata(String role, String topic, boolean metadataAutoCreationEnabled) {
+        Integer partitions =
+                partitionedMetadata.getIfPresent(new PartitionedMetadataKey(role, topic, metadataAutoCreationEnabled));
+        (partitions != null ? CACHE_HITS : CACHE_MISSES).labels(TYPE_PARTITIONED_METADATA).inc();
+        return partitions;
+    }
+
+    void putPartitionedMetadata(String role, String topic, boolean metadataAutoCreationEnabled, int partitions) {
+        partitionedMetadata.put(new PartitionedMetadataKey(role, topic, metadataAutoCreationEnabled), partitions);
+    }
+
+    void invalidatePartitionedMetadata(String role, String topic, boolean metadataAutoCreationEnabled) {
+        if (partitionedMetadata.asMap()
+                .remove(new PartitionedMetadataKey(role, topic, metadataAutoCreationEnabled)) != null) {
+            CACHE_INVALIDATIONS.labels(TYPE_PARTITIONED_METADATA).inc();
+        }
+    }
+
+    long size() {
+        return lookups.estimatedSize() + partitionedMetadata.estimatedSize();
+    }
+
+    void clear() {
+        lookups.invalidateAll();
+        lookupsByBroker.clear();
+        partitionedMetadata.invalidateAll();
+    }
+}
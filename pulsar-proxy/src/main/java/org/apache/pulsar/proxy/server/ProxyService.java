@@ -109,6 +109,14 @@ public class ProxyService implements Closeable {
 
     private BrokerDiscoveryProvider discoveryProvider;
 
+    // Set when the connections to the brokers are shared by the clients
+    @Getter
+    private final MultiplexedBrokerConnectionPool multiplexedBrokerConnectionPool;
+
+    // Set when the results of the lookups are cached
+    @Getter
+    private final ProxyLookupCache lookupCache;
+
     protected final AtomicReference<Semaphore> lookupRequestSemaphore;
 
     @Getter
@@ -212,6 +220,31 @@ public class ProxyService implements Closeable {
         this.connectionController = new ConnectionController.DefaultConnectionController(
                 proxyConfig.getMaxConcurrentInboundConnections(),
                 proxyConfig.getMaxConcurrentInboundConnectionsPerIp());
+        this.multiplexedBrokerConnectionPool = createMultiplexedBrokerConnectionPool();
+        this.lookupCache = proxyConfig.getLookupCacheTtlMs() > 0
+                ? new ProxyLookupCache(proxyConfig.getLookupCacheTtlMs(), proxyConfig.getLookupCacheMaxEntries())
+                : null;
+    }
+
+    /**
+     * Drops the cached lookups resolved to a broker the proxy failed to connect to.
+     */
+    void invalidateCachedLookups(String brokerHostAndPort) {
+        if (lookupCache != null) {
+            lookupCache.invalidateBroker(brokerHostAndPort);
+        }
+    }
+
+    private MultiplexedBrokerConnectionPool createMultiplexedBrokerConnectionPool() {
+        if (!proxyConfig.isBrokerProxyConnectionMultiplexingEnabled()) {
+            return null;
+        }
+        if (proxyConfig.isForwardAuthorizationCredentials() || proxyConfig.isHaProxyProtocolEnabled()) {
+            LOG.warn("brokerProxyConnectionMultiplexingEnabled is not supported with forwardAuthorizationCredentials "
+                    + "or haProxyProtocolEnabled, each client gets a dedicated connection to the broker");
+            return null;
+        }
+        return new MultiplexedBrokerConnectionPool(this);
     }
 
     public void start() throws Exception {
@@ -389,6 +422,10 @@ public class ProxyService implements Closeable {
 
         closeAllConnections();
 
+        if (multiplexedBrokerConnectionPool != null) {
+            multiplexedBrokerConnectionPool.close();
+        }
+
         dnsAddressResolverGroup.close();
 
         if (discoveryProvider != null) {
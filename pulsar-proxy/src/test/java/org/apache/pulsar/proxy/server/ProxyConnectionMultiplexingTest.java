@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.proxy.server;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.pulsar.PulsarVersion;
+import org.apache.pulsar.broker.BrokerTestUtil;
+import org.apache.pulsar.broker.service.ServerCnx;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.InjectedClientCnxClientBuilder;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.client.impl.ClientBuilderImpl;
+import org.apache.pulsar.client.impl.ClientCnx;
+import org.apache.pulsar.client.impl.ProducerImpl;
+import org.apache.pulsar.client.impl.PulsarClientImpl;
+import org.apache.pulsar.client.impl.metrics.InstrumentProvider;
+import org.apache.pulsar.common.api.AuthData;
+import org.apache.pulsar.common.api.proto.BaseCommand;
+import org.apache.pulsar.common.api.proto.FeatureFlags;
+import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.common.protocol.Commands;
+import org.awaitility.Awaitility;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the {@link ProxyTest} suite with the clients multiplexed over shared connections to the broker.
+ */
+public class ProxyConnectionMultiplexingTest extends ProxyTest {
+
+    @Override
+    protected void initializeProxyConfig() throws Exception {
+        super.initializeProxyConfig();
+        proxyConfig.setBrokerProxyConnectionMultiplexingEnabled(true);
+        proxyConfig.setBrokerProxyMultiplexedConnectionsPerBroker(1);
+    }
+
+    /**
+     * The shared connection to the broker is opened by the proxy, with its own client version.
+     */
+    @Override
+    @Test
+    public void testGetClientVersion() throws Exception {
+        @Cleanup
+        PulsarClient client = PulsarClient.builder().serviceUrl(proxyService.getServiceUrl())
+                .build();
+
+        String topic = BrokerTestUtil.newUniqueName("persistent://sample/test/local/testGetClientVersion");
+        String subName = "test-sub";
+
+        @Cleanup
+        Consumer<byte[]> consumer = client.newConsumer()
+                .topic(topic)
+                .subscriptionName(subName)
+                .subscribe();
+
+        consumer.receiveAsync();
+
+        String partition = TopicName.get(topic).getPartition(0).toString();
+        assertEquals(admin.topics().getStats(partition).getSubscriptions().get(subName).getConsumers()
+                .get(0).getClientVersion(), String.format("Pulsar-Proxy-v%s", PulsarVersion.getVersion()));
+    }
+
+    /**
+     * The features of the clients are negotiated with the broker, but for the auth refresh which the proxy handles
+     * itself on the shared connection.
+     */
+    @Override
+    @Test(dataProvider = "booleanValues")
+    public void testConnectedWithClientSideFeatures(boolean supported) throws Exception {
+        final String topic = BrokerTestUtil.newUniqueName("persistent://public/default/tp");
+        admin.topics().createNonPartitionedTopic(topic);
+
+        ClientBuilderImpl clientBuilder2 =
+                (ClientBuilderImpl) PulsarClient.builder().serviceUrl(proxyService.getServiceUrl());
+        @Cleanup
+        PulsarClientImpl injectedClient = InjectedClientCnxClientBuilder.create(clientBuilder2,
+            (conf, eventLoopGroup) -> {
+                return new ClientCnx(InstrumentProvider.NOOP, conf, eventLoopGroup) {
+
+                    @Override
+                    protected ByteBuf newConnectCommand() throws Exception {
+                        authenticationDataProvider = authentication.getAuthData(remoteHostName);
+                        AuthData authData = authenticationDataProvider.authenticate(AuthData.INIT_AUTH_DATA);
+                        BaseCommand cmd =
+                                Commands.newConnectWithoutSerialize(authentication.getAuthMethodName(), authData,
+                                        this.protocolVersion, clientVersion, proxyToTargetBrokerAddress,
+                                        null, null, null, null, null);
+                        FeatureFlags featureFlags = cmd.getConnect().getFeatureFlags();
+                        featureFlags.setSupportsAuthRefresh(supported);
+                        featureFlags.setSupportsBrokerEntryMetadata(supported);
+                        featureFlags.setSupportsPartialProducer(supported);
+                        featureFlags.setSupportsTopicWatchers(supported);
+                        featureFlags.setSupportsReplDedupByLidAndEid(supported);
+                        featureFlags.setSupportsGetPartitionedMetadataWithoutAutoCreation(supported);
+                        return Commands.serializeWithSize(cmd);
+                    }
+                };
+            });
+
+        Producer<byte[]> producer = injectedClient.newProducer().topic(topic).create();
+        ServerCnx serverCnx = (ServerCnx) pulsar.getBrokerService().getTopic(topic, false).get().get()
+                .getProducers().values().iterator().next().getCnx();
+        FeatureFlags featureFlags = serverCnx.getFeatures();
+        assertTrue(featureFlags.isSupportsAuthRefresh());
+        assertEquals(featureFlags.isSupportsBrokerEntryMetadata(), supported);
+        assertEquals(featureFlags.isSupportsPartialProducer(), supported);
+        assertEquals(featureFlags.isSupportsTopicWatchers(), supported);
+        assertEquals(featureFlags.isSupportsReplDedupByLidAndEid(), supported);
+        assertEquals(featureFlags.isSupportsGetPartitionedMetadataWithoutAutoCreation(), supported);
+
+        producer.close();
+        admin.topics().delete(topic);
+    }
+
+    @Test
+    public void testClientsShareBrokerConnection() throws Exception {
+        final String topic = "persistent://sample/test/local/multiplexed-topic";
+        final int numClients = 3;
+
+        List<PulsarClient> clients = new ArrayList<>();
+        List<Producer<String>> producers = new ArrayList<>();
+        List<Consumer<String>> consumers = new ArrayList<>();
+        try {
+            for (int i = 0; i < numClients; i++) {
+                PulsarClient client = PulsarClient.builder().serviceUrl(proxyService.getServiceUrl()).build();
+                clients.add(client);
+                consumers.add(client.newConsumer(Schema.STRING).topic(topic)
+                        .subscriptionName("sub-" + i).subscribe());
+                producers.add(client.newProducer(Schema.STRING).topic(topic).enableBatching(false).create());
+            }
+            assertEquals(proxyService.getMultiplexedBrokerConnectionPool().getConnectionCount(), 1);
+
+            for (int i = 0; i < numClients; i++) {
+                producers.get(i).send("msg-" + i);
+            }
+            for (Consumer<String> consumer : consumers) {
+                for (int i = 0; i < numClients; i++) {
+                    Message<String> msg = consumer.receive(5, TimeUnit.SECONDS);
+                    assertNotNull(msg);
+                    assertEquals(msg.getValue(), "msg-" + i);
+                    consumer.acknowledge(msg);
+                }
+                assertNull(consumer.receive(0, TimeUnit.SECONDS));
+            }
+
+            // closing the resources of one client leaves the others and the broker connection usable
+            producers.get(0).close();
+            consumers.get(0).close();
+            clients.get(0).close();
+            @Cleanup
+            Producer<String> producer = clients.get(1).newProducer(Schema.STRING).topic(topic).create();
+            producer.send("after-close");
+            for (int i = 1; i < numClients; i++) {
+                Message<String> msg = consumers.get(i).receive(5, TimeUnit.SECONDS);
+                assertNotNull(msg);
+                assertEquals(msg.getValue(), "after-close");
+            }
+            assertEquals(proxyService.getMultiplexedBrokerConnectionPool().getConnectionCount(), 1);
+        } finally {
+            for (PulsarClient client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void testIdleBrokerConnectionClosed() throws Exception {
+        final String topic = BrokerTestUtil.newUniqueName("persistent://public/default/multiplexed-idle");
+        admin.topics().createNonPartitionedTopic(topic);
+        MultiplexedBrokerConnectionPool pool = proxyService.getMultiplexedBrokerConnectionPool();
+        int idleTimeoutSeconds = proxyConfig.getBrokerProxyMultiplexedConnectionIdleTimeoutSeconds();
+        proxyConfig.setBrokerProxyMultiplexedConnectionIdleTimeoutSeconds(1);
+        try {
+            PulsarClient client = PulsarClient.builder().serviceUrl(proxyService.getServiceUrl()).build();
+            ProducerImpl<String> producer =
+                    (ProducerImpl<String>) client.newProducer(Schema.STRING).topic(topic).create();
+            ClientCnx cnx = producer.getClientCnx();
+            int connections = pool.getConnectionCount();
+
+            // A connection used by a client is kept open past the idle timeout
+            Thread.sleep(2000);
+            producer.send("msg");
+            assertSame(producer.getClientCnx(), cnx);
+
+            client.close();
+            Awaitility.await().untilAsserted(() -> assertTrue(pool.getConnectionCount() < connections));
+        } finally {
+            proxyConfig.setBrokerProxyMultiplexedConnectionIdleTimeoutSeconds(idleTimeoutSeconds);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.proxy.server;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+import java.net.URI;
+import java.util.concurrent.Semaphore;
+import lombok.Cleanup;
+import org.apache.pulsar.broker.BrokerTestUtil;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.client.impl.LookupService;
+import org.apache.pulsar.client.impl.PulsarClientImpl;
+import org.apache.pulsar.common.naming.TopicName;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the {@link ProxyTest} suite with the lookup results cached by the proxy.
+ */
+public class ProxyLookupCacheTest extends ProxyTest {
+
+    @Override
+    protected void initializeProxyConfig() throws Exception {
+        super.initializeProxyConfig();
+        proxyConfig.setLookupCacheTtlMs(60_000);
+    }
+
+    @Test
+    public void testLookupsAnsweredFromCache() throws Exception {
+        final TopicName topic = TopicName.get(BrokerTestUtil.newUniqueName("persistent://public/default/tp"));
+        admin.topics().createPartitionedTopic(topic.toString(), 2);
+        final TopicName partition = topic.getPartition(0);
+
+        @Cleanup
+        PulsarClientImpl client1 = (PulsarClientImpl) PulsarClient.builder()
+                .serviceUrl(proxyService.getServiceUrl()).build();
+        assertEquals(client1.getLookup().getPartitionedTopicMetadata(topic, false).get().partitions, 2);
+        String brokerUrl = pulsar.getBrokerServiceUrl();
+        assertEquals(client1.getLookup().getBroker(partition).get().getLogicalAddress().getPort(),
+                URI.create(brokerUrl).getPort());
+
+        // No requests can be relayed to the brokers anymore, the cached results are still served
+        Semaphore lookupSemaphore = proxyService.getLookupRequestSemaphore();
+        int availablePermits = lookupSemaphore.availablePermits();
+        lookupSemaphore.acquire(availablePermits);
+        try {
+            @Cleanup
+            PulsarClientImpl client2 = (PulsarClientImpl) PulsarClient.builder()
+                    .serviceUrl(proxyService.getServiceUrl()).build();
+            LookupService lookupService = client2.getLookup();
+            assertEquals(lookupService.getPartitionedTopicMetadata(topic, false).get().partitions, 2);
+            assertEquals(lookupService.getBroker(partition).get().getLogicalAddress().getPort(),
+                    URI.create(brokerUrl).getPort());
+
+            // Other connections are still served from the cache, but a connection looking up again the topic it
+            // was served from the cache is retrying, its lookup goes to the broker
+            @Cleanup
+            PulsarClientImpl client3 = (PulsarClientImpl) PulsarClient.builder()
+                    .serviceUrl(proxyService.getServiceUrl()).build();
+            assertEquals(client3.getLookup().getBroker(partition).get().getLogicalAddress().getPort(),
+                    URI.create(brokerUrl).getPort());
+            assertTooManyRequests(lookupService, partition);
+        } finally {
+            lookupSemaphore.release(availablePermits);
+        }
+
+        // Cache the lookup again
+        assertEquals(client1.getLookup().getBroker(partition).get().getLogicalAddress().getPort(),
+                URI.create(brokerUrl).getPort());
+        lookupSemaphore.acquire(availablePermits);
+        try {
+            // The lookups are dropped when the broker can't be reached
+            URI brokerUri = URI.create(brokerUrl);
+            proxyService.invalidateCachedLookups(brokerUri.getHost() + ":" + brokerUri.getPort());
+            @Cleanup
+            PulsarClientImpl client4 = (PulsarClientImpl) PulsarClient.builder()
+                    .serviceUrl(proxyService.getServiceUrl()).build();
+            assertTooManyRequests(client4.getLookup(), partition);
+        } finally {
+            lookupSemaphore.release(availablePermits);
+        }
+    }
+
+    private static void assertTooManyRequests(LookupService lookupService, TopicName topic) {
+        try {
+            lookupService.getBroker(topic).get();
+            fail("Expected too many request error.");
+        } catch (Exception ex) {
+            assertTrue(ex.getMessage().contains("Too many"));
+        }
+    }
+
+    @Test
+    public void testCachedResultsArePerRole() {
+        ProxyLookupCache cache = new ProxyLookupCache(60_000, 100);
+        cache.putLookup("role1", "persistent://public/default/tp", "pulsar://broker-1:6650");
+        cache.putPartitionedMetadata("role1", "persistent://public/default/tp", true, 3);
+
+        assertEquals(cache.getLookup("role1", "persistent://public/default/tp"), "pulsar://broker-1:6650");
+        assertEquals(cache.getLookup("role2", "persistent://public/default/tp"), null);
+        assertEquals(cache.getPartitionedMetadata("role1", "persistent://public/default/tp", true), 3);
+        assertEquals(cache.getPartitionedMetadata("role1", "persistent://public/default/tp", false), null);
+        assertEquals(cache.getPartitionedMetadata("role2", "persistent://public/default/tp", true), null);
+
+        cache.invalidateBroker("broker-2:6650");
+        assertEquals(cache.getLookup("role1", "persistent://public/default/tp"), "pulsar://broker-1:6650");
+        cache.invalidateBroker("broker-1:6650");
+        assertEquals(cache.getLookup("role1", "persistent://public/default/tp"), null);
+
+        cache.invalidatePartitionedMetadata("role1", "persistent://public/default/tp", true);
+        assertEquals(cache.getPartitionedMetadata("role1", "persistent://public/default/tp", true), null);
+    }
+
+    @Test
+    public void testInvalidateBrokerAfterOwnerChange() {
+        ProxyLookupCache cache = new ProxyLookupCache(60_000, 100);
+        cache.putLookup("role1", "persistent://public/default/tp1", "pulsar://broker-1:6650");
+        cache.putLookup("role1", "persistent://public/default/tp2", "pulsar://broker-1:6650");
+        // Resolved to the same broker again, then to another broker
+        cache.putLookup("role1", "persistent://public/default/tp1", "pulsar://broker-1:6650");
+        cache.putLookup("role1", "persistent://public/default/tp2", "pulsar://broker-2:6650");
+
+        cache.invalidateBroker("broker-1:6650");
+        assertEquals(cache.getLookup("role1", "persistent://public/default/tp1"), null);
+        assertEquals(cache.getLookup("role1", "persistent://public/default/tp2"), "pulsar://broker-2:6650");
+        cache.invalidateBroker("broker-2:6650");
+        assertEquals(cache.getLookup("role1", "persistent://public/default/tp2"), null);
+    }
+}
@@ -123,6 +123,7 @@ public class MLTransactionLogImpl implements TransactionLog {
                                 txnLogBufferedWriterConfig.getBatchedWriteMaxRecords(),
                                 txnLogBufferedWriterConfig.getBatchedWriteMaxSize(),
                                 txnLogBufferedWriterConfig.getBatchedWriteMaxDelayInMillis(),
+                                txnLogBufferedWriterConfig.getBatchedWriteMaxPendingFlushes(),
                                 txnLogBufferedWriterConfig.isBatchEnabled(),
                                 bufferedWriterMetrics);
 
@@ -30,6 +30,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import lombok.Getter;
 import lombok.ToString;
@@ -102,6 +103,16 @@ public class TxnLogBufferedWriter<T> {
     /** Maximum delay for writing to bookie for the earliest request in the batch. **/
     private final int batchedWriteMaxDelayInMillis;
 
+    /**
+     * Adaptive flush: if greater than 0, the current batch is written as soon as fewer than this many batches are
+     * waiting for the bookie response, so the batch size follows the queue depth instead of the fixed
+     * {@link #batchedWriteMaxDelayInMillis}, which is still the upper bound of the delay. 0 disables the feature.
+     */
+    private final int batchedWriteMaxPendingFlushes;
+
+    /** Count of batches written to the Managed Ledger and not yet acknowledged. **/
+    private final AtomicInteger pendingFlushes = new AtomicInteger();
+
     /** Data cached in the current batch. Will reset to null after each batched writes. **/
     private final ArrayList<T> dataArray;
 
@@ -143,6 +154,22 @@ public class TxnLogBufferedWriter<T> {
                                 DataSerializer<T> dataSerializer,
                                 int batchedWriteMaxRecords, int batchedWriteMaxSize, int batchedWriteMaxDelayInMillis,
                                 boolean batchEnabled, TxnLogBufferedWriterMetricsStats metrics){
+        this(managedLedger, executor, timer, dataSerializer, batchedWriteMaxRecords, batchedWriteMaxSize,
+                batchedWriteMaxDelayInMillis, 0, batchEnabled, metrics);
+    }
+
+    /**
+     * Constructor.
+     * @param batchedWriteMaxPendingFlushes If greater than 0, write the current batch as soon as fewer than this many
+     *                                      batches are waiting for the bookie response. 0 disables adaptive flush.
+     * @see #TxnLogBufferedWriter(ManagedLedger, Executor, Timer, DataSerializer, int, int, int, boolean,
+     *      TxnLogBufferedWriterMetricsStats)
+     */
+    public TxnLogBufferedWriter(ManagedLedger managedLedger, Executor executor, Timer timer,
+                                DataSerializer<T> dataSerializer,
+                                int batchedWriteMaxRecords, int batchedWriteMaxSize, int batchedWriteMaxDelayInMillis,
+                                int batchedWriteMaxPendingFlushes, boolean batchEnabled,
+                                TxnLogBufferedWriterMetricsStats metrics){
         if (batchedWriteMaxRecords <= 1 && batchEnabled){
             if (metrics != null){
                 log.warn("Transaction Log Buffered Writer with the metrics name beginning with {} has batching enabled"
@@ -161,6 +188,7 @@ public class TxnLogBufferedWriter<T> {
         this.batchedWriteMaxRecords = batchedWriteMaxRecords;
         this.batchedWriteMaxSize = batchedWriteMaxSize;
         this.batchedWriteMaxDelayInMillis = batchedWriteMaxDelayInMillis;
+        this.batchedWriteMaxPendingFlushes = Math.max(batchedWriteMaxPendingFlushes, 0);
         this.flushContext = FlushContext.newInstance();
         this.dataArray = new ArrayList<>();
         STATE_UPDATER.set(this, State.OPEN);
@@ -269,6 +297,7 @@ public class TxnLogBufferedWriter<T> {
         dataArray.add(data);
         bytesSize += dataLength;
         trigFlushIfReachMaxRecordsOrMaxSize();
+        trigFlushIfPendingFlushesDrained();
     }
 
     private void trigFlushByTimingTask(){
@@ -306,6 +335,39 @@ public class TxnLogBufferedWriter<T> {
         }
     }
 
+    /**
+     * If adaptive flush is enabled and fewer than {@link #batchedWriteMaxPendingFlushes} batches are waiting for the
+     * bookie response, do flush. While the bookies are busy the requests keep accumulating, so the batch grows with
+     * the load and a lone request is written without waiting for the timing task.
+     */
+    private void trigFlushIfPendingFlushesDrained(){
+        if (batchedWriteMaxPendingFlushes == 0 || state != State.OPEN || flushContext.asyncAddArgsList.isEmpty()) {
+            return;
+        }
+        if (pendingFlushes.get() < batchedWriteMaxPendingFlushes) {
+            metrics.triggerFlushByPendingFlushes(flushContext.asyncAddArgsList.size(), bytesSize,
+                    System.currentTimeMillis() - flushContext.asyncAddArgsList.get(0).addedTime);
+            doFlush();
+        }
+    }
+
+    /**
+     * Called after a batch was acknowledged or failed by the Managed Ledger, writes the requests accumulated in the
+     * meantime if adaptive flush is enabled.
+     */
+    private void onFlushFinished(){
+        pendingFlushes.decrementAndGet();
+        if (batchedWriteMaxPendingFlushes == 0) {
+            return;
+        }
+        CompletableFuture
+                .runAsync(this::trigFlushIfPendingFlushesDrained, singleThreadExecutorForWrite)
+                .exceptionally(e -> {
+                    log.warn("Execute 'trigFlushIfPendingFlushesDrained' fail", e);
+                    return null;
+                });
+    }
+
     private void trigFlushByLargeSingleData(){
         if (flushContext.asyncAddArgsList.isEmpty()) {
             return;
@@ -358,6 +420,7 @@ public class TxnLogBufferedWriter<T> {
         if (State.CLOSING == state || State.CLOSED == state){
             failureCallbackByContextAndRecycle(flushContext, BUFFERED_WRITER_CLOSED_EXCEPTION);
         } else {
+            pendingFlushes.incrementAndGet();
             managedLedger.asyncAddEntry(wholeByteBuf, bookKeeperBatchedWriteCallback, flushContext);
         }
         dataArray.clear();
@@ -578,6 +641,7 @@ public class TxnLogBufferedWriter<T> {
                 log.error("Handle callback fail after ML write complete", e);
             } finally {
                 flushContext.recycle();
+                onFlushFinished();
             }
         }
 
@@ -588,6 +652,8 @@ public class TxnLogBufferedWriter<T> {
                 failureCallbackByContextAndRecycle(flushContext, exception);
             } catch (Exception e){
                 log.error("Handle callback fail after ML write fail", e);
+            } finally {
+                onFlushFinished();
             }
         }
 
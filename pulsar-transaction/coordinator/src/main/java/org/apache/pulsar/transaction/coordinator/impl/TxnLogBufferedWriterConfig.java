@@ -26,5 +26,6 @@ public class TxnLogBufferedWriterConfig {
     private int batchedWriteMaxRecords = 512;
     private int batchedWriteMaxSize = 1024 * 1024 * 4;
     private int batchedWriteMaxDelayInMillis = 1;
+    private int batchedWriteMaxPendingFlushes = 0;
     private boolean batchEnabled = false;
 }
@@ -89,6 +89,13 @@ public class TxnLogBufferedWriterMetricsStats implements Closeable {
     private final Counter batchFlushTriggeredByLargeSingleDataMetric;
     private final Counter.Child batchFlushTriggeredByLargeSingleDataCounter;
 
+    /**
+     * The count of the triggering transaction log batch flush actions by "batchedWriteMaxPendingFlushes", that is a
+     * batch flushed as soon as the number of batches waiting for the bookie response dropped below the threshold.
+     */
+    private final Counter batchFlushTriggeredByPendingFlushesMetric;
+    private final Counter.Child batchFlushTriggeredByPendingFlushesCounter;
+
     private final AtomicBoolean closed;
 
     /**
@@ -170,6 +177,16 @@ public class TxnLogBufferedWriterMetricsStats implements Closeable {
         batchFlushTriggeredByLargeSingleDataCounter =
                 batchFlushTriggeredByLargeSingleDataMetric.labels(this.labelValues);
 
+        String batchFlushTriggeringByPendingFlushesMetricName =
+                String.format("%s_bufferedwriter_flush_trigger_pending_flushes", metricsPrefix);
+        batchFlushTriggeredByPendingFlushesMetric = new Counter.Builder()
+                        .name(batchFlushTriggeringByPendingFlushesMetricName)
+                        .labelNames(this.labelNames)
+                        .help("Event count of batch flush triggered by the drained pending flushes")
+                        .register(collectorRegistry);
+        batchFlushTriggeredByPendingFlushesCounter =
+                batchFlushTriggeredByPendingFlushesMetric.labels(this.labelValues);
+
         this.closed = new AtomicBoolean(false);
     }
 
@@ -185,6 +202,7 @@ public class TxnLogBufferedWriterMetricsStats implements Closeable {
         collectorRegistry.unregister(batchFlushTriggeredByMaxSizeMetric);
         collectorRegistry.unregister(batchFlushTriggeredByMaxDelayMetric);
         collectorRegistry.unregister(batchFlushTriggeredByLargeSingleDataMetric);
+        collectorRegistry.unregister(batchFlushTriggeredByPendingFlushesMetric);
     }
 
     public void triggerFlushByRecordsCount(int recordCount, long bytesSize, long delayMillis) {
@@ -207,6 +225,11 @@ public class TxnLogBufferedWriterMetricsStats implements Closeable {
         observeHistogram(recordCount, bytesSize, delayMillis);
     }
 
+    public void triggerFlushByPendingFlushes(int recordCount, long bytesSize, long delayMillis) {
+        batchFlushTriggeredByPendingFlushesCounter.inc();
+        observeHistogram(recordCount, bytesSize, delayMillis);
+    }
+
     /**
      * Append the metrics which is type of histogram.
      */
@@ -37,6 +37,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
@@ -905,6 +906,62 @@ public class TxnLogBufferedWriterTest extends MockedBookKeeperTestCase {
         verifyTheHistogramMetrics(0, 0, 0);
     }
 
+    /**
+     * With adaptive flush enabled, the first request is written without waiting for the timing task, and the requests
+     * accumulated while it is waiting for the bookie response are written in one batch once the bookie responded.
+     */
+    @Test
+    public void testAdaptiveFlushByPendingFlushes() throws Exception {
+        SumStrDataSerializer dataSerializer = new SumStrDataSerializer();
+        int writeCount = 100;
+        OrderedExecutor orderedExecutor = OrderedExecutor.newBuilder()
+                .numThreads(1).name("txn-threads").build();
+        HashedWheelTimer transactionTimer = new HashedWheelTimer(new DefaultThreadFactory("transaction-timer"),
+                1, TimeUnit.MILLISECONDS);
+        TxnLogBufferedWriterMetricsStats metricsStats = new TxnLogBufferedWriterMetricsStats(
+                metricsPrefix, metricsLabelNames, metricsLabelValues, CollectorRegistry.defaultRegistry
+        );
+        // Mock managed ledger which holds the callbacks until the test completes them.
+        ArrayBlockingQueue<Runnable> pendingCallbacks = new ArrayBlockingQueue<>(writeCount);
+        AtomicInteger writeCounter = new AtomicInteger();
+        ManagedLedger managedLedger = Mockito.mock(ManagedLedger.class);
+        Mockito.when(managedLedger.getName()).thenReturn(mlName);
+        Mockito.doAnswer(invocation -> {
+            writeCounter.incrementAndGet();
+            AsyncCallbacks.AddEntryCallback callback = invocation.getArgument(1);
+            pendingCallbacks.add(() -> callback.addComplete(PositionFactory.create(1, writeCounter.get()),
+                    invocation.getArgument(0), invocation.getArgument(2)));
+            return null;
+        }).when(managedLedger).asyncAddEntry(Mockito.any(ByteBuf.class), Mockito.any(), Mockito.any());
+        Executor executor = orderedExecutor.chooseThread(mlName);
+        TxnLogBufferedWriter<Integer> txnLogBufferedWriter = new TxnLogBufferedWriter<>(managedLedger, executor,
+                transactionTimer, dataSerializer, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 1, true,
+                metricsStats);
+        var callbackWithCounter = createCallBackWithCounter();
+        // The first request is written immediately, the others wait for the pending flush.
+        for (int i = 0; i < writeCount; i++){
+            txnLogBufferedWriter.asyncAddData(1, callbackWithCounter.callback, "");
+        }
+        CompletableFuture.runAsync(() -> {}, executor).get();
+        assertEquals(writeCounter.get(), 1);
+        assertEquals(callbackWithCounter.finishCounter.get(), 0);
+        // Once the bookie responded, the accumulated requests are written in one batch.
+        pendingCallbacks.take().run();
+        Awaitility.await().atMost(2, TimeUnit.SECONDS).until(() -> writeCounter.get() == 2);
+        pendingCallbacks.take().run();
+        Awaitility.await().atMost(2, TimeUnit.SECONDS).until(
+                () -> callbackWithCounter.finishCounter.get() == writeCount);
+        assertEquals(callbackWithCounter.failureCounter.get(), 0);
+        assertEquals(getCounterValue(String.format("%s_bufferedwriter_flush_trigger_pending_flushes",
+                metricsPrefix)), 2);
+        verifyTheCounterMetrics(0, 0, 0, 0);
+        verifyTheHistogramMetrics(2, writeCount, writeCount * dataSerializer.getSizePerData());
+        // cleanup.
+        releaseTxnLogBufferedWriterContext(new TxnLogBufferedWriterContext(txnLogBufferedWriter,
+                new MockedManagedLedger(managedLedger, writeCounter), transactionTimer, metricsStats,
+                orderedExecutor));
+    }
+
     @Test
     public void testFailWhenAddData() throws Exception {
         int batchedWriteMaxSize = 1024;
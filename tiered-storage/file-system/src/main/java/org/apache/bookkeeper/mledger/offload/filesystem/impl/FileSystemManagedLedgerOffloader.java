@@ -23,6 +23,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.MoreExecutors;
 import io.netty.util.Recycler;
+import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.Map;
@@ -41,10 +42,8 @@ import org.apache.bookkeeper.mledger.LedgerOffloaderStats;
 import org.apache.bookkeeper.mledger.offload.filesystem.FileSystemLedgerOffloaderFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.BytesWritable;
-import org.apache.hadoop.io.IOUtils;
-import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.MapFile;
 import org.apache.pulsar.common.naming.TopicName;
 import org.apache.pulsar.common.policies.data.OffloadPolicies;
@@ -59,6 +58,8 @@ public class FileSystemManagedLedgerOffloader implements LedgerOffloader {
     private static final String DRIVER_NAMES = "filesystem";
     private static final String MANAGED_LEDGER_NAME = "ManagedLedgerName";
     static final long METADATA_KEY_INDEX = -1;
+    // Offload the ledgers in the native local file format instead of MapFiles, when the file system is local
+    static final String NATIVE_FORMAT_ENABLED = "pulsar.offload.filesystem.native.format.enabled";
     private final Configuration configuration;
     private final String driverName;
     private final String storageBasePath;
@@ -68,6 +69,9 @@ public class FileSystemManagedLedgerOffloader implements LedgerOffloader {
     private OrderedScheduler assignmentScheduler;
     private OffloadPolicies offloadPolicies;
     private final LedgerOffloaderStats offloaderStats;
+    // Set when the file system is local, to read and write the offloaded ledgers in the native format
+    private final LocalFileSystem localFileSystem;
+    private final boolean nativeFormatEnabled;
 
     public static boolean driverSupported(String driver) {
         return DRIVER_NAMES.equals(driver);
@@ -114,6 +118,8 @@ public class FileSystemManagedLedgerOffloader implements LedgerOffloader {
                 .numThreads(conf.getManagedLedgerOffloadMaxThreads())
                 .name("offload-assignment").build();
         this.offloaderStats = offloaderStats;
+        this.localFileSystem = fileSystem instanceof LocalFileSystem local ? local : null;
+        this.nativeFormatEnabled = isNativeFormatEnabled();
     }
 
     @VisibleForTesting
@@ -136,6 +142,20 @@ public class FileSystemManagedLedgerOffloader implements LedgerOffloader {
                 .numThreads(conf.getManagedLedgerOffloadMaxThreads())
                 .name("offload-assignment").build();
         this.offloaderStats = offloaderStats;
+        this.localFileSystem = fileSystem instanceof LocalFileSystem local ? local : null;
+        this.nativeFormatEnabled = isNativeFormatEnabled();
+    }
+
+    private boolean isNativeFormatEnabled() {
+        if (!configuration.getBoolean(NATIVE_FORMAT_ENABLED, false)) {
+            return false;
+        }
+        if (localFileSystem == null) {
+            log.warn("{} is only supported by the local file systems, offloading to {} as MapFiles",
+                    NATIVE_FORMAT_ENABLED, fileSystem.getUri());
+            return false;
+        }
+        return true;
     }
 
     @Override
@@ -155,7 +175,7 @@ public class FileSystemManagedLedgerOffloader implements LedgerOffloader {
         scheduler.chooseThread(readHandle.getId()).execute(
                 new LedgerReader(readHandle, uuid, extraMetadata, promise, storageBasePath, configuration,
                         assignmentScheduler, offloadPolicies.getManagedLedgerOffloadPrefetchRounds(),
-                        this.offloaderStats));
+                        this.offloaderStats, nativeFormatEnabled ? localFileSystem : null));
         return promise;
     }
 
@@ -171,6 +191,7 @@ public class FileSystemManagedLedgerOffloader implements LedgerOffloader {
         private OrderedScheduler assignmentScheduler;
         private int managedLedgerOffloadPrefetchRounds = 1;
         private final LedgerOffloaderStats offloaderStats;
+        private final LocalFileSystem nativeFormatFileSystem;
 
         private LedgerReader(ReadHandle readHandle,
                              UUID uuid,
@@ -180,7 +201,8 @@ public class FileSystemManagedLedgerOffloader implements LedgerOffloader {
                              Configuration configuration,
                              OrderedScheduler assignmentScheduler,
                              int managedLedgerOffloadPrefetchRounds,
-                             LedgerOffloaderStats offloaderStats) {
+                             LedgerOffloaderStats offloaderStats,
+                             LocalFileSystem nativeFormatFileSystem) {
             this.readHandle = readHandle;
             this.uuid = uuid;
             this.extraMetadata = extraMetadata;
@@ -190,6 +212,7 @@ public class FileSystemManagedLedgerOffloader implements LedgerOffloader {
             this.assignmentScheduler = assignmentScheduler;
             this.managedLedgerOffloadPrefetchRounds = managedLedgerOffloadPrefetchRounds;
             this.offloaderStats = offloaderStats;
+            this.nativeFormatFileSystem = nativeFormatFileSystem;
         }
 
         @Override
@@ -209,18 +232,15 @@ public class FileSystemManagedLedgerOffloader implements LedgerOffloader {
             String storagePath = getStoragePath(storageBasePath, managedLedgerName);
             String dataFilePath = getDataFilePath(storagePath, ledgerId, uuid);
             final String topicName = TopicName.fromPersistenceNamingEncoding(managedLedgerName);
-            LongWritable key = new LongWritable();
-            BytesWritable value = new BytesWritable();
+            OffloadedLedgerWriter dataWriter = null;
             try {
-                MapFile.Writer dataWriter = new MapFile.Writer(configuration,
-                        new Path(dataFilePath),
-                        MapFile.Writer.keyClass(LongWritable.class),
-                        MapFile.Writer.valueClass(BytesWritable.class));
-                //store the ledgerMetadata in -1 index
-                key.set(METADATA_KEY_INDEX);
                 byte[] ledgerMetadata = buildLedgerMetadataFormat(readHandle.getLedgerMetadata());
-                value.set(ledgerMetadata, 0, ledgerMetadata.length);
-                dataWriter.append(key, value);
+                if (nativeFormatFileSystem != null) {
+                    dataWriter = new LocalFileLedgerWriter(nativeFormatFileSystem.pathToFile(new Path(dataFilePath)),
+                            ledgerMetadata);
+                } else {
+                    dataWriter = new MapFileLedgerWriter(configuration, new Path(dataFilePath), ledgerMetadata);
+                }
                 AtomicLong haveOffloadEntryNumber = new AtomicLong(0);
                 long needToOffloadFirstEntryNumber = 0;
                 CountDownLatch countDownLatch;
@@ -246,7 +266,7 @@ public class FileSystemManagedLedgerOffloader implements LedgerOffloader {
                 if (fileSystemWriteException != null) {
                     throw fileSystemWriteException;
                 }
-                IOUtils.closeStream(dataWriter);
+                dataWriter.close();
                 promise.complete(null);
             } catch (Exception e) {
                 log.error("Exception when get CompletableFuture<LedgerEntries> : ManagerLedgerName: {}, "
@@ -254,6 +274,9 @@ public class FileSystemManagedLedgerOffloader implements LedgerOffloader {
                 if (e instanceof InterruptedException) {
                     Thread.currentThread().interrupt();
                 }
+                if (dataWriter != null) {
+                    dataWriter.abort();
+                }
                 this.offloaderStats.recordOffloadError(topicName);
                 promise.completeExceptionally(e);
             }
@@ -264,10 +287,7 @@ public class FileSystemManagedLedgerOffloader implements LedgerOffloader {
 
         private LedgerEntries ledgerEntriesOnce;
 
-        private final LongWritable key = new LongWritable();
-        private final BytesWritable value = new BytesWritable();
-
-        private MapFile.Writer dataWriter;
+        private OffloadedLedgerWriter dataWriter;
         private CountDownLatch countDownLatch;
         private AtomicLong haveOffloadEntryNumber;
         private LedgerReader ledgerReader;
@@ -297,7 +317,7 @@ public class FileSystemManagedLedgerOffloader implements LedgerOffloader {
 
 
         public static FileSystemWriter create(LedgerEntries ledgerEntriesOnce,
-                                              MapFile.Writer dataWriter,
+                                              OffloadedLedgerWriter dataWriter,
                                               Semaphore semaphore,
                                               CountDownLatch countDownLatch,
                                               AtomicLong haveOffloadEntryNumber,
@@ -320,15 +340,9 @@ public class FileSystemManagedLedgerOffloader implements LedgerOffloader {
                 Iterator<LedgerEntry> iterator = ledgerEntriesOnce.iterator();
                 while (iterator.hasNext()) {
                     LedgerEntry entry = iterator.next();
-                    long entryId = entry.getEntryId();
-                    key.set(entryId);
-                    byte[] currentEntryBytes;
-                    int currentEntrySize;
+                    int currentEntrySize = (int) entry.getLength();
                     try {
-                        currentEntryBytes = entry.getEntryBytes();
-                        currentEntrySize = currentEntryBytes.length;
-                        value.set(currentEntryBytes, 0, currentEntrySize);
-                        dataWriter.append(key, value);
+                        dataWriter.append(entry);
                     } catch (IOException e) {
                         ledgerReader.fileSystemWriteException = e;
                         ledgerReader.offloaderStats.recordWriteToStorageError(topicName);
@@ -355,6 +369,15 @@ public class FileSystemManagedLedgerOffloader implements LedgerOffloader {
         String dataFilePath = getDataFilePath(storagePath, ledgerId, uuid);
         scheduler.chooseThread(ledgerId).execute(() -> {
             try {
+                // The ledgers offloaded in the native format are read back even if it has been disabled since
+                File localDirectory = localFileSystem != null ? localFileSystem.pathToFile(new Path(dataFilePath))
+                        : null;
+                if (localDirectory != null && LocalFileLedgerWriter.exists(localDirectory)) {
+                    promise.complete(LocalFileBackedReadHandleImpl.open(
+                            scheduler.chooseThread(ledgerId), localDirectory, ledgerId, this.offloaderStats,
+                            ledgerName));
+                    return;
+                }
                 MapFile.Reader reader = new MapFile.Reader(new Path(dataFilePath),
                         configuration);
                 promise.complete(FileStoreBackedReadHandleImpl.open(
@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.offload.filesystem.impl;
+
+import static org.apache.bookkeeper.mledger.offload.OffloadUtils.parseLedgerMetadata;
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.api.LastConfirmedAndEntry;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.client.impl.LedgerEntriesImpl;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.mledger.LedgerOffloaderStats;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
+import org.apache.pulsar.common.naming.TopicName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read handle of a ledger offloaded in the native local file format, see {@link LocalFileLedgerWriter}.
+ *
+ * <p>The index and the entries files are memory mapped, an entry is located with a single lookup in the offsets and
+ * returned as a read only {@link ByteBuf} over the mapped file, without copying it. The entries file is mapped in
+ * segments of 1 GB, the few entries crossing a segment boundary are read with the file channel instead.
+ */
+public class LocalFileBackedReadHandleImpl implements ReadHandle {
+    private static final Logger log = LoggerFactory.getLogger(LocalFileBackedReadHandleImpl.class);
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final ExecutorService executor;
+    private final long ledgerId;
+    private final LedgerMetadata ledgerMetadata;
+    private final LongBuffer offsets;
+    private final int entryCount;
+    private final FileChannel entriesChannel;
+    private final long segmentSize;
+    private final MappedByteBuffer[] segments;
+    private final LedgerOffloaderStats offloaderStats;
+    private final String topicName;
+    enum State {
+        Opened,
+        Closed
+    }
+    private volatile State state;
+    private final AtomicReference<CompletableFuture<Void>> closeFuture = new AtomicReference<>();
+
+    private LocalFileBackedReadHandleImpl(ExecutorService executor, File directory, long ledgerId,
+                                          LedgerOffloaderStats offloaderStats,
+                                          String managedLedgerName, long segmentSize) throws IOException {
+        this.ledgerId = ledgerId;
+        this.segmentSize = segmentSize;
+        this.executor = executor;
+        this.offloaderStats = offloaderStats;
+        this.topicName = TopicName.fromPersistenceNamingEncoding(managedLedgerName);
+
+        long startReadIndexTime = System.nanoTime();
+        File indexFile = new File(directory, LocalFileLedgerWriter.INDEX_FILE);
+        ByteBuffer index;
+        try (FileChannel indexChannel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size());
+        }
+        try {
+            int magic = index.getInt();
+            if (magic != LocalFileLedgerWriter.INDEX_MAGIC_WORD) {
+                throw new IOException(String.format("Invalid MagicWord. read: 0x%x  expected: 0x%x",
+                        magic, LocalFileLedgerWriter.INDEX_MAGIC_WORD));
+            }
+            int version = index.getInt();
+            if (version != LocalFileLedgerWriter.CURRENT_VERSION) {
+                throw new IOException(String.format("Invalid index version %d for %s, expect %d",
+                        version, indexFile, LocalFileLedgerWriter.CURRENT_VERSION));
+            }
+            byte[] metadataBytes = new byte[index.getInt()];
+            index.get(metadataBytes);
+            this.ledgerMetadata = parseLedgerMetadata(ledgerId, metadataBytes);
+            this.entryCount = index.getInt();
+            this.offsets = index.slice(index.position(), (entryCount + 1) * Long.BYTES).asLongBuffer();
+        } catch (RuntimeException e) {
+            throw new IOException("Fail to read the index " + indexFile + " of ledger " + ledgerId, e);
+        }
+        offloaderStats.recordReadOffloadIndexLatency(topicName,
+                System.nanoTime() - startReadIndexTime, TimeUnit.NANOSECONDS);
+
+        File entriesFile = new File(directory, LocalFileLedgerWriter.ENTRIES_FILE);
+        this.entriesChannel = FileChannel.open(entriesFile.toPath(), StandardOpenOption.READ);
+        try {
+            long entriesSize = entriesChannel.size();
+            if (entriesSize != offsets.get(entryCount)) {
+                throw new IOException("The entries file " + entriesFile + " has " + entriesSize
+                        + " bytes, expected " + offsets.get(entryCount));
+            }
+            this.segments = new MappedByteBuffer[(int) ((entriesSize + segmentSize - 1) / segmentSize)];
+            for (int i = 0; i < segments.length; i++) {
+                long segmentStart = i * segmentSize;
+                segments[i] = entriesChannel.map(FileChannel.MapMode.READ_ONLY, segmentStart,
+                        Math.min(segmentSize, entriesSize - segmentStart));
+            }
+        } catch (IOException e) {
+            entriesChannel.close();
+            throw e;
+        }
+        state = State.Opened;
+    }
+
+    @Override
+    public long getId() {
+        return ledgerId;
+    }
+
+    @Override
+    public LedgerMetadata getLedgerMetadata() {
+        return ledgerMetadata;
+    }
+
+    @Override
+    public CompletableFuture<Void> closeAsync() {
+        if (closeFuture.get() != null || !closeFuture.compareAndSet(null, new CompletableFuture<>())) {
+            return closeFuture.get();
+        }
+
+        CompletableFuture<Void> promise = closeFuture.get();
+        executor.execute(() -> {
+            try {
+                // The mappings stay valid for the entries still referenced, they are released once collected
+                entriesChannel.close();
+                state = State.Closed;
+                promise.complete(null);
+            } catch (IOException t) {
+                promise.completeExceptionally(t);
+            }
+        });
+        return promise;
+    }
+
+    @Override
+    public CompletableFuture<LedgerEntries> readAsync(long firstEntry, long lastEntry) {
+        if (log.isDebugEnabled()) {
+            log.debug("Ledger {}: reading {} - {}", getId(), firstEntry, lastEntry);
+        }
+        CompletableFuture<LedgerEntries> promise = new CompletableFuture<>();
+        executor.execute(() -> {
+            if (state == State.Closed) {
+                log.warn("Reading a closed read handler. Ledger ID: {}, Read range: {}-{}",
+                        ledgerId, firstEntry, lastEntry);
+                promise.completeExceptionally(new ManagedLedgerException.OffloadReadHandleClosedException());
+                return;
+            }
+            if (firstEntry > lastEntry
+                    || firstEntry < 0
+                    || lastEntry > getLastAddConfirmed()
+                    || lastEntry >= entryCount) {
+                promise.completeExceptionally(new BKException.BKIncorrectParameterException());
+                return;
+            }
+            List<LedgerEntry> entries = new ArrayList<>((int) (lastEntry - firstEntry + 1));
+            long startReadTime = System.nanoTime();
+            long bytesRead = 0;
+            try {
+                for (long entryId = firstEntry; entryId <= lastEntry; entryId++) {
+                    long start = offsets.get((int) entryId);
+                    int length = (int) (offsets.get((int) entryId + 1) - start);
+                    entries.add(LedgerEntryImpl.create(ledgerId, entryId, length, readEntry(start, length)));
+                    bytesRead += length;
+                }
+                this.offloaderStats.recordReadOffloadDataLatency(topicName,
+                        System.nanoTime() - startReadTime, TimeUnit.NANOSECONDS);
+                this.offloaderStats.recordReadOffloadBytes(topicName, bytesRead);
+                promise.complete(LedgerEntriesImpl.create(entries));
+            } catch (Throwable t) {
+                this.offloaderStats.recordReadOffloadError(topicName);
+                promise.completeExceptionally(t);
+                entries.forEach(LedgerEntry::close);
+            }
+        });
+        return promise;
+    }
+
+    private ByteBuf readEntry(long start, int length) throws IOException {
+        if (length == 0) {
+            return Unpooled.EMPTY_BUFFER;
+        }
+        int segment = (int) (start / segmentSize);
+        int offsetInSegment = (int) (start - segment * segmentSize);
+        if (offsetInSegment + length <= segments[segment].capacity()) {
+            return Unpooled.wrappedBuffer(segments[segment].slice(offsetInSegment, length));
+        }
+        ByteBuf buf = PulsarByteBufAllocator.DEFAULT.buffer(length, length);
+        try {
+            while (buf.isWritable()) {
+                if (buf.writeBytes(entriesChannel, start + buf.writerIndex(), buf.writableBytes()) < 0) {
+                    throw new IOException("Unexpected end of the entries file of ledger " + ledgerId);
+                }
+            }
+        } catch (IOException e) {
+            buf.release();
+            throw e;
+        }
+        return buf;
+    }
+
+    @Override
+    public CompletableFuture<LedgerEntries> readUnconfirmedAsync(long firstEntry, long lastEntry) {
+        return readAsync(firstEntry, lastEntry);
+    }
+
+    @Override
+    public CompletableFuture<Long> readLastAddConfirmedAsync() {
+        return CompletableFuture.completedFuture(getLastAddConfirmed());
+    }
+
+    @Override
+    public CompletableFuture<Long> tryReadLastAddConfirmedAsync() {
+        return CompletableFuture.completedFuture(getLastAddConfirmed());
+    }
+
+    @Override
+    public long getLastAddConfirmed() {
+        return getLedgerMetadata().getLastEntryId();
+    }
+
+    @Override
+    public long getLength() {
+        return getLedgerMetadata().getLength();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return getLedgerMetadata().isClosed();
+    }
+
+    @Override
+    public CompletableFuture<LastConfirmedAndEntry> readLastAddConfirmedAndEntryAsync(long entryId,
+                                                                                      long timeOutInMillis,
+                                                                                      boolean parallel) {
+        CompletableFuture<LastConfirmedAndEntry> promise = new CompletableFuture<>();
+        promise.completeExceptionally(new UnsupportedOperationException());
+        return promise;
+    }
+
+    public static ReadHandle open(ScheduledExecutorService executor, File directory, long ledgerId,
+                                  LedgerOffloaderStats offloaderStats, String managedLedgerName) throws IOException {
+        return open(executor, directory, ledgerId, offloaderStats, managedLedgerName, SEGMENT_SIZE);
+    }
+
+    @VisibleForTesting
+    static ReadHandle open(ScheduledExecutorService executor, File directory, long ledgerId,
+                           LedgerOffloaderStats offloaderStats, String managedLedgerName,
+                           long segmentSize) throws IOException {
+        return new LocalFileBackedReadHandleImpl(executor, directory, ledgerId, offloaderStats, managedLedgerName,
+                segmentSize);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.offload.filesystem.impl;
+
+import io.netty.buffer.ByteBuf;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+
+/**
+ * Writes an offloaded ledger in the native format of the local file systems, which is read back with
+ * {@link LocalFileBackedReadHandleImpl} without going through Hadoop.
+ *
+ * <p>Like the MapFile it replaces, an offloaded ledger is a directory, holding two files:
+ * <ul>
+ *   <li>{@code entries}: the payloads of the entries back to back, without any framing</li>
+ *   <li>{@code index}: | magic | version | ledger_metadata_len | ledger metadata | entry_count | offsets... |
+ *   with entry_count + 1 offsets, the entry {@code i} spans {@code [offsets[i], offsets[i + 1])} of the entries
+ *   file</li>
+ * </ul>
+ * The index is written once all the entries are synced, a directory without index is an incomplete offload.
+ */
+class LocalFileLedgerWriter implements OffloadedLedgerWriter {
+    static final String ENTRIES_FILE = "entries";
+    static final String INDEX_FILE = "index";
+    static final int INDEX_MAGIC_WORD = 0x4C464F31;
+    static final int CURRENT_VERSION = 1;
+
+    private final Path directory;
+    private final byte[] ledgerMetadata;
+    private final FileChannel entriesChannel;
+    private long[] offsets = new long[1024];
+    private int entryCount = 0;
+    private long position = 0;
+
+    LocalFileLedgerWriter(File directory, byte[] ledgerMetadata) throws IOException {
+        this.directory = directory.toPath();
+        this.ledgerMetadata = ledgerMetadata;
+        Files.createDirectories(this.directory);
+        this.entriesChannel = FileChannel.open(this.directory.resolve(ENTRIES_FILE),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    static boolean exists(File directory) {
+        return new File(directory, INDEX_FILE).isFile();
+    }
+
+    @Override
+    public void append(LedgerEntry entry) throws IOException {
+        if (entry.getEntryId() != entryCount) {
+            throw new IOException("Expected entry " + entryCount + " but got entry " + entry.getEntryId());
+        }
+        ByteBuf entryBuffer = entry.getEntryBuffer();
+        int length = entryBuffer.readableBytes();
+        ByteBuffer[] buffers = entryBuffer.nioBuffers(entryBuffer.readerIndex(), length);
+        long remaining = length;
+        while (remaining > 0) {
+            remaining -= entriesChannel.write(buffers);
+        }
+
+        if (entryCount + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[entryCount++] = position;
+        position += length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            entriesChannel.force(true);
+        } finally {
+            entriesChannel.close();
+        }
+        offsets[entryCount] = position;
+
+        Path indexTmpFile = directory.resolve(INDEX_FILE + ".tmp");
+        try (FileOutputStream fileStream = new FileOutputStream(indexTmpFile.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileStream))) {
+            out.writeInt(INDEX_MAGIC_WORD);
+            out.writeInt(CURRENT_VERSION);
+            out.writeInt(ledgerMetadata.length);
+            out.write(ledgerMetadata);
+            out.writeInt(entryCount);
+            for (int i = 0; i <= entryCount; i++) {
+                out.writeLong(offsets[i]);
+            }
+            out.flush();
+            fileStream.getFD().sync();
+        }
+        Files.move(indexTmpFile, directory.resolve(INDEX_FILE), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void abort() {
+        try {
+            entriesChannel.close();
+        } catch (IOException e) {
+            // the offload failed already
+        }
+    }
+}
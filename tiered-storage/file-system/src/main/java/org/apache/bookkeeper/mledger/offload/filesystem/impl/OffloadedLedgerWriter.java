@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.offload.filesystem.impl;
+
+import java.io.IOException;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+
+/**
+ * Writes the entries of a ledger being offloaded, in entry id order, to one of the offload formats.
+ */
+interface OffloadedLedgerWriter {
+
+    /**
+     * Append the next entry of the ledger.
+     */
+    void append(LedgerEntry entry) throws IOException;
+
+    /**
+     * Complete the offloaded ledger once all its entries are appended.
+     */
+    void close() throws IOException;
+
+    /**
+     * Release the resources of a failed offload, the incomplete offloaded ledger is not readable.
+     */
+    void abort();
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.offload.filesystem.impl;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import lombok.Cleanup;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.client.BookKeeper;
+import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.client.PulsarMockBookKeeper;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.mledger.LedgerOffloaderStatsDisable;
+import org.apache.commons.io.FileUtils;
+import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.common.policies.data.OffloadPoliciesImpl;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Compares the replay throughput of a ledger offloaded to the local file system as a MapFile and in the native
+ * format.
+ */
+@Slf4j
+public class FileSystemOffloadReadBenchmark {
+
+    @DataProvider(name = "format")
+    public static Object[][] format() {
+        return new Object[][]{
+                {"MapFile", "filesystem_offload_core_site.xml"},
+                {"Native", "filesystem_offload_native_core_site.xml"},
+        };
+    }
+
+    @Test(dataProvider = "format", enabled = false)
+    public void testReplay(String format, String profile) throws Exception {
+        final int nEntries = 100_000;
+        final int entrySize = 1024;
+        final int entriesPerRead = 100;
+        final int nReplays = 10;
+
+        @Cleanup("shutdown")
+        OrderedScheduler scheduler = OrderedScheduler.newSchedulerBuilder().numThreads(1).name("offloader").build();
+        File basePath = Files.createTempDirectory("offload-benchmark").toFile();
+        try {
+            OffloadPoliciesImpl offloadPolicies = new OffloadPoliciesImpl();
+            offloadPolicies.setFileSystemURI("file://" + basePath.getAbsolutePath());
+            offloadPolicies.setManagedLedgerOffloadDriver("filesystem");
+            offloadPolicies.setFileSystemProfilePath(getClass().getClassLoader().getResource(profile).getPath());
+            @Cleanup
+            var offloader = FileSystemManagedLedgerOffloader.create(offloadPolicies, scheduler,
+                    LedgerOffloaderStatsDisable.INSTANCE);
+
+            @Cleanup
+            BookKeeper bk = new PulsarMockBookKeeper(scheduler);
+            LedgerHandle lh = bk.createLedger(1, 1, 1, BookKeeper.DigestType.CRC32, "".getBytes());
+            byte[] payload = new byte[entrySize];
+            for (int i = 0; i < nEntries; i++) {
+                lh.addEntry(payload);
+            }
+            lh.close();
+            @Cleanup
+            ReadHandle read = bk.newOpenLedgerOp()
+                    .withLedgerId(lh.getId())
+                    .withDigestType(DigestType.CRC32)
+                    .withPassword("".getBytes()).execute().get();
+
+            Map<String, String> offloadDriverMetadata = new HashMap<>();
+            offloadDriverMetadata.put("ManagedLedgerName", TopicName.get("benchmark").getPersistenceNamingEncoding());
+            UUID uuid = UUID.randomUUID();
+            offloader.offload(read, uuid, offloadDriverMetadata).get();
+
+            @Cleanup
+            ReadHandle toTest = offloader.readOffloaded(read.getId(), uuid, offloadDriverMetadata).get();
+            long bytes = 0;
+            long startTime = System.nanoTime();
+            for (int replay = 0; replay < nReplays; replay++) {
+                for (long entryId = 0; entryId < nEntries; entryId += entriesPerRead) {
+                    try (LedgerEntries entries = toTest.read(entryId,
+                            Math.min(entryId + entriesPerRead, nEntries) - 1)) {
+                        for (LedgerEntry entry : entries) {
+                            bytes += entry.getLength();
+                        }
+                    }
+                }
+            }
+            long endTime = System.nanoTime();
+            double throughput = 1e9 * bytes / (endTime - startTime);
+
+            log.info("[{}] Replay Throughput: {} MB/s", format, throughput / 1024 / 1024);
+        } finally {
+            FileUtils.deleteDirectory(basePath);
+        }
+    }
+}
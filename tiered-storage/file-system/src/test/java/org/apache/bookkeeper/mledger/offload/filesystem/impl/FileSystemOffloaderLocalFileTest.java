@@ -19,6 +19,8 @@
 package org.apache.bookkeeper.mledger.offload.filesystem.impl;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -143,4 +145,66 @@ public class FileSystemOffloaderLocalFileTest {
         Path offloadedFilePath = Paths.get(basePath, mlName);
         assertEquals(Files.exists(offloadedFilePath), true);
     }
+
+    @Test
+    public void testReadWriteWithLocalFileNativeFormat() throws Exception {
+        final String basePath = "/tmp";
+        OffloadPoliciesImpl offloadPolicies = new OffloadPoliciesImpl();
+        offloadPolicies.setFileSystemURI("file://" + basePath);
+        offloadPolicies.setManagedLedgerOffloadDriver("filesystem");
+        offloadPolicies.setFileSystemProfilePath(getResourceFilePath("filesystem_offload_native_core_site.xml"));
+
+        @Cleanup
+        var offloader = FileSystemManagedLedgerOffloader.create(offloadPolicies, scheduler, offloaderStats);
+
+        int numberOfEntries = 100;
+        @Cleanup
+        BookKeeper bk = new PulsarMockBookKeeper(scheduler);
+        LedgerHandle lh = bk.createLedger(1, 1, 1, BookKeeper.DigestType.CRC32, "".getBytes());
+        for (int i = 0; i < numberOfEntries; i++) {
+            lh.addEntry(("foobar" + i).getBytes());
+        }
+        lh.close();
+
+        @Cleanup
+        ReadHandle read = bk.newOpenLedgerOp()
+            .withLedgerId(lh.getId())
+            .withDigestType(DigestType.CRC32)
+            .withPassword("".getBytes()).execute().get();
+
+        final String mlName = TopicName.get("testWriteLocalFileNative").getPersistenceNamingEncoding();
+        Map<String, String> offloadDriverMetadata = new HashMap<>();
+        offloadDriverMetadata.put("ManagedLedgerName", mlName);
+
+        UUID uuid = UUID.randomUUID();
+        offloader.offload(read, uuid, offloadDriverMetadata).get();
+
+        // the ledger is offloaded in the native format instead of a MapFile
+        Path ledgerPath = Paths.get(basePath, mlName, read.getId() + "-" + uuid);
+        assertTrue(Files.exists(ledgerPath.resolve(LocalFileLedgerWriter.INDEX_FILE)));
+        assertTrue(Files.exists(ledgerPath.resolve(LocalFileLedgerWriter.ENTRIES_FILE)));
+
+        @Cleanup
+        ReadHandle toTest = offloader.readOffloaded(read.getId(), uuid, offloadDriverMetadata).get();
+        assertTrue(toTest instanceof LocalFileBackedReadHandleImpl);
+        assertEquals(toTest.getLastAddConfirmed(), read.getLastAddConfirmed());
+        @Cleanup
+        LedgerEntries toTestEntries = toTest.read(0, numberOfEntries - 1);
+        @Cleanup
+        LedgerEntries toWriteEntries = read.read(0, numberOfEntries - 1);
+        Iterator<LedgerEntry> toTestIter = toTestEntries.iterator();
+        Iterator<LedgerEntry> toWriteIter = toWriteEntries.iterator();
+        while (toTestIter.hasNext()) {
+            LedgerEntry toWriteEntry = toWriteIter.next();
+            LedgerEntry toTestEntry = toTestIter.next();
+
+            assertEquals(toWriteEntry.getLedgerId(), toTestEntry.getLedgerId());
+            assertEquals(toWriteEntry.getEntryId(), toTestEntry.getEntryId());
+            assertEquals(toWriteEntry.getLength(), toTestEntry.getLength());
+            assertEquals(toWriteEntry.getEntryBuffer(), toTestEntry.getEntryBuffer());
+        }
+
+        offloader.deleteOffloaded(read.getId(), uuid, offloadDriverMetadata).get();
+        assertFalse(Files.exists(ledgerPath));
+    }
 }
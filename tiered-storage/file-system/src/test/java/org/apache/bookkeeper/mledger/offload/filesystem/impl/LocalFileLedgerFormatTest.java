@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.offload.filesystem.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Iterator;
+import lombok.Cleanup;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.BookKeeper;
+import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.client.PulsarMockBookKeeper;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.mledger.LedgerOffloaderStatsDisable;
+import org.apache.bookkeeper.mledger.offload.OffloadUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.pulsar.common.naming.TopicName;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class LocalFileLedgerFormatTest {
+    private static final String ML_NAME = TopicName.get("testLocalFileFormat").getPersistenceNamingEncoding();
+
+    private OrderedScheduler scheduler;
+    private BookKeeper bk;
+    private File directory;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        scheduler = OrderedScheduler.newSchedulerBuilder().numThreads(1).name("offloader").build();
+        bk = new PulsarMockBookKeeper(scheduler);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void cleanup() throws Exception {
+        if (bk != null) {
+            bk.close();
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @BeforeMethod
+    public void createDirectory() throws Exception {
+        directory = new File(Files.createTempDirectory("local-file-ledger").toFile(), "ledger");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws Exception {
+        FileUtils.deleteDirectory(directory.getParentFile());
+    }
+
+    private ReadHandle createLedger(int numberOfEntries) throws Exception {
+        LedgerHandle lh = bk.createLedger(1, 1, 1, BookKeeper.DigestType.CRC32, "".getBytes());
+        for (int i = 0; i < numberOfEntries; i++) {
+            lh.addEntry(("foobar" + i).getBytes());
+        }
+        lh.close();
+        return bk.newOpenLedgerOp()
+                .withLedgerId(lh.getId())
+                .withDigestType(DigestType.CRC32)
+                .withPassword("".getBytes()).execute().get();
+    }
+
+    private void writeLedger(ReadHandle ledger) throws Exception {
+        LocalFileLedgerWriter writer = new LocalFileLedgerWriter(directory,
+                OffloadUtils.buildLedgerMetadataFormat(ledger.getLedgerMetadata()));
+        try (LedgerEntries entries = ledger.read(0, ledger.getLastAddConfirmed())) {
+            for (LedgerEntry entry : entries) {
+                writer.append(entry);
+            }
+        }
+        writer.close();
+    }
+
+    private static void assertSameEntries(ReadHandle expected, ReadHandle actual, long firstEntry, long lastEntry)
+            throws Exception {
+        try (LedgerEntries expectedEntries = expected.read(firstEntry, lastEntry);
+             LedgerEntries actualEntries = actual.read(firstEntry, lastEntry)) {
+            Iterator<LedgerEntry> expectedIter = expectedEntries.iterator();
+            Iterator<LedgerEntry> actualIter = actualEntries.iterator();
+            while (expectedIter.hasNext()) {
+                LedgerEntry expectedEntry = expectedIter.next();
+                LedgerEntry actualEntry = actualIter.next();
+                assertEquals(actualEntry.getLedgerId(), expectedEntry.getLedgerId());
+                assertEquals(actualEntry.getEntryId(), expectedEntry.getEntryId());
+                assertEquals(actualEntry.getLength(), expectedEntry.getLength());
+                assertEquals(actualEntry.getEntryBuffer(), expectedEntry.getEntryBuffer());
+            }
+            assertFalse(actualIter.hasNext());
+        }
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        @Cleanup
+        ReadHandle ledger = createLedger(100);
+        writeLedger(ledger);
+        assertTrue(LocalFileLedgerWriter.exists(directory));
+
+        @Cleanup
+        ReadHandle toTest = LocalFileBackedReadHandleImpl.open(scheduler, directory, ledger.getId(),
+                LedgerOffloaderStatsDisable.INSTANCE, ML_NAME);
+        assertEquals(toTest.getLastAddConfirmed(), ledger.getLastAddConfirmed());
+        assertEquals(toTest.getLength(), ledger.getLength());
+        assertSameEntries(ledger, toTest, 0, 99);
+        assertSameEntries(ledger, toTest, 1, 99);
+        assertSameEntries(ledger, toTest, 42, 42);
+
+        try {
+            toTest.read(50, 100);
+            fail("Should not read beyond the last entry");
+        } catch (BKException.BKIncorrectParameterException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReadAcrossSegments() throws Exception {
+        @Cleanup
+        ReadHandle ledger = createLedger(100);
+        writeLedger(ledger);
+
+        // small segments, so that many entries span two segments
+        @Cleanup
+        ReadHandle toTest = LocalFileBackedReadHandleImpl.open(scheduler, directory, ledger.getId(),
+                LedgerOffloaderStatsDisable.INSTANCE, ML_NAME, 16);
+        assertSameEntries(ledger, toTest, 0, 99);
+    }
+
+    @Test
+    public void testIncompleteOffloadIsNotReadable() throws Exception {
+        @Cleanup
+        ReadHandle ledger = createLedger(10);
+        LocalFileLedgerWriter writer = new LocalFileLedgerWriter(directory,
+                OffloadUtils.buildLedgerMetadataFormat(ledger.getLedgerMetadata()));
+        try (LedgerEntries entries = ledger.read(0, 4)) {
+            for (LedgerEntry entry : entries) {
+                writer.append(entry);
+            }
+        }
+        writer.abort();
+        assertFalse(LocalFileLedgerWriter.exists(directory));
+    }
+}
@@ -25,6 +25,8 @@ import org.apache.bookkeeper.mledger.LedgerOffloaderFactory;
 import org.apache.bookkeeper.mledger.LedgerOffloaderStats;
 import org.apache.bookkeeper.mledger.LedgerOffloaderStatsDisable;
 import org.apache.bookkeeper.mledger.offload.jcloud.impl.BlobStoreManagedLedgerOffloader;
+import org.apache.bookkeeper.mledger.offload.jcloud.impl.OffloadUploadExecutor;
+import org.apache.bookkeeper.mledger.offload.jcloud.impl.OffloadedBlockCache;
 import org.apache.bookkeeper.mledger.offload.jcloud.impl.OffsetsCache;
 import org.apache.bookkeeper.mledger.offload.jcloud.provider.JCloudBlobStoreProvider;
 import org.apache.bookkeeper.mledger.offload.jcloud.provider.TieredStorageConfiguration;
@@ -35,6 +37,8 @@ import org.apache.pulsar.common.policies.data.OffloadPoliciesImpl;
  */
 public class JCloudLedgerOffloaderFactory implements LedgerOffloaderFactory<BlobStoreManagedLedgerOffloader> {
     private final OffsetsCache entryOffsetsCache = new OffsetsCache();
+    private final OffloadedBlockCache blockCache = new OffloadedBlockCache();
+    private final OffloadUploadExecutor uploadExecutor = new OffloadUploadExecutor();
 
     @Override
     public boolean isDriverSupported(String driverName) {
@@ -55,7 +59,7 @@ public class JCloudLedgerOffloaderFactory implements LedgerOffloaderFactory<Blob
         TieredStorageConfiguration config =
                 TieredStorageConfiguration.create(offloadPolicies.toProperties());
         return BlobStoreManagedLedgerOffloader.create(config, userMetadata, scheduler, scheduler, offloaderStats,
-                entryOffsetsCache);
+                entryOffsetsCache, blockCache, uploadExecutor);
     }
 
     @Override
@@ -67,11 +71,13 @@ public class JCloudLedgerOffloaderFactory implements LedgerOffloaderFactory<Blob
         TieredStorageConfiguration config =
                 TieredStorageConfiguration.create(offloadPolicies.toProperties());
         return BlobStoreManagedLedgerOffloader.create(config, userMetadata, scheduler, readExecutor, offloaderStats,
-                entryOffsetsCache);
+                entryOffsetsCache, blockCache, uploadExecutor);
     }
 
     @Override
     public void close() throws Exception {
         entryOffsetsCache.close();
+        blockCache.close();
+        uploadExecutor.close();
     }
 }
@@ -23,6 +23,7 @@ import java.io.InputStream;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.common.annotation.InterfaceAudience.LimitedPrivate;
 import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
+import org.apache.bookkeeper.mledger.offload.jcloud.impl.CompressedDataChunks;
 import org.apache.bookkeeper.mledger.offload.jcloud.impl.OffloadIndexBlockV2BuilderImpl;
 
 /**
@@ -63,6 +64,12 @@ public interface OffloadIndexBlockBuilder {
      */
     OffloadIndexBlockBuilder withDataBlockHeaderLength(long dataHeaderLength);
 
+    /**
+     * Specify the table of the compressed chunks, if the data object is written in the compressed format.
+     * @param compressedChunks the compressed chunks of the data object
+     */
+    OffloadIndexBlockBuilder withCompressedChunks(CompressedDataChunks compressedChunks);
+
     /**
      * Finalize the immutable OffloadIndexBlock.
      */
@@ -47,6 +47,7 @@ public class BlobStoreBackedInputStreamImpl extends BackedInputStream {
     private LedgerOffloaderStats offloaderStats;
     private String managedLedgerName;
     private String topicName;
+    private OffloadedBlockCache blockCache;
 
     private long cursor;
     private long bufferOffsetStart;
@@ -77,6 +78,15 @@ public class BlobStoreBackedInputStreamImpl extends BackedInputStream {
         this.topicName = TopicName.fromPersistenceNamingEncoding(managedLedgerName);
     }
 
+    public BlobStoreBackedInputStreamImpl(BlobStore blobStore, String bucket, String key,
+                                          VersionCheck versionCheck,
+                                          long objectLen, int bufferSize,
+                                          LedgerOffloaderStats offloaderStats, String managedLedgerName,
+                                          OffloadedBlockCache blockCache) {
+        this(blobStore, bucket, key, versionCheck, objectLen, bufferSize, offloaderStats, managedLedgerName);
+        this.blockCache = blockCache != null && blockCache.isEnabled() ? blockCache : null;
+    }
+
     /**
      * Refill the buffered input if it is empty.
      * @return true if there are bytes to read, false otherwise
@@ -86,6 +96,10 @@ public class BlobStoreBackedInputStreamImpl extends BackedInputStream {
             if (cursor >= objectLen) {
                 return false;
             }
+            if (blockCache != null) {
+                refillBufferFromCache();
+                return true;
+            }
             long startRange = cursor;
             long endRange = Math.min(cursor + bufferSize - 1,
                                      objectLen - 1);
@@ -133,6 +147,78 @@ public class BlobStoreBackedInputStreamImpl extends BackedInputStream {
         return true;
     }
 
+    /**
+     * Refill the buffer with the cached block containing the cursor, the blocks are aligned on the buffer size so
+     * that the readers of an object using the same buffer size share them. The next blocks are prefetched in
+     * parallel.
+     */
+    private void refillBufferFromCache() throws IOException {
+        long blockIndex = cursor / bufferSize;
+        long blockStart = blockIndex * bufferSize;
+        long blockEnd = Math.min(blockStart + bufferSize - 1, objectLen - 1);
+        byte[] block;
+        try {
+            block = blockCache.get(new OffloadedBlockCache.Key(key, blockStart, (int) (blockEnd - blockStart + 1)),
+                    () -> readBlock(blockStart, blockEnd));
+        } catch (KeyNotFoundException | IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Error reading from BlobStore", e);
+        }
+        buffer.clear();
+        buffer.writeBytes(block);
+        buffer.readerIndex((int) (cursor - blockStart));
+        bufferOffsetStart = blockStart;
+        bufferOffsetEnd = blockEnd;
+        cursor = blockEnd + 1;
+
+        for (int i = 1; i <= blockCache.getPrefetchBlocks(); i++) {
+            long nextBlockIndex = blockIndex + i;
+            long nextBlockStart = nextBlockIndex * bufferSize;
+            if (nextBlockStart >= objectLen) {
+                break;
+            }
+            long nextBlockEnd = Math.min(nextBlockStart + bufferSize - 1, objectLen - 1);
+            blockCache.prefetch(new OffloadedBlockCache.Key(key, nextBlockStart,
+                            (int) (nextBlockEnd - nextBlockStart + 1)),
+                    () -> readBlock(nextBlockStart, nextBlockEnd));
+        }
+    }
+
+    private byte[] readBlock(long startRange, long endRange) throws IOException {
+        if (log.isDebugEnabled()) {
+            log.debug("readBlock {} - {} ({} bytes to read)", startRange, endRange, (endRange - startRange));
+        }
+        try {
+            long startReadTime = System.nanoTime();
+            Blob blob = blobStore.getBlob(bucket, key, new GetOptions().range(startRange, endRange));
+            if (blob == null) {
+                throw new KeyNotFoundException(bucket, key, "");
+            }
+            versionCheck.check(key, blob);
+
+            byte[] block;
+            try (InputStream stream = blob.getPayload().openStream()) {
+                block = stream.readNBytes((int) (endRange - startRange + 1));
+            }
+            if (this.offloaderStats != null) {
+                this.offloaderStats.recordReadOffloadDataLatency(topicName,
+                        System.nanoTime() - startReadTime, TimeUnit.NANOSECONDS);
+                this.offloaderStats.recordReadOffloadBytes(topicName, endRange - startRange + 1);
+            }
+            return block;
+        } catch (Throwable e) {
+            if (null != this.offloaderStats) {
+                this.offloaderStats.recordReadOffloadError(this.topicName);
+            }
+            // If the blob is not found, the original exception is thrown and handled by the caller.
+            if (e instanceof KeyNotFoundException) {
+                throw e;
+            }
+            throw new IOException("Error reading from BlobStore", e);
+        }
+    }
+
     void fillBuffer(InputStream is, int bytesToCopy) throws IOException {
         while (bytesToCopy > 0) {
             int writeBytes = buffer.writeBytes(is, bytesToCopy);
@@ -284,6 +284,17 @@ public class BlobStoreBackedReadHandleImpl implements ReadHandle, OffloadedLedge
                                   LedgerOffloaderStats offloaderStats, String managedLedgerName,
                                   OffsetsCache entryOffsetsCache)
             throws IOException, BKException.BKNoSuchLedgerExistsException {
+        return open(executor, blobStore, bucket, key, indexKey, versionCheck, ledgerId, readBufferSize,
+                offloaderStats, managedLedgerName, entryOffsetsCache, null);
+    }
+
+    public static ReadHandle open(ScheduledExecutorService executor,
+                                  BlobStore blobStore, String bucket, String key, String indexKey,
+                                  VersionCheck versionCheck,
+                                  long ledgerId, int readBufferSize,
+                                  LedgerOffloaderStats offloaderStats, String managedLedgerName,
+                                  OffsetsCache entryOffsetsCache, OffloadedBlockCache blockCache)
+            throws IOException, BKException.BKNoSuchLedgerExistsException {
         int retryCount = 3;
         OffloadIndexBlock index = null;
         IOException lastException = null;
@@ -320,8 +331,13 @@ public class BlobStoreBackedReadHandleImpl implements ReadHandle, OffloadedLedge
             throw lastException;
         }
 
-        BackedInputStream inputStream = new BlobStoreBackedInputStreamImpl(blobStore, bucket, key,
-                versionCheck, index.getDataObjectLength(), readBufferSize, offloaderStats, managedLedgerName);
+        CompressedDataChunks compressedChunks = index instanceof OffloadIndexBlockImpl indexImpl
+                ? indexImpl.getCompressedChunks() : null;
+        BackedInputStream inputStream = compressedChunks != null
+                ? new CompressedBlobStoreBackedInputStreamImpl(blobStore, bucket, key, versionCheck,
+                        compressedChunks, offloaderStats, managedLedgerName, blockCache)
+                : new BlobStoreBackedInputStreamImpl(blobStore, bucket, key, versionCheck,
+                        index.getDataObjectLength(), readBufferSize, offloaderStats, managedLedgerName, blockCache);
 
         return new BlobStoreBackedReadHandleImpl(ledgerId, index, inputStream, executor, entryOffsetsCache);
     }
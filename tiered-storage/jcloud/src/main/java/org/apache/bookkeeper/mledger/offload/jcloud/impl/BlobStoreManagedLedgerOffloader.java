@@ -36,6 +36,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import lombok.NonNull;
@@ -63,6 +64,7 @@ import org.apache.bookkeeper.mledger.offload.jcloud.OffloadIndexBlockV2Builder;
 import org.apache.bookkeeper.mledger.offload.jcloud.provider.BlobStoreLocation;
 import org.apache.bookkeeper.mledger.offload.jcloud.provider.TieredStorageConfiguration;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats;
+import org.apache.pulsar.client.api.CompressionType;
 import org.apache.pulsar.common.naming.TopicName;
 import org.apache.pulsar.common.policies.data.OffloadPolicies;
 import org.apache.pulsar.common.policies.data.OffloadPoliciesImpl;
@@ -111,6 +113,13 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
     private final AtomicLong segmentLength = new AtomicLong(0);
     private final long maxBufferLength;
     private final OffsetsCache entryOffsetsCache;
+    private final OffloadedBlockCache blockCache;
+    // Compresses and uploads the data block parts concurrently, when the offload parallelism is greater than 1 or
+    // the blocks are compressed
+    private final ExecutorService uploadExecutor;
+    // The upload executor created for this offloader when none is shared with it
+    private final OffloadUploadExecutor ownUploadExecutor;
+    private final CompressionType compressionType;
     private final ConcurrentLinkedQueue<Entry> offloadBuffer = new ConcurrentLinkedQueue<>();
     private CompletableFuture<OffloadResult> offloadResult;
     private volatile Position lastOfferedPosition = PositionFactory.LATEST;
@@ -131,14 +140,55 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
                                                          OffsetsCache entryOffsetsCache)
             throws IOException {
 
+        return create(config, userMetadata, scheduler, readExecutor, offloaderStats, entryOffsetsCache, null);
+    }
+
+    public static BlobStoreManagedLedgerOffloader create(TieredStorageConfiguration config,
+                                                         Map<String, String> userMetadata,
+                                                         OrderedScheduler scheduler,
+                                                         OrderedScheduler readExecutor,
+                                                         LedgerOffloaderStats offloaderStats,
+                                                         OffsetsCache entryOffsetsCache,
+                                                         OffloadedBlockCache blockCache)
+            throws IOException {
+
+        return create(config, userMetadata, scheduler, readExecutor, offloaderStats, entryOffsetsCache, blockCache,
+                null);
+    }
+
+    public static BlobStoreManagedLedgerOffloader create(TieredStorageConfiguration config,
+                                                         Map<String, String> userMetadata,
+                                                         OrderedScheduler scheduler,
+                                                         OrderedScheduler readExecutor,
+                                                         LedgerOffloaderStats offloaderStats,
+                                                         OffsetsCache entryOffsetsCache,
+                                                         OffloadedBlockCache blockCache,
+                                                         OffloadUploadExecutor uploadExecutor)
+            throws IOException {
+
         return new BlobStoreManagedLedgerOffloader(config, scheduler, readExecutor,
-                userMetadata, offloaderStats, entryOffsetsCache);
+                userMetadata, offloaderStats, entryOffsetsCache, blockCache, uploadExecutor);
     }
 
     BlobStoreManagedLedgerOffloader(TieredStorageConfiguration config, OrderedScheduler scheduler,
                                     OrderedScheduler readExecutor,
                                     Map<String, String> userMetadata, LedgerOffloaderStats offloaderStats,
                                     OffsetsCache entryOffsetsCache) {
+        this(config, scheduler, readExecutor, userMetadata, offloaderStats, entryOffsetsCache, null);
+    }
+
+    BlobStoreManagedLedgerOffloader(TieredStorageConfiguration config, OrderedScheduler scheduler,
+                                    OrderedScheduler readExecutor,
+                                    Map<String, String> userMetadata, LedgerOffloaderStats offloaderStats,
+                                    OffsetsCache entryOffsetsCache, OffloadedBlockCache blockCache) {
+        this(config, scheduler, readExecutor, userMetadata, offloaderStats, entryOffsetsCache, blockCache, null);
+    }
+
+    BlobStoreManagedLedgerOffloader(TieredStorageConfiguration config, OrderedScheduler scheduler,
+                                    OrderedScheduler readExecutor,
+                                    Map<String, String> userMetadata, LedgerOffloaderStats offloaderStats,
+                                    OffsetsCache entryOffsetsCache, OffloadedBlockCache blockCache,
+                                    OffloadUploadExecutor uploadExecutor) {
         this.scheduler = scheduler;
         this.readExecutor = readExecutor;
         this.userMetadata = userMetadata;
@@ -153,6 +203,10 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
         //ensure buffer can have enough content to fill a block
         this.maxBufferLength = Math.max(config.getWriteBufferSizeInBytes(), config.getMinBlockSizeInBytes());
         this.entryOffsetsCache = entryOffsetsCache;
+        this.blockCache = blockCache;
+        this.compressionType = config.getOffloadCompressionType();
+        this.ownUploadExecutor = uploadExecutor == null ? new OffloadUploadExecutor() : null;
+        this.uploadExecutor = (uploadExecutor != null ? uploadExecutor : ownUploadExecutor).get(config);
         this.segmentBeginTimeMillis = System.currentTimeMillis();
         if (!Strings.isNullOrEmpty(config.getRegion())) {
             this.writeLocation = new LocationBuilder()
@@ -189,6 +243,11 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
         return config.getOffloadDriverMetadata();
     }
 
+    private String dataFormatVersion() {
+        return compressionType != CompressionType.NONE ? DataBlockUtils.COMPRESSED_VERSION
+                : DataBlockUtils.CURRENT_VERSION;
+    }
+
     /**
      * Upload the DataBlocks associated with the given ReadHandle using MultiPartUpload,
      * Creating indexBlocks for each corresponding DataBlock that is uploaded.
@@ -232,7 +291,7 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
                 if (extraMetadata != null) {
                    objectMetadata.putAll(extraMetadata);
                 }
-                DataBlockUtils.addVersionInfo(blobBuilder, objectMetadata);
+                DataBlockUtils.addVersionInfo(blobBuilder, objectMetadata, dataFormatVersion());
                 Blob blob = blobBuilder.build();
                 log.info("initiateMultipartUpload bucket {}, metadata {} ", config.getBucket(), blob.getMetadata());
                 mpu = writeBlobStore.initiateMultipartUpload(config.getBucket(), blob.getMetadata(), new PutOptions());
@@ -244,38 +303,50 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
             long dataObjectLength = 0;
             // start multi part upload for data block.
             try {
-                long startEntry = 0;
-                int partId = 1;
-                long start = System.nanoTime();
-                long entryBytesWritten = 0;
-                while (startEntry <= readHandle.getLastAddConfirmed()) {
-                    int blockSize = BlockAwareSegmentInputStreamImpl
-                        .calculateBlockSize(config.getMaxBlockSizeInBytes(), readHandle, startEntry, entryBytesWritten);
-
-                    try (BlockAwareSegmentInputStream blockStream = new BlockAwareSegmentInputStreamImpl(
-                            readHandle, startEntry, blockSize, this.offloaderStats, managedLedgerName)) {
-
-                        Payload partPayload = Payloads.newInputStreamPayload(blockStream);
-                        partPayload.getContentMetadata().setContentLength((long) blockSize);
-                        partPayload.getContentMetadata().setContentType("application/octet-stream");
-                        parts.add(writeBlobStore.uploadMultipartPart(mpu, partId, partPayload));
-                        log.debug("UploadMultipartPart. container: {}, blobName: {}, partId: {}, mpu: {}",
-                                config.getBucket(), dataBlockKey, partId, mpu.id());
-
-                        indexBuilder.addBlock(startEntry, partId, blockSize);
-
-                        if (blockStream.getEndEntryId() != -1) {
-                            startEntry = blockStream.getEndEntryId() + 1;
-                        } else {
-                            // could not read entry from ledger.
-                            break;
+                if (uploadExecutor != null) {
+                    ParallelMultipartOffload parallelOffload = new ParallelMultipartOffload(readHandle,
+                            writeBlobStore, mpu, indexBuilder, config.getMaxBlockSizeInBytes(),
+                            config.getOffloadReadAheadBatches(), config.getOffloadMemoryBudgetInBytes(),
+                            uploadExecutor, this.offloaderStats, topicName, compressionType,
+                            config.getReadBufferSizeInBytes(), config.getMinBlockSizeInBytes());
+                    parts.addAll(parallelOffload.run());
+                    dataObjectLength = parallelOffload.getDataObjectLength();
+                } else {
+                    long startEntry = 0;
+                    int partId = 1;
+                    long start = System.nanoTime();
+                    long entryBytesWritten = 0;
+                    while (startEntry <= readHandle.getLastAddConfirmed()) {
+                        int blockSize = BlockAwareSegmentInputStreamImpl.calculateBlockSize(
+                                config.getMaxBlockSizeInBytes(), readHandle, startEntry, entryBytesWritten);
+
+                        try (BlockAwareSegmentInputStream blockStream = new BlockAwareSegmentInputStreamImpl(
+                                readHandle, startEntry, blockSize, this.offloaderStats, managedLedgerName)) {
+
+                            Payload partPayload = Payloads.newInputStreamPayload(blockStream);
+                            partPayload.getContentMetadata().setContentLength((long) blockSize);
+                            partPayload.getContentMetadata().setContentType("application/octet-stream");
+                            parts.add(writeBlobStore.uploadMultipartPart(mpu, partId, partPayload));
+                            log.debug("UploadMultipartPart. container: {}, blobName: {}, partId: {}, mpu: {}",
+                                    config.getBucket(), dataBlockKey, partId, mpu.id());
+
+                            indexBuilder.addBlock(startEntry, partId, blockSize);
+
+                            if (blockStream.getEndEntryId() != -1) {
+                                startEntry = blockStream.getEndEntryId() + 1;
+                            } else {
+                                // could not read entry from ledger.
+                                break;
+                            }
+                            entryBytesWritten += blockStream.getBlockEntryBytesCount();
+                            partId++;
+                            this.offloaderStats.recordOffloadBytes(topicName, blockStream.getBlockEntryBytesCount());
+                            this.offloaderStats.recordOffloadProgress(topicName, entryBytesWritten,
+                                    readHandle.getLength());
                         }
-                        entryBytesWritten += blockStream.getBlockEntryBytesCount();
-                        partId++;
-                        this.offloaderStats.recordOffloadBytes(topicName, blockStream.getBlockEntryBytesCount());
-                    }
 
-                    dataObjectLength += blockSize;
+                        dataObjectLength += blockSize;
+                    }
                 }
 
                 String etag = writeBlobStore.completeMultipartUpload(mpu, parts);
@@ -306,7 +377,7 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
                 if (extraMetadata != null) {
                     objectMetadata.putAll(extraMetadata);
                 }
-                DataBlockUtils.addVersionInfo(blobBuilder, objectMetadata);
+                DataBlockUtils.addVersionInfo(blobBuilder, objectMetadata, dataFormatVersion());
                 Payload indexPayload = Payloads.newInputStreamPayload(indexStream);
                 indexPayload.getContentMetadata().setContentLength((long) indexStream.getStreamSize());
                 indexPayload.getContentMetadata().setContentType("application/octet-stream");
@@ -574,7 +645,7 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
                         DataBlockUtils.VERSION_CHECK,
                         ledgerId, config.getReadBufferSizeInBytes(),
                         this.offloaderStats, offloadDriverMetadata.get(MANAGED_LEDGER_NAME),
-                        this.entryOffsetsCache));
+                        this.entryOffsetsCache, this.blockCache));
             } catch (Throwable t) {
                 log.error("Failed readOffloaded: ", t);
                 promise.completeExceptionally(t);
@@ -676,6 +747,9 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
 
     @Override
     public void close() {
+        if (ownUploadExecutor != null) {
+            ownUploadExecutor.close();
+        }
         for (BlobStore readBlobStore : blobStores.values()) {
             if (readBlobStore != null) {
                 readBlobStore.getContext().close();
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.offload.jcloud.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.mledger.LedgerOffloaderStats;
+import org.apache.bookkeeper.mledger.offload.jcloud.BackedInputStream;
+import org.apache.bookkeeper.mledger.offload.jcloud.impl.DataBlockUtils.VersionCheck;
+import org.apache.pulsar.common.compression.CompressionCodec;
+import org.apache.pulsar.common.naming.TopicName;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.KeyNotFoundException;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.options.GetOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Input stream over the logical content of a data object written in the compressed format.
+ *
+ * <p>The positions are logical offsets, like for {@link BlobStoreBackedInputStreamImpl}. The stream keeps the
+ * decompressed chunk containing the cursor and fetches the next one with a ranged read when it is consumed, so
+ * a seek only fetches and decompresses the chunk of the target position. When a {@link OffloadedBlockCache} is
+ * given, the compressed chunks are cached and the next ones are prefetched.
+ */
+public class CompressedBlobStoreBackedInputStreamImpl extends BackedInputStream {
+    private static final Logger log = LoggerFactory.getLogger(CompressedBlobStoreBackedInputStreamImpl.class);
+
+    private final BlobStore blobStore;
+    private final String bucket;
+    private final String key;
+    private final VersionCheck versionCheck;
+    private final CompressedDataChunks chunks;
+    private final CompressionCodec codec;
+    private final long objectLen;
+    private final LedgerOffloaderStats offloaderStats;
+    private final String topicName;
+    private final OffloadedBlockCache blockCache;
+
+    private ByteBuf buffer;
+    private int bufferChunk = -1;
+    private long bufferOffsetStart = -1;
+    private long cursor;
+
+    public CompressedBlobStoreBackedInputStreamImpl(BlobStore blobStore, String bucket, String key,
+                                                    VersionCheck versionCheck, CompressedDataChunks chunks,
+                                                    LedgerOffloaderStats offloaderStats, String managedLedgerName,
+                                                    OffloadedBlockCache blockCache) {
+        this.blobStore = blobStore;
+        this.bucket = bucket;
+        this.key = key;
+        this.versionCheck = versionCheck;
+        this.chunks = chunks;
+        this.codec = chunks.getCodec();
+        this.objectLen = chunks.getLogicalLength();
+        this.offloaderStats = offloaderStats;
+        this.topicName = managedLedgerName != null ? TopicName.fromPersistenceNamingEncoding(managedLedgerName) : null;
+        this.blockCache = blockCache != null && blockCache.isEnabled() ? blockCache : null;
+    }
+
+    /**
+     * Decompress the chunk containing the cursor if the buffer is consumed.
+     * @return true if there are bytes to read, false otherwise
+     */
+    private boolean refillBufferIfNeeded() throws IOException {
+        if (buffer != null && buffer.isReadable()) {
+            return true;
+        }
+        if (cursor >= objectLen) {
+            return false;
+        }
+        int chunk = chunks.findChunk(cursor);
+        byte[] compressed;
+        try {
+            if (blockCache != null) {
+                compressed = blockCache.get(chunkKey(chunk), () -> readChunk(chunk));
+                prefetch(chunk);
+            } else {
+                compressed = readChunk(chunk);
+            }
+        } catch (KeyNotFoundException | IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Error reading from BlobStore", e);
+        }
+
+        releaseBuffer();
+        buffer = codec.decode(Unpooled.wrappedBuffer(compressed), chunks.getUncompressedLength(chunk));
+        bufferChunk = chunk;
+        bufferOffsetStart = chunks.getLogicalOffset(chunk);
+        buffer.readerIndex((int) (cursor - bufferOffsetStart));
+        cursor = bufferOffsetStart + chunks.getUncompressedLength(chunk);
+        return true;
+    }
+
+    private void prefetch(int chunk) {
+        for (int i = 1; i <= blockCache.getPrefetchBlocks(); i++) {
+            int nextChunk = chunk + i;
+            if (nextChunk >= chunks.getChunkCount()) {
+                break;
+            }
+            blockCache.prefetch(chunkKey(nextChunk), () -> readChunk(nextChunk));
+        }
+    }
+
+    private OffloadedBlockCache.Key chunkKey(int chunk) {
+        return new OffloadedBlockCache.Key(key, chunks.getObjectOffset(chunk), chunks.getCompressedLength(chunk));
+    }
+
+    private byte[] readChunk(int chunk) throws IOException {
+        long startRange = chunks.getObjectOffset(chunk);
+        long endRange = startRange + chunks.getCompressedLength(chunk) - 1;
+        if (log.isDebugEnabled()) {
+            log.debug("readChunk {} of {}: {} - {}", chunk, key, startRange, endRange);
+        }
+        try {
+            long startReadTime = System.nanoTime();
+            Blob blob = blobStore.getBlob(bucket, key, new GetOptions().range(startRange, endRange));
+            if (blob == null) {
+                throw new KeyNotFoundException(bucket, key, "");
+            }
+            versionCheck.check(key, blob);
+
+            byte[] compressed;
+            try (InputStream stream = blob.getPayload().openStream()) {
+                compressed = stream.readNBytes(chunks.getCompressedLength(chunk));
+            }
+            if (this.offloaderStats != null) {
+                this.offloaderStats.recordReadOffloadDataLatency(topicName,
+                        System.nanoTime() - startReadTime, TimeUnit.NANOSECONDS);
+                this.offloaderStats.recordReadOffloadBytes(topicName, compressed.length);
+            }
+            return compressed;
+        } catch (Throwable e) {
+            if (null != this.offloaderStats) {
+                this.offloaderStats.recordReadOffloadError(this.topicName);
+            }
+            // If the blob is not found, the original exception is thrown and handled by the caller.
+            if (e instanceof KeyNotFoundException) {
+                throw e;
+            }
+            throw new IOException("Error reading from BlobStore", e);
+        }
+    }
+
+    private void releaseBuffer() {
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+        bufferChunk = -1;
+        bufferOffsetStart = -1;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (refillBufferIfNeeded()) {
+            return buffer.readUnsignedByte();
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (refillBufferIfNeeded()) {
+            int bytesToRead = Math.min(len, buffer.readableBytes());
+            buffer.readBytes(b, off, bytesToRead);
+            return bytesToRead;
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public void seek(long position) {
+        log.debug("Seeking to {} on {}/{}, current position {} (chunk:{}, chunkStart:{})",
+                position, bucket, key, cursor, bufferChunk, bufferOffsetStart);
+        if (buffer != null && position >= bufferOffsetStart && position < bufferOffsetStart + buffer.writerIndex()) {
+            buffer.readerIndex((int) (position - bufferOffsetStart));
+        } else {
+            releaseBuffer();
+            this.cursor = position;
+        }
+    }
+
+    @Override
+    public void seekForward(long position) throws IOException {
+        if (position >= cursor) {
+            seek(position);
+        } else {
+            throw new IOException(String.format("Error seeking, new position %d < current position %d",
+                                                position, cursor));
+        }
+    }
+
+    @Override
+    public long getCurrentPosition() {
+        if (buffer != null) {
+            return bufferOffsetStart + buffer.readerIndex();
+        }
+        return cursor;
+    }
+
+    @Override
+    public void close() {
+        releaseBuffer();
+    }
+
+    @Override
+    public int available() throws IOException {
+        long available = objectLen - cursor + (buffer != null ? buffer.readableBytes() : 0);
+        return available > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) available;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.offload.jcloud.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import io.netty.buffer.ByteBuf;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.apache.pulsar.client.api.CompressionType;
+import org.apache.pulsar.common.compression.CompressionCodec;
+import org.apache.pulsar.common.compression.CompressionCodecProvider;
+
+/**
+ * The table of the compressed chunks of a data object written in the compressed format.
+ *
+ * <p>The logical content of a compressed data object, the data blocks with their headers, entries and padding, is
+ * the same as in the uncompressed format, and the index entries keep pointing at logical offsets. Each data block
+ * is split into chunks which are compressed separately and stored back to back in the part of the block. A chunk
+ * never spans two blocks, so a reader only fetches and decompresses the chunks covering the range it reads.
+ *
+ * <p>Serialized as:
+ *   | compression_type | chunk_count | (uncompressed_length, compressed_length)... |
+ * the logical and object offsets of the chunks are the running sums of their lengths.
+ */
+public class CompressedDataChunks {
+
+    private final CompressionType compressionType;
+    private final long[] logicalOffsets;
+    private final long[] objectOffsets;
+    private final int[] uncompressedLengths;
+    private final int[] compressedLengths;
+
+    private CompressedDataChunks(CompressionType compressionType, int[] uncompressedLengths,
+                                 int[] compressedLengths) {
+        checkArgument(uncompressedLengths.length == compressedLengths.length);
+        this.compressionType = compressionType;
+        this.uncompressedLengths = uncompressedLengths;
+        this.compressedLengths = compressedLengths;
+        this.logicalOffsets = new long[uncompressedLengths.length];
+        this.objectOffsets = new long[compressedLengths.length];
+        long logicalOffset = 0;
+        long objectOffset = 0;
+        for (int i = 0; i < uncompressedLengths.length; i++) {
+            logicalOffsets[i] = logicalOffset;
+            objectOffsets[i] = objectOffset;
+            logicalOffset += uncompressedLengths[i];
+            objectOffset += compressedLengths[i];
+        }
+    }
+
+    public static Builder builder(CompressionType compressionType) {
+        return new Builder(compressionType);
+    }
+
+    public CompressionType getCompressionType() {
+        return compressionType;
+    }
+
+    public CompressionCodec getCodec() {
+        return CompressionCodecProvider.getCompressionCodec(compressionType);
+    }
+
+    public int getChunkCount() {
+        return uncompressedLengths.length;
+    }
+
+    public long getLogicalOffset(int chunk) {
+        return logicalOffsets[chunk];
+    }
+
+    public long getObjectOffset(int chunk) {
+        return objectOffsets[chunk];
+    }
+
+    public int getUncompressedLength(int chunk) {
+        return uncompressedLengths[chunk];
+    }
+
+    public int getCompressedLength(int chunk) {
+        return compressedLengths[chunk];
+    }
+
+    /**
+     * Get the length of the logical content, which is the data object length recorded in the index.
+     */
+    public long getLogicalLength() {
+        int count = getChunkCount();
+        return count == 0 ? 0 : logicalOffsets[count - 1] + uncompressedLengths[count - 1];
+    }
+
+    /**
+     * Get the length of the data object in the blob store.
+     */
+    public long getObjectLength() {
+        int count = getChunkCount();
+        return count == 0 ? 0 : objectOffsets[count - 1] + compressedLengths[count - 1];
+    }
+
+    /**
+     * Find the chunk containing a logical position.
+     */
+    public int findChunk(long logicalPosition) {
+        checkArgument(logicalPosition >= 0 && logicalPosition < getLogicalLength(),
+                "Position %s out of the logical range [0, %s)", logicalPosition, getLogicalLength());
+        int index = Arrays.binarySearch(logicalOffsets, logicalPosition);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    public int getSerializedSize() {
+        return 4 /* compression type */
+            + 4 /* chunk count */
+            + getChunkCount() * (4 + 4); /* uncompressed length + compressed length */
+    }
+
+    public void writeTo(ByteBuf out) {
+        out.writeInt(CompressionCodecProvider.convertToWireProtocol(compressionType).getValue())
+            .writeInt(getChunkCount());
+        for (int i = 0; i < getChunkCount(); i++) {
+            out.writeInt(uncompressedLengths[i]).writeInt(compressedLengths[i]);
+        }
+    }
+
+    public static CompressedDataChunks readFrom(DataInputStream dis) throws IOException {
+        int type = dis.readInt();
+        org.apache.pulsar.common.api.proto.CompressionType wireType =
+                org.apache.pulsar.common.api.proto.CompressionType.valueOf(type);
+        if (wireType == null) {
+            throw new IOException("Unknown compression type " + type + " of the data object");
+        }
+        int chunkCount = dis.readInt();
+        int[] uncompressedLengths = new int[chunkCount];
+        int[] compressedLengths = new int[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            uncompressedLengths[i] = dis.readInt();
+            compressedLengths[i] = dis.readInt();
+        }
+        return new CompressedDataChunks(CompressionCodecProvider.convertFromWireProtocol(wireType),
+                uncompressedLengths, compressedLengths);
+    }
+
+    /**
+     * Builder of the chunk table, the chunks are added in the order of the data object.
+     */
+    public static class Builder {
+        private final CompressionType compressionType;
+        private int[] uncompressedLengths = new int[16];
+        private int[] compressedLengths = new int[16];
+        private int count;
+
+        private Builder(CompressionType compressionType) {
+            this.compressionType = compressionType;
+        }
+
+        public Builder addChunk(int uncompressedLength, int compressedLength) {
+            if (count == uncompressedLengths.length) {
+                uncompressedLengths = Arrays.copyOf(uncompressedLengths, count * 2);
+                compressedLengths = Arrays.copyOf(compressedLengths, count * 2);
+            }
+            uncompressedLengths[count] = uncompressedLength;
+            compressedLengths[count] = compressedLength;
+            count++;
+            return this;
+        }
+
+        public CompressedDataChunks build() {
+            return new CompressedDataChunks(compressionType, Arrays.copyOf(uncompressedLengths, count),
+                    Arrays.copyOf(compressedLengths, count));
+        }
+    }
+}
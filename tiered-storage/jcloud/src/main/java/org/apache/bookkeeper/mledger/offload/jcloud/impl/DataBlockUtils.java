@@ -48,6 +48,9 @@ public class DataBlockUtils {
 
     public static final String METADATA_FORMAT_VERSION_KEY = "S3ManagedLedgerOffloaderFormatVersion";
     static final String CURRENT_VERSION = String.valueOf(1);
+    // The data blocks are compressed, see CompressedDataChunks. The older readers reject these objects instead of
+    // reading the compressed bytes as entries.
+    static final String COMPRESSED_VERSION = String.valueOf(2);
 
     public static String dataBlockOffloadKey(long ledgerId, UUID uuid) {
         return String.format("%s-ledger-%d", uuid.toString(), ledgerId);
@@ -62,18 +65,22 @@ public class DataBlockUtils {
     }
 
     public static void addVersionInfo(BlobBuilder blobBuilder, Map<String, String> userMetadata) {
+        addVersionInfo(blobBuilder, userMetadata, CURRENT_VERSION);
+    }
+
+    public static void addVersionInfo(BlobBuilder blobBuilder, Map<String, String> userMetadata, String version) {
         ImmutableMap.Builder<String, String> metadataBuilder = ImmutableMap.builder();
         metadataBuilder.putAll(userMetadata);
-        metadataBuilder.put(METADATA_FORMAT_VERSION_KEY.toLowerCase(), CURRENT_VERSION);
+        metadataBuilder.put(METADATA_FORMAT_VERSION_KEY.toLowerCase(), version);
         blobBuilder.userMetadata(metadataBuilder.build());
     }
 
     public static final VersionCheck VERSION_CHECK = (key, blob) -> {
         // NOTE all metadata in jclouds comes out as lowercase, in an effort to normalize the providers
         String version = blob.getMetadata().getUserMetadata().get(METADATA_FORMAT_VERSION_KEY.toLowerCase());
-        if (version == null || !version.equals(CURRENT_VERSION)) {
-            throw new IOException(String.format("Invalid object version %s for %s, expect %s",
-                version, key, CURRENT_VERSION));
+        if (version == null || !(version.equals(CURRENT_VERSION) || version.equals(COMPRESSED_VERSION))) {
+            throw new IOException(String.format("Invalid object version %s for %s, expect %s or %s",
+                version, key, CURRENT_VERSION, COMPRESSED_VERSION));
         }
     };
 
@@ -47,11 +47,14 @@ public class OffloadIndexBlockImpl implements OffloadIndexBlock {
     private static final Logger log = LoggerFactory.getLogger(OffloadIndexBlockImpl.class);
 
     private static final int INDEX_MAGIC_WORD = 0xDE47DE47;
+    // The index of a data object written in the compressed format, followed by the table of the compressed chunks
+    private static final int COMPRESSED_INDEX_MAGIC_WORD = 0xDE47DE48;
 
     private LedgerMetadata segmentMetadata;
     private long dataObjectLength;
     private long dataHeaderLength;
     private TreeMap<Long, OffloadIndexEntryImpl> indexEntries;
+    private CompressedDataChunks compressedChunks;
 
     private final Handle<OffloadIndexBlockImpl> recyclerHandle;
 
@@ -69,6 +72,13 @@ public class OffloadIndexBlockImpl implements OffloadIndexBlock {
     public static OffloadIndexBlockImpl get(LedgerMetadata metadata, long dataObjectLength,
                                             long dataHeaderLength,
                                             List<OffloadIndexEntryImpl> entries) {
+        return get(metadata, dataObjectLength, dataHeaderLength, entries, null);
+    }
+
+    public static OffloadIndexBlockImpl get(LedgerMetadata metadata, long dataObjectLength,
+                                            long dataHeaderLength,
+                                            List<OffloadIndexEntryImpl> entries,
+                                            CompressedDataChunks compressedChunks) {
         OffloadIndexBlockImpl block = RECYCLER.get();
         block.indexEntries = Maps.newTreeMap();
         entries.forEach(entry -> block.indexEntries.putIfAbsent(entry.getEntryId(), entry));
@@ -76,17 +86,21 @@ public class OffloadIndexBlockImpl implements OffloadIndexBlock {
         block.segmentMetadata = metadata;
         block.dataObjectLength = dataObjectLength;
         block.dataHeaderLength = dataHeaderLength;
+        block.compressedChunks = compressedChunks;
         return block;
     }
 
     public static OffloadIndexBlockImpl get(int magic, DataInputStream stream) throws IOException {
-        if (magic != INDEX_MAGIC_WORD) {
-            throw new IOException(String.format("Invalid MagicWord. read: 0x%x  expected: 0x%x",
-                    magic, INDEX_MAGIC_WORD));
+        if (magic != INDEX_MAGIC_WORD && magic != COMPRESSED_INDEX_MAGIC_WORD) {
+            throw new IOException(String.format("Invalid MagicWord. read: 0x%x  expected: 0x%x or 0x%x",
+                    magic, INDEX_MAGIC_WORD, COMPRESSED_INDEX_MAGIC_WORD));
         }
         OffloadIndexBlockImpl block = RECYCLER.get();
         block.indexEntries = Maps.newTreeMap();
         block.fromStream(stream);
+        if (magic == COMPRESSED_INDEX_MAGIC_WORD) {
+            block.compressedChunks = CompressedDataChunks.readFrom(stream);
+        }
         return block;
     }
 
@@ -94,6 +108,7 @@ public class OffloadIndexBlockImpl implements OffloadIndexBlock {
         dataObjectLength = -1;
         dataHeaderLength = -1;
         segmentMetadata = null;
+        compressedChunks = null;
         indexEntries.clear();
         indexEntries = null;
         if (recyclerHandle != null) {
@@ -133,11 +148,22 @@ public class OffloadIndexBlockImpl implements OffloadIndexBlock {
         return this.dataHeaderLength;
     }
 
+    /**
+     * Get the table of the compressed chunks of the data object.
+     *
+     * @return the chunks, or null if the data object isn't compressed
+     */
+    public CompressedDataChunks getCompressedChunks() {
+        return this.compressedChunks;
+    }
+
     /**
      * Get the content of the index block as InputStream.
      * Read out in format:
      *   | index_magic_header | index_block_len | data_object_len | data_header_len |
      *   | index_entry_count  | segment_metadata_len | segment metadata | index entries... |
+     * The index of a compressed data object starts with a different magic header and ends with the
+     * {@link CompressedDataChunks compressed chunks}.
      */
     @Override
     public OffloadIndexBlock.IndexInputStream toStream() throws IOException {
@@ -152,11 +178,12 @@ public class OffloadIndexBlockImpl implements OffloadIndexBlock {
             + 4 /* index entry count */
             + 4 /* segment metadata length */
             + segmentMetadataLength
-            + indexEntryCount * (8 + 4 + 8); /* messageEntryId + blockPartId + blockOffset */
+            + indexEntryCount * (8 + 4 + 8) /* messageEntryId + blockPartId + blockOffset */
+            + (compressedChunks != null ? compressedChunks.getSerializedSize() : 0);
 
         ByteBuf out = PulsarByteBufAllocator.DEFAULT.buffer(indexBlockLength, indexBlockLength);
 
-        out.writeInt(INDEX_MAGIC_WORD)
+        out.writeInt(compressedChunks != null ? COMPRESSED_INDEX_MAGIC_WORD : INDEX_MAGIC_WORD)
             .writeInt(indexBlockLength)
             .writeLong(dataObjectLength)
             .writeLong(dataHeaderLength)
@@ -170,6 +197,9 @@ public class OffloadIndexBlockImpl implements OffloadIndexBlock {
                 out.writeLong(entry.getValue().getEntryId())
                 .writeInt(entry.getValue().getPartId())
                 .writeLong(entry.getValue().getOffset()));
+        if (compressedChunks != null) {
+            compressedChunks.writeTo(out);
+        }
 
         return new OffloadIndexBlock.IndexInputStream(new ByteBufInputStream(out, true), indexBlockLength);
     }
@@ -353,6 +383,10 @@ public class OffloadIndexBlockImpl implements OffloadIndexBlock {
         return INDEX_MAGIC_WORD;
     }
 
+    public static int getCompressedIndexMagicWord() {
+        return COMPRESSED_INDEX_MAGIC_WORD;
+    }
+
     @Override
     public void close() {
         recycle();
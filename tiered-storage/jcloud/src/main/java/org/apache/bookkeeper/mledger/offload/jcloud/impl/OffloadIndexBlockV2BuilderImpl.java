@@ -49,6 +49,7 @@ public class OffloadIndexBlockV2BuilderImpl implements OffloadIndexBlockBuilder,
     private int lastBlockSize;
     private int lastStreamingBlockSize;
     private long streamingOffset = 0;
+    private CompressedDataChunks compressedChunks;
     private final SortedMap<Long, List<OffloadIndexEntryImpl>> entryMap = new TreeMap<>();
 
 
@@ -69,6 +70,12 @@ public class OffloadIndexBlockV2BuilderImpl implements OffloadIndexBlockBuilder,
         return this;
     }
 
+    @Override
+    public OffloadIndexBlockV2BuilderImpl withCompressedChunks(CompressedDataChunks compressedChunks) {
+        this.compressedChunks = compressedChunks;
+        return this;
+    }
+
     @Override
     public OffloadIndexBlockV2BuilderImpl withLedgerMetadata(LedgerMetadata metadata) {
         this.ledgerMetadata = metadata;
@@ -117,13 +124,15 @@ public class OffloadIndexBlockV2BuilderImpl implements OffloadIndexBlockBuilder,
     public OffloadIndexBlockV2 fromStream(InputStream is) throws IOException {
         final DataInputStream dataInputStream = new DataInputStream(is);
         final int magic = dataInputStream.readInt();
-        if (magic == OffloadIndexBlockImpl.getIndexMagicWord()) {
+        if (magic == OffloadIndexBlockImpl.getIndexMagicWord()
+                || magic == OffloadIndexBlockImpl.getCompressedIndexMagicWord()) {
             return OffloadIndexBlockImpl.get(magic, dataInputStream);
         } else if (magic == OffloadIndexBlockV2Impl.getIndexMagicWord()) {
             return OffloadIndexBlockV2Impl.get(magic, dataInputStream);
         } else {
-            throw new IOException(String.format("Invalid MagicWord. read: 0x%x  expected: 0x%x or 0x%x",
+            throw new IOException(String.format("Invalid MagicWord. read: 0x%x  expected: 0x%x, 0x%x or 0x%x",
                     magic, OffloadIndexBlockImpl.getIndexMagicWord(),
+                    OffloadIndexBlockImpl.getCompressedIndexMagicWord(),
                     OffloadIndexBlockV2Impl.getIndexMagicWord()));
         }
     }
@@ -134,7 +143,9 @@ public class OffloadIndexBlockV2BuilderImpl implements OffloadIndexBlockBuilder,
         checkState(!entries.isEmpty());
         checkState(dataObjectLength > 0);
         checkState(dataHeaderLength > 0);
-        return OffloadIndexBlockImpl.get(ledgerMetadata, dataObjectLength, dataHeaderLength, entries);
+        checkState(compressedChunks == null || compressedChunks.getLogicalLength() == dataObjectLength);
+        return OffloadIndexBlockImpl.get(ledgerMetadata, dataObjectLength, dataHeaderLength, entries,
+                compressedChunks);
     }
 
     @Override
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.offload.jcloud.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.mledger.offload.jcloud.provider.TieredStorageConfiguration;
+import org.apache.pulsar.client.api.CompressionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The threads compressing and uploading the data block parts of the offloaded ledgers, shared by the offloaders.
+ *
+ * <p>It is used by the offloaders whose {@code offloadUploadParallelism} is greater than 1 or which compress the
+ * blocks, and grows to the largest upload parallelism of their configurations. The number of blocks of a ledger being
+ * compressed or uploaded stays bounded by the offload memory budget.
+ */
+public class OffloadUploadExecutor implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(OffloadUploadExecutor.class);
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("offloader-upload-%d").setDaemon(true).build());
+
+    /**
+     * Get the executor of an offloader.
+     *
+     * @return the executor uploading the parts, or null if the offloader uploads them one at a time in the offload
+     *         thread
+     */
+    ExecutorService get(TieredStorageConfiguration config) {
+        int uploadParallelism = config.getOffloadUploadParallelism();
+        if (uploadParallelism <= 1 && config.getOffloadCompressionType() == CompressionType.NONE) {
+            return null;
+        }
+        synchronized (executor) {
+            if (uploadParallelism > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(uploadParallelism);
+                executor.setCorePoolSize(uploadParallelism);
+            }
+        }
+        return executor;
+    }
+
+    @Override
+    public void close() {
+        // The queued tasks still run: an offload waits for all its uploads before completing or aborting the multipart
+        // upload, dropping them would block it forever
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("The offload uploads didn't complete within {} seconds", CLOSE_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.offload.jcloud.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A broker local cache of the data blocks read from the offloaded ledgers.
+ *
+ * <p>A block is a range of bytes of a data object, identified by the object key, which includes the ledger id and the
+ * offload uuid, and the start and the length of the range, so that the readers using different read buffer sizes
+ * don't share blocks covering different ranges. The blocks are kept on heap up to
+ * {@code pulsar.jclouds.readhandleimpl.blockcache.memory.max.bytes} and, when
+ * {@code pulsar.jclouds.readhandleimpl.blockcache.disk.dir} is set, in files under this directory up to
+ * {@code pulsar.jclouds.readhandleimpl.blockcache.disk.max.bytes}, so that replaying an offloaded ledger again
+ * doesn't fetch it from the blob store again. The blocks are stored in {@code *.block} files, which are the only files
+ * of the directory removed by the cache.
+ *
+ * <p>The readers also prefetch the next {@code pulsar.jclouds.readhandleimpl.prefetch.blocks} blocks with parallel
+ * ranged reads into the cache, which hides the latency of the blob store when the data is replayed sequentially.
+ */
+public class OffloadedBlockCache implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(OffloadedBlockCache.class);
+
+    private static final long MEMORY_MAX_BYTES =
+            Long.getLong("pulsar.jclouds.readhandleimpl.blockcache.memory.max.bytes", 0);
+    private static final String DISK_DIRECTORY =
+            System.getProperty("pulsar.jclouds.readhandleimpl.blockcache.disk.dir");
+    private static final long DISK_MAX_BYTES =
+            Long.getLong("pulsar.jclouds.readhandleimpl.blockcache.disk.max.bytes", 10L * 1024 * 1024 * 1024);
+    private static final int PREFETCH_BLOCKS =
+            Integer.getInteger("pulsar.jclouds.readhandleimpl.prefetch.blocks", 4);
+    private static final int PREFETCH_THREADS =
+            Integer.getInteger("pulsar.jclouds.readhandleimpl.prefetch.threads", 8);
+    private static final String BLOCK_FILE_SUFFIX = ".block";
+
+    record Key(String objectKey, long start, int length) {
+
+        String fileNamePrefix() {
+            return objectKey.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + start + "-" + length + "-";
+        }
+    }
+
+    /**
+     * A block stored on disk. Each stored block has its own file, so that a file being read or deleted outside of
+     * the lock can't be replaced by another block.
+     */
+    private record DiskBlock(Path file, int size) {
+    }
+
+    private final Cache<Key, byte[]> memoryCache;
+    private final Path diskDirectory;
+    private final long diskMaxBytes;
+    // The blocks stored on disk, in access order. Only this bookkeeping is done under its lock, the files are read,
+    // written and deleted outside of it.
+    private final LinkedHashMap<Key, DiskBlock> diskBlocks = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+    private final int prefetchBlocks;
+    private final ExecutorService prefetchExecutor;
+    private final Map<Key, CompletableFuture<byte[]>> pendingLoads = new ConcurrentHashMap<>();
+
+    public OffloadedBlockCache() {
+        this(MEMORY_MAX_BYTES, DISK_DIRECTORY != null ? Paths.get(DISK_DIRECTORY) : null, DISK_MAX_BYTES,
+                PREFETCH_BLOCKS, PREFETCH_THREADS);
+    }
+
+    public OffloadedBlockCache(long memoryMaxBytes, Path diskDirectory, long diskMaxBytes, int prefetchBlocks,
+                               int prefetchThreads) {
+        this.memoryCache = memoryMaxBytes > 0
+                ? CacheBuilder.newBuilder()
+                        .maximumWeight(memoryMaxBytes)
+                        .<Key, byte[]>weigher((key, block) -> block.length)
+                        .build()
+                : null;
+        this.diskDirectory = diskDirectory != null && diskMaxBytes > 0 ? diskDirectory : null;
+        this.diskMaxBytes = diskMaxBytes;
+        if (this.diskDirectory != null) {
+            initDiskDirectory();
+        }
+        this.prefetchBlocks = isEnabled() ? prefetchBlocks : 0;
+        this.prefetchExecutor = this.prefetchBlocks > 0
+                ? Executors.newFixedThreadPool(prefetchThreads,
+                        new ThreadFactoryBuilder().setNameFormat("jcloud-block-prefetch-%d").setDaemon(true).build())
+                : null;
+    }
+
+    private void initDiskDirectory() {
+        // The blocks of the previous runs are not tracked, remove them so that the size bound holds. The directory
+        // is configured by the user, only the block files are removed.
+        try {
+            Files.createDirectories(diskDirectory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(diskDirectory, "*" + BLOCK_FILE_SUFFIX)) {
+                files.forEach(this::deleteFile);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to initialize the offloaded block cache directory "
+                    + diskDirectory, e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return memoryCache != null || diskDirectory != null;
+    }
+
+    public int getPrefetchBlocks() {
+        return prefetchBlocks;
+    }
+
+    /**
+     * Get a block from the cache, or load it with {@code loader} in the calling thread. If the block is being
+     * prefetched, wait for the prefetch instead of reading it twice.
+     */
+    public byte[] get(Key key, Callable<byte[]> loader) throws Exception {
+        byte[] block = getIfPresent(key);
+        if (block != null) {
+            return block;
+        }
+        CompletableFuture<byte[]> pendingLoad = pendingLoads.get(key);
+        if (pendingLoad != null) {
+            try {
+                return pendingLoad.join();
+            } catch (CompletionException e) {
+                // The prefetch failed, read the block again below
+                log.debug("Failed to prefetch the offloaded block {}", key, e);
+            }
+        }
+        block = loader.call();
+        put(key, block);
+        return block;
+    }
+
+    /**
+     * Load a block in the background if it is neither cached nor being loaded.
+     */
+    public void prefetch(Key key, Callable<byte[]> loader) {
+        if (prefetchExecutor == null || pendingLoads.containsKey(key) || contains(key)) {
+            return;
+        }
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        if (pendingLoads.putIfAbsent(key, future) != null) {
+            return;
+        }
+        try {
+            prefetchExecutor.execute(() -> {
+                try {
+                    byte[] block = loader.call();
+                    put(key, block);
+                    future.complete(block);
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    pendingLoads.remove(key, future);
+                }
+            });
+        } catch (Throwable t) {
+            // The executor is shut down
+            pendingLoads.remove(key, future);
+            future.completeExceptionally(t);
+        }
+    }
+
+    @VisibleForTesting
+    byte[] getIfPresent(Key key) {
+        if (memoryCache != null) {
+            byte[] block = memoryCache.getIfPresent(key);
+            if (block != null) {
+                return block;
+            }
+        }
+        if (diskDirectory == null) {
+            return null;
+        }
+        DiskBlock diskBlock;
+        synchronized (diskBlocks) {
+            diskBlock = diskBlocks.get(key);
+        }
+        if (diskBlock == null) {
+            return null;
+        }
+        byte[] block;
+        try {
+            block = Files.readAllBytes(diskBlock.file());
+        } catch (NoSuchFileException e) {
+            // Evicted in the meantime
+            return null;
+        } catch (IOException e) {
+            log.warn("Failed to read the offloaded block {} from the disk cache", key, e);
+            removeDiskBlock(key, diskBlock);
+            return null;
+        }
+        if (memoryCache != null) {
+            memoryCache.put(key, block);
+        }
+        return block;
+    }
+
+    private boolean contains(Key key) {
+        if (memoryCache != null && memoryCache.getIfPresent(key) != null) {
+            return true;
+        }
+        if (diskDirectory == null) {
+            return false;
+        }
+        synchronized (diskBlocks) {
+            return diskBlocks.containsKey(key);
+        }
+    }
+
+    @VisibleForTesting
+    void put(Key key, byte[] block) {
+        if (memoryCache != null) {
+            memoryCache.put(key, block);
+        }
+        if (diskDirectory == null || block.length > diskMaxBytes) {
+            return;
+        }
+        synchronized (diskBlocks) {
+            if (diskBlocks.containsKey(key)) {
+                return;
+            }
+        }
+        Path file;
+        try {
+            file = Files.createTempFile(diskDirectory, key.fileNamePrefix(), BLOCK_FILE_SUFFIX);
+            Files.write(file, block);
+        } catch (IOException e) {
+            log.warn("Failed to write the offloaded block {} to the disk cache", key, e);
+            return;
+        }
+        List<Path> filesToDelete = new ArrayList<>();
+        synchronized (diskBlocks) {
+            if (diskBlocks.containsKey(key)) {
+                // Stored by another thread in the meantime
+                filesToDelete.add(file);
+            } else {
+                diskBlocks.put(key, new DiskBlock(file, block.length));
+                diskBytes += block.length;
+
+                Iterator<DiskBlock> iterator = diskBlocks.values().iterator();
+                while (diskBytes > diskMaxBytes && iterator.hasNext()) {
+                    DiskBlock eldest = iterator.next();
+                    iterator.remove();
+                    diskBytes -= eldest.size();
+                    filesToDelete.add(eldest.file());
+                }
+            }
+        }
+        filesToDelete.forEach(this::deleteFile);
+    }
+
+    private void removeDiskBlock(Key key, DiskBlock diskBlock) {
+        synchronized (diskBlocks) {
+            if (!diskBlocks.remove(key, diskBlock)) {
+                return;
+            }
+            diskBytes -= diskBlock.size();
+        }
+        deleteFile(diskBlock.file());
+    }
+
+    private void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete the offloaded block file {} from the disk cache", file, e);
+        }
+    }
+
+    @VisibleForTesting
+    long getDiskBytes() {
+        synchronized (diskBlocks) {
+            return diskBytes;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+            // The prefetches dropped or interrupted by the shutdown won't complete, fail them so that the readers
+            // waiting for them load the blocks themselves
+            IllegalStateException closed = new IllegalStateException("The offloaded block cache is closed");
+            pendingLoads.forEach((key, future) -> {
+                pendingLoads.remove(key, future);
+                future.completeExceptionally(closed);
+            });
+        }
+        if (memoryCache != null) {
+            memoryCache.invalidateAll();
+        }
+        if (diskDirectory != null) {
+            List<DiskBlock> blocks;
+            synchronized (diskBlocks) {
+                blocks = new ArrayList<>(diskBlocks.values());
+                diskBlocks.clear();
+                diskBytes = 0;
+            }
+            blocks.forEach(diskBlock -> deleteFile(diskBlock.file()));
+        }
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.offload.jcloud.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.mledger.LedgerOffloaderStats;
+import org.apache.bookkeeper.mledger.offload.jcloud.OffloadIndexBlockBuilder;
+import org.apache.pulsar.client.api.CompressionType;
+import org.apache.pulsar.common.compression.CompressionCodec;
+import org.apache.pulsar.common.compression.CompressionCodecProvider;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.domain.MultipartPart;
+import org.jclouds.blobstore.domain.MultipartUpload;
+import org.jclouds.io.Payload;
+import org.jclouds.io.Payloads;
+
+/**
+ * Offload the entries of a ledger into a multipart upload, reading from BookKeeper and uploading the parts
+ * concurrently.
+ *
+ * <p>Up to {@code readAheadBatches} reads of {@link #ENTRIES_PER_READ} entries are kept in flight ahead of the
+ * entries being packed into data blocks. The blocks have the same boundaries and layout as the ones produced by
+ * {@link BlockAwareSegmentInputStreamImpl}, so the offloaded ledger is read back the same way, and each block is
+ * uploaded as a part as soon as it is full. The number of blocks being built or uploaded is bounded by the memory
+ * budget.
+ *
+ * <p>When a compression type is set, each block is split into chunks of {@code compressionChunkSize} bytes which are
+ * compressed by the upload threads. The compressed blocks are packed in order into parts of at least
+ * {@code minPartSize} bytes, the minimum size of all the parts but the last one allowed by the blob stores, and the
+ * table of the chunks is added to the index builder, see {@link CompressedDataChunks}.
+ */
+@Slf4j
+class ParallelMultipartOffload {
+    static final int ENTRIES_PER_READ = 100;
+
+    private final ReadHandle readHandle;
+    private final BlobStore blobStore;
+    private final MultipartUpload mpu;
+    private final OffloadIndexBlockBuilder indexBuilder;
+    private final int maxBlockSize;
+    private final int readAheadBatches;
+    private final Semaphore blockPermits;
+    private final ExecutorService uploadExecutor;
+    private final LedgerOffloaderStats offloaderStats;
+    private final String topicName;
+    private final CompressionType compressionType;
+    private final CompressionCodec codec;
+    private final int compressionChunkSize;
+    private final int minPartSize;
+
+    private final ArrayDeque<CompletableFuture<LedgerEntries>> pendingReads = new ArrayDeque<>();
+    private long nextEntryToRead = 0;
+    private LedgerEntries currentEntries;
+    private Iterator<LedgerEntry> currentEntriesIterator;
+    // The next entry to write, which didn't fit in the previous block
+    private LedgerEntry nextEntry;
+
+    private final List<CompletableFuture<MultipartPart>> uploads = new ArrayList<>();
+    private final AtomicLong offloadedEntryBytes = new AtomicLong();
+    private volatile Throwable uploadFailure;
+    private long dataObjectLength = 0;
+    private int nextPartId = 1;
+
+    // The blocks being compressed, in order, and the compressed blocks of the next part
+    private final ArrayDeque<CompletableFuture<CompressedBlock>> compressions = new ArrayDeque<>();
+    private final List<CompressedBlock> pendingPart = new ArrayList<>();
+    private int pendingPartSize = 0;
+    private final CompressedDataChunks.Builder chunks;
+
+    private record Block(byte[] data, long endEntryId, long entryBytes) {
+    }
+
+    private record CompressedBlock(long startEntryId, int blockSize, byte[] data, int[] chunkLengths,
+                                   long entryBytes) {
+    }
+
+    ParallelMultipartOffload(ReadHandle readHandle, BlobStore blobStore, MultipartUpload mpu,
+                             OffloadIndexBlockBuilder indexBuilder, int maxBlockSize, int readAheadBatches,
+                             long memoryBudgetInBytes, ExecutorService uploadExecutor,
+                             LedgerOffloaderStats offloaderStats, String topicName) {
+        this(readHandle, blobStore, mpu, indexBuilder, maxBlockSize, readAheadBatches, memoryBudgetInBytes,
+                uploadExecutor, offloaderStats, topicName, CompressionType.NONE, 0, 0);
+    }
+
+    ParallelMultipartOffload(ReadHandle readHandle, BlobStore blobStore, MultipartUpload mpu,
+                             OffloadIndexBlockBuilder indexBuilder, int maxBlockSize, int readAheadBatches,
+                             long memoryBudgetInBytes, ExecutorService uploadExecutor,
+                             LedgerOffloaderStats offloaderStats, String topicName,
+                             CompressionType compressionType, int compressionChunkSize, int minPartSize) {
+        this.readHandle = readHandle;
+        this.blobStore = blobStore;
+        this.mpu = mpu;
+        this.indexBuilder = indexBuilder;
+        this.maxBlockSize = maxBlockSize;
+        this.readAheadBatches = Math.max(1, readAheadBatches);
+        this.blockPermits = new Semaphore((int) Math.max(1, Math.min(Integer.MAX_VALUE,
+                memoryBudgetInBytes / maxBlockSize)));
+        this.uploadExecutor = uploadExecutor;
+        this.offloaderStats = offloaderStats;
+        this.topicName = topicName;
+        this.compressionType = compressionType;
+        this.codec = compressionType != CompressionType.NONE
+                ? CompressionCodecProvider.getCompressionCodec(compressionType) : null;
+        this.compressionChunkSize = compressionChunkSize;
+        this.minPartSize = minPartSize;
+        this.chunks = codec != null ? CompressedDataChunks.builder(compressionType) : null;
+    }
+
+    /**
+     * Upload all the entries of the ledger and add their blocks to the index builder.
+     *
+     * @return the uploaded parts, ordered by part number
+     */
+    List<MultipartPart> run() throws Exception {
+        long startTime = System.nanoTime();
+        try {
+            long startEntry = 0;
+            long entryBytesWritten = 0;
+            while (startEntry <= readHandle.getLastAddConfirmed() && uploadFailure == null) {
+                int blockSize = BlockAwareSegmentInputStreamImpl.calculateBlockSize(maxBlockSize, readHandle,
+                        startEntry, entryBytesWritten);
+                blockPermits.acquire();
+                Block block;
+                try {
+                    block = buildBlock(startEntry, blockSize);
+                } catch (Throwable t) {
+                    blockPermits.release();
+                    throw t;
+                }
+                if (codec != null) {
+                    compressions.add(compress(startEntry, blockSize, block));
+                    packCompressedBlocks(false);
+                } else {
+                    indexBuilder.addBlock(startEntry, nextPartId, blockSize);
+                    uploads.add(upload(nextPartId++, block.data(), block.entryBytes()));
+                }
+
+                dataObjectLength += blockSize;
+                entryBytesWritten += block.entryBytes();
+                startEntry = block.endEntryId() + 1;
+            }
+            if (codec != null) {
+                packCompressedBlocks(true);
+            }
+        } catch (Throwable t) {
+            // Don't let the uploads in progress race with the abort of the multipart upload
+            CompletableFuture.allOf(uploads.toArray(new CompletableFuture[0])).exceptionally(ex -> null).join();
+            throw t;
+        } finally {
+            releaseEntries();
+        }
+
+        // Wait for all the uploads before failing, so that none races with the abort of the multipart upload
+        CompletableFuture.allOf(uploads.toArray(new CompletableFuture[0])).exceptionally(ex -> null).join();
+        List<MultipartPart> parts = new ArrayList<>(uploads.size());
+        for (CompletableFuture<MultipartPart> upload : uploads) {
+            parts.add(getResult(upload));
+        }
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        if (chunks != null) {
+            CompressedDataChunks compressedChunks = chunks.build();
+            indexBuilder.withCompressedChunks(compressedChunks);
+            log.info("[{}] Ledger {} offloaded {} bytes compressed with {} to {} bytes in {} parts in {} ms",
+                    topicName, readHandle.getId(), dataObjectLength, compressionType,
+                    compressedChunks.getObjectLength(), parts.size(), elapsedMillis);
+        } else {
+            log.info("[{}] Ledger {} offloaded {} bytes in {} parts in {} ms ({} KB/s)", topicName,
+                    readHandle.getId(), dataObjectLength, parts.size(), elapsedMillis,
+                    dataObjectLength / elapsedMillis);
+        }
+        return parts;
+    }
+
+    long getDataObjectLength() {
+        return dataObjectLength;
+    }
+
+    private Block buildBlock(long startEntryId, int blockSize) throws Exception {
+        byte[] data = new byte[blockSize];
+        ByteBuf block = Unpooled.wrappedBuffer(data).writerIndex(0);
+        try (InputStream header = DataBlockHeaderImpl.of(blockSize, startEntryId).toStream()) {
+            block.writeBytes(header, DataBlockHeaderImpl.getDataStartOffset());
+        }
+
+        long endEntryId = startEntryId - 1;
+        long entryBytes = 0;
+        LedgerEntry entry;
+        while ((entry = peekEntry()) != null) {
+            ByteBuf entryBuffer = entry.getEntryBuffer();
+            int entryLength = entryBuffer.readableBytes();
+            int entrySizeInBlock = BlockAwareSegmentInputStreamImpl.ENTRY_HEADER_SIZE + entryLength;
+            if (block.writerIndex() + entrySizeInBlock > blockSize) {
+                break;
+            }
+            block.writeInt(entryLength).writeLong(entry.getEntryId());
+            block.writeBytes(entryBuffer, entryBuffer.readerIndex(), entryLength);
+            endEntryId = entry.getEntryId();
+            entryBytes += entryLength;
+            nextEntry = null;
+        }
+        if (endEntryId < startEntryId) {
+            throw new IOException("Entry " + startEntryId + " of ledger " + readHandle.getId()
+                    + " doesn't fit in a block of " + blockSize + " bytes");
+        }
+
+        byte[] padding = BlockAwareSegmentInputStreamImpl.BLOCK_END_PADDING_BYTES;
+        int dataBlockFullOffset = block.writerIndex();
+        while (block.isWritable()) {
+            block.writeByte(padding[(block.writerIndex() - dataBlockFullOffset) % padding.length]);
+        }
+        return new Block(data, endEntryId, entryBytes);
+    }
+
+    private LedgerEntry peekEntry() throws Exception {
+        if (nextEntry != null) {
+            return nextEntry;
+        }
+        while (currentEntriesIterator == null || !currentEntriesIterator.hasNext()) {
+            if (currentEntries != null) {
+                currentEntries.close();
+                currentEntries = null;
+                currentEntriesIterator = null;
+            }
+            readAhead();
+            CompletableFuture<LedgerEntries> read = pendingReads.poll();
+            if (read == null) {
+                return null;
+            }
+            currentEntries = read.get();
+            currentEntriesIterator = currentEntries.iterator();
+            readAhead();
+        }
+        nextEntry = currentEntriesIterator.next();
+        return nextEntry;
+    }
+
+    private void readAhead() {
+        while (pendingReads.size() < readAheadBatches && nextEntryToRead <= readHandle.getLastAddConfirmed()) {
+            long start = nextEntryToRead;
+            long end = Math.min(start + ENTRIES_PER_READ - 1, readHandle.getLastAddConfirmed());
+            long startTime = System.nanoTime();
+            pendingReads.add(readHandle.readAsync(start, end).whenComplete((entries, t) -> {
+                if (t == null) {
+                    offloaderStats.recordReadLedgerLatency(topicName, System.nanoTime() - startTime,
+                            TimeUnit.NANOSECONDS);
+                }
+            }));
+            nextEntryToRead = end + 1;
+        }
+    }
+
+    private void releaseEntries() {
+        nextEntry = null;
+        if (currentEntries != null) {
+            currentEntries.close();
+            currentEntries = null;
+        }
+        pendingReads.forEach(read -> read.thenAccept(LedgerEntries::close));
+        pendingReads.clear();
+    }
+
+    private static <T> T getResult(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    /**
+     * Upload a part holding a block, or compressed blocks, on the upload threads. The part holds a block permit
+     * until it is uploaded.
+     */
+    private CompletableFuture<MultipartPart> upload(int partId, byte[] data, long entryBytes) {
+        return CompletableFuture.supplyAsync(() -> {
+            long startTime = System.nanoTime();
+            Payload partPayload = Payloads.newByteArrayPayload(data);
+            partPayload.getContentMetadata().setContentLength((long) data.length);
+            partPayload.getContentMetadata().setContentType("application/octet-stream");
+            MultipartPart part = blobStore.uploadMultipartPart(mpu, partId, partPayload);
+            log.debug("UploadMultipartPart. blobName: {}, partId: {}, mpu: {}", mpu.blobName(), partId, mpu.id());
+
+            offloaderStats.recordWriteToStorageLatency(topicName, System.nanoTime() - startTime,
+                    TimeUnit.NANOSECONDS);
+            offloaderStats.recordOffloadBytes(topicName, entryBytes);
+            offloaderStats.recordOffloadProgress(topicName,
+                    offloadedEntryBytes.addAndGet(entryBytes), readHandle.getLength());
+            return part;
+        }, uploadExecutor).whenComplete((part, t) -> {
+            blockPermits.release();
+            if (t != null) {
+                uploadFailure = t;
+            }
+        });
+    }
+
+    /**
+     * Compress a block on the upload threads. The block permit is released once the block is compressed.
+     */
+    private CompletableFuture<CompressedBlock> compress(long startEntryId, int blockSize, Block block) {
+        return CompletableFuture.supplyAsync(() -> {
+            int[] chunkLengths = new int[(blockSize + compressionChunkSize - 1) / compressionChunkSize];
+            byte[] data = compress(block.data(), chunkLengths);
+            return new CompressedBlock(startEntryId, blockSize, data, chunkLengths, block.entryBytes());
+        }, uploadExecutor).whenComplete((compressed, t) -> {
+            blockPermits.release();
+            if (t != null) {
+                uploadFailure = t;
+            }
+        });
+    }
+
+    /**
+     * Add the compressed blocks to the next part in order, and upload the part once it reaches the min part size.
+     *
+     * @param last whether all the blocks were built, in which case this waits for their compression and uploads the
+     *             remaining blocks as the last part, unless an upload failed
+     */
+    private void packCompressedBlocks(boolean last) throws Exception {
+        while (!compressions.isEmpty() && (last || compressions.peek().isDone())) {
+            CompressedBlock block = getResult(compressions.poll());
+            indexBuilder.addBlock(block.startEntryId(), nextPartId, block.blockSize());
+            int[] chunkLengths = block.chunkLengths();
+            for (int chunk = 0; chunk < chunkLengths.length; chunk++) {
+                chunks.addChunk(Math.min(compressionChunkSize, block.blockSize() - chunk * compressionChunkSize),
+                        chunkLengths[chunk]);
+            }
+            pendingPart.add(block);
+            pendingPartSize += block.data().length;
+            if (pendingPartSize >= minPartSize) {
+                uploadPendingPart();
+            }
+        }
+        if (last && !pendingPart.isEmpty() && uploadFailure == null) {
+            uploadPendingPart();
+        }
+    }
+
+    private void uploadPendingPart() throws InterruptedException {
+        byte[] data = new byte[pendingPartSize];
+        int offset = 0;
+        long entryBytes = 0;
+        for (CompressedBlock block : pendingPart) {
+            System.arraycopy(block.data(), 0, data, offset, block.data().length);
+            offset += block.data().length;
+            entryBytes += block.entryBytes();
+        }
+        pendingPart.clear();
+        pendingPartSize = 0;
+        blockPermits.acquire();
+        uploads.add(upload(nextPartId++, data, entryBytes));
+    }
+
+    private byte[] compress(byte[] block, int[] compressedChunkLengths) {
+        ByteBuf compressed = Unpooled.buffer(block.length / 2);
+        for (int chunk = 0; chunk < compressedChunkLengths.length; chunk++) {
+            int offset = chunk * compressionChunkSize;
+            ByteBuf encoded = codec.encode(Unpooled.wrappedBuffer(block, offset,
+                    Math.min(compressionChunkSize, block.length - offset)));
+            try {
+                compressedChunkLengths[chunk] = encoded.readableBytes();
+                compressed.writeBytes(encoded);
+            } finally {
+                encoded.release();
+            }
+        }
+        return ByteBufUtil.getBytes(compressed);
+    }
+}
@@ -32,6 +32,8 @@ import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.pulsar.client.api.CompressionType;
+import org.apache.pulsar.common.policies.data.OffloadPoliciesImpl;
 import org.jclouds.Constants;
 import org.jclouds.aws.s3.AWSS3ProviderMetadata;
 import org.jclouds.blobstore.BlobStore;
@@ -71,6 +73,20 @@ public class TieredStorageConfiguration {
     public static final long DEFAULT_MIN_SEGMENT_TIME_IN_SECOND = 0;
     public static final String MAX_OFFLOAD_SEGMENT_SIZE_IN_BYTES = "maxOffloadSegmentSizeInBytes";
     public static final long DEFAULT_MAX_SEGMENT_SIZE_IN_BYTES = 1024 * 1024 * 1024;
+    // The parallel offload and compression settings are set in the broker configuration with the offload extra
+    // config prefix, which is kept in the offload policies properties
+    public static final String OFFLOAD_UPLOAD_PARALLELISM =
+            OffloadPoliciesImpl.EXTRA_CONFIG_PREFIX + "offloadUploadParallelism";
+    public static final int DEFAULT_OFFLOAD_UPLOAD_PARALLELISM = 1;
+    public static final String OFFLOAD_READ_AHEAD_BATCHES =
+            OffloadPoliciesImpl.EXTRA_CONFIG_PREFIX + "offloadReadAheadBatches";
+    public static final int DEFAULT_OFFLOAD_READ_AHEAD_BATCHES = 4;
+    public static final String OFFLOAD_MEMORY_BUDGET_IN_BYTES =
+            OffloadPoliciesImpl.EXTRA_CONFIG_PREFIX + "offloadMemoryBudgetInBytes";
+    public static final long DEFAULT_OFFLOAD_MEMORY_BUDGET_IN_BYTES = 256 * 1024 * 1024;
+    public static final String OFFLOAD_COMPRESSION_TYPE =
+            OffloadPoliciesImpl.EXTRA_CONFIG_PREFIX + "offloadCompressionType";
+    public static final CompressionType DEFAULT_OFFLOAD_COMPRESSION_TYPE = CompressionType.NONE;
 
     protected static final int MB = 1024 * 1024;
 
@@ -211,6 +227,42 @@ public class TieredStorageConfiguration {
         }
     }
 
+    /**
+     * The number of data block parts uploaded concurrently, the ledger is offloaded one block at a time when it is 1.
+     * The upload threads are shared by the offloaders, see {@code OffloadUploadExecutor}.
+     */
+    public int getOffloadUploadParallelism() {
+        if (configProperties.containsKey(OFFLOAD_UPLOAD_PARALLELISM)) {
+            return Integer.parseInt(configProperties.get(OFFLOAD_UPLOAD_PARALLELISM));
+        } else {
+            return DEFAULT_OFFLOAD_UPLOAD_PARALLELISM;
+        }
+    }
+
+    public int getOffloadReadAheadBatches() {
+        if (configProperties.containsKey(OFFLOAD_READ_AHEAD_BATCHES)) {
+            return Integer.parseInt(configProperties.get(OFFLOAD_READ_AHEAD_BATCHES));
+        } else {
+            return DEFAULT_OFFLOAD_READ_AHEAD_BATCHES;
+        }
+    }
+
+    public long getOffloadMemoryBudgetInBytes() {
+        if (configProperties.containsKey(OFFLOAD_MEMORY_BUDGET_IN_BYTES)) {
+            return Long.parseLong(configProperties.get(OFFLOAD_MEMORY_BUDGET_IN_BYTES));
+        } else {
+            return DEFAULT_OFFLOAD_MEMORY_BUDGET_IN_BYTES;
+        }
+    }
+
+    public CompressionType getOffloadCompressionType() {
+        if (configProperties.containsKey(OFFLOAD_COMPRESSION_TYPE)) {
+            return CompressionType.valueOf(configProperties.get(OFFLOAD_COMPRESSION_TYPE).toUpperCase());
+        } else {
+            return DEFAULT_OFFLOAD_COMPRESSION_TYPE;
+        }
+    }
+
     public void setServiceEndpoint(String s) {
         configProperties.put(getKeyName(METADATA_FIELD_ENDPOINT), s);
     }
@@ -30,7 +30,9 @@ import java.util.Map;
 import java.util.Random;
 import lombok.Cleanup;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.mledger.LedgerOffloaderStatsDisable;
 import org.apache.bookkeeper.mledger.offload.jcloud.impl.BlobStoreBackedInputStreamImpl;
+import org.apache.bookkeeper.mledger.offload.jcloud.impl.OffloadedBlockCache;
 import org.jclouds.blobstore.BlobStore;
 import org.jclouds.blobstore.KeyNotFoundException;
 import org.jclouds.blobstore.domain.Blob;
@@ -303,4 +305,45 @@ public class BlobStoreBackedInputStreamTest extends BlobStoreTestBase {
         bis.seek(2048);
         assertEquals(bis.available(), 0);
     }
+
+    @Test
+    public void testReadingWithBlockCache() throws Exception {
+        String objectKey = "testReadingWithBlockCache";
+        String managedLedgerName = "public/default/persistent/testReadingWithBlockCache";
+        int objectSize = 12345;
+        RandomInputStream toWrite = new RandomInputStream(0, objectSize);
+        Payload payload = Payloads.newInputStreamPayload(toWrite);
+        payload.getContentMetadata().setContentLength((long) objectSize);
+        Blob blob = blobStore.blobBuilder(objectKey)
+            .payload(payload)
+            .contentLength((long) objectSize)
+            .build();
+        blobStore.putBlob(BUCKET, blob);
+
+        BlobStore spiedBlobStore = mock(BlobStore.class, delegatesTo(blobStore));
+        @Cleanup
+        OffloadedBlockCache blockCache = new OffloadedBlockCache(1024 * 1024, null, 0, 4, 2);
+
+        @Cleanup
+        BackedInputStream firstRead = new BlobStoreBackedInputStreamImpl(spiedBlobStore, BUCKET, objectKey,
+                (key, md) -> {}, objectSize, 1000, LedgerOffloaderStatsDisable.INSTANCE, managedLedgerName,
+                blockCache);
+        assertStreamsMatch(firstRead, new RandomInputStream(0, objectSize), 0);
+        // Each block is read once, either by the reader or by the prefetch
+        verify(spiedBlobStore, times(13))
+            .getBlob(Mockito.eq(BUCKET), Mockito.eq(objectKey), ArgumentMatchers.any());
+
+        // Another reader of the same object, e.g. a replay of the ledger, is served from the cache
+        @Cleanup
+        BackedInputStream secondRead = new BlobStoreBackedInputStreamImpl(spiedBlobStore, BUCKET, objectKey,
+                (key, md) -> {}, objectSize, 1000, LedgerOffloaderStatsDisable.INSTANCE, managedLedgerName,
+                blockCache);
+        RandomInputStream toCompare = new RandomInputStream(0, objectSize);
+        secondRead.seek(4321);
+        toCompare.skip(4321);
+        assertStreamsMatch(secondRead, toCompare, 4321);
+        assertEquals(secondRead.available(), 0);
+        verify(spiedBlobStore, times(13))
+            .getBlob(Mockito.eq(BUCKET), Mockito.eq(objectKey), ArgumentMatchers.any());
+    }
 }
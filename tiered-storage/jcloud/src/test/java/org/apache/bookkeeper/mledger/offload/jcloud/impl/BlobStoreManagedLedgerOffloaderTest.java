@@ -29,6 +29,7 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -51,8 +52,11 @@ import org.apache.bookkeeper.mledger.LedgerOffloaderStats;
 import org.apache.bookkeeper.mledger.ManagedLedgerException;
 import org.apache.bookkeeper.mledger.OffloadedLedgerMetadata;
 import org.apache.bookkeeper.mledger.impl.LedgerOffloaderStatsImpl;
+import org.apache.bookkeeper.mledger.offload.jcloud.OffloadIndexBlock;
+import org.apache.bookkeeper.mledger.offload.jcloud.OffloadIndexBlockBuilder;
 import org.apache.bookkeeper.mledger.offload.jcloud.provider.JCloudBlobStoreProvider;
 import org.apache.bookkeeper.mledger.offload.jcloud.provider.TieredStorageConfiguration;
+import org.apache.commons.io.IOUtils;
 import org.apache.pulsar.common.naming.TopicName;
 import org.jclouds.blobstore.BlobStore;
 import org.jclouds.blobstore.options.CopyOptions;
@@ -105,6 +109,16 @@ public class BlobStoreManagedLedgerOffloaderTest extends BlobStoreManagedLedgerO
         return offloader;
     }
 
+    private BlobStoreManagedLedgerOffloader getOffloader(String bucket, BlobStore mockedBlobStore,
+                                                         Map<String, String> additionalConfig) throws IOException {
+        mockedConfig = mock(TieredStorageConfiguration.class,
+                delegatesTo(getConfiguration(bucket, additionalConfig)));
+        Mockito.doReturn(mockedBlobStore).when(mockedConfig).getBlobStore();
+        return BlobStoreManagedLedgerOffloader.create(mockedConfig,
+                new HashMap<String, String>(), scheduler, scheduler, this.offloaderStats,
+                entryOffsetsCache);
+    }
+
     private BlobStoreManagedLedgerOffloader getOffloader(String bucket, BlobStore mockedBlobStore) throws IOException {
         mockedConfig = mock(TieredStorageConfiguration.class, delegatesTo(getConfiguration(bucket)));
         Mockito.doReturn(mockedBlobStore).when(mockedConfig).getBlobStore();
@@ -173,6 +187,156 @@ public class BlobStoreManagedLedgerOffloaderTest extends BlobStoreManagedLedgerO
         }
     }
 
+    @Test(timeOut = 600000)  // 10 minutes.
+    public void testParallelOffload() throws Exception {
+        @Cleanup
+        ReadHandle toWrite = buildReadHandle(DEFAULT_BLOCK_SIZE, 5);
+        Map<String, String> additionalConfig = new HashMap<>();
+        additionalConfig.put(TieredStorageConfiguration.OFFLOADER_PROPERTY_PREFIX + "MaxBlockSizeInBytes",
+                String.valueOf(DEFAULT_BLOCK_SIZE));
+        @Cleanup
+        LedgerOffloader sequentialOffloader = getOffloader(BUCKET, blobStore, additionalConfig);
+        additionalConfig.put(TieredStorageConfiguration.OFFLOAD_UPLOAD_PARALLELISM, "3");
+        additionalConfig.put(TieredStorageConfiguration.OFFLOAD_READ_AHEAD_BATCHES, "2");
+        additionalConfig.put(TieredStorageConfiguration.OFFLOAD_MEMORY_BUDGET_IN_BYTES,
+                String.valueOf(2 * DEFAULT_BLOCK_SIZE));
+        @Cleanup
+        LedgerOffloader parallelOffloader = getOffloader(BUCKET, blobStore, additionalConfig);
+
+        UUID sequentialUuid = UUID.randomUUID();
+        sequentialOffloader.offload(toWrite, sequentialUuid, new HashMap<>()).get();
+        UUID parallelUuid = UUID.randomUUID();
+        parallelOffloader.offload(toWrite, parallelUuid, new HashMap<>()).get();
+
+        // The parallel offload writes the same data object and index as the sequential one
+        for (boolean index : new boolean[]{false, true}) {
+            String sequentialKey = index ? DataBlockUtils.indexBlockOffloadKey(toWrite.getId(), sequentialUuid)
+                    : DataBlockUtils.dataBlockOffloadKey(toWrite.getId(), sequentialUuid);
+            String parallelKey = index ? DataBlockUtils.indexBlockOffloadKey(toWrite.getId(), parallelUuid)
+                    : DataBlockUtils.dataBlockOffloadKey(toWrite.getId(), parallelUuid);
+            try (InputStream sequential = blobStore.getBlob(BUCKET, sequentialKey).getPayload().openStream();
+                 InputStream parallel = blobStore.getBlob(BUCKET, parallelKey).getPayload().openStream()) {
+                assertTrue(IOUtils.contentEquals(sequential, parallel));
+            }
+        }
+
+        @Cleanup
+        ReadHandle toTest = parallelOffloader.readOffloaded(toWrite.getId(), parallelUuid,
+                Collections.emptyMap()).get();
+        assertEquals(toTest.getLastAddConfirmed(), toWrite.getLastAddConfirmed());
+        try (LedgerEntries toWriteEntries = toWrite.read(0, toWrite.getLastAddConfirmed());
+             LedgerEntries toTestEntries = toTest.read(0, toTest.getLastAddConfirmed())) {
+            Iterator<LedgerEntry> toWriteIter = toWriteEntries.iterator();
+            Iterator<LedgerEntry> toTestIter = toTestEntries.iterator();
+            while (toWriteIter.hasNext() && toTestIter.hasNext()) {
+                LedgerEntry toWriteEntry = toWriteIter.next();
+                LedgerEntry toTestEntry = toTestIter.next();
+                assertEquals(toWriteEntry.getEntryId(), toTestEntry.getEntryId());
+                assertEquals(toWriteEntry.getEntryBuffer(), toTestEntry.getEntryBuffer());
+            }
+            Assert.assertFalse(toWriteIter.hasNext());
+            Assert.assertFalse(toTestIter.hasNext());
+        }
+    }
+
+    @Test
+    public void testParallelOffloadFailPartUpload() throws Exception {
+        @Cleanup
+        ReadHandle readHandle = buildReadHandle(DEFAULT_BLOCK_SIZE, 3);
+        UUID uuid = UUID.randomUUID();
+        String failureString = "fail DataBlockPartUpload";
+
+        BlobStore spiedBlobStore = mock(BlobStore.class, delegatesTo(blobStore));
+        // Only the second part fails
+        Mockito
+            .doCallRealMethod()
+            .doThrow(new RuntimeException(failureString))
+            .doCallRealMethod()
+            .when(spiedBlobStore).uploadMultipartPart(any(), anyInt(), any());
+        Mockito
+            .doCallRealMethod()
+            .when(spiedBlobStore).abortMultipartUpload(any());
+
+        Map<String, String> additionalConfig = new HashMap<>();
+        additionalConfig.put(TieredStorageConfiguration.OFFLOADER_PROPERTY_PREFIX + "MaxBlockSizeInBytes",
+                String.valueOf(DEFAULT_BLOCK_SIZE));
+        additionalConfig.put(TieredStorageConfiguration.OFFLOAD_UPLOAD_PARALLELISM, "2");
+        @Cleanup
+        BlobStoreManagedLedgerOffloader offloader = getOffloader(BUCKET, spiedBlobStore, additionalConfig);
+        try {
+            offloader.offload(readHandle, uuid, new HashMap<>()).get();
+            Assert.fail("Should throw exception for when uploadMultipartPart");
+        } catch (Exception e) {
+            assertTrue(e.getCause() instanceof RuntimeException);
+            assertTrue(e.getCause().getMessage().contains(failureString));
+            Assert.assertFalse(blobStore.blobExists(BUCKET, DataBlockUtils.dataBlockOffloadKey(readHandle.getId(),
+                    uuid)));
+            Assert.assertFalse(blobStore.blobExists(BUCKET, DataBlockUtils.indexBlockOffloadKey(readHandle.getId(),
+                    uuid)));
+        }
+    }
+
+    @Test
+    public void testCompressedOffload() throws Exception {
+        @Cleanup
+        ReadHandle toWrite = buildReadHandle(DEFAULT_BLOCK_SIZE, 3);
+        Map<String, String> additionalConfig = new HashMap<>();
+        additionalConfig.put(TieredStorageConfiguration.OFFLOADER_PROPERTY_PREFIX + "MaxBlockSizeInBytes",
+                String.valueOf(DEFAULT_BLOCK_SIZE));
+        // Several chunks per block
+        additionalConfig.put(TieredStorageConfiguration.OFFLOADER_PROPERTY_PREFIX + "ReadBufferSizeInBytes",
+                String.valueOf(DEFAULT_BLOCK_SIZE / 4));
+        additionalConfig.put(TieredStorageConfiguration.OFFLOAD_COMPRESSION_TYPE, "lz4");
+        @Cleanup
+        LedgerOffloader offloader = getOffloader(BUCKET, blobStore, additionalConfig);
+
+        UUID uuid = UUID.randomUUID();
+        offloader.offload(toWrite, uuid, new HashMap<>()).get();
+
+        String dataKey = DataBlockUtils.dataBlockOffloadKey(toWrite.getId(), uuid);
+        String indexKey = DataBlockUtils.indexBlockOffloadKey(toWrite.getId(), uuid);
+        for (String key : new String[]{dataKey, indexKey}) {
+            assertEquals(blobStore.blobMetadata(BUCKET, key).getUserMetadata()
+                    .get(DataBlockUtils.METADATA_FORMAT_VERSION_KEY.toLowerCase()), DataBlockUtils.COMPRESSED_VERSION);
+        }
+        assertTrue(blobStore.blobMetadata(BUCKET, dataKey).getContentMetadata().getContentLength()
+                < 3L * DEFAULT_BLOCK_SIZE / 2);
+        // The compressed blocks are packed into parts of at least 5MiB, so the 3 blocks fit in at most 2 parts
+        try (InputStream indexStream = blobStore.getBlob(BUCKET, indexKey).getPayload().openStream();
+             OffloadIndexBlock index = (OffloadIndexBlock) OffloadIndexBlockBuilder.create().fromStream(indexStream)) {
+            assertEquals(index.getIndexEntryForEntry(0).getPartId(), 1);
+            assertTrue(index.getIndexEntryForEntry(toWrite.getLastAddConfirmed()).getPartId() <= 2);
+        }
+
+        @Cleanup
+        ReadHandle toTest = offloader.readOffloaded(toWrite.getId(), uuid, Collections.emptyMap()).get();
+        assertEquals(toTest.getLastAddConfirmed(), toWrite.getLastAddConfirmed());
+        try (LedgerEntries toWriteEntries = toWrite.read(0, toWrite.getLastAddConfirmed());
+             LedgerEntries toTestEntries = toTest.read(0, toTest.getLastAddConfirmed())) {
+            Iterator<LedgerEntry> toWriteIter = toWriteEntries.iterator();
+            Iterator<LedgerEntry> toTestIter = toTestEntries.iterator();
+            while (toWriteIter.hasNext() && toTestIter.hasNext()) {
+                LedgerEntry toWriteEntry = toWriteIter.next();
+                LedgerEntry toTestEntry = toTestIter.next();
+                assertEquals(toWriteEntry.getEntryId(), toTestEntry.getEntryId());
+                assertEquals(toWriteEntry.getEntryBuffer(), toTestEntry.getEntryBuffer());
+            }
+            Assert.assertFalse(toWriteIter.hasNext());
+            Assert.assertFalse(toTestIter.hasNext());
+        }
+
+        // Random reads only decompress the chunks of the entries
+        Random random = new Random(0);
+        for (int i = 0; i < 10; i++) {
+            long entryId = random.nextInt((int) toWrite.getLastAddConfirmed() + 1);
+            try (LedgerEntries toWriteEntries = toWrite.read(entryId, entryId);
+                 LedgerEntries toTestEntries = toTest.read(entryId, entryId)) {
+                assertEquals(toTestEntries.getEntry(entryId).getEntryBuffer(),
+                        toWriteEntries.getEntry(entryId).getEntryBuffer());
+            }
+        }
+    }
+
     @Test(timeOut = 60000)
     public void testReadHandlerState() throws Exception {
         @Cleanup
@@ -214,6 +378,7 @@ public class BlobStoreManagedLedgerOffloaderTest extends BlobStoreManagedLedgerO
         assertTrue(offloaderStats.getOffloadBytes(topic) > 0);
         assertTrue(offloaderStats.getReadLedgerLatency(topic).count > 0);
         assertEquals(offloaderStats.getWriteStorageError(topic), 0);
+        assertTrue(offloaderStats.getOffloadProgress(topic) > 0);
 
         Map<String, String> map = new HashMap<>();
         map.putAll(offloader.getOffloadDriverMetadata());
@@ -41,6 +41,7 @@ import org.apache.bookkeeper.mledger.offload.jcloud.OffloadIndexEntry;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedLedgerInfo.LedgerInfo;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.pulsar.client.api.CompressionType;
 import org.testng.annotations.Test;
 
 @Slf4j
@@ -254,4 +255,57 @@ public class OffloadIndexTest {
         indexBlock.close();
     }
 
+    @Test
+    public void compressedOffloadIndexBlockImplTest() throws Exception {
+        OffloadIndexBlockBuilder blockBuilder = OffloadIndexBlockBuilder.create();
+        LedgerMetadata metadata = createLedgerMetadata(1);
+        int blockSize = 3 * 1024 * 1024 + 100;
+        CompressedDataChunks.Builder chunksBuilder = CompressedDataChunks.builder(CompressionType.ZSTD);
+        for (int block = 0; block < 2; block++) {
+            chunksBuilder.addChunk(1024 * 1024, 1000)
+                .addChunk(1024 * 1024, 2000)
+                .addChunk(1024 * 1024, 3000)
+                .addChunk(100, 50);
+        }
+        CompressedDataChunks chunks = chunksBuilder.build();
+        blockBuilder.withLedgerMetadata(metadata).withDataObjectLength(2L * blockSize)
+            .withDataBlockHeaderLength(128).withCompressedChunks(chunks);
+        blockBuilder.addBlock(0, 1, blockSize);
+        blockBuilder.addBlock(1000, 2, blockSize);
+        OffloadIndexBlock indexBlock = blockBuilder.build();
+
+        // the index entries keep the logical offsets
+        assertEquals(indexBlock.getIndexEntryForEntry(1000).getOffset(), blockSize);
+
+        InputStream out = indexBlock.toStream();
+        int streamLength = out.available();
+        byte[] streamContent = new byte[streamLength];
+        assertEquals(out.read(streamContent), streamLength);
+        out.close();
+        assertEquals(Unpooled.wrappedBuffer(streamContent).readInt(),
+                OffloadIndexBlockImpl.getCompressedIndexMagicWord());
+
+        OffloadIndexBlockImpl indexBlock2 = (OffloadIndexBlockImpl) blockBuilder.fromStream(
+                new ByteArrayInputStream(streamContent));
+        assertEquals(indexBlock2.getEntryCount(), 2);
+        assertEquals(indexBlock2.getDataObjectLength(), 2L * blockSize);
+        CompressedDataChunks chunks2 = indexBlock2.getCompressedChunks();
+        assertEquals(chunks2.getCompressionType(), CompressionType.ZSTD);
+        assertEquals(chunks2.getChunkCount(), 8);
+        assertEquals(chunks2.getLogicalLength(), 2L * blockSize);
+        assertEquals(chunks2.getObjectLength(), 2 * (1000 + 2000 + 3000 + 50));
+        // the chunks of the second block start at the logical offset of the block
+        assertEquals(chunks2.getLogicalOffset(4), blockSize);
+        assertEquals(chunks2.getObjectOffset(4), 6050);
+        assertEquals(chunks2.findChunk(0), 0);
+        assertEquals(chunks2.findChunk(1024 * 1024 - 1), 0);
+        assertEquals(chunks2.findChunk(1024 * 1024), 1);
+        assertEquals(chunks2.findChunk(blockSize - 1), 3);
+        assertEquals(chunks2.findChunk(blockSize), 4);
+        assertEquals(chunks2.findChunk(2L * blockSize - 1), 7);
+
+        indexBlock.close();
+        indexBlock2.close();
+    }
+
 }
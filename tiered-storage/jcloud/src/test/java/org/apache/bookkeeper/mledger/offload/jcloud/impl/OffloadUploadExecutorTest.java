@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.offload.jcloud.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.apache.bookkeeper.mledger.offload.jcloud.provider.TieredStorageConfiguration;
+import org.testng.annotations.Test;
+
+public class OffloadUploadExecutorTest {
+
+    private static TieredStorageConfiguration config(String uploadParallelism, String compressionType) {
+        return TieredStorageConfiguration.create(Map.of(
+                TieredStorageConfiguration.OFFLOAD_UPLOAD_PARALLELISM, uploadParallelism,
+                TieredStorageConfiguration.OFFLOAD_COMPRESSION_TYPE, compressionType));
+    }
+
+    @Test
+    public void testSharedByTheOffloaders() {
+        OffloadUploadExecutor uploadExecutor = new OffloadUploadExecutor();
+        try {
+            // The parts are uploaded sequentially in the offload thread
+            assertNull(uploadExecutor.get(config("1", "NONE")));
+
+            ExecutorService executor = uploadExecutor.get(config("1", "LZ4"));
+            assertEquals(((ThreadPoolExecutor) executor).getMaximumPoolSize(), 1);
+            assertSame(uploadExecutor.get(config("4", "NONE")), executor);
+            assertEquals(((ThreadPoolExecutor) executor).getMaximumPoolSize(), 4);
+            // The pool doesn't shrink
+            assertSame(uploadExecutor.get(config("2", "NONE")), executor);
+            assertEquals(((ThreadPoolExecutor) executor).getMaximumPoolSize(), 4);
+        } finally {
+            uploadExecutor.close();
+        }
+    }
+
+    @Test
+    public void testCloseRunsTheQueuedUploads() throws Exception {
+        OffloadUploadExecutor uploadExecutor = new OffloadUploadExecutor();
+        ExecutorService executor = uploadExecutor.get(config("1", "LZ4"));
+        CountDownLatch uploadStarted = new CountDownLatch(1);
+        CountDownLatch uploadCompleted = new CountDownLatch(1);
+        List<CompletableFuture<Integer>> uploads = new ArrayList<>();
+        uploads.add(CompletableFuture.supplyAsync(() -> {
+            uploadStarted.countDown();
+            try {
+                uploadCompleted.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return 0;
+        }, executor));
+        for (int i = 1; i < 5; i++) {
+            int part = i;
+            uploads.add(CompletableFuture.supplyAsync(() -> part, executor));
+        }
+        uploadStarted.await();
+
+        CompletableFuture<Void> closed = CompletableFuture.runAsync(uploadExecutor::close);
+        uploadCompleted.countDown();
+        closed.get();
+        // None of the uploads waited for by the offload is dropped
+        for (int i = 0; i < 5; i++) {
+            assertTrue(uploads.get(i).isDone());
+            assertEquals(uploads.get(i).get().intValue(), i);
+        }
+        assertTrue(executor.isTerminated());
+    }
+}
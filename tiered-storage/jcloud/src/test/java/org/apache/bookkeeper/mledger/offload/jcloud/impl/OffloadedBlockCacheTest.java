@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.offload.jcloud.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Cleanup;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+public class OffloadedBlockCacheTest {
+
+    private static OffloadedBlockCache.Key key(long blockIndex) {
+        return new OffloadedBlockCache.Key("ledger-1-uuid", blockIndex * 100, 100);
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        @Cleanup
+        OffloadedBlockCache blockCache = new OffloadedBlockCache(0, null, 0, 4, 1);
+        assertFalse(blockCache.isEnabled());
+        assertEquals(blockCache.getPrefetchBlocks(), 0);
+        AtomicInteger loads = new AtomicInteger();
+        blockCache.get(key(0), () -> new byte[loads.incrementAndGet()]);
+        blockCache.get(key(0), () -> new byte[loads.incrementAndGet()]);
+        assertEquals(loads.get(), 2);
+    }
+
+    @Test
+    public void testMemoryCache() throws Exception {
+        @Cleanup
+        OffloadedBlockCache blockCache = new OffloadedBlockCache(1000, null, 0, 0, 1);
+        assertTrue(blockCache.isEnabled());
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals(blockCache.get(key(0), () -> {
+            loads.incrementAndGet();
+            return new byte[]{1, 2, 3};
+        }), new byte[]{1, 2, 3});
+        assertEquals(blockCache.get(key(0), () -> new byte[loads.incrementAndGet()]), new byte[]{1, 2, 3});
+        assertEquals(loads.get(), 1);
+
+        // The failures are not cached
+        try {
+            blockCache.get(key(1), () -> {
+                throw new IOException("read failure");
+            });
+            fail("should have failed");
+        } catch (IOException e) {
+            // expected
+        }
+        assertNull(blockCache.getIfPresent(key(1)));
+    }
+
+    @Test
+    public void testBlocksOfDifferentLengths() throws Exception {
+        @Cleanup
+        OffloadedBlockCache blockCache = new OffloadedBlockCache(1000, null, 0, 0, 1);
+        blockCache.put(new OffloadedBlockCache.Key("ledger-1-uuid", 0, 100), new byte[100]);
+        // A reader with another buffer size doesn't get the block of the same start
+        assertNull(blockCache.getIfPresent(new OffloadedBlockCache.Key("ledger-1-uuid", 0, 200)));
+        assertNotNull(blockCache.getIfPresent(new OffloadedBlockCache.Key("ledger-1-uuid", 0, 100)));
+    }
+
+    @Test
+    public void testDiskCacheEviction() throws Exception {
+        Path directory = Files.createTempDirectory("offloaded-block-cache");
+        try {
+            // A block left by a previous run is removed, but not the other files of the directory
+            Files.write(directory.resolve("stale.block"), new byte[10]);
+            Files.write(directory.resolve("other"), new byte[10]);
+            @Cleanup
+            OffloadedBlockCache blockCache = new OffloadedBlockCache(0, directory, 250, 0, 1);
+            assertFalse(Files.exists(directory.resolve("stale.block")));
+            assertTrue(Files.exists(directory.resolve("other")));
+
+            blockCache.put(key(0), new byte[100]);
+            blockCache.put(key(1), new byte[100]);
+            assertEquals(blockCache.getDiskBytes(), 200);
+            // Access the first block so that the second one is the least recently used
+            assertNotNull(blockCache.getIfPresent(key(0)));
+            blockCache.put(key(2), new byte[100]);
+            assertEquals(blockCache.getDiskBytes(), 200);
+            assertNotNull(blockCache.getIfPresent(key(0)));
+            assertNull(blockCache.getIfPresent(key(1)));
+            assertNotNull(blockCache.getIfPresent(key(2)));
+
+            // A block larger than the cache is not stored
+            blockCache.put(key(3), new byte[300]);
+            assertNull(blockCache.getIfPresent(key(3)));
+
+            blockCache.close();
+            assertEquals(blockCache.getDiskBytes(), 0);
+            try (var files = Files.list(directory)) {
+                assertEquals(files.count(), 1);
+            }
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        @Cleanup
+        OffloadedBlockCache blockCache = new OffloadedBlockCache(1000, null, 0, 2, 1);
+        assertEquals(blockCache.getPrefetchBlocks(), 2);
+        CountDownLatch prefetchStarted = new CountDownLatch(1);
+        CountDownLatch readCompleted = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        blockCache.prefetch(key(0), () -> {
+            prefetchStarted.countDown();
+            readCompleted.await();
+            loads.incrementAndGet();
+            return new byte[]{7};
+        });
+        assertTrue(prefetchStarted.await(10, TimeUnit.SECONDS));
+        // A block being loaded is not prefetched twice
+        blockCache.prefetch(key(0), () -> new byte[loads.incrementAndGet()]);
+
+        readCompleted.countDown();
+        // The reader waits for the prefetch instead of reading the block again
+        assertEquals(blockCache.get(key(0), () -> new byte[loads.incrementAndGet()]), new byte[]{7});
+        assertEquals(loads.get(), 1);
+    }
+
+    @Test
+    public void testCloseFailsPendingPrefetches() throws Exception {
+        OffloadedBlockCache blockCache = new OffloadedBlockCache(1000, null, 0, 2, 1);
+        CountDownLatch prefetchStarted = new CountDownLatch(1);
+        blockCache.prefetch(key(0), () -> {
+            prefetchStarted.countDown();
+            new CountDownLatch(1).await();
+            return new byte[]{7};
+        });
+        assertTrue(prefetchStarted.await(10, TimeUnit.SECONDS));
+        // Queued behind the first prefetch, dropped by the shutdown of the prefetch executor
+        blockCache.prefetch(key(1), () -> new byte[]{8});
+
+        blockCache.close();
+        // The readers don't wait for the dropped prefetches, they load the blocks themselves
+        CompletableFuture<byte[]> read = CompletableFuture.supplyAsync(() -> {
+            try {
+                return blockCache.get(key(1), () -> new byte[]{9});
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+        assertEquals(read.get(10, TimeUnit.SECONDS), new byte[]{9});
+        assertEquals(blockCache.get(key(0), () -> new byte[]{10}), new byte[]{10});
+    }
+}
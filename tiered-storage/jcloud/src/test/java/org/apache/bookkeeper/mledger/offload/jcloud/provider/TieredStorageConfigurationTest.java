@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import org.apache.pulsar.common.policies.data.OffloadPoliciesImpl;
 import org.jclouds.domain.Credentials;
 import org.testng.annotations.Test;
 
@@ -230,4 +231,23 @@ public class TieredStorageConfigurationTest {
             System.clearProperty("jclouds.region");
         }
     }
+
+    @Test
+    public void parallelOffloadExtraConfigTest() throws Exception {
+        Properties brokerProperties = new Properties();
+        brokerProperties.setProperty("managedLedgerOffloadDriver", "aws-s3");
+        brokerProperties.setProperty("managedLedgerOffloadExtraConfigoffloadUploadParallelism", "4");
+        brokerProperties.setProperty("managedLedgerOffloadExtraConfigoffloadReadAheadBatches", "8");
+        brokerProperties.setProperty("managedLedgerOffloadExtraConfigoffloadMemoryBudgetInBytes", "1048576");
+        TieredStorageConfiguration config = TieredStorageConfiguration.create(
+                OffloadPoliciesImpl.create(brokerProperties).toProperties());
+
+        assertEquals(config.getOffloadUploadParallelism(), 4);
+        assertEquals(config.getOffloadReadAheadBatches(), 8);
+        assertEquals(config.getOffloadMemoryBudgetInBytes(), 1048576);
+
+        config = new TieredStorageConfiguration(new HashMap<>());
+        assertEquals(config.getOffloadUploadParallelism(),
+                TieredStorageConfiguration.DEFAULT_OFFLOAD_UPLOAD_PARALLELISM);
+    }
 }